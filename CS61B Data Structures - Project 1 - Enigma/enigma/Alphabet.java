@@ -1,7 +1,13 @@
 package enigma;
 
+import java.util.Arrays;
+
 /** An alphabet of encodable characters.  Provides a mapping from characters
- *  to and from indices into the alphabet.
+ *  to and from indices into the alphabet.  Characters are Unicode code
+ *  points, so an alphabet may hold characters outside the Basic
+ *  Multilingual Plane; the char-based methods work on those inside it.
+ *  Lookup of a code point's index is by an open-addressing hash table,
+ *  so it takes constant time whatever the size of the alphabet.
  *  @author Thomas Hsiung
  */
 class Alphabet {
@@ -9,7 +15,7 @@ class Alphabet {
     /** A new alphabet containing CHARS.  Character number #k has index
      *  K (numbering from 0). No character may be duplicated. */
     Alphabet(String chars) {
-        _chars = sanitizeChars(chars);
+        this(sanitizeCodePoints(chars));
     }
 
     /** A default alphabet of all upper-case characters. */
@@ -17,58 +23,124 @@ class Alphabet {
         this("ABCDEFGHIJKLMNOPQRSTUVWXYZ");
     }
 
+    /** A new alphabet whose character number #k is CODEPOINTS[K]. No code
+     *  point may be duplicated. */
+    Alphabet(int[] codepoints) {
+        _codepoints = codepoints;
+        int capacity = Integer.highestOneBit(Math.max(8, codepoints.length))
+            << 2;
+        _shift = 32 - Integer.numberOfTrailingZeros(capacity);
+        _keys = new int[capacity];
+        _values = new int[capacity];
+        Arrays.fill(_keys, EMPTY);
+        for (int i = 0; i < codepoints.length; i++) {
+            int slot = slot(codepoints[i]);
+            if (_keys[slot] != EMPTY) {
+                throw new EnigmaException("Alpha.sanitizeChars:"
+                                          + " Duplicate chars.");
+            }
+            _keys[slot] = codepoints[i];
+            _values[slot] = i;
+        }
+        _chars = new String(codepoints, 0, codepoints.length);
+    }
+
     /** Returns the size of the alphabet. */
     int size() {
-        return _chars.length();
+        return _codepoints.length;
     }
 
     /** Returns true if CH is in this alphabet. */
     boolean contains(char ch) {
-        String check = Character.toString(ch);
-        return _chars.contains(check);
+        return containsCodePoint(ch);
+    }
+
+    /** Returns true if the code point CP is in this alphabet. */
+    boolean containsCodePoint(int cp) {
+        return _keys[slot(cp)] == cp;
     }
 
     /** Returns character number INDEX in the alphabet, where
      *  0 <= INDEX < size().
      *  Also catches indices > _chars or negative values. */
     char toChar(int index) {
-        if (index > _chars.length() || index < 0) {
+        int cp = toCodePoint(index);
+        if (!Character.isBmpCodePoint(cp)) {
+            throw new EnigmaException("Alpha.toChar: Not a char.");
+        }
+        return (char) cp;
+    }
+
+    /** Returns code point number INDEX in the alphabet, where
+     *  0 <= INDEX < size(). */
+    int toCodePoint(int index) {
+        if (index >= _codepoints.length || index < 0) {
             throw new EnigmaException("Alpha.toChar: Index out of range.");
         }
-        return _chars.charAt(index);
+        return _codepoints[index];
     }
 
     /** Returns the index of character CH which must be in
      *  the alphabet. This is the inverse of toChar().
      *  Also catches chars not in alphabet. */
     int toInt(char ch) {
-        if (!contains(ch)) {
+        int slot = slot(ch);
+        if (_keys[slot] != ch) {
             throw new EnigmaException("Alpha.toInt: Char not in Alpha." + ch);
         }
-        return _chars.indexOf(ch);
+        return _values[slot];
+    }
+
+    /** Returns the index of code point CP, which must be in the
+     *  alphabet. This is the inverse of toCodePoint(). */
+    int indexOfCodePoint(int cp) {
+        int slot = slot(cp);
+        if (_keys[slot] != cp) {
+            throw new EnigmaException("Alpha.toInt: Char not in Alpha."
+                                      + new String(Character.toChars(cp)));
+        }
+        return _values[slot];
+    }
+
+    /** Returns the alphabet whose character #k is my character
+     *  #(k + OFFSET) mod size(). */
+    Alphabet rotated(int offset) {
+        int n = _codepoints.length;
+        int[] result = new int[n];
+        for (int i = 0; i < n; i++) {
+            result[i] = _codepoints[(i + offset) % n];
+        }
+        return new Alphabet(result);
     }
 
     /** Sanitizes input string CHARS for whitespaces and throws exception for
      *  duplicate chars; returns a string without whitespace. */
     public String sanitizeChars(String chars) {
-        String cleanchars = chars.replaceAll("\\s+", "");
-        if (checkDuplicates(chars)) {
-            throw new EnigmaException("Alpha.sanitizeChars: Duplicate chars.");
-        }
-        return cleanchars;
+        int[] clean = sanitizeCodePoints(chars);
+        return new String(clean, 0, clean.length);
     }
 
     /** Returns boolean for duplicate chars in CHARS string. */
     public boolean checkDuplicates(String chars) {
-        char[] check = chars.toCharArray();
-        for (int i = 0; i < chars.length(); i++) {
-            for (int j = i + 1; j < chars.length(); j++) {
-                if (check[i] == check[j]) {
-                    return true;
-                }
-            }
+        int[] check = chars.codePoints().toArray();
+        return check.length != chars.codePoints().distinct().count();
+    }
+
+    /** Returns the code points of CHARS other than whitespace. */
+    private static int[] sanitizeCodePoints(String chars) {
+        return chars.codePoints()
+            .filter(cp -> !Character.isWhitespace(cp)).toArray();
+    }
+
+    /** Returns the slot of _keys holding CP, or the empty slot where it
+     *  would go. */
+    private int slot(int cp) {
+        int mask = _keys.length - 1;
+        int slot = (cp * HASH) >>> _shift;
+        while (_keys[slot] != EMPTY && _keys[slot] != cp) {
+            slot = (slot + 1) & mask;
         }
-        return false;
+        return slot;
     }
 
     /** EC returns chars. */
@@ -76,6 +148,24 @@ class Alphabet {
         return _chars;
     }
 
+    /** Marks an empty slot of _keys (no code point is negative). */
+    private static final int EMPTY = -1;
+
+    /** Multiplier for hashing code points (2**32 / golden ratio). */
+    private static final int HASH = 0x9E3779B9;
+
     /** Local private instance of chars. */
     private String _chars;
+
+    /** Code point of each index. */
+    private final int[] _codepoints;
+
+    /** Code points in the hash table, or EMPTY. */
+    private final int[] _keys;
+
+    /** Index of the code point in the same slot of _keys. */
+    private final int[] _values;
+
+    /** Shift that reduces a hash to a slot of _keys. */
+    private final int _shift;
 }
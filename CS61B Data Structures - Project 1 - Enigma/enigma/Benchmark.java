@@ -0,0 +1,413 @@
+package enigma;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+import java.util.SplittableRandom;
+
+import static enigma.EnigmaException.*;
+
+/** Timing runs for the enigma package.  Usage:
+ *      java enigma.Benchmark NAME CONFIG [ARGS...]
+ *  where NAME selects the benchmark and CONFIG names a configuration
+ *  file (the registry benchmark takes several CONFIGs), or
+ *      java enigma.Benchmark alphabets [SIZE...]
+ *  which times machines with synthetic alphabets of each SIZE (default
+ *  26, 256, 4096 and 65536 characters).  Results are printed on the
+ *  standard output.
+ *  @author Thomas Hsiung
+ */
+public final class Benchmark {
+
+    /** Default settings line for benchmarks that need one. */
+    static final String SETTINGS = "* B Beta I II III AAAA";
+
+    /** Run the benchmark named by ARGS[0] (see class comment). */
+    public static void main(String... args) {
+        try {
+            if (args.length < 2 && !(args.length == 1
+                                     && args[0].equals("alphabets"))) {
+                throw error("usage: java enigma.Benchmark NAME CONFIG ...");
+            }
+            switch (args[0]) {
+            case "alphabets":
+                alphabets(args);
+                break;
+            case "steptable":
+                stepTable(args);
+                break;
+            case "analysis":
+                analysis(args);
+                break;
+            case "crib":
+                crib(args);
+                break;
+            case "registry":
+                registry(args);
+                break;
+            default:
+                throw error("no benchmark named %s", args[0]);
+            }
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** Return a machine configured from the file named CONFIG and set up
+     *  with SETTINGS. */
+    static Machine machine(String config, String settings) {
+        try (Scanner scanner = new Scanner(new File(config))) {
+            Machine machine = Main.configure(scanner);
+            Main.setUp(machine, settings);
+            return machine;
+        } catch (IOException excp) {
+            throw error("could not open %s", config);
+        }
+    }
+
+    /** Report the build time, size and lookup speed of the step table
+     *  for the rotors in ARGS[2] (default SETTINGS), and the speed of
+     *  conversion with and without it. */
+    private static void stepTable(String[] args) {
+        String settings = args.length > 2 ? args[2] : SETTINGS;
+        Machine machine = machine(args[1], settings);
+        Stepper stepper = Stepper.of(machine.rotors(), machine.numPawls());
+        if (stepper == null) {
+            throw error("rotors in '%s' cannot be tabulated", settings);
+        }
+        File dir;
+        try {
+            dir = Files.createTempDirectory("steps").toFile();
+        } catch (IOException excp) {
+            throw error("could not create table directory");
+        }
+
+        long start = System.nanoTime();
+        StepTable table = StepTable.open(dir, stepper);
+        long build = System.nanoTime() - start;
+        System.out.printf("states: %d, build: %.2f ms, size: %d bytes%n",
+                          stepper.states(), build / 1e6, table.bytes());
+
+        int steps = 50_000_000;
+        int state = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < steps; i++) {
+            state = stepper.next(state);
+        }
+        report("computed step", steps, System.nanoTime() - start, state);
+        state = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < steps; i++) {
+            state = table.next(state);
+        }
+        report("table step", steps, System.nanoTime() - start, state);
+        start = System.nanoTime();
+        int period = table.period(0);
+        report("table period walk", period, System.nanoTime() - start,
+               period);
+
+        int chars = 5_000_000;
+        Machine plain = machine(args[1], settings);
+        Machine tabled = machine(args[1], settings);
+        tabled.useStepTables(dir);
+        report("convert", chars, convert(plain, chars), 0);
+        report("convert with table", chars, convert(tabled, chars), 0);
+    }
+
+    /** Report the time taken to analyze the stepping of every rotor
+     *  order in the configuration, and the longest and shortest periods
+     *  found. */
+    private static void analysis(String[] args) {
+        Machine machine = machine(args[1], SETTINGS);
+        long start = System.nanoTime();
+        List<StepAnalysis> orders = machine.analyzeRotorOrders();
+        long time = System.nanoTime() - start;
+        StepAnalysis longest = orders.get(0), shortest = orders.get(0);
+        for (StepAnalysis order : orders) {
+            if (order.period() > longest.period()) {
+                longest = order;
+            }
+            if (order.period() < shortest.period()) {
+                shortest = order;
+            }
+        }
+        report("analyze orders", orders.size(), time, orders.size());
+        System.out.printf("longest: %s%nshortest: %s%n", longest, shortest);
+    }
+
+    /** Report the time taken to find the placements of a crib in a
+     *  ciphertext of ARGS[2] (default 10 million) characters, character
+     *  by character and with a CribScanner. */
+    private static void crib(String[] args) {
+        int length = args.length > 2 ? Integer.parseInt(args[2]) : 10_000_000;
+        Machine machine = machine(args[1], SETTINGS);
+        Alphabet alphabet = machine.alphabet();
+        SplittableRandom random = new SplittableRandom(32);
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            text.append(alphabet.toChar(random.nextInt(alphabet.size())));
+        }
+        String cipher = machine.convert(text.toString());
+        String crib = text.substring(length / 2, length / 2 + 20);
+
+        long start = System.nanoTime();
+        int count = 0;
+        for (int p = 0; p + crib.length() <= cipher.length(); p++) {
+            boolean fits = true;
+            for (int i = 0; i < crib.length() && fits; i++) {
+                fits = cipher.charAt(p + i) != crib.charAt(i);
+            }
+            count += fits ? 1 : 0;
+        }
+        report("charAt scan", length, System.nanoTime() - start, count);
+        CribScanner scanner = new CribScanner(alphabet, cipher);
+        start = System.nanoTime();
+        int[] placements = scanner.placements(crib);
+        report("bitset scan", length, System.nanoTime() - start,
+               placements.length);
+        start = System.nanoTime();
+        placements = scanner.placements(new StringBuilder(crib).reverse()
+                                        .toString());
+        report("bitset rescan", length, System.nanoTime() - start,
+               placements.length);
+    }
+
+    /** Report the throughput of a mixed workload of short messages, each
+     *  for a configuration chosen at random from variants of the files
+     *  named in ARGS[1..] and one of a few settings lines for it, run
+     *  first by configuring a machine for each message, as separate Main
+     *  invocations do, and then through a MachineRegistry.  Each file
+     *  gives 8 variants, differing only in trailing blank lines, so
+     *  each is registered separately. */
+    private static void registry(String[] args) {
+        SplittableRandom random = new SplittableRandom(33);
+        ArrayList<byte[]> configs = new ArrayList<>();
+        ArrayList<String[]> settings = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            String text;
+            try {
+                text = new String(Files.readAllBytes(new File(args[i])
+                                                     .toPath()));
+            } catch (IOException excp) {
+                throw error("could not open %s", args[i]);
+            }
+            Machine machine = Main.configure(new Scanner(text));
+            for (int v = 0; v < 8; v++) {
+                configs.add((text + "\n".repeat(v)).getBytes());
+                String[] lines = new String[4];
+                for (int k = 0; k < lines.length; k++) {
+                    lines[k] = settingsLine(machine, random);
+                }
+                settings.add(lines);
+            }
+        }
+        int jobs = 20_000;
+        int[] job = new int[jobs];
+        String[] jobsettings = new String[jobs];
+        for (int i = 0; i < jobs; i++) {
+            job[i] = random.nextInt(configs.size());
+            jobsettings[i] = settings.get(job[i])[random.nextInt(4)];
+        }
+        String message = "HELLOWORLD".repeat(10);
+
+        int sink = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < jobs; i++) {
+            Machine machine = Main.configure(new Scanner(
+                new String(configs.get(job[i]))));
+            Main.setUp(machine, jobsettings[i]);
+            sink += machine.convert(message).charAt(0);
+        }
+        report("configure per job", jobs, System.nanoTime() - start, sink);
+        MachineRegistry registry = new MachineRegistry(
+            MachineRegistry.DEFAULT_BYTES);
+        start = System.nanoTime();
+        for (int i = 0; i < jobs; i++) {
+            Machine machine = registry.machine(configs.get(job[i]),
+                                               jobsettings[i]);
+            sink += machine.convert(message).charAt(0);
+        }
+        report("registry", jobs, System.nanoTime() - start, sink);
+        System.out.printf("entries: %d, bytes: %d, hits: %d, misses: %d%n",
+                          registry.size(), registry.bytes(),
+                          registry.hits(), registry.misses());
+        MachineRegistry small = new MachineRegistry(registry.bytes() / 2);
+        start = System.nanoTime();
+        for (int i = 0; i < jobs; i++) {
+            Machine machine = small.machine(configs.get(job[i]),
+                                            jobsettings[i]);
+            sink += machine.convert(message).charAt(0);
+        }
+        report("half-size registry", jobs, System.nanoTime() - start, sink);
+        System.out.printf("entries: %d, bytes: %d, evictions: %d%n",
+                          small.size(), small.bytes(), small.evictions());
+    }
+
+    /** Return a random settings line, with ring settings but no
+     *  plugboard, for MACHINE, drawn from RANDOM. */
+    static String settingsLine(Machine machine, SplittableRandom random) {
+        ArrayList<String> reflectors = new ArrayList<>(),
+            fixed = new ArrayList<>(), moving = new ArrayList<>();
+        for (Rotor rotor : machine.allRotors()) {
+            if (rotor.reflecting()) {
+                reflectors.add(rotor.name());
+            } else if (rotor.rotates()) {
+                moving.add(rotor.name());
+            } else {
+                fixed.add(rotor.name());
+            }
+        }
+        int pawls = machine.numPawls();
+        int numfixed = machine.numRotors() - 1 - pawls;
+        StringBuilder line = new StringBuilder("* ");
+        line.append(reflectors.get(random.nextInt(reflectors.size())));
+        for (int i = 0; i < numfixed; i++) {
+            line.append(' ').append(fixed.remove(
+                random.nextInt(fixed.size())));
+        }
+        for (int i = 0; i < pawls; i++) {
+            line.append(' ').append(moving.remove(
+                random.nextInt(moving.size())));
+        }
+        Alphabet alphabet = machine.alphabet();
+        for (int k = 0; k < 2; k++) {
+            line.append(' ');
+            for (int i = 1; i < machine.numRotors(); i++) {
+                line.appendCodePoint(alphabet.toCodePoint(
+                    random.nextInt(alphabet.size())));
+            }
+        }
+        return line.toString();
+    }
+
+    /** Report the cost of lookups, permutations and conversion for a
+     *  machine with a synthetic alphabet of each size in ARGS[1..]. */
+    private static void alphabets(String[] args) {
+        int[] sizes = { 26, 256, 4096, 65536 };
+        if (args.length > 1) {
+            sizes = new int[args.length - 1];
+            for (int i = 1; i < args.length; i++) {
+                sizes[i - 1] = Integer.parseInt(args[i]);
+            }
+        }
+        for (int size : sizes) {
+            System.out.printf("alphabet of %d characters%n", size);
+            SplittableRandom random = new SplittableRandom(size);
+            int[] chars = codePoints(size);
+            long start = System.nanoTime();
+            Alphabet alphabet = new Alphabet(chars);
+            report("build alphabet", size, System.nanoTime() - start, 0);
+
+            int lookups = 10_000_000;
+            int[] probes = new int[1 << 12];
+            for (int i = 0; i < probes.length; i++) {
+                probes[i] = chars[random.nextInt(size)];
+            }
+            int sink = 0;
+            start = System.nanoTime();
+            for (int i = 0; i < lookups; i++) {
+                sink += alphabet.indexOfCodePoint(probes[i & 4095]);
+            }
+            report("code point index", lookups, System.nanoTime() - start,
+                   sink);
+
+            ArrayList<Rotor> rotors = new ArrayList<>();
+            String reflector = cycles(chars, random, true);
+            start = System.nanoTime();
+            rotors.add(new Reflector("B", new Permutation(reflector,
+                                                          alphabet)));
+            report("build permutation", size, System.nanoTime() - start, 0);
+            String[] names = { "B", "I", "II", "III" };
+            for (int i = 1; i < names.length; i++) {
+                rotors.add(new MovingRotor(names[i], new Permutation(
+                    cycles(chars, random, false), alphabet),
+                    new String(chars, random.nextInt(size), 1)));
+            }
+            Machine machine = new Machine(alphabet, 4, 3, rotors);
+            machine.insertRotors(names);
+            machine.setRotors(new String(chars, 0, 3));
+            machine.setPlugboard(new Permutation("", alphabet));
+
+            int n = 5_000_000;
+            report("convert index", n, convert(machine, n), 0);
+            int[] text = new int[100_000];
+            for (int i = 0; i < text.length; i++) {
+                text[i] = chars[random.nextInt(size)];
+            }
+            String message = new String(text, 0, text.length);
+            start = System.nanoTime();
+            for (int i = 0; i < n / text.length; i++) {
+                sink += machine.convert(message).length();
+            }
+            report("convert string", n, System.nanoTime() - start, sink);
+        }
+    }
+
+    /** Return the first SIZE code points, counting up from '!', that are
+     *  neither whitespace, surrogates nor used in settings lines.  Sizes
+     *  beyond the Basic Multilingual Plane take supplementary
+     *  characters. */
+    private static int[] codePoints(int size) {
+        int[] result = new int[size];
+        int cp = '!';
+        for (int i = 0; i < size; cp++) {
+            if (Character.isValidCodePoint(cp)
+                && Character.getType(cp) != Character.SURROGATE
+                && !Character.isWhitespace(cp)
+                && cp != '(' && cp != ')' && cp != '*') {
+                result[i++] = cp;
+            }
+        }
+        return result;
+    }
+
+    /** Return the cycles of a random permutation of CHARS, drawn from
+     *  RANDOM: a single cycle, or pairs if PAIRS (there must then be an
+     *  even number of CHARS). */
+    private static String cycles(int[] chars, SplittableRandom random,
+                                 boolean pairs) {
+        int[] order = chars.clone();
+        for (int i = order.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = order[i];
+            order[i] = order[j];
+            order[j] = tmp;
+        }
+        StringBuilder result = new StringBuilder("(");
+        for (int i = 0; i < order.length; i++) {
+            if (pairs && i > 0 && i % 2 == 0) {
+                result.append(")(");
+            }
+            result.appendCodePoint(order[i]);
+        }
+        return result.append(')').toString();
+    }
+
+    /** Return the time in nanoseconds MACHINE takes to convert N
+     *  characters. */
+    private static long convert(Machine machine, int n) {
+        int size = machine.alphabet().size();
+        int sink = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            sink += machine.convert(i % size);
+        }
+        long time = System.nanoTime() - start;
+        if (sink == -1) {
+            System.out.println();
+        }
+        return time;
+    }
+
+    /** Print the rate of N operations named WHAT taking NANOS
+     *  nanoseconds, with CHECK to keep the work from being elided. */
+    private static void report(String what, long n, long nanos, int check) {
+        System.out.printf("%-20s %12d ops %10.2f ms %8.2f ns/op (%d)%n",
+                          what, n, nanos / 1e6, (double) nanos / n, check);
+    }
+
+}
@@ -0,0 +1,156 @@
+package enigma;
+
+import static enigma.EnigmaException.*;
+
+/** Finder of the places a crib may sit in a ciphertext.  An Enigma never
+ *  encodes a letter as itself, so a crib cannot sit at an offset where
+ *  any of its letters lines up with the same ciphertext letter.  For
+ *  each letter of a crib, the scanner keeps a bitset of the positions of
+ *  that letter in the ciphertext; shifting it down by the letter's place
+ *  in the crib marks every offset that letter rules out, so a whole
+ *  crib is checked against all offsets with one pass of word-wide ORs
+ *  per crib character.  Bitsets are built on first use and kept, so
+ *  scanning the same ciphertext for further cribs is cheaper still.
+ *  @author Thomas Hsiung
+ */
+class CribScanner {
+
+    /** A scanner for CIPHERTEXT, in the characters of ALPHABET.
+     *  Whitespace is ignored. */
+    CribScanner(Alphabet alphabet, String ciphertext) {
+        this(alphabet, indices(alphabet, ciphertext));
+    }
+
+    /** A scanner for the ciphertext whose characters have the indices
+     *  CIPHERTEXT in ALPHABET. */
+    CribScanner(Alphabet alphabet, int[] ciphertext) {
+        _alphabet = alphabet;
+        _cipher = ciphertext;
+        _words = (ciphertext.length + 63) >>> 6;
+        _positions = new long[alphabet.size()][];
+    }
+
+    /** Return the number of characters in my ciphertext. */
+    int length() {
+        return _cipher.length;
+    }
+
+    /** Return the offsets, in increasing order, at which CRIB (in the
+     *  characters of my alphabet, whitespace ignored) may sit in my
+     *  ciphertext. */
+    int[] placements(String crib) {
+        return placements(indices(_alphabet, crib));
+    }
+
+    /** Return the offsets, in increasing order, at which the crib whose
+     *  characters have the indices CRIB may sit in my ciphertext. */
+    int[] placements(int[] crib) {
+        int last = _cipher.length - crib.length;
+        if (last < 0) {
+            return new int[0];
+        }
+        build(crib);
+        long[] ruled = new long[_words];
+        for (int i = 0; i < crib.length; i++) {
+            orShifted(ruled, _positions[crib[i]], i);
+        }
+        int count = 0;
+        for (int w = 0; w <= last >>> 6; w++) {
+            count += Long.bitCount(~ruled[w] & mask(w, last));
+        }
+        int[] result = new int[count];
+        int k = 0;
+        for (int w = 0; w <= last >>> 6; w++) {
+            long free = ~ruled[w] & mask(w, last);
+            while (free != 0) {
+                result[k++] = (w << 6) + Long.numberOfTrailingZeros(free);
+                free &= free - 1;
+            }
+        }
+        return result;
+    }
+
+    /** Return true iff the crib whose characters have the indices CRIB
+     *  may sit at OFFSET in my ciphertext, checked character by
+     *  character. */
+    boolean fits(int[] crib, int offset) {
+        if (offset < 0 || offset + crib.length > _cipher.length) {
+            return false;
+        }
+        for (int i = 0; i < crib.length; i++) {
+            if (_cipher[offset + i] == crib[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Build the position bitsets of the letters in CRIB that do not
+     *  have one yet, in a single pass over the ciphertext. */
+    private void build(int[] crib) {
+        boolean[] fresh = new boolean[_positions.length];
+        boolean missing = false;
+        for (int c : crib) {
+            if (c < 0 || c >= _positions.length) {
+                throw error("crib character out of range");
+            }
+            if (_positions[c] == null) {
+                _positions[c] = new long[_words];
+                fresh[c] = missing = true;
+            }
+        }
+        if (!missing) {
+            return;
+        }
+        for (int p = 0; p < _cipher.length; p++) {
+            int c = _cipher[p];
+            if (fresh[c]) {
+                _positions[c][p >>> 6] |= 1L << p;
+            }
+        }
+    }
+
+    /** Set in RULED the bit of each offset P such that bit P + SHIFT is
+     *  set in POSITIONS. */
+    private static void orShifted(long[] ruled, long[] positions, int shift) {
+        int words = shift >>> 6, bits = shift & 63;
+        int n = ruled.length - words;
+        if (bits == 0) {
+            for (int w = 0; w < n; w++) {
+                ruled[w] |= positions[w + words];
+            }
+        } else {
+            for (int w = 0; w < n - 1; w++) {
+                ruled[w] |= (positions[w + words] >>> bits)
+                    | (positions[w + words + 1] << (64 - bits));
+            }
+            ruled[n - 1] |= positions[ruled.length - 1] >>> bits;
+        }
+    }
+
+    /** Return the mask of the offsets in word W that are at most LAST. */
+    private static long mask(int w, int last) {
+        int top = last - (w << 6);
+        return top >= 63 ? -1L : (1L << (top + 1)) - 1;
+    }
+
+    /** Return the indices in ALPHABET of the characters of TEXT, ignoring
+     *  whitespace. */
+    static int[] indices(Alphabet alphabet, String text) {
+        return text.codePoints().filter(cp -> !Character.isWhitespace(cp))
+            .map(alphabet::indexOfCodePoint).toArray();
+    }
+
+    /** Alphabet of the ciphertext. */
+    private final Alphabet _alphabet;
+
+    /** The ciphertext, as alphabet indices. */
+    private final int[] _cipher;
+
+    /** Number of words in each bitset. */
+    private final int _words;
+
+    /** Bitset of the positions of each letter in the ciphertext, or null
+     *  if not yet needed. */
+    private final long[][] _positions;
+}
@@ -0,0 +1,89 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the CribScanner class.
+ *  @author Thomas Hsiung
+ */
+public class CribScannerTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return the offsets at which CRIB may sit in CIPHER, found by
+     *  comparing characters. */
+    static int[] naivePlacements(String cipher, String crib) {
+        ArrayList<Integer> result = new ArrayList<>();
+        for (int p = 0; p + crib.length() <= cipher.length(); p++) {
+            boolean fits = true;
+            for (int i = 0; i < crib.length() && fits; i++) {
+                fits = cipher.charAt(p + i) != crib.charAt(i);
+            }
+            if (fits) {
+                result.add(p);
+            }
+        }
+        return result.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /** Return N random characters of UPPER_STRING drawn from RANDOM. */
+    static String randomText(Random random, int n) {
+        char[] result = new char[n];
+        for (int i = 0; i < n; i++) {
+            result[i] = UPPER_STRING.charAt(random.nextInt(26));
+        }
+        return new String(result);
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testExample() {
+        CribScanner scanner = new CribScanner(UPPER, "QFZWR WIVTY RESXB");
+        assertEquals(15, scanner.length());
+        assertArrayEquals(naivePlacements("QFZWRWIVTYRESXB", "WETTER"),
+                          scanner.placements("WETTER"));
+        assertArrayEquals(new int[] { 0 },
+                          scanner.placements("ABCDEFGHIJKLMNO"));
+        assertArrayEquals(new int[0], scanner.placements("QFZWRWIVTYRESXBA"));
+    }
+
+    @Test
+    public void testRandom() {
+        Random random = new Random(61);
+        for (int length : new int[] { 1, 63, 64, 65, 127, 128, 129, 1000 }) {
+            String cipher = randomText(random, length);
+            CribScanner scanner = new CribScanner(UPPER, cipher);
+            for (int m = 1; m <= Math.min(length, 140); m += 13) {
+                String crib = randomText(random, m);
+                assertArrayEquals("length " + length + " crib " + crib,
+                                  naivePlacements(cipher, crib),
+                                  scanner.placements(crib));
+            }
+        }
+    }
+
+    @Test
+    public void testFits() {
+        CribScanner scanner = new CribScanner(UPPER, "ABCDEF");
+        int[] crib = CribScanner.indices(UPPER, "BC");
+        assertTrue(scanner.fits(crib, 0));
+        assertFalse(scanner.fits(crib, 1));
+        assertFalse(scanner.fits(crib, 5));
+        for (int p : scanner.placements(crib)) {
+            assertTrue(scanner.fits(crib, p));
+        }
+    }
+
+}
@@ -0,0 +1,218 @@
+package enigma;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.LongAdder;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** Opt-in counters and phase timings for the enigma package, turned on
+ *  by the system property enigma.instrument=true.  Each timed phase is
+ *  also recorded as a JFR event, and a summary of all counts is
+ *  recorded as a JFR event and printed on the standard error when the
+ *  program exits.  When it is off, every hook reduces to a test of the
+ *  constant ENABLED, which the JIT removes.
+ *  @author Thomas Hsiung
+ */
+final class Instrumentation {
+
+    /** True iff instrumentation is on. */
+    static final boolean ENABLED = Boolean.getBoolean("enigma.instrument");
+
+    /** The phases of a run of Main that are timed. */
+    enum Phase {
+        /** Reading the configuration file. */
+        CONFIG,
+        /** Processing settings lines. */
+        SETUP,
+        /** Converting message lines. */
+        CONVERT,
+        /** Writing converted messages. */
+        OUTPUT
+    }
+
+    /** Count of characters converted. */
+    static final LongAdder CHARS = new LongAdder();
+    /** Count of settings lines read by Main. */
+    static final LongAdder SETTINGS = new LongAdder();
+    /** Count of calls to Main.setUp, from Main and from the searches. */
+    static final LongAdder SETUPS = new LongAdder();
+    /** Count of calls to Machine.setOffset. */
+    static final LongAdder OFFSETS = new LongAdder();
+    /** Count of bytes read from input and configuration files. */
+    static final LongAdder BYTES_IN = new LongAdder();
+    /** Count of bytes written to the output. */
+    static final LongAdder BYTES_OUT = new LongAdder();
+
+    /** Total nanoseconds spent in each Phase, by ordinal. */
+    private static final LongAdder[] NANOS = new LongAdder[Phase.values()
+                                                           .length];
+
+    static {
+        for (int i = 0; i < NANOS.length; i++) {
+            NANOS[i] = new LongAdder();
+        }
+        if (ENABLED) {
+            Runtime.getRuntime().addShutdownHook(
+                new Thread(Instrumentation::summarize));
+        }
+    }
+
+    /** Not instantiable. */
+    private Instrumentation() {
+    }
+
+    /** Return the event timing a phase begun now, or null if not
+     *  ENABLED. */
+    static PhaseEvent start() {
+        if (!ENABLED) {
+            return null;
+        }
+        PhaseEvent event = new PhaseEvent();
+        event.begin();
+        event.start = System.nanoTime();
+        return event;
+    }
+
+    /** Record the end of PHASE, timed by EVENT (as from start()). */
+    static void end(Phase phase, PhaseEvent event) {
+        if (ENABLED) {
+            long nanos = System.nanoTime() - event.start;
+            NANOS[phase.ordinal()].add(nanos);
+            event.end();
+            if (event.shouldCommit()) {
+                event.phase = phase.name();
+                event.nanos = nanos;
+                event.commit();
+            }
+        }
+    }
+
+    /** Return IN, counting the bytes read from it if ENABLED. */
+    static InputStream input(InputStream in) {
+        if (!ENABLED) {
+            return in;
+        }
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                int c = super.read();
+                if (c >= 0) {
+                    BYTES_IN.increment();
+                }
+                return c;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int n = super.read(b, off, len);
+                if (n > 0) {
+                    BYTES_IN.add(n);
+                }
+                return n;
+            }
+        };
+    }
+
+    /** Return OUT, counting the bytes written to it if ENABLED. */
+    static OutputStream output(OutputStream out) {
+        if (!ENABLED) {
+            return out;
+        }
+        return new FilterOutputStream(out) {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                BYTES_OUT.increment();
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len)
+                throws IOException {
+                out.write(b, off, len);
+                BYTES_OUT.add(len);
+            }
+        };
+    }
+
+    /** Record the summary event and print the summary on the standard
+     *  error. */
+    static void summarize() {
+        SummaryEvent event = new SummaryEvent();
+        event.chars = CHARS.sum();
+        event.settings = SETTINGS.sum();
+        event.setups = SETUPS.sum();
+        event.offsets = OFFSETS.sum();
+        event.bytesIn = BYTES_IN.sum();
+        event.bytesOut = BYTES_OUT.sum();
+        event.commit();
+
+        System.err.printf("enigma: %d chars converted, %d settings lines,"
+                          + " %d setUp, %d setOffset, %d bytes in,"
+                          + " %d bytes out%n",
+                          event.chars, event.settings, event.setups,
+                          event.offsets, event.bytesIn, event.bytesOut);
+        for (Phase phase : Phase.values()) {
+            System.err.printf("enigma: %-8s %10.3f ms%n",
+                              phase.name().toLowerCase(),
+                              NANOS[phase.ordinal()].sum() / 1e6);
+        }
+    }
+
+    /** JFR event recording one timed phase, from start() to end(). */
+    @Name("enigma.Phase")
+    @Label("Enigma Phase")
+    @Category("Enigma")
+    @StackTrace(false)
+    static class PhaseEvent extends Event {
+        /** Name of the phase. */
+        @Label("Phase")
+        String phase;
+
+        /** Time spent in the phase. */
+        @Label("Nanoseconds")
+        long nanos;
+
+        /** Value of System.nanoTime() at the start of the phase; not
+         *  recorded. */
+        transient long start;
+    }
+
+    /** JFR event recording the counts for a whole run. */
+    @Name("enigma.Summary")
+    @Label("Enigma Summary")
+    @Category("Enigma")
+    @StackTrace(false)
+    static class SummaryEvent extends Event {
+        /** Characters converted. */
+        @Label("Characters Converted")
+        long chars;
+
+        /** Settings lines read by Main. */
+        @Label("Settings Lines")
+        long settings;
+
+        /** Calls to Main.setUp. */
+        @Label("setUp Calls")
+        long setups;
+
+        /** Calls to Machine.setOffset. */
+        @Label("setOffset Calls")
+        long offsets;
+
+        /** Bytes read. */
+        @Label("Bytes In")
+        long bytesIn;
+
+        /** Bytes written. */
+        @Label("Bytes Out")
+        long bytesOut;
+    }
+}
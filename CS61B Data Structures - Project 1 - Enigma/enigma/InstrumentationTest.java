@@ -0,0 +1,108 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.TemporaryFolder;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/** The suite of all JUnit tests for the Instrumentation class.  Since
+ *  instrumentation is fixed when the class is loaded, each test runs
+ *  Main in a separate JVM.
+ *  @author Thomas Hsiung
+ */
+public class InstrumentationTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(60);
+
+    /** Directory for configuration and input files. */
+    @Rule
+    public TemporaryFolder files = new TemporaryFolder();
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Input for MachineRegistryTest.CONFIG with two settings lines, one
+     *  with ring settings, and three message lines, of 22 letters in
+     *  all. */
+    static final String INPUT =
+        "* B I II AB BC\n"
+        + "ABCDE FGH\n"
+        + "HGFED\n"
+        + MachineRegistryTest.SETUP2 + "\n"
+        + "AAAAA BBBB\n";
+
+    /** Standard output and error of a run of Main. */
+    static class Run {
+        /** The standard output. */
+        String out;
+        /** The standard error. */
+        String err;
+    }
+
+    /** Return the result of running Main on the configuration CONFIG
+     *  and input INPUT in a new JVM, with instrumentation on iff
+     *  INSTRUMENT. */
+    Run run(String config, String input, boolean instrument)
+        throws IOException, InterruptedException {
+        File conf = files.newFile(), in = files.newFile(),
+            out = files.newFile(), err = files.newFile();
+        Files.write(conf.toPath(), config.getBytes(StandardCharsets.UTF_8));
+        Files.write(in.toPath(), input.getBytes(StandardCharsets.UTF_8));
+        List<String> command = new ArrayList<>();
+        command.add(new File(System.getProperty("java.home"), "bin/java")
+                    .getPath());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("-Denigma.instrument=" + instrument);
+        command.add("enigma.Main");
+        command.add(conf.getPath());
+        command.add(in.getPath());
+        Process process = new ProcessBuilder(command)
+            .redirectOutput(out).redirectError(err).start();
+        assertEquals(0, process.waitFor());
+        Run result = new Run();
+        result.out = new String(Files.readAllBytes(out.toPath()),
+                                StandardCharsets.UTF_8);
+        result.err = new String(Files.readAllBytes(err.toPath()),
+                                StandardCharsets.UTF_8);
+        return result;
+    }
+
+    /** Return the count printed before LABEL in the summary SUMMARY. */
+    static long count(String summary, String label) {
+        Matcher m = Pattern.compile("(\\d+) " + label).matcher(summary);
+        assertTrue("no count of " + label, m.find());
+        return Long.parseLong(m.group(1));
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testOutputUnchanged() throws Exception {
+        String config = MachineRegistryTest.CONFIG;
+        Run plain = run(config, INPUT, false),
+            instrumented = run(config, INPUT, true);
+        assertEquals(plain.out, instrumented.out);
+        assertEquals("", plain.err);
+        String summary = instrumented.err;
+        assertEquals(22, count(summary, "chars converted"));
+        assertEquals(2, count(summary, "settings lines"));
+        assertEquals(2, count(summary, "setUp"));
+        assertEquals(INPUT.length() + config.length(),
+                     count(summary, "bytes in"));
+        assertEquals(plain.out.length(), count(summary, "bytes out"));
+        assertEquals(1, count(summary, "setOffset"));
+    }
+
+}
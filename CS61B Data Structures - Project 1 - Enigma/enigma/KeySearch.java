@@ -0,0 +1,232 @@
+package enigma;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.Scanner;
+
+import static enigma.EnigmaException.*;
+
+/** A known-plaintext search for the keys of a ciphertext.  The key
+ *  space is every ordering of the moving rotors, every ring setting of
+ *  the moving rotors, and every start position of all the rotors; a key
+ *  is a hit when decoding the ciphertext with it yields the crib at the
+ *  crib offset, or at any of the crib offsets if there are several.
+ *  The key space is divided into units, one per rotor
+ *  order and ring setting, each covering every start position.
+ *
+ *  A search is described by a properties file with these keys:
+ *      config      the configuration file name.
+ *      ciphertext  the ciphertext (blanks are ignored).
+ *      crib        the plaintext expected at the crib offset.
+ *      offset      the crib offset (default 0), a comma-separated list
+ *                  of offsets, or "scan" for every offset at which no
+ *                  letter of the crib lines up with the same letter of
+ *                  the ciphertext (see CribScanner).
+ *      fixed       the reflector and non-moving rotors, as in a settings
+ *                  line (e.g., "B Beta").
+ *      plugboard   the plugboard cycles (default none).
+ *      rings       "false" to search with all ring settings at the
+ *                  first letter of the alphabet (default "true").
+ *      orders      optionally, a comma-separated list of the rotor
+ *                  orders to search (e.g., "I II III, II I III").
+ *  @author Thomas Hsiung
+ */
+class KeySearch {
+
+    /** The search described by the properties SPEC. */
+    KeySearch(Properties spec) {
+        _spec = spec;
+        String config = required("config");
+        try (Scanner scanner = new Scanner(new File(config),
+                                           StandardCharsets.UTF_8)) {
+            _machine = Main.configure(scanner);
+        } catch (IOException excp) {
+            throw error("could not open %s", config);
+        }
+        _alphabet = _machine.alphabet();
+        _fixed = required("fixed").trim();
+        _plugboard = spec.getProperty("plugboard", "").trim();
+        _cipher = CribScanner.indices(_alphabet, required("ciphertext"));
+        _crib = CribScanner.indices(_alphabet, required("crib"));
+        _offsets = offsets(spec.getProperty("offset", "0").trim());
+        _orders = new ArrayList<>();
+        String orders = spec.getProperty("orders");
+        if (orders == null) {
+            for (Rotor[] order : _machine.rotorOrders()) {
+                String names = "";
+                for (Rotor rotor : order) {
+                    names += (names.isEmpty() ? "" : " ") + rotor.name();
+                }
+                _orders.add(names);
+            }
+        } else {
+            for (String order : orders.split(",")) {
+                _orders.add(order.trim().replaceAll("\\s+", " "));
+            }
+        }
+        int pawls = _machine.numPawls();
+        _rings = Boolean.parseBoolean(spec.getProperty("rings", "true"))
+            ? power(_alphabet.size(), pawls) : 1;
+    }
+
+    /** Return the search described by the properties file named NAME. */
+    static KeySearch read(String name) {
+        Properties spec = new Properties();
+        try (Reader in = new FileReader(name, StandardCharsets.UTF_8)) {
+            spec.load(in);
+        } catch (IOException excp) {
+            throw error("could not read %s", name);
+        }
+        return new KeySearch(spec);
+    }
+
+    /** Return the number of units in my key space. */
+    int units() {
+        return _orders.size() * _rings;
+    }
+
+    /** Return the settings lines (as for Main.setUp) of the keys in UNIT
+     *  that are hits. */
+    List<String> search(int unit) {
+        if (unit < 0 || unit >= units()) {
+            throw error("no unit %d", unit);
+        }
+        String order = _orders.get(unit / _rings);
+        String ring = ringSetting(unit % _rings);
+        Machine machine = _machine;
+        String prefix = "* " + _fixed + " " + order + " ";
+        String suffix = " " + ring + " " + _plugboard;
+        int settable = machine.numRotors() - 1;
+        Main.setUp(machine, prefix + position(0, settable) + suffix);
+
+        ArrayList<String> hits = new ArrayList<>();
+        int positions = power(_alphabet.size(), settable);
+        int length = _offsets[_offsets.length - 1] + _crib.length;
+        boolean[] alive = new boolean[_offsets.length];
+        for (int p = 0; p < positions; p++) {
+            String posn = position(p, settable);
+            machine.setRotors(posn);
+            Arrays.fill(alive, true);
+            int live = alive.length;
+            for (int i = 0, first = 0; i < length && live > 0; i++) {
+                int c = machine.convert(_cipher[i]);
+                while (_offsets[first] + _crib.length <= i) {
+                    first += 1;
+                }
+                for (int k = first; k < _offsets.length
+                         && _offsets[k] <= i; k++) {
+                    if (alive[k] && c != _crib[i - _offsets[k]]) {
+                        alive[k] = false;
+                        live -= 1;
+                    }
+                }
+            }
+            if (live > 0) {
+                hits.add((prefix + posn + suffix).trim());
+            }
+        }
+        return hits;
+    }
+
+    /** Return the crib offsets denoted by SPEC, in increasing order. */
+    private int[] offsets(String spec) {
+        int[] result;
+        if (spec.equals("scan")) {
+            result = new CribScanner(_alphabet, _cipher).placements(_crib);
+            if (result.length == 0) {
+                throw error("crib fits nowhere in ciphertext");
+            }
+            return result;
+        }
+        try {
+            result = Arrays.stream(spec.split(","))
+                .mapToInt(s -> Integer.parseInt(s.trim()))
+                .sorted().distinct().toArray();
+        } catch (NumberFormatException excp) {
+            throw error("bad crib offset %s", spec);
+        }
+        if (result[0] < 0
+            || result[result.length - 1] + _crib.length > _cipher.length) {
+            throw error("crib does not fit in ciphertext");
+        }
+        return result;
+    }
+
+    /** Return the ring setting string numbered RING. */
+    private String ringSetting(int ring) {
+        int pawls = _machine.numPawls();
+        int fixed = _machine.numRotors() - 1 - pawls;
+        return position(0, fixed) + position(ring, pawls);
+    }
+
+    /** Return the N-character string of my alphabet whose digits, in
+     *  base alphabet size, are those of P. */
+    private String position(int p, int n) {
+        int[] result = new int[n];
+        int size = _alphabet.size();
+        for (int i = n - 1; i >= 0; i--) {
+            result[i] = _alphabet.toCodePoint(p % size);
+            p /= size;
+        }
+        return new String(result, 0, n);
+    }
+
+    /** Return the value of the required property KEY. */
+    private String required(String key) {
+        String value = _spec.getProperty(key);
+        if (value == null) {
+            throw error("search needs a value for %s", key);
+        }
+        return value;
+    }
+
+    /** Return BASE ** EXP, which must fit in an int. */
+    private static int power(int base, int exp) {
+        long result = 1;
+        for (int i = 0; i < exp; i++) {
+            result *= base;
+            if (result > Integer.MAX_VALUE) {
+                throw error("key space too large");
+            }
+        }
+        return (int) result;
+    }
+
+    /** My description. */
+    private final Properties _spec;
+
+    /** Machine used for the search. */
+    private final Machine _machine;
+
+    /** Alphabet of _machine. */
+    private final Alphabet _alphabet;
+
+    /** Reflector and non-moving rotors. */
+    private final String _fixed;
+
+    /** Plugboard cycles. */
+    private final String _plugboard;
+
+    /** Possible offsets of the crib in the plaintext, in increasing
+     *  order. */
+    private final int[] _offsets;
+
+    /** Ciphertext, as alphabet indices. */
+    private final int[] _cipher;
+
+    /** Crib, as alphabet indices. */
+    private final int[] _crib;
+
+    /** Rotor orders searched, as blank-separated names. */
+    private final List<String> _orders;
+
+    /** Number of ring settings searched per rotor order. */
+    private final int _rings;
+}
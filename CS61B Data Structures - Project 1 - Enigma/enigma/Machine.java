@@ -1,7 +1,11 @@
 package enigma;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
 
 import static enigma.EnigmaException.*;
 
@@ -21,6 +25,19 @@ class Machine {
         _allrotorsarr = new ArrayList<Rotor>(allRotors);
     }
 
+    /** Return a new machine with my configuration and copies of all my
+     *  available rotors, sharing my alphabet and permutations, with no
+     *  rotors inserted.  It uses step tables if I do. */
+    Machine copy() {
+        ArrayList<Rotor> rotors = new ArrayList<>();
+        for (Rotor rotor : _allrotorsarr) {
+            rotors.add(rotor.copy());
+        }
+        Machine result = new Machine(_alphabet, _numrotors, _numpawls, rotors);
+        result.useStepTables(_tabledir);
+        return result;
+    }
+
     /** Return the number of rotor slots I have. */
     int numRotors() {
         return _numrotors;
@@ -31,6 +48,46 @@ class Machine {
         return _numpawls;
     }
 
+    /** Return my alphabet. */
+    Alphabet alphabet() {
+        return _alphabet;
+    }
+
+    /** Return all the rotors available to me. */
+    List<Rotor> allRotors() {
+        return Collections.unmodifiableList(_allrotorsarr);
+    }
+
+    /** Return the rotors in my slots, the reflector first. */
+    Rotor[] rotors() {
+        return _rotors;
+    }
+
+    /** Step my rotors with precomputed tables kept in directory DIR,
+     *  building each table the first time its rotor layout is seen.
+     *  A null DIR goes back to stepping rotor by rotor. */
+    void useStepTables(File dir) {
+        _tabledir = dir;
+        _layoutchanged = true;
+    }
+
+    /** Return the step table for my current rotors, or null if I am not
+     *  using step tables or my rotors cannot be tabulated. */
+    StepTable stepTable() {
+        if (_layoutchanged) {
+            _layoutchanged = false;
+            _state = -1;
+            _table = null;
+            if (_tabledir != null && _rotors != null) {
+                Stepper stepper = Stepper.of(_rotors, _numpawls);
+                if (stepper != null) {
+                    _table = StepTable.open(_tabledir, stepper);
+                }
+            }
+        }
+        return _table;
+    }
+
     /** Set my rotor slots to the rotors named ROTORS from my set of
      *  available rotors (ROTORS[0] names the reflector).
      *  Initially, all rotors are set at their 0 setting. */
@@ -41,6 +98,7 @@ class Machine {
             for (int j = 0; j < _allrotorsarr.size(); j++) {
                 if (rotors[i].equals(_allrotorsarr.get(j).name())) {
                     _rotors[i] = _allrotorsarr.get(j);
+                    _rotors[i].resetOffset();
                     foundrotor = true;
                 }
             }
@@ -49,37 +107,64 @@ class Machine {
             }
             foundrotor = false;
         }
+        _layoutchanged = true;
     }
 
     /** Set my rotors according to SETTING, which must be a string of
      *  numRotors()-1 characters in my alphabet. The first letter refers
      *  to the leftmost rotor setting (not counting the reflector).  */
     void setRotors(String setting) {
-        if (setting.length() != _numrotors - 1) {
+        int[] posns = setting.codePoints().toArray();
+        if (posns.length != _numrotors - 1) {
             throw new EnigmaException("Mach.setRotors: Setting mismatch.");
         } else {
             for (int i = 1; i < _numrotors; i++) {
-                _rotors[i].set(setting.charAt(i - 1));
+                _rotors[i].set(_rotors[i].alphabet()
+                               .indexOfCodePoint(posns[i - 1]));
             }
         }
+        _state = -1;
+    }
+
+    /** Return the settings of my rotors, the reflector first, for
+     *  restoreRotorSettings. */
+    int[] rotorSettings() {
+        int[] result = new int[_numrotors];
+        for (int i = 0; i < _numrotors; i++) {
+            result[i] = _rotors[i].setting();
+        }
+        return result;
+    }
+
+    /** Return my rotors to SETTINGS, as returned by rotorSettings when
+     *  the same rotors with the same offsets were in place. */
+    void restoreRotorSettings(int[] settings) {
+        for (int i = 1; i < _numrotors; i++) {
+            _rotors[i].set(settings[i]);
+        }
+        _state = -1;
     }
 
     /** EC: Shift rotors according to OFFSET, which must be a string of
      *  numRotors()-1 characters in my alphabet. The first letter refers
      *  to the leftmost rotor setting (not counting the reflector).  */
     void setOffset(String offset) {
-        if (offset.length() != _numrotors - 1) {
+        if (Instrumentation.ENABLED) {
+            Instrumentation.OFFSETS.increment();
+        }
+        int[] offsets = offset.codePoints().toArray();
+        if (offsets.length != _numrotors - 1) {
             throw new EnigmaException("Mach.setRotors: Offset mismatch.");
         } else {
             for (int i = 1; i < _numrotors; i++) {
-                _rotors[i].setOffset(offset.charAt(i - 1));
+                _rotors[i].setOffset(_rotors[i].alphabet()
+                                     .indexOfCodePoint(offsets[i - 1]));
 
                 if (_rotors[i].offset() != 0) {
                     int off = _rotors[i].offset();
                     String cycles = _rotors[i].permutation().cycles();
-                    String alpha = _rotors[i].permutation().alphabet().chars();
-                    String tmp = alpha.substring(off) + alpha.substring(0, off);
-                    Alphabet newalpha = new Alphabet(tmp);
+                    Alphabet newalpha =
+                        _rotors[i].permutation().alphabet().rotated(off);
                     int diff = _rotors[i].setting() - off;
                     int newset = _rotors[i].permutation().wrap(diff);
 
@@ -88,6 +173,132 @@ class Machine {
                 }
             }
         }
+        _layoutchanged = true;
+    }
+
+    /** Return the analysis of the stepping of my rotors from their
+     *  current settings, stepping by table if I have one. */
+    StepAnalysis analyze() {
+        Stepper stepper = stepper();
+        StepTable table = stepTable();
+        int start = stepper.state(_rotors);
+        if (_analysis == null || !_analysis.stepper().equals(stepper)
+            || _analysis.start() != start) {
+            _analysis = new StepAnalysis(rotorNames(_rotors), stepper,
+                                         table, start);
+        }
+        return _analysis;
+    }
+
+    /** Return the exact period of the stepping sequence of my rotors
+     *  from their current settings. */
+    long period() {
+        return analyze().period();
+    }
+
+    /** Return the settings (as for setRotors) after which a rotor
+     *  double-steps, from my current settings over one full period. */
+    List<String> doubleStepPositions() {
+        StepAnalysis analysis = analyze();
+        return analysis.doubleSteps().stream()
+            .map(state -> settings(analysis.stepper(), state))
+            .collect(Collectors.toList());
+    }
+
+    /** Return the settings (as for setRotors) my rotors will have after
+     *  converting N more characters, without changing them. */
+    String stateAfter(long n) {
+        StepAnalysis analysis = analyze();
+        return settings(analysis.stepper(), analysis.stateAfter(n));
+    }
+
+    /** Return analyses of the stepping of every ordering of my available
+     *  moving rotors in my pawl slots, at their current ring settings
+     *  and starting with every rotor at 0.  The orderings are analyzed
+     *  in parallel. */
+    List<StepAnalysis> analyzeRotorOrders() {
+        return rotorOrders().parallelStream().map(order -> {
+            Rotor[] slots = new Rotor[_numpawls + 1];
+            System.arraycopy(order, 0, slots, 1, _numpawls);
+            Stepper stepper = Stepper.of(slots, _numpawls);
+            if (stepper == null) {
+                throw error("Mach.analyze: Rotors cannot be analyzed.");
+            }
+            return new StepAnalysis(rotorNames(order), stepper, null, 0);
+        }).collect(Collectors.toList());
+    }
+
+    /** Return every ordering of distinct moving rotors from my available
+     *  rotors that fills my pawl slots, in a fixed order. */
+    List<Rotor[]> rotorOrders() {
+        ArrayList<Rotor> moving = new ArrayList<>();
+        for (Rotor rotor : _allrotorsarr) {
+            if (rotor.rotates()) {
+                moving.add(rotor);
+            }
+        }
+        ArrayList<Rotor[]> orders = new ArrayList<>();
+        orders(moving, new Rotor[_numpawls], 0, orders);
+        return orders;
+    }
+
+    /** Add to RESULT every ordering of distinct rotors from ROTORS that
+     *  fills ORDER from position K onward. */
+    private static void orders(List<Rotor> rotors, Rotor[] order, int k,
+                               List<Rotor[]> result) {
+        if (k == order.length) {
+            result.add(order.clone());
+            return;
+        }
+        for (Rotor rotor : rotors) {
+            boolean used = false;
+            for (int i = 0; i < k; i++) {
+                used |= order[i] == rotor;
+            }
+            if (!used) {
+                order[k] = rotor;
+                orders(rotors, order, k + 1, result);
+            }
+        }
+    }
+
+    /** Return the stepper for my rotors, which must be tabulable. */
+    private Stepper stepper() {
+        StepTable table = stepTable();
+        Stepper stepper = table != null ? table.stepper()
+            : Stepper.of(_rotors, _numpawls);
+        if (stepper == null) {
+            throw error("Mach.analyze: Rotors cannot be analyzed.");
+        }
+        return stepper;
+    }
+
+    /** Return the settings string (as for setRotors) for my rotors with
+     *  the moving rotors in STATE of STEPPER. */
+    private String settings(Stepper stepper, int state) {
+        StringBuilder result = new StringBuilder();
+        int first = _numrotors - stepper.pawls();
+        for (int i = 1; i < _numrotors; i++) {
+            int posn = i < first ? _rotors[i].setting()
+                : stepper.position(state, i - first);
+            result.appendCodePoint(_rotors[i].alphabet().toCodePoint(posn));
+        }
+        return result.toString();
+    }
+
+    /** Return the names of ROTORS, separated by blanks, skipping any
+     *  empty slots. */
+    private static String rotorNames(Rotor[] rotors) {
+        StringBuilder result = new StringBuilder();
+        for (Rotor rotor : rotors) {
+            if (rotor != null) {
+                if (result.length() > 0) {
+                    result.append(' ');
+                }
+                result.append(rotor.name());
+            }
+        }
+        return result.toString();
     }
 
     /** Set the plugboard to PLUGBOARD. */
@@ -99,6 +310,31 @@ class Machine {
      *  index in the range 0..alphabet size - 1), after first advancing
      *  the machine. */
     int convert(int c) {
+        StepTable table = stepTable();
+        if (table != null) {
+            if (_state < 0) {
+                _state = table.stepper().state(_rotors);
+            }
+            _state = table.next(_state);
+            table.stepper().apply(_state, _rotors);
+        } else {
+            step();
+        }
+
+        int index = _numrotors - 1;
+        int chr = c;
+        chr = _plugboard.permute(chr);
+        for (int i = index; i >= 0; i--) {
+            chr = _rotors[i].convertForward(chr);
+        }
+        for (int i = 1; i <= index; i++) {
+            chr = _rotors[i].convertBackward(chr);
+        }
+        return _plugboard.invert(chr);
+    }
+
+    /** Advance my rotors one step, rotor by rotor. */
+    private void step() {
         boolean[] rotated = new boolean[_numrotors];
         boolean atnotch = false;
         int index = _numrotors - 1;
@@ -121,35 +357,28 @@ class Machine {
                 _rotors[i].advance();
             }
         }
-
-        int chr = c;
-        chr = _plugboard.permute(chr);
-        for (int i = index; i >= 0; i--) {
-            chr = _rotors[i].convertForward(chr);
-        }
-        for (int i = 1; i <= index; i++) {
-            chr = _rotors[i].convertBackward(chr);
-        }
-        return _plugboard.invert(chr);
     }
 
     /** Returns the encoding/decoding of MSG, updating the state of
      *  the rotors accordingly. */
     String convert(String msg) {
-        String result = "";
+        StringBuilder result = new StringBuilder();
         String message = msg.replaceAll("\\t*", "");
         int charind = 0;
-        for (int i = 0; i < message.length(); i++) {
-            if (i > 0 && message.charAt(i) == '*') {
-                return result;
-            } else if (message.charAt(i) == ' ') {
-                continue;
-            } else {
-                charind = convert(_alphabet.toInt(message.charAt(i)));
-                result += _alphabet.toChar(charind);
+        for (int i = 0; i < message.length();) {
+            int cp = message.codePointAt(i);
+            if (i > 0 && cp == '*') {
+                break;
+            } else if (cp != ' ') {
+                charind = convert(_alphabet.indexOfCodePoint(cp));
+                result.appendCodePoint(_alphabet.toCodePoint(charind));
             }
+            i += Character.charCount(cp);
         }
-        return result;
+        if (Instrumentation.ENABLED) {
+            Instrumentation.CHARS.add(result.length());
+        }
+        return result.toString();
     }
 
 
@@ -170,4 +399,21 @@ class Machine {
 
     /** Local instance of Rotors being used. */
     private Rotor[] _rotors;
+
+    /** Directory of step tables, or null if not using them. */
+    private File _tabledir;
+
+    /** Step table for the current rotors, if any. */
+    private StepTable _table;
+
+    /** True iff the rotors or their offsets changed since _table was
+     *  chosen. */
+    private boolean _layoutchanged;
+
+    /** Most recent analysis of my stepping, if any. */
+    private StepAnalysis _analysis;
+
+    /** Current state of the moving rotors in _table, or -1 if it must be
+     *  read back from the rotors. */
+    private int _state = -1;
 }
@@ -0,0 +1,272 @@
+package enigma;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Scanner;
+
+import static enigma.EnigmaException.*;
+
+/** A registry of compiled configurations, for serving many configuration
+ *  files from one process.  A configuration is read once and kept under
+ *  the SHA-256 hash of its contents, so identical files share an entry
+ *  and an edited file gets a new one.  Entries are evicted least
+ *  recently used first once their estimated size passes a bound.  An
+ *  entry's size counts its prototype machine and, for each thread that
+ *  has used it, that thread's copy, including the rotated permutations
+ *  that ring settings give its rotors.
+ *
+ *  Each entry hands every thread its own Machine, built from the compiled
+ *  configuration by copying its rotors (alphabets and permutations are
+ *  shared), and reused for later requests from that thread.  A request
+ *  with the same settings line as that thread's last one for the entry
+ *  just puts the rotors back where that settings line left them, rather
+ *  than parsing it again.
+ *  @author Thomas Hsiung
+ */
+class MachineRegistry {
+
+    /** Default bound on the estimated bytes of the shared registry. */
+    static final long DEFAULT_BYTES = 64L << 20;
+
+    /** A registry that keeps compiled configurations of at most about
+     *  MAXBYTES bytes in all (but always the most recent one). */
+    MachineRegistry(long maxBytes) {
+        _maxbytes = maxBytes;
+    }
+
+    /** Return the registry shared by this process, bounded by the
+     *  property enigma.registry.bytes (default DEFAULT_BYTES). */
+    static MachineRegistry shared() {
+        return Shared.INSTANCE;
+    }
+
+    /** Return this thread's machine for the configuration in the file
+     *  CONFIG, set up according to SETTINGS as for Main.setUp. */
+    Machine machine(File config, String settings) {
+        try {
+            return machine(Files.readAllBytes(config.toPath()), settings);
+        } catch (IOException excp) {
+            throw error("could not open %s", config);
+        }
+    }
+
+    /** Return this thread's machine for the configuration whose contents
+     *  are CONFIG, set up according to SETTINGS as for Main.setUp.  The
+     *  machine must not be used by other threads. */
+    Machine machine(byte[] config, String settings) {
+        return compiled(config).slot().setUp(settings);
+    }
+
+    /** Add BYTES to the estimated size of ENTRY, if it is registered,
+     *  evicting other entries as needed. */
+    private synchronized void grow(Compiled entry, long bytes) {
+        if (entry._registered) {
+            entry._bytes += bytes;
+            _bytes += bytes;
+            trim();
+        }
+    }
+
+    /** Evict least recently used entries until the estimated bytes are
+     *  within the bound or only one entry is left. */
+    private synchronized void trim() {
+        Iterator<Compiled> lru = _entries.values().iterator();
+        while (_bytes > _maxbytes && _entries.size() > 1) {
+            Compiled entry = lru.next();
+            _bytes -= entry.bytes();
+            entry._registered = false;
+            lru.remove();
+            _evictions += 1;
+        }
+    }
+
+    /** Return the compiled configuration whose contents are CONFIG,
+     *  compiling it if it is not registered. */
+    private Compiled compiled(byte[] config) {
+        String key = key(config);
+        synchronized (this) {
+            Compiled result = _entries.get(key);
+            if (result != null) {
+                _hits += 1;
+                return result;
+            }
+        }
+        Compiled result = new Compiled(this, config);
+        synchronized (this) {
+            Compiled other = _entries.get(key);
+            if (other != null) {
+                _hits += 1;
+                return other;
+            }
+            _misses += 1;
+            _entries.put(key, result);
+            result._registered = true;
+            _bytes += result.bytes();
+            trim();
+            return result;
+        }
+    }
+
+    /** Return the hexadecimal SHA-256 hash of CONFIG. */
+    static String key(byte[] config) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(config);
+            StringBuilder result = new StringBuilder();
+            for (byte b : hash) {
+                result.append(String.format("%02x", b));
+            }
+            return result.toString();
+        } catch (NoSuchAlgorithmException excp) {
+            throw error("no SHA-256");
+        }
+    }
+
+    /** Return the number of registered configurations. */
+    synchronized int size() {
+        return _entries.size();
+    }
+
+    /** Return the estimated bytes of the registered configurations. */
+    synchronized long bytes() {
+        return _bytes;
+    }
+
+    /** Return the number of requests that found their configuration
+     *  registered. */
+    synchronized long hits() {
+        return _hits;
+    }
+
+    /** Return the number of configurations compiled. */
+    synchronized long misses() {
+        return _misses;
+    }
+
+    /** Return the number of configurations evicted. */
+    synchronized long evictions() {
+        return _evictions;
+    }
+
+    /** A configuration read into a prototype machine, with a machine for
+     *  each thread that uses it. */
+    private static class Compiled {
+
+        /** The compiled configuration whose contents are CONFIG, whose
+         *  size is kept by REGISTRY. */
+        Compiled(MachineRegistry registry, byte[] config) {
+            String text = new String(config, StandardCharsets.UTF_8);
+            _prototype = Main.configure(new Scanner(text));
+            int size = _prototype.alphabet().size();
+            long permutations = 0;
+            for (Rotor rotor : _prototype.allRotors()) {
+                permutations += ROTOR_BYTES
+                    + PERMUTATION_BYTES_PER_CHAR * size
+                    + 2L * rotor.permutation().cycles().length();
+            }
+            _bytes = 2L * text.length() + ALPHABET_BYTES_PER_CHAR * size
+                + permutations;
+            long slotBytes = ROTOR_BYTES + permutations
+                + ALPHABET_BYTES_PER_CHAR * size
+                * _prototype.allRotors().size();
+            _slots = ThreadLocal.withInitial(() -> {
+                registry.grow(this, slotBytes);
+                return new Slot(_prototype.copy());
+            });
+        }
+
+        /** Return the estimated bytes I occupy, with the threads'
+         *  machines. */
+        long bytes() {
+            return _bytes;
+        }
+
+        /** Return the calling thread's slot. */
+        Slot slot() {
+            return _slots.get();
+        }
+
+        /** Machine from which the threads' machines are copied. */
+        private final Machine _prototype;
+
+        /** Estimated bytes of _prototype, the text it came from, and the
+         *  threads' machines: each a copy of every rotor, and the rotated
+         *  permutation and alphabet that setOffset may give it.  Guarded
+         *  by the registry. */
+        private long _bytes;
+
+        /** True iff I am in the registry.  Guarded by the registry. */
+        private boolean _registered;
+
+        /** Each thread's machine. */
+        private final ThreadLocal<Slot> _slots;
+    }
+
+    /** One thread's machine for a configuration, with its last settings
+     *  line and the rotor settings that line produced. */
+    private static class Slot {
+
+        /** A slot holding MACHINE. */
+        Slot(Machine machine) {
+            _machine = machine;
+        }
+
+        /** Return my machine set up according to SETTINGS. */
+        Machine setUp(String settings) {
+            if (settings.equals(_settings)) {
+                _machine.restoreRotorSettings(_positions);
+            } else {
+                _settings = null;
+                Main.setUp(_machine, settings);
+                _settings = settings;
+                _positions = _machine.rotorSettings();
+            }
+            return _machine;
+        }
+
+        /** The machine. */
+        private final Machine _machine;
+
+        /** The settings line of the last setUp, or null. */
+        private String _settings;
+
+        /** Rotor settings just after that setUp. */
+        private int[] _positions;
+    }
+
+    /** Holder of the shared registry, created on first use. */
+    private static class Shared {
+        /** The shared registry. */
+        static final MachineRegistry INSTANCE = new MachineRegistry(
+            Long.getLong("enigma.registry.bytes", DEFAULT_BYTES));
+    }
+
+    /** Estimated bytes per character of an alphabet: its code points and
+     *  its hash table. */
+    private static final int ALPHABET_BYTES_PER_CHAR = 36;
+
+    /** Estimated bytes per character of a permutation's two tables. */
+    private static final int PERMUTATION_BYTES_PER_CHAR = 8;
+
+    /** Estimated fixed bytes of a rotor and its permutation. */
+    private static final int ROTOR_BYTES = 128;
+
+    /** Bound on the estimated bytes of the entries. */
+    private final long _maxbytes;
+
+    /** Compiled configurations by key, least recently used first. */
+    private final LinkedHashMap<String, Compiled> _entries =
+        new LinkedHashMap<>(16, 0.75f, true);
+
+    /** Estimated bytes of the entries. */
+    private long _bytes;
+
+    /** Counts of lookups that found an entry, entries compiled, and
+     *  entries evicted. */
+    private long _hits, _misses, _evictions;
+}
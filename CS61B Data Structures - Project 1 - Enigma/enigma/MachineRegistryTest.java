@@ -0,0 +1,113 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Scanner;
+import java.util.concurrent.atomic.AtomicReference;
+
+/** The suite of all JUnit tests for the MachineRegistry class.
+ *  @author Thomas Hsiung
+ */
+public class MachineRegistryTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** A small configuration. */
+    static final String CONFIG =
+        "ABCDEFGH 3 2\n"
+        + " I MA (ABCDEFGH)\n"
+        + " II MC (AC) (BDFH)\n"
+        + " III MH (AHGFEDCB)\n"
+        + " B R (AE) (BF) (CG) (DH)\n";
+
+    /** Settings lines for CONFIG. */
+    static final String SETUP1 = "* B I II AB", SETUP2 = "* B III I HC (AD)";
+
+    /** Return TEXT with each of the letters A-H replaced by its
+     *  mathematical bold form, which lies outside the Basic Multilingual
+     *  Plane. */
+    static String wide(String text) {
+        StringBuilder result = new StringBuilder();
+        text.codePoints().forEach(c -> result.appendCodePoint(
+            c >= 'A' && c <= 'H' ? 0x1D400 + c - 'A' : c));
+        return result.toString();
+    }
+
+    /** CONFIG with its alphabet replaced by wide() letters. */
+    static final String WIDE_CONFIG =
+        wide("ABCDEFGH") + " 3 2\n"
+        + " I M" + wide("A (ABCDEFGH)") + "\n"
+        + " II M" + wide("C (AC) (BDFH)") + "\n"
+        + " III M" + wide("H (AHGFEDCB)") + "\n"
+        + " B R" + wide(" (AE) (BF) (CG) (DH)") + "\n";
+
+    /** Return the bytes of TEXT. */
+    static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** Return the conversion of MSG by a freshly configured machine set
+     *  up with SETTINGS. */
+    static String fresh(String settings, String msg) {
+        Machine machine = Main.configure(new Scanner(CONFIG));
+        Main.setUp(machine, settings);
+        return machine.convert(msg);
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testSameAsFresh() {
+        MachineRegistry registry = new MachineRegistry(1 << 20);
+        String msg = "ABCDEFGHHGFEDCBA";
+        for (String settings : new String[] { SETUP1, SETUP2, SETUP2,
+                                              SETUP1, SETUP1 }) {
+            assertEquals(fresh(settings, msg),
+                         registry.machine(bytes(CONFIG), settings)
+                         .convert(msg));
+        }
+        assertEquals(1, registry.size());
+        assertEquals(1, registry.misses());
+        assertEquals(4, registry.hits());
+    }
+
+    @Test
+    public void testPerThread() throws InterruptedException {
+        MachineRegistry registry = new MachineRegistry(1 << 20);
+        Machine mine = registry.machine(bytes(CONFIG), SETUP1);
+        assertSame(mine, registry.machine(bytes(CONFIG), SETUP2));
+        long bytes = registry.bytes();
+        AtomicReference<Machine> theirs = new AtomicReference<>();
+        Thread other = new Thread(
+            () -> theirs.set(registry.machine(bytes(CONFIG), SETUP1)));
+        other.start();
+        other.join();
+        assertNotNull(theirs.get());
+        assertNotSame(mine, theirs.get());
+        assertNotSame(mine.rotors()[1], theirs.get().rotors()[1]);
+        assertEquals(1, registry.size());
+        assertTrue(registry.bytes() > bytes);
+    }
+
+    @Test
+    public void testEviction() {
+        MachineRegistry registry = new MachineRegistry(1);
+        registry.machine(bytes(CONFIG), SETUP1);
+        registry.machine(bytes(CONFIG + "\n"), SETUP1);
+        assertEquals(1, registry.size());
+        assertEquals(1, registry.evictions());
+        assertEquals(fresh(SETUP2, "ABC"),
+                     registry.machine(bytes(CONFIG), SETUP2).convert("ABC"));
+        assertEquals(2, registry.evictions());
+        assertTrue(registry.bytes() > 1);
+    }
+
+}
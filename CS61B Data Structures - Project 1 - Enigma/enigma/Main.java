@@ -1,6 +1,8 @@
 package enigma;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
 
@@ -9,6 +11,7 @@ import java.util.NoSuchElementException;
 import java.util.Scanner;
 
 import static enigma.EnigmaException.*;
+import static enigma.Instrumentation.Phase.*;
 
 /** Enigma simulator.
  *  @author Thomas Hsiung
@@ -45,20 +48,34 @@ public final class Main {
         if (args.length > 1) {
             _input = getInput(args[1]);
         } else {
-            _input = new Scanner(System.in);
+            _input = new Scanner(Instrumentation.input(System.in));
         }
 
         if (args.length > 2) {
             _output = getOutput(args[2]);
         } else {
-            _output = System.out;
+            _output = Instrumentation.ENABLED
+                ? new PrintStream(Instrumentation.output(System.out))
+                : System.out;
         }
     }
 
+    /** A Main that reads its machine configuration from CONFIG only. */
+    private Main(Scanner config) {
+        _config = config;
+    }
+
+    /** Return an Enigma machine configured from the contents of CONFIG,
+     *  for use by tools other than main. */
+    static Machine configure(Scanner config) {
+        return new Main(config).readConfig();
+    }
+
     /** Return a Scanner reading from the file named NAME. */
     private Scanner getInput(String name) {
         try {
-            return new Scanner(new File(name));
+            return new Scanner(Instrumentation.input(
+                                   new FileInputStream(name)));
         } catch (IOException excp) {
             throw error("could not open %s", name);
         }
@@ -67,7 +84,8 @@ public final class Main {
     /** Return a PrintStream writing to the file named NAME. */
     private PrintStream getOutput(String name) {
         try {
-            return new PrintStream(new File(name));
+            return new PrintStream(Instrumentation.output(
+                                       new FileOutputStream(name)));
         } catch (IOException excp) {
             throw error("could not open %s", name);
         }
@@ -75,10 +93,18 @@ public final class Main {
 
     /** Configure an Enigma machine from the contents of configuration
      *  file _config and apply it to the messages in _input, sending the
-     *  results to _output. */
+     *  results to _output.  If the system property enigma.steptables
+     *  names a directory, the machine steps using the precomputed
+     *  tables kept there. */
     private void process() {
         try {
+            Instrumentation.PhaseEvent start = Instrumentation.start();
             _machine = readConfig();
+            Instrumentation.end(CONFIG, start);
+            String tables = System.getProperty("enigma.steptables");
+            if (tables != null) {
+                _machine.useStepTables(new File(tables));
+            }
             String message = ""; String codedtext = ""; String settings = "";
             if (!_input.hasNextLine()) {
                 throw new EnigmaException("Main.process: No input.");
@@ -86,7 +112,12 @@ public final class Main {
                 message = _input.nextLine();
                 if (message.startsWith("*")) {
                     settings = message;
+                    if (Instrumentation.ENABLED) {
+                        Instrumentation.SETTINGS.increment();
+                    }
+                    start = Instrumentation.start();
                     setUp(_machine, settings);
+                    Instrumentation.end(SETUP, start);
                 } else {
                     throw new EnigmaException("Main.process: No settings.");
                 }
@@ -94,18 +125,30 @@ public final class Main {
             while (_input.hasNextLine()) {
                 message = _input.nextLine();
                 if (message.startsWith("*")) {
+                    start = Instrumentation.start();
                     printMessageLine(codedtext);
+                    Instrumentation.end(OUTPUT, start);
 
                     settings = message;
+                    if (Instrumentation.ENABLED) {
+                        Instrumentation.SETTINGS.increment();
+                    }
+                    start = Instrumentation.start();
                     setUp(_machine, settings);
+                    Instrumentation.end(SETUP, start);
                     codedtext = "";
                 } else {
+                    start = Instrumentation.start();
                     codedtext += _machine.convert(message) + '\n';
+                    Instrumentation.end(CONVERT, start);
                 }
             }
             if (!codedtext.equals("")) {
+                start = Instrumentation.start();
                 printMessageLine(codedtext);
+                Instrumentation.end(OUTPUT, start);
             }
+            _output.flush();
         } catch (NoSuchElementException excp) {
             throw new EnigmaException("Main.process: Errors with _input.");
         }
@@ -189,19 +232,24 @@ public final class Main {
 
     /** Set M according to the specification given on SETTINGS,
      *  which must have the format specified in the assignment. */
-    private void setUp(Machine M, String settings) {
+    static void setUp(Machine M, String settings) {
+        if (Instrumentation.ENABLED) {
+            Instrumentation.SETUPS.increment();
+        }
         try {
-            int numrotors = _machine.numRotors();
+            Alphabet alphabet = M.alphabet();
+            int numrotors = M.numRotors();
             String[] setting; String[] rotors = new String[numrotors];
             if (settings.startsWith("*")) {
                 settings = settings.substring(1); settings = settings.trim();
                 setting = settings.split("\\s+");
 
                 System.arraycopy(setting, 0, rotors, 0, numrotors);
-                _machine.insertRotors(rotors);
+                M.insertRotors(rotors);
 
-                if (setting[numrotors].length() == numrotors - 1) {
-                    _machine.setRotors(setting[numrotors]);
+                String posns = setting[numrotors];
+                if (posns.codePointCount(0, posns.length()) == numrotors - 1) {
+                    M.setRotors(setting[numrotors]);
                 } else {
                     throw new EnigmaException("Main.setUp: Bad wheels.");
                 }
@@ -209,21 +257,21 @@ public final class Main {
                 int index = numrotors + 1;
                 int plug = setting.length - index;
                 String plugs = "";
-                Permutation pb = new Permutation("", _alphabet);
+                Permutation pb = new Permutation("", alphabet);
                 if (plug > 0) {
                     if (setting[index].startsWith("(")) {
                         for (int i = index; i < setting.length; i++) {
                             plugs += setting[i];
                         }
                     } else {
-                        _machine.setOffset(setting[index]);
+                        M.setOffset(setting[index]);
                         for (int i = index + 1; i < setting.length; i++) {
                             plugs += setting[i];
                         }
                     }
                 }
-                pb = new Permutation(plugs, _alphabet);
-                _machine.setPlugboard(pb);
+                pb = new Permutation(plugs, alphabet);
+                M.setPlugboard(pb);
             } else {
                 throw new EnigmaException("Main.setUp: Error with settings.");
             }
@@ -235,22 +283,31 @@ public final class Main {
     /** Print MSG in groups of five (except that the last group may
      *  have fewer letters). */
     private void printMessageLine(String msg) {
+        printMessageLine(_output, msg);
+    }
+
+    /** Print MSG on OUTPUT in groups of five, as for printMessageLine. */
+    static void printMessageLine(PrintStream output, String msg) {
         int count5 = 0;
 
-        for (int i = 0; i < msg.length(); i++) {
-            if (msg.charAt(i) == '\n' || msg.charAt(i) == '\r') {
-                _output.print("\r\n");
+        StringBuilder line = new StringBuilder(msg.length() * 6 / 5);
+        for (int i = 0; i < msg.length();) {
+            int cp = msg.codePointAt(i);
+            if (cp == '\n' || cp == '\r') {
+                line.append("\r\n");
                 count5 = 0;
             } else {
                 if (count5 == 5) {
-                    _output.print(" " + msg.charAt(i));
+                    line.append(' ').appendCodePoint(cp);
                     count5 = 1;
                 } else {
-                    _output.print(msg.charAt(i));
+                    line.appendCodePoint(cp);
                     count5 += 1;
                 }
             }
+            i += Character.charCount(cp);
         }
+        output.print(line);
     }
 
     /** Alphabet used in this machine. */
@@ -17,6 +17,11 @@ class MovingRotor extends Rotor {
         _notches = notches;
     }
 
+    @Override
+    Rotor copy() {
+        return new MovingRotor(name(), original(), _notches);
+    }
+
     @Override
     void advance() {
         int setting = (setting() + 1) % alphabet().size();
@@ -29,13 +34,8 @@ class MovingRotor extends Rotor {
     }
 
     @Override
-    boolean atNotch() {
-        for (int i = 0; i < _notches.length(); i++) {
-            if (_notches.charAt(i) == alphabet().toChar(setting())) {
-                return true;
-            }
-        }
-        return false;
+    boolean notchedAt(int posn) {
+        return _notches.indexOf(alphabet().toCodePoint(posn)) >= 0;
     }
 
     /** Local instance of notches str for all Rotors. */
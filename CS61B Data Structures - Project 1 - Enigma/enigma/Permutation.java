@@ -3,7 +3,9 @@ package enigma;
 import static enigma.EnigmaException.*;
 
 /** Represents a permutation of a range of integers starting at 0 corresponding
- *  to the characters of an alphabet.
+ *  to the characters of an alphabet.  The cycles are compiled into a
+ *  table of the permutation and one of its inverse when it is created,
+ *  so that permuting takes constant time.
  *  @author Thomas Hsiung
  */
 class Permutation {
@@ -16,14 +18,60 @@ class Permutation {
     Permutation(String cycles, Alphabet alphabet) {
         _cycles = cycles;
         _alphabet = alphabet;
-        _cleancycles = _cycles;
-        _cleancycles = _cleancycles.replaceAll("\\s+", "");
+        int size = alphabet.size();
+        _forward = new int[size];
+        _inverse = new int[size];
+        for (int i = 0; i < size; i++) {
+            _forward[i] = _inverse[i] = i;
+        }
+        compile(cycles);
+    }
+
+    /** Record the cycles in CYCLES in _forward and _inverse. */
+    private void compile(String cycles) {
+        boolean[] seen = new boolean[size()];
+        int first = -1, last = -1;
+        int i = 0;
+        while (i < cycles.length()) {
+            int cp = cycles.codePointAt(i);
+            i += Character.charCount(cp);
+            if (Character.isWhitespace(cp)) {
+                continue;
+            } else if (cp == '(' && first == -1 && last == -1) {
+                last = -2;
+            } else if (cp == ')' && last != -1) {
+                if (first >= 0) {
+                    _forward[last] = first;
+                    _inverse[first] = last;
+                }
+                first = last = -1;
+            } else if (last == -1 || !_alphabet.containsCodePoint(cp)) {
+                throw error("Perm: bad cycles %s", cycles);
+            } else {
+                int c = _alphabet.indexOfCodePoint(cp);
+                if (seen[c]) {
+                    throw error("Perm: duplicate char in cycles %s", cycles);
+                }
+                seen[c] = true;
+                if (first < 0) {
+                    first = c;
+                } else {
+                    _forward[last] = c;
+                    _inverse[c] = last;
+                }
+                last = c;
+            }
+        }
+        if (last != -1) {
+            throw error("Perm: unclosed cycle in %s", cycles);
+        }
     }
 
     /** Add the cycle c0->c1->...->cm->c0 to the permutation, where CYCLE is
      *  c0c1...cm. */
     private void addCycle(String cycle) {
         _cycles = _cycles + '(' + cycle + ')';
+        compile('(' + cycle + ')');
     }
 
     /** Return the value of P modulo the size of this permutation. */
@@ -37,23 +85,19 @@ class Permutation {
 
     /** Returns the size of the alphabet I permute. */
     int size() {
-        return _alphabet.size();
+        return _forward.length;
     }
 
     /** Return the result of applying this permutation to P modulo the
      *  alphabet size. */
     int permute(int p) {
-        char input = _alphabet.toChar(wrap(p));
-        char output = permute(input);
-        return _alphabet.toInt(output);
+        return _forward[wrap(p)];
     }
 
     /** Return the result of applying the inverse of this permutation
      *  to  C modulo the alphabet size. */
     int invert(int c) {
-        char input = _alphabet.toChar(wrap(c));
-        char output = invert(input);
-        return _alphabet.toInt(output);
+        return _inverse[wrap(c)];
     }
 
     /** Return the result of applying this permutation to the index of P
@@ -62,25 +106,7 @@ class Permutation {
         if (!_alphabet.contains(p)) {
             throw new EnigmaException("Perm.permute: Char not in alpha.");
         }
-        char[] check = _cleancycles.toCharArray();
-        int index = 0;
-        char output = '(';
-        for (int i = 0; i < _cleancycles.length(); i++) {
-            if (check[i] == '(') {
-                index = i + 1;
-            } else if (check[i] == p) {
-                if (check[i + 1] == ')') {
-                    output = check[index];
-                } else {
-                    output = check[i + 1];
-                }
-                break;
-            }
-        }
-        if (output == '(') {
-            output = p;
-        }
-        return output;
+        return _alphabet.toChar(_forward[_alphabet.toInt(p)]);
     }
 
     /** Return the result of applying the inverse of this permutation to C. */
@@ -88,25 +114,25 @@ class Permutation {
         if (!_alphabet.contains(c)) {
             throw new EnigmaException("Perm.invert: Char not in alpha.");
         }
-        char[] check = _cleancycles.toCharArray();
-        int index = 0;
-        char output = '(';
-        for (int i = _cleancycles.length() - 1; i >= 0; i--) {
-            if (check[i] == ')') {
-                index = i - 1;
-            } else if (check[i] == c) {
-                if (check[i - 1] == '(') {
-                    output = check[index];
-                } else {
-                    output = check[i - 1];
-                }
-                break;
-            }
+        return _alphabet.toChar(_inverse[_alphabet.toInt(c)]);
+    }
+
+    /** Return the result of applying this permutation to the code point
+     *  CP of ALPHABET. */
+    int permuteCodePoint(int cp) {
+        if (!_alphabet.containsCodePoint(cp)) {
+            throw new EnigmaException("Perm.permute: Char not in alpha.");
         }
-        if (output == '(') {
-            output = c;
+        return _alphabet.toCodePoint(_forward[_alphabet.indexOfCodePoint(cp)]);
+    }
+
+    /** Return the result of applying the inverse of this permutation to
+     *  the code point CP of ALPHABET. */
+    int invertCodePoint(int cp) {
+        if (!_alphabet.containsCodePoint(cp)) {
+            throw new EnigmaException("Perm.invert: Char not in alpha.");
         }
-        return output;
+        return _alphabet.toCodePoint(_inverse[_alphabet.indexOfCodePoint(cp)]);
     }
 
     /** Return the alphabet used to initialize this Permutation. */
@@ -120,31 +146,13 @@ class Permutation {
     }
 
     /** Return true iff this permutation is a derangement (i.e., a
-     *  permutation for which no value maps to itself).
-     *  First checks for single cycles (X), then checks for omissions */
+     *  permutation for which no value maps to itself). */
     boolean derangement() {
-        String checkcycles = _cycles;
-        int count = 0;
-        char[] check = checkcycles.toCharArray();
-        for (int i = 0; i < checkcycles.length(); i++) {
-            if (check[i] == '(' || check[i] == ')') {
-                count = 0;
-            } else {
-                for (int j = i + 1; j < checkcycles.length(); j++) {
-                    count += 1;
-                    if (check[j] == ')' && count == 1) {
-                        return false;
-                    }
-                }
+        for (int i = 0; i < _forward.length; i++) {
+            if (_forward[i] == i) {
+                return false;
             }
         }
-
-        String ccycles = _cleancycles;
-        ccycles = ccycles.replace("(", "");
-        ccycles = ccycles.replace(")", "");
-        if (ccycles.length() < _alphabet.size()) {
-            return false;
-        }
         return true;
     }
 
@@ -154,6 +162,9 @@ class Permutation {
     /** Local instance of cycles. */
     private String _cycles;
 
-    /** Local variable only; sanitized cycles. */
-    private String _cleancycles;
+    /** Image of each index under this permutation. */
+    private final int[] _forward;
+
+    /** Image of each index under the inverse of this permutation. */
+    private final int[] _inverse;
 }
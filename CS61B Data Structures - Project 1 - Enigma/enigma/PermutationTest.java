@@ -148,4 +148,50 @@ public class PermutationTest {
         assertEquals(2, p3.permute(2));
     }
 
+    @Test
+    public void testCodePoints() {
+        String chars = "A\uD835\uDC00\u00E9\uD83D\uDE00";
+        Alphabet a1 = new Alphabet(chars);
+        assertEquals(4, a1.size());
+        assertEquals(1, a1.indexOfCodePoint(0x1D400));
+        assertEquals(0x1F600, a1.toCodePoint(3));
+        assertEquals(2, a1.toInt('\u00E9'));
+        assertTrue(a1.containsCodePoint(0x1F600));
+        assertFalse(a1.contains('\uD835'));
+
+        Permutation p1 = new Permutation("(A\uD835\uDC00)"
+                + " (\u00E9 \uD83D\uDE00)", a1);
+        assertTrue(p1.derangement());
+        assertEquals(0x1D400, p1.permuteCodePoint('A'));
+        assertEquals(0x1F600, p1.invertCodePoint(0xE9));
+        assertEquals(0, p1.permute(1));
+        assertEquals(2, p1.invert(3));
+    }
+
+    @Test
+    public void testLargeAlphabet() {
+        int[] chars = new int[70000];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = 0x10000 + i;
+        }
+        Alphabet a1 = new Alphabet(chars);
+        for (int i = 0; i < chars.length; i++) {
+            assertEquals(i, a1.indexOfCodePoint(chars[i]));
+        }
+        assertFalse(a1.containsCodePoint('A'));
+        Alphabet a2 = a1.rotated(5);
+        assertEquals(0, a2.indexOfCodePoint(0x10005));
+        assertEquals(chars.length - 5, a2.indexOfCodePoint(0x10000));
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testDuplicateCodePoints() {
+        new Alphabet("A\uD83D\uDE00B\uD83D\uDE00");
+    }
+
+    @Test(expected = EnigmaException.class)
+    public void testCycleNotInAlphabet() {
+        new Permutation("(AB) (CZ)", new Alphabet("ABCD"));
+    }
+
 }
@@ -17,6 +17,11 @@ class Reflector extends FixedRotor {
         }
     }
 
+    @Override
+    Rotor copy() {
+        return new Reflector(name(), original());
+    }
+
     @Override
     void set(int posn) {
         if (posn != 0) {
@@ -11,6 +11,7 @@ class Rotor {
     Rotor(String name, Permutation perm) {
         _name = name;
         _permutation = perm;
+        _original = perm;
         _setting = 0;
     }
 
@@ -74,6 +75,12 @@ class Rotor {
         _offset = alphabet().toInt(cposn);
     }
 
+    /** EC: Undo any offset, returning to my original permutation. */
+    void resetOffset() {
+        _permutation = _original;
+        _offset = 0;
+    }
+
     /** EC: Update Rotor's permutation with PERM
      *  to account for Alpha shift by offset. */
     void updatePerm(Permutation perm) {
@@ -101,9 +108,26 @@ class Rotor {
     /** Returns true iff I am positioned to allow the rotor to my left
      *  to advance. */
     boolean atNotch() {
+        return notchedAt(_setting);
+    }
+
+    /** Returns true iff I would allow the rotor to my left to advance
+     *  when set to POSN. By default, never. */
+    boolean notchedAt(int posn) {
         return false;
     }
 
+    /** Return a new rotor like me in its 0 setting with no offset,
+     *  sharing my (immutable) original permutation. */
+    Rotor copy() {
+        return new Rotor(_name, _original);
+    }
+
+    /** Return the permutation I was created with. */
+    Permutation original() {
+        return _original;
+    }
+
     /** Advance me one position, if possible. By default, does nothing. */
     void advance() {
     }
@@ -119,6 +143,9 @@ class Rotor {
     /** The permutation implemented by this rotor in its 0 position. */
     private Permutation _permutation;
 
+    /** The permutation I was created with, before any offset. */
+    private final Permutation _original;
+
     /** Local instance of Rotors settings (as int). */
     private int _setting;
 
@@ -0,0 +1,312 @@
+package enigma;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import static enigma.EnigmaException.*;
+
+/** Coordinator of a KeySearch spread over worker processes.  Usage:
+ *      java enigma.SearchCoordinator SPEC CHECKPOINT [WORKERS [PORT]]
+ *  SPEC names a KeySearch properties file and CHECKPOINT a file that
+ *  records finished units and hits, so that a search stopped part way
+ *  resumes where it left off.  The coordinator listens on the loopback
+ *  interface at PORT (default: any free port) and starts WORKERS
+ *  (default 0) SearchWorker processes on this machine; more may be
+ *  started by hand.  Workers pull one unit at a time; the unit held by
+ *  a worker that disconnects before finishing it, or that sends nothing
+ *  for LEASE_MILLIS, is handed out again.
+ *  When every unit is finished, the hits are printed on the standard
+ *  output, one settings line each.
+ *
+ *  The protocol is line-oriented.  A worker sends "NEXT"; the coordinator
+ *  answers "UNIT n", "WAIT" (all remaining units are held by other
+ *  workers) or "DONE".  While searching unit n, the worker sends
+ *  "ALIVE n" every HEARTBEAT_MILLIS.  After a unit, the worker sends
+ *  "HIT n LINE" for each hit and then "FINISHED n".  A worker that asks
+ *  for another unit gives up the one it held.
+ *  @author Thomas Hsiung
+ */
+public final class SearchCoordinator {
+
+    /** Milliseconds a worker waits after "WAIT" before asking again. */
+    static final int WAIT_MILLIS = 200;
+
+    /** Milliseconds between a worker's "ALIVE" messages. */
+    static final int HEARTBEAT_MILLIS = 1000;
+
+    /** Default milliseconds a worker may send nothing before it is taken
+     *  to be hung and its unit is handed out again. */
+    static final int LEASE_MILLIS = 30000;
+
+    /** Run a search as described by ARGS (see class comment). */
+    public static void main(String... args) {
+        try {
+            if (args.length < 2 || args.length > 4) {
+                throw error("usage: java enigma.SearchCoordinator SPEC"
+                            + " CHECKPOINT [WORKERS [PORT]]");
+            }
+            int workers = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+            int port = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+            SearchCoordinator coordinator =
+                new SearchCoordinator(args[0], new File(args[1]));
+            for (String hit : coordinator.run(workers, port)) {
+                System.out.println(hit);
+            }
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** A coordinator for the search described in the file named SPEC,
+     *  checkpointing to CHECKPOINT. */
+    SearchCoordinator(String spec, File checkpoint) {
+        this(spec, checkpoint, LEASE_MILLIS);
+    }
+
+    /** A coordinator for the search described in the file named SPEC,
+     *  checkpointing to CHECKPOINT, that drops workers silent for LEASE
+     *  milliseconds. */
+    SearchCoordinator(String spec, File checkpoint, int lease) {
+        _spec = spec;
+        _lease = lease;
+        _units = KeySearch.read(spec).units();
+        _checkpoint = checkpoint;
+        _finished = new BitSet(_units);
+        _hits = new LinkedHashSet<>();
+        restore();
+        for (int unit = 0; unit < _units; unit++) {
+            if (!_finished.get(unit)) {
+                _pending.add(unit);
+            }
+        }
+    }
+
+    /** Serve units to workers on PORT (0 for any) until all are
+     *  finished, first starting WORKERS local worker processes, and
+     *  return the hits. */
+    List<String> run(int workers, int port) {
+        ArrayList<Process> processes = new ArrayList<>();
+        try (ServerSocket server =
+                 new ServerSocket(port, 0, InetAddress.getLoopbackAddress());
+             PrintWriter log = new PrintWriter(
+                 new FileWriter(_checkpoint, StandardCharsets.UTF_8, true))) {
+            _log = log;
+            _server = server;
+            for (int i = 0; i < workers && !done(); i++) {
+                processes.add(startWorker(server.getLocalPort()));
+            }
+            while (!done()) {
+                Socket socket;
+                try {
+                    socket = server.accept();
+                } catch (SocketException excp) {
+                    break;
+                }
+                Thread thread = new Thread(() -> serve(socket));
+                thread.setDaemon(true);
+                thread.start();
+            }
+        } catch (IOException excp) {
+            throw error("coordinator: %s", excp.getMessage());
+        } finally {
+            for (Process process : processes) {
+                try {
+                    process.waitFor();
+                } catch (InterruptedException excp) {
+                    process.destroy();
+                }
+            }
+        }
+        synchronized (this) {
+            return new ArrayList<>(_hits);
+        }
+    }
+
+    /** Return a local worker process connected to PORT. */
+    private Process startWorker(int port) throws IOException {
+        String java = System.getProperty("java.home") + File.separator
+            + "bin" + File.separator + "java";
+        ProcessBuilder builder = new ProcessBuilder(
+            java, "-cp", System.getProperty("java.class.path"),
+            "enigma.SearchWorker", Integer.toString(port), _spec);
+        builder.inheritIO();
+        return builder.start();
+    }
+
+    /** Serve units to the worker on SOCKET until it disconnects, goes
+     *  silent for _lease milliseconds, or there are no more units,
+     *  returning any unit it held to the pending queue if it did not
+     *  finish it. */
+    private void serve(Socket socket) {
+        Integer held = null;
+        try (Socket sock = socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(
+                 sock.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(
+                 sock.getOutputStream(), true, StandardCharsets.UTF_8)) {
+            sock.setSoTimeout(_lease);
+            ArrayList<String> hits = new ArrayList<>();
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] words = line.split(" ", 3);
+                switch (words[0]) {
+                case "NEXT":
+                    if (held != null) {
+                        release(held);
+                        held = null;
+                        hits.clear();
+                    }
+                    held = take();
+                    if (held != null) {
+                        out.println("UNIT " + held);
+                    } else if (done()) {
+                        out.println("DONE");
+                        return;
+                    } else {
+                        out.println("WAIT");
+                    }
+                    break;
+                case "ALIVE":
+                    break;
+                case "HIT":
+                    hits.add(words[2]);
+                    break;
+                case "FINISHED":
+                    if (held == null
+                        || held != Integer.parseInt(words[1])) {
+                        throw error("worker finished a unit it did"
+                                    + " not hold");
+                    }
+                    finish(held, hits);
+                    held = null;
+                    hits.clear();
+                    break;
+                default:
+                    throw error("bad worker message: %s", line);
+                }
+            }
+        } catch (IOException | EnigmaException | NumberFormatException
+                 | ArrayIndexOutOfBoundsException excp) {
+            System.err.printf("enigma: worker lost: %s%n",
+                              excp.getMessage());
+        } finally {
+            if (held != null) {
+                release(held);
+            }
+        }
+    }
+
+    /** Return the next pending unit, or null if there is none. */
+    private synchronized Integer take() {
+        return _pending.poll();
+    }
+
+    /** Return UNIT, which was not finished, to the pending queue. */
+    private synchronized void release(int unit) {
+        if (!_finished.get(unit)) {
+            _pending.addFirst(unit);
+        }
+    }
+
+    /** Record that UNIT is finished with HITS, in memory and in the
+     *  checkpoint, and stop accepting workers if it is the last. */
+    private synchronized void finish(int unit, List<String> hits) {
+        if (_finished.get(unit)) {
+            return;
+        }
+        for (String hit : hits) {
+            _log.println("HIT " + unit + " " + hit);
+            _hits.add(hit);
+        }
+        _log.println("FINISHED " + unit + " END");
+        _log.flush();
+        _finished.set(unit);
+        if (done()) {
+            try {
+                _server.close();
+            } catch (IOException excp) {
+                /* Already closing. */
+            }
+        }
+    }
+
+    /** Return true iff every unit is finished. */
+    private synchronized boolean done() {
+        return _finished.cardinality() == _units;
+    }
+
+    /** Read finished units and hits back from the checkpoint file, if
+     *  it exists.  Each unit's hits are written before the line
+     *  "FINISHED n END" that marks it finished, so hits of units not
+     *  recorded as finished (including any cut off by a crash) are
+     *  dropped, those units being searched again. */
+    private void restore() {
+        if (!_checkpoint.exists()) {
+            return;
+        }
+        ArrayList<String[]> hits = new ArrayList<>();
+        try (BufferedReader in = new BufferedReader(
+                 new FileReader(_checkpoint, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] words = line.split(" ", 3);
+                if (words[0].equals("FINISHED") && words.length == 3
+                    && words[2].equals("END")) {
+                    _finished.set(Integer.parseInt(words[1]));
+                } else if (words[0].equals("HIT") && words.length == 3) {
+                    hits.add(words);
+                }
+            }
+        } catch (IOException | NumberFormatException excp) {
+            throw error("bad checkpoint file %s", _checkpoint);
+        }
+        for (String[] hit : hits) {
+            if (_finished.get(Integer.parseInt(hit[1]))) {
+                _hits.add(hit[2]);
+            }
+        }
+    }
+
+    /** Name of the search specification file. */
+    private final String _spec;
+
+    /** Milliseconds a worker may send nothing before it is dropped. */
+    private final int _lease;
+
+    /** Number of units in the search. */
+    private final int _units;
+
+    /** Checkpoint file. */
+    private final File _checkpoint;
+
+    /** Units finished. */
+    private final BitSet _finished;
+
+    /** Units not finished and not held by a worker. */
+    private final ArrayDeque<Integer> _pending = new ArrayDeque<>();
+
+    /** Hits found, as settings lines. */
+    private final LinkedHashSet<String> _hits;
+
+    /** Writer appending to the checkpoint file. */
+    private PrintWriter _log;
+
+    /** Socket on which workers connect. */
+    private ServerSocket _server;
+}
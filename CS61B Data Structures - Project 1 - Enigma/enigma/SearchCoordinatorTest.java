@@ -0,0 +1,153 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.TemporaryFolder;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Scanner;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static enigma.MachineRegistryTest.*;
+
+/** The suite of all JUnit tests for the SearchCoordinator and
+ *  SearchWorker classes.
+ *  @author Thomas Hsiung
+ */
+public class SearchCoordinatorTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(120);
+
+    /** Directory for the configuration, specification and checkpoint. */
+    @Rule
+    public TemporaryFolder files = new TemporaryFolder();
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** The key to be recovered, as KeySearch reports its hits. */
+    static final String KEY = "* B II I FC AA";
+
+    /** The plaintext of the message. */
+    static final String PLAIN = "ABCDEFGHHGFEDCBAABCDEFGH";
+
+    /** Return the name of a search specification, for a message
+     *  encoded with KEY, whose key space is the 2 rotor orders and 64
+     *  ring settings of CONFIG. */
+    String spec() throws IOException {
+        File config = files.newFile("test.conf");
+        Files.write(config.toPath(), bytes(CONFIG));
+        File spec = files.newFile("search.properties");
+        Files.write(spec.toPath(), bytes(
+            "config = " + config.getPath() + "\n"
+            + "ciphertext = " + fresh(KEY, PLAIN) + "\n"
+            + "crib = " + PLAIN + "\n"
+            + "fixed = B\n"
+            + "orders = I II, II I\n"));
+        return spec.getPath();
+    }
+
+    /** Return a port on the loopback interface that is free now. */
+    static int freePort() throws IOException {
+        try (ServerSocket socket =
+                 new ServerSocket(0, 0, InetAddress.getLoopbackAddress())) {
+            return socket.getLocalPort();
+        }
+    }
+
+    /** Return a socket connected to the coordinator at PORT, waiting for
+     *  it to start listening. */
+    static Socket connect(int port) throws Exception {
+        while (true) {
+            try {
+                return new Socket(InetAddress.getLoopbackAddress(), port);
+            } catch (IOException excp) {
+                Thread.sleep(50);
+            }
+        }
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testWorkerProcesses() throws Exception {
+        String spec = spec();
+        File checkpoint = new File(files.getRoot(), "checkpoint");
+        assertEquals(128, KeySearch.read(spec).units());
+        List<String> hits =
+            new SearchCoordinator(spec, checkpoint).run(2, 0);
+        assertTrue(hits.toString(), hits.contains(KEY));
+        int finished = 0;
+        for (String line : Files.readAllLines(checkpoint.toPath())) {
+            if (line.startsWith("FINISHED ")) {
+                finished += 1;
+            }
+        }
+        assertEquals(128, finished);
+        assertEquals(hits,
+                     new SearchCoordinator(spec, checkpoint).run(0, 0));
+    }
+
+    @Test
+    public void testWideAlphabet() throws IOException {
+        File config = files.newFile("wide.conf");
+        Files.write(config.toPath(), bytes(WIDE_CONFIG));
+        String key = "* B II I " + wide("FC AA");
+        Machine machine = Main.configure(new Scanner(WIDE_CONFIG));
+        Main.setUp(machine, key);
+        Properties spec = new Properties();
+        spec.setProperty("config", config.getPath());
+        spec.setProperty("ciphertext", machine.convert(wide(PLAIN)));
+        spec.setProperty("crib", wide(PLAIN));
+        spec.setProperty("fixed", "B");
+        spec.setProperty("orders", "I II, II I");
+        KeySearch search = new KeySearch(spec);
+        ArrayList<String> hits = new ArrayList<>();
+        for (int unit = 0; unit < search.units(); unit += 1) {
+            hits.addAll(search.search(unit));
+        }
+        assertTrue(hits.toString(), hits.contains(key));
+    }
+
+    @Test
+    public void testHungWorker() throws Exception {
+        String spec = spec();
+        int port = freePort();
+        SearchCoordinator coordinator = new SearchCoordinator(
+            spec, new File(files.getRoot(), "checkpoint"),
+            3 * SearchCoordinator.HEARTBEAT_MILLIS);
+        AtomicReference<List<String>> hits = new AtomicReference<>();
+        Thread thread = new Thread(() -> hits.set(coordinator.run(0, port)));
+        thread.start();
+        try (Socket hung = connect(port);
+             BufferedReader in = new BufferedReader(new InputStreamReader(
+                 hung.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(
+                 hung.getOutputStream(), true, StandardCharsets.UTF_8)) {
+            out.println("NEXT");
+            assertEquals("UNIT 0", in.readLine());
+            out.println("NEXT");
+            assertEquals("UNIT 0", in.readLine());
+            SearchWorker.work(port, KeySearch.read(spec));
+            thread.join();
+            assertNull(in.readLine());
+        }
+        assertTrue(hits.get().toString(), hits.get().contains(KEY));
+    }
+
+}
@@ -0,0 +1,91 @@
+package enigma;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import static enigma.EnigmaException.*;
+
+/** Worker process of a KeySearch run by a SearchCoordinator.  Usage:
+ *      java enigma.SearchWorker PORT SPEC
+ *  connects to the coordinator at PORT on the loopback interface and
+ *  searches the units it is given from the search described in the
+ *  properties file SPEC, until the coordinator says it is done.  See
+ *  SearchCoordinator for the protocol.
+ *  @author Thomas Hsiung
+ */
+public final class SearchWorker {
+
+    /** Connect to a coordinator and search as described by ARGS (see
+     *  class comment). */
+    public static void main(String... args) {
+        try {
+            if (args.length != 2) {
+                throw error("usage: java enigma.SearchWorker PORT SPEC");
+            }
+            work(Integer.parseInt(args[0]), KeySearch.read(args[1]));
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** Search the units of SEARCH handed out by the coordinator at
+     *  PORT, until there are none left, telling it that I am alive
+     *  while I search. */
+    static void work(int port, KeySearch search) {
+        Timer heartbeat = new Timer(true);
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(),
+                                        port);
+             BufferedReader in = new BufferedReader(new InputStreamReader(
+                 socket.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(
+                 socket.getOutputStream(), true, StandardCharsets.UTF_8)) {
+            while (true) {
+                out.println("NEXT");
+                String reply = in.readLine();
+                if (reply == null || reply.equals("DONE")) {
+                    return;
+                } else if (reply.equals("WAIT")) {
+                    Thread.sleep(SearchCoordinator.WAIT_MILLIS);
+                } else if (reply.startsWith("UNIT ")) {
+                    int unit = Integer.parseInt(reply.substring(5));
+                    TimerTask alive = new TimerTask() {
+                        @Override
+                        public void run() {
+                            out.println("ALIVE " + unit);
+                        }
+                    };
+                    heartbeat.schedule(alive,
+                                       SearchCoordinator.HEARTBEAT_MILLIS,
+                                       SearchCoordinator.HEARTBEAT_MILLIS);
+                    List<String> hits;
+                    try {
+                        hits = search.search(unit);
+                    } finally {
+                        alive.cancel();
+                    }
+                    for (String hit : hits) {
+                        out.println("HIT " + unit + " " + hit);
+                    }
+                    out.println("FINISHED " + unit);
+                } else {
+                    throw error("bad coordinator message: %s", reply);
+                }
+            }
+        } catch (IOException excp) {
+            throw error("worker: %s", excp.getMessage());
+        } catch (InterruptedException excp) {
+            return;
+        } finally {
+            heartbeat.cancel();
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package enigma;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntUnaryOperator;
+
+/** The orbit of a state of a Stepper: the states it passes through
+ *  before entering a cycle (the tail), the length of that cycle (the
+ *  period), and the states in which a rotor double-steps.
+ *  @author Thomas Hsiung
+ */
+class StepAnalysis {
+
+    /** The analysis of the orbit of START under STEPPER, stepping with
+     *  TABLE when it is not null.  ROTORS names the rotors analyzed. */
+    StepAnalysis(String rotors, Stepper stepper, StepTable table,
+                 int start) {
+        _rotors = rotors;
+        _stepper = stepper;
+        _start = start;
+        _next = table != null ? table::next : stepper::next;
+        if (!computePeriod()) {
+            findCycle();
+        }
+        _doublesteps = findDoubleSteps();
+    }
+
+    /** Return the names of the rotors analyzed. */
+    String rotors() {
+        return _rotors;
+    }
+
+    /** Return the stepper analyzed. */
+    Stepper stepper() {
+        return _stepper;
+    }
+
+    /** Return the starting state. */
+    int start() {
+        return _start;
+    }
+
+    /** Return the number of steps from the starting state to the first
+     *  state on its cycle. */
+    long tail() {
+        return _tail;
+    }
+
+    /** Return the number of steps in the cycle the starting state
+     *  enters. */
+    long period() {
+        return _period;
+    }
+
+    /** Return the states, in order from the starting state, after which
+     *  some rotor double-steps, over the tail and one full period. */
+    List<Integer> doubleSteps() {
+        return _doublesteps;
+    }
+
+    /** Return the state reached from the starting state after N steps,
+     *  walking no more than tail() + period() steps. */
+    int stateAfter(long n) {
+        if (n > _tail) {
+            n = _tail + (n - _tail) % _period;
+        }
+        int state = _start;
+        for (long i = 0; i < n; i++) {
+            state = _next.applyAsInt(state);
+        }
+        return state;
+    }
+
+    /** Compute the tail and period directly from the notch and pawl
+     *  structure where the stepping is a bijection, returning false if
+     *  it is not: a single moving rotor, or two whose leftmost cannot
+     *  double-step.  With N notches on the right rotor, the left rotor
+     *  advances N times per revolution of the right, and so returns to
+     *  its position after size / gcd(size, N) revolutions. */
+    private boolean computePeriod() {
+        int size = _stepper.size();
+        if (_stepper.pawls() == 1) {
+            _tail = 0;
+            _period = size;
+            return true;
+        } else if (_stepper.pawls() == 2) {
+            int notches = 0;
+            for (int p = 0; p < size; p++) {
+                notches += _stepper.notched(1, p) ? 1 : 0;
+            }
+            _tail = 0;
+            _period = notches == 0 ? size
+                : (long) size * (size / gcd(size, notches));
+            return true;
+        }
+        return false;
+    }
+
+    /** Find the tail and period of the orbit of _start by Brent's cycle
+     *  detection. */
+    private void findCycle() {
+        long power = 1, lambda = 1;
+        int tortoise = _start, hare = _next.applyAsInt(_start);
+        while (tortoise != hare) {
+            if (power == lambda) {
+                tortoise = hare;
+                power *= 2;
+                lambda = 0;
+            }
+            hare = _next.applyAsInt(hare);
+            lambda += 1;
+        }
+        tortoise = _start;
+        hare = _start;
+        for (long i = 0; i < lambda; i++) {
+            hare = _next.applyAsInt(hare);
+        }
+        long mu = 0;
+        while (tortoise != hare) {
+            tortoise = _next.applyAsInt(tortoise);
+            hare = _next.applyAsInt(hare);
+            mu += 1;
+        }
+        _tail = mu;
+        _period = lambda;
+    }
+
+    /** Return the states after which a rotor double-steps, over the
+     *  tail and one period from _start. */
+    private List<Integer> findDoubleSteps() {
+        ArrayList<Integer> result = new ArrayList<>();
+        if (_stepper.pawls() < 3) {
+            return result;
+        }
+        int state = _start;
+        for (long i = 0; i < _tail + _period; i++) {
+            if (_stepper.doubleSteps(state)) {
+                result.add(state);
+            }
+            state = _next.applyAsInt(state);
+        }
+        return result;
+    }
+
+    /** Return the greatest common divisor of A and B. */
+    private static int gcd(int a, int b) {
+        return b == 0 ? a : gcd(b, a % b);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: tail %d, period %d, %d double steps",
+                             _rotors, _tail, _period, _doublesteps.size());
+    }
+
+    /** Names of the rotors analyzed. */
+    private final String _rotors;
+
+    /** The stepper analyzed. */
+    private final Stepper _stepper;
+
+    /** The starting state. */
+    private final int _start;
+
+    /** The step function, by table or computed. */
+    private final IntUnaryOperator _next;
+
+    /** Steps before the orbit of _start enters its cycle. */
+    private long _tail;
+
+    /** Length of the cycle. */
+    private long _period;
+
+    /** States after which a rotor double-steps. */
+    private final List<Integer> _doublesteps;
+}
@@ -0,0 +1,193 @@
+package enigma;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+
+import static enigma.EnigmaException.*;
+
+/** A precomputed next-state table for a Stepper, kept in a memory-mapped
+ *  file so that any number of machines and processes may share it.
+ *  The file holds a header, the notch layout it was built from, and
+ *  then one int per state giving the state that follows it.
+ *  @author Thomas Hsiung
+ */
+class StepTable {
+
+    /** Magic number at the head of each table file ("ESTB"). */
+    static final int MAGIC = 0x45535442;
+
+    /** Version of the table file format. */
+    static final int VERSION = 1;
+
+    /** A table whose next states are NEXT, describing STEPPER. */
+    private StepTable(Stepper stepper, IntBuffer next, long bytes) {
+        _stepper = stepper;
+        _next = next;
+        _bytes = bytes;
+    }
+
+    /** Return the table for STEPPER stored in directory DIR, building and
+     *  saving it first if there is none.  Tables already opened by this
+     *  process are shared. */
+    static StepTable open(File dir, Stepper stepper) {
+        File file = new File(dir, stepper.key() + ".tbl");
+        synchronized (OPENED) {
+            StepTable table = OPENED.get(file);
+            if (table != null && table._stepper.equals(stepper)) {
+                return table;
+            }
+            if (!file.isFile() || !matches(file, stepper)) {
+                build(file, stepper);
+            }
+            table = map(file, stepper);
+            OPENED.put(file, table);
+            return table;
+        }
+    }
+
+    /** Write the table for STEPPER to FILE, by way of a temporary file
+     *  in the same directory so that readers never see a partial
+     *  table. */
+    static void build(File file, Stepper stepper) {
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw error("could not create %s", dir);
+        }
+        int states = stepper.states();
+        int pawls = stepper.pawls(), size = stepper.size();
+        int header = headerSize(stepper);
+        try {
+            File tmp = File.createTempFile(".steps", ".tmp", dir);
+            try (RandomAccessFile out = new RandomAccessFile(tmp, "rw");
+                 FileChannel channel = out.getChannel()) {
+                long length = header + 4L * states;
+                MappedByteBuffer buf =
+                    channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+                buf.putInt(MAGIC).putInt(VERSION).putInt(size)
+                    .putInt(pawls);
+                for (int k = 0; k < pawls; k++) {
+                    for (int p = 0; p < size; p++) {
+                        buf.put((byte) (stepper.notched(k, p) ? 1 : 0));
+                    }
+                }
+                buf.position(header);
+                for (int s = 0; s < states; s++) {
+                    buf.putInt(stepper.next(s));
+                }
+                buf.force();
+            }
+            try {
+                Files.move(tmp.toPath(), file.toPath(),
+                           StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException excp) {
+                Files.move(tmp.toPath(), file.toPath(),
+                           StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException excp) {
+            throw error("could not write %s", file);
+        }
+    }
+
+    /** Return true iff FILE holds a table for STEPPER. */
+    private static boolean matches(File file, Stepper stepper) {
+        int pawls = stepper.pawls(), size = stepper.size();
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            if (in.length() != headerSize(stepper) + 4L * stepper.states()
+                || in.readInt() != MAGIC || in.readInt() != VERSION
+                || in.readInt() != size || in.readInt() != pawls) {
+                return false;
+            }
+            byte[] notches = new byte[pawls * size];
+            in.readFully(notches);
+            for (int k = 0; k < pawls; k++) {
+                for (int p = 0; p < size; p++) {
+                    if ((notches[k * size + p] != 0)
+                        != stepper.notched(k, p)) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        } catch (IOException excp) {
+            return false;
+        }
+    }
+
+    /** Return the table in FILE, which must describe STEPPER. */
+    private static StepTable map(File file, Stepper stepper) {
+        try (RandomAccessFile in = new RandomAccessFile(file, "r");
+             FileChannel channel = in.getChannel()) {
+            int header = headerSize(stepper);
+            long bytes = 4L * stepper.states();
+            ByteBuffer buf =
+                channel.map(FileChannel.MapMode.READ_ONLY, header, bytes);
+            return new StepTable(stepper, buf.asIntBuffer(), header + bytes);
+        } catch (IOException excp) {
+            throw error("could not map %s", file);
+        }
+    }
+
+    /** Return the size in bytes of the header of a table for STEPPER,
+     *  rounded up so that the states are int-aligned. */
+    private static int headerSize(Stepper stepper) {
+        int raw = 16 + stepper.pawls() * stepper.size();
+        return (raw + 7) & ~7;
+    }
+
+    /** Return the stepper I tabulate. */
+    Stepper stepper() {
+        return _stepper;
+    }
+
+    /** Return the size of my file in bytes. */
+    long bytes() {
+        return _bytes;
+    }
+
+    /** Return the state following STATE. */
+    int next(int state) {
+        return _next.get(state);
+    }
+
+    /** Return the state reached from STATE after N steps. */
+    int after(int state, long n) {
+        for (long i = 0; i < n; i++) {
+            state = _next.get(state);
+        }
+        return state;
+    }
+
+    /** Return the number of steps after which STATE first recurs, or 0
+     *  if it never does (it is not on a cycle). */
+    int period(int state) {
+        int s = _next.get(state);
+        for (int i = 1; i <= _stepper.states(); i++) {
+            if (s == state) {
+                return i;
+            }
+            s = _next.get(s);
+        }
+        return 0;
+    }
+
+    /** Tables opened so far, by file. */
+    private static final HashMap<File, StepTable> OPENED = new HashMap<>();
+
+    /** The stepper I tabulate. */
+    private final Stepper _stepper;
+
+    /** Next state of each state. */
+    private final IntBuffer _next;
+
+    /** Size of my file in bytes. */
+    private final long _bytes;
+}
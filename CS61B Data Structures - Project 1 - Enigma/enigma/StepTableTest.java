@@ -0,0 +1,154 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.TemporaryFolder;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static enigma.TestUtils.*;
+
+/** The suite of all JUnit tests for the Stepper, StepTable, and
+ *  StepAnalysis classes.
+ *  @author Thomas Hsiung
+ */
+public class StepTableTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /** Directories for tables, deleted after each test. */
+    @Rule
+    public TemporaryFolder tables = new TemporaryFolder();
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return a 5-rotor, 3-pawl machine with the naval rotors,
+     *  set up as B Beta ROTOR1 ROTOR2 ROTOR3 at SETTING. */
+    static Machine navalMachine(String rotor1, String rotor2, String rotor3,
+                                String setting) {
+        ArrayList<Rotor> all = new ArrayList<>();
+        all.add(new Reflector("B", new Permutation(NAVALA.get("B"), UPPER)));
+        all.add(new FixedRotor("Beta",
+                               new Permutation(NAVALA.get("Beta"), UPPER)));
+        all.add(new MovingRotor("I", new Permutation(NAVALA.get("I"), UPPER),
+                                "Q"));
+        all.add(new MovingRotor("II",
+                                new Permutation(NAVALA.get("II"), UPPER),
+                                "E"));
+        all.add(new MovingRotor("III",
+                                new Permutation(NAVALA.get("III"), UPPER),
+                                "V"));
+        all.add(new MovingRotor("VI",
+                                new Permutation(NAVALA.get("VI"), UPPER),
+                                "ZM"));
+        Machine machine = new Machine(UPPER, 5, 3, all);
+        machine.insertRotors(new String[] {"B", "Beta", rotor1, rotor2,
+                                           rotor3});
+        machine.setRotors(setting);
+        machine.setPlugboard(new Permutation("(AQ) (EP)", UPPER));
+        return machine;
+    }
+
+    /** Return a fresh temporary directory for tables. */
+    File tableDir() throws IOException {
+        return tables.newFolder("steps");
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void checkTableMatchesRotors() throws IOException {
+        File dir = tableDir();
+        Machine plain = navalMachine("VI", "II", "III", "AZDU");
+        Machine tabled = navalMachine("VI", "II", "III", "AZDU");
+        tabled.useStepTables(dir);
+        for (int i = 0; i < 20000; i += 1) {
+            assertEquals("conversion " + i, plain.convert(i % 26),
+                         tabled.convert(i % 26));
+        }
+        assertNotNull(tabled.stepTable());
+    }
+
+    @Test
+    public void checkTableSharedAcrossOrders() throws IOException {
+        File dir = tableDir();
+        Machine machine = navalMachine("I", "II", "III", "AAAA");
+        machine.useStepTables(dir);
+        StepTable table1 = machine.stepTable();
+        machine.insertRotors(new String[] {"B", "Beta", "II", "I", "III"});
+        StepTable table2 = machine.stepTable();
+        assertNotSame(table1, table2);
+        assertEquals(2, dir.list().length);
+        machine.insertRotors(new String[] {"B", "Beta", "I", "II", "III"});
+        assertSame(table1, machine.stepTable());
+    }
+
+    @Test
+    public void checkDoubleStep() {
+        Machine machine = navalMachine("I", "II", "III", "AADU");
+        Stepper stepper = Stepper.of(machine.rotors(), 3);
+        int state = stepper.state(machine.rotors());
+        state = stepper.next(state);
+        assertEquals("ADV", states(stepper, state));
+        state = stepper.next(state);
+        assertEquals("AEW", states(stepper, state));
+        state = stepper.next(state);
+        assertEquals("BFX", states(stepper, state));
+    }
+
+    @Test
+    public void checkPeriod() throws IOException {
+        Machine machine = navalMachine("I", "II", "III", "AAAA");
+        assertEquals(16900, machine.period());
+        assertEquals(0, machine.analyze().tail());
+        machine.useStepTables(tableDir());
+        assertEquals(16900, machine.period());
+        assertEquals(26, machine.doubleStepPositions().size());
+        assertEquals("AAEW", navalMachine("I", "II", "III", "AADU")
+                     .doubleStepPositions().get(0));
+    }
+
+    @Test
+    public void checkStateAfter() {
+        Machine machine = navalMachine("I", "II", "III", "AADT");
+        Machine stepped = navalMachine("I", "II", "III", "AADT");
+        for (int i = 0; i < 1000; i += 1) {
+            stepped.convert(0);
+        }
+        assertEquals("AADT", machine.stateAfter(0));
+        assertEquals("AADV", machine.stateAfter(2));
+        assertEquals(stepped.stateAfter(0), machine.stateAfter(1000));
+        assertEquals(machine.stateAfter(5), machine.stateAfter(5 + 16900));
+        assertEquals("AADT", machine.stateAfter(0));
+    }
+
+    @Test
+    public void checkRotorOrders() {
+        Machine machine = navalMachine("I", "II", "III", "AAAA");
+        List<StepAnalysis> orders = machine.analyzeRotorOrders();
+        assertEquals(4 * 3 * 2, orders.size());
+        for (StepAnalysis analysis : orders) {
+            if (analysis.rotors().equals("I II III")) {
+                assertEquals(16900, analysis.period());
+            }
+            assertTrue(analysis.period() > 0);
+        }
+    }
+
+    /** Return STATE of STEPPER as upper-case letters. */
+    private static String states(Stepper stepper, int state) {
+        String result = "";
+        for (int k = 0; k < stepper.pawls(); k += 1) {
+            result += UPPER.toChar(stepper.position(state, k));
+        }
+        return result;
+    }
+
+}
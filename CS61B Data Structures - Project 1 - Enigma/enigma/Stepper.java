@@ -0,0 +1,206 @@
+package enigma;
+
+import java.util.Arrays;
+
+import static enigma.EnigmaException.*;
+
+/** The stepping behavior of the moving rotors of a machine, detached
+ *  from the rotors themselves.  The positions of the moving rotors are
+ *  packed into a single int state, the leftmost moving rotor being the
+ *  most significant digit in base size().
+ *  @author Thomas Hsiung
+ */
+class Stepper {
+
+    /** The largest number of states I will describe. */
+    static final int MAX_STATES = 1 << 24;
+
+    /** A stepper for PAWLS moving rotors over an alphabet of SIZE
+     *  characters, where NOTCHED[K][P] is true iff moving rotor K
+     *  (numbering from the left) is at a notch in position P. */
+    Stepper(int size, int pawls, boolean[][] notched) {
+        if (pawls < 1 || notched.length != pawls) {
+            throw error("Stepper: need one notch layout per pawl");
+        }
+        long states = 1;
+        for (int k = 0; k < pawls; k++) {
+            states *= size;
+            if (states > MAX_STATES) {
+                throw error("Stepper: too many states");
+            }
+        }
+        _size = size;
+        _pawls = pawls;
+        _notched = notched;
+        _states = (int) states;
+    }
+
+    /** Return a stepper for the moving rotors in the rightmost PAWLS of
+     *  ROTORS (ROTORS[0] being the reflector), or null if those rotors
+     *  cannot be described by a stepper: a rotor to the left of them
+     *  rotates, one of them does not, or there are too many states. */
+    static Stepper of(Rotor[] rotors, int pawls) {
+        int first = rotors.length - pawls;
+        if (pawls < 1 || first < 1) {
+            return null;
+        }
+        for (int i = 1; i < rotors.length; i++) {
+            if (rotors[i].rotates() != (i >= first)) {
+                return null;
+            }
+        }
+        int size = rotors[first].size();
+        boolean[][] notched = new boolean[pawls][size];
+        for (int k = 0; k < pawls; k++) {
+            for (int p = 0; p < size; p++) {
+                notched[k][p] = rotors[first + k].notchedAt(p);
+            }
+        }
+        long states = 1;
+        for (int k = 0; k < pawls; k++) {
+            states *= size;
+        }
+        if (states > MAX_STATES) {
+            return null;
+        }
+        return new Stepper(size, pawls, notched);
+    }
+
+    /** Return the alphabet size of my rotors. */
+    int size() {
+        return _size;
+    }
+
+    /** Return the number of moving rotors I describe. */
+    int pawls() {
+        return _pawls;
+    }
+
+    /** Return the number of distinct states. */
+    int states() {
+        return _states;
+    }
+
+    /** Return true iff moving rotor K is at a notch in position POSN. */
+    boolean notched(int k, int posn) {
+        return _notched[k][posn];
+    }
+
+    /** Return the state in which the moving rotors of ROTORS are
+     *  currently set. */
+    int state(Rotor[] rotors) {
+        int first = rotors.length - _pawls;
+        int state = 0;
+        for (int k = 0; k < _pawls; k++) {
+            state = state * _size + rotors[first + k].setting();
+        }
+        return state;
+    }
+
+    /** Set the moving rotors of ROTORS to STATE. */
+    void apply(int state, Rotor[] rotors) {
+        for (int i = rotors.length - 1; i >= rotors.length - _pawls; i--) {
+            rotors[i].set(state % _size);
+            state /= _size;
+        }
+    }
+
+    /** Return the position of moving rotor K in STATE. */
+    int position(int state, int k) {
+        for (int i = _pawls - 1; i > k; i--) {
+            state /= _size;
+        }
+        return state % _size;
+    }
+
+    /** Return the state following STATE, by the same rules as
+     *  Machine.convert: the rightmost rotor always advances, a rotor
+     *  advances when the rotor to its right is at a notch, and a rotor
+     *  other than the leftmost moving rotor that is itself at a notch
+     *  advances (double-steps). */
+    int next(int state) {
+        int[] posns = new int[_pawls];
+        for (int k = _pawls - 1; k >= 0; k--) {
+            posns[k] = state % _size;
+            state /= _size;
+        }
+        boolean[] rotated = new boolean[_pawls];
+        boolean atnotch = false;
+        for (int k = _pawls - 1; k >= 0; k--) {
+            if (k == _pawls - 1) {
+                atnotch = _notched[k][posns[k]];
+                rotated[k] = true;
+            } else if (atnotch) {
+                atnotch = _notched[k][posns[k]];
+                rotated[k] = true;
+            } else if (k > 0) {
+                atnotch = _notched[k][posns[k]];
+                rotated[k] = atnotch;
+            }
+        }
+        int result = 0;
+        for (int k = 0; k < _pawls; k++) {
+            int posn = posns[k];
+            if (rotated[k]) {
+                posn = posn + 1 == _size ? 0 : posn + 1;
+            }
+            result = result * _size + posn;
+        }
+        return result;
+    }
+
+    /** Return true iff a rotor other than the rightmost advances on its
+     *  own notch (double-steps) in the step from STATE. */
+    boolean doubleSteps(int state) {
+        boolean atnotch = _notched[_pawls - 1][state % _size];
+        for (int k = _pawls - 2; k > 0; k--) {
+            state /= _size;
+            boolean notched = _notched[k][state % _size];
+            if (!atnotch && notched) {
+                return true;
+            }
+            atnotch = notched;
+        }
+        return false;
+    }
+
+    /** Return a key identifying my layout, suitable for a file name. */
+    String key() {
+        long hash = 1125899906842597L;
+        hash = 31 * hash + _size;
+        hash = 31 * hash + _pawls;
+        for (boolean[] notches : _notched) {
+            for (boolean notch : notches) {
+                hash = 31 * hash + (notch ? 1 : 0);
+            }
+        }
+        return String.format("%d-%d-%016x", _size, _pawls, hash);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof Stepper)) {
+            return false;
+        }
+        Stepper other = (Stepper) obj;
+        return _size == other._size && _pawls == other._pawls
+            && Arrays.deepEquals(_notched, other._notched);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.deepHashCode(_notched) * 31 + _size;
+    }
+
+    /** Alphabet size of my rotors. */
+    private final int _size;
+
+    /** Number of moving rotors. */
+    private final int _pawls;
+
+    /** Notch positions of each moving rotor, leftmost first. */
+    private final boolean[][] _notched;
+
+    /** Number of distinct states (_size ** _pawls). */
+    private final int _states;
+}
@@ -0,0 +1,365 @@
+package enigma;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Scanner;
+import java.util.SplittableRandom;
+
+import static enigma.EnigmaException.*;
+
+/** Generator of reproducible synthetic input for Main, together with
+ *  the output Main should produce for it.  Usage:
+ *      java enigma.TrafficGenerator SPEC INPUT EXPECTED
+ *  reads the properties file SPEC and writes the generated input to
+ *  the file INPUT and the expected output to EXPECTED.  Both are
+ *  written as they are generated, so their size is not limited by
+ *  memory.  SPEC may contain these keys:
+ *      config    the configuration file name (required).
+ *      seed      seed of the random generator (default 0).
+ *      size      approximate number of bytes of input, optionally with
+ *                a suffix of K, M, or G (default 1M).
+ *      messages  the number of message lines per settings line, as
+ *                "MIN-MAX" (default "1-5").
+ *      length    the distribution of the number of characters per
+ *                message: "fixed N", "uniform MIN MAX", "normal MEAN
+ *                STDDEV", or "exponential MEAN" (default "uniform 1
+ *                100").
+ *      alphabet  the characters used in messages (default: the whole
+ *                alphabet of the configuration).
+ *      group     put a blank after every GROUP characters of a
+ *                message; 0 for none (default 5).
+ *      rings     the probability that a settings line has ring
+ *                settings (default 0.5).
+ *      plugs     the largest number of plugboard pairs (default 10).
+ *  @author Thomas Hsiung
+ */
+public final class TrafficGenerator {
+
+    /** Generate traffic as described by ARGS (see class comment). */
+    public static void main(String... args) {
+        try {
+            if (args.length != 3) {
+                throw error("usage: java enigma.TrafficGenerator SPEC"
+                            + " INPUT EXPECTED");
+            }
+            Properties spec = new Properties();
+            try (Reader in = new FileReader(args[0], StandardCharsets.UTF_8)) {
+                spec.load(in);
+            } catch (IOException excp) {
+                throw error("could not read %s", args[0]);
+            }
+            try (PrintStream input = open(args[1]);
+                 PrintStream expected = open(args[2])) {
+                new TrafficGenerator(spec).generate(input, expected);
+                if (input.checkError() || expected.checkError()) {
+                    throw error("could not write generated traffic");
+                }
+            }
+        } catch (EnigmaException excp) {
+            System.err.printf("Error: %s%n", excp.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** A generator as described by the properties SPEC. */
+    TrafficGenerator(Properties spec) {
+        String config = spec.getProperty("config");
+        if (config == null) {
+            throw error("generator needs a value for config");
+        }
+        try (Scanner scanner = new Scanner(new File(config),
+                                           StandardCharsets.UTF_8)) {
+            _machine = Main.configure(scanner);
+        } catch (IOException excp) {
+            throw error("could not open %s", config);
+        }
+        _alphabet = _machine.alphabet();
+        try {
+            _random = new SplittableRandom(
+                Long.parseLong(spec.getProperty("seed", "0").trim()));
+            _size = bytes(spec.getProperty("size", "1M").trim());
+            String[] messages =
+                spec.getProperty("messages", "1-5").trim().split("-");
+            _minmessages = Integer.parseInt(messages[0].trim());
+            _maxmessages = Integer.parseInt(messages[messages.length - 1]
+                                            .trim());
+            String[] length = spec.getProperty("length", "uniform 1 100")
+                .trim().split("\\s+");
+            _length = length[0];
+            _lengthParams = lengthParams(length);
+            _group = Integer.parseInt(spec.getProperty("group", "5").trim());
+            _rings = Double.parseDouble(spec.getProperty("rings", "0.5")
+                                        .trim());
+            _plugs = Integer.parseInt(spec.getProperty("plugs", "10").trim());
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException
+                 excp) {
+            throw error("bad generator specification");
+        }
+        _chars = spec.getProperty("alphabet", _alphabet.chars())
+            .replaceAll("\\s+", "").codePoints().toArray();
+        for (int cp : _chars) {
+            if (!_alphabet.containsCodePoint(cp)) {
+                throw error("'%s' is not in the alphabet",
+                            Character.toString(cp));
+            }
+        }
+        if (_minmessages < 0 || _maxmessages < _minmessages
+            || _chars.length == 0) {
+            throw error("bad generator specification");
+        }
+        for (Rotor rotor : _machine.allRotors()) {
+            if (rotor.reflecting()) {
+                _reflectors.add(rotor.name());
+            } else if (rotor.rotates()) {
+                _moving.add(rotor.name());
+            } else {
+                _fixed.add(rotor.name());
+            }
+        }
+        int numfixed = _machine.numRotors() - 1 - _machine.numPawls();
+        if (_reflectors.isEmpty() || _fixed.size() < numfixed
+            || _moving.size() < _machine.numPawls()) {
+            throw error("configuration has too few rotors of some kind");
+        }
+    }
+
+    /** Write about _size bytes of input to INPUT and the output Main
+     *  would produce from it to EXPECTED. */
+    void generate(PrintStream input, PrintStream expected) {
+        long written = 0;
+        while (written < _size) {
+            String settings = settings();
+            input.print(settings);
+            input.print('\n');
+            written += settings.length() + 1;
+            Main.setUp(_machine, settings);
+            int messages = _minmessages
+                + _random.nextInt(_maxmessages - _minmessages + 1);
+            for (int i = 0; i < messages && written < _size; i++) {
+                String message = message();
+                input.print(message);
+                input.print('\n');
+                written += message.length() + 1;
+                Main.printMessageLine(expected,
+                                      _machine.convert(message) + '\n');
+            }
+        }
+    }
+
+    /** Return a random settings line. */
+    private String settings() {
+        StringBuilder line = new StringBuilder("*");
+        line.append(' ').append(pick(_reflectors, 1).get(0));
+        int numfixed = _machine.numRotors() - 1 - _machine.numPawls();
+        for (String name : pick(_fixed, numfixed)) {
+            line.append(' ').append(name);
+        }
+        for (String name : pick(_moving, _machine.numPawls())) {
+            line.append(' ').append(name);
+        }
+        line.append(' ').append(letters(_machine.numRotors() - 1));
+        if (_random.nextDouble() < _rings) {
+            line.append(' ').append(letters(_machine.numRotors() - 1));
+        }
+        ArrayList<Integer> plugs = new ArrayList<>();
+        _alphabet.chars().codePoints().forEach(plugs::add);
+        int pairs = Math.min(_random.nextInt(_plugs + 1), plugs.size() / 2);
+        for (int i = 0; i < pairs; i++) {
+            int a = plugs.remove(_random.nextInt(plugs.size()));
+            int b = plugs.remove(_random.nextInt(plugs.size()));
+            line.append(" (").appendCodePoint(a).appendCodePoint(b)
+                .append(')');
+        }
+        return line.toString();
+    }
+
+    /** Return a random message line. */
+    private String message() {
+        int length = length();
+        StringBuilder line = new StringBuilder(length + length / 4);
+        for (int i = 0; i < length; i++) {
+            if (_group > 0 && i > 0 && i % _group == 0) {
+                line.append(' ');
+            }
+            line.appendCodePoint(_chars[_random.nextInt(_chars.length)]);
+        }
+        return line.toString();
+    }
+
+    /** Return the parameters of the message length distribution SPEC,
+     *  its name followed by its parameters, checking that they suit
+     *  it. */
+    private static double[] lengthParams(String[] spec) {
+        int count;
+        switch (spec[0]) {
+        case "fixed":
+        case "exponential":
+            count = 1;
+            break;
+        case "uniform":
+        case "normal":
+            count = 2;
+            break;
+        default:
+            throw error("unknown length distribution %s", spec[0]);
+        }
+        String name = String.join(" ", spec);
+        if (spec.length != count + 1) {
+            throw error("length distribution %s needs %d parameter%s",
+                        name, count, count == 1 ? "" : "s");
+        }
+        double[] params = new double[count];
+        try {
+            for (int i = 0; i < count; i++) {
+                params[i] = spec[0].equals("uniform")
+                    ? Integer.parseInt(spec[i + 1])
+                    : Double.parseDouble(spec[i + 1]);
+            }
+        } catch (NumberFormatException excp) {
+            throw error("bad length distribution %s", name);
+        }
+        boolean ok;
+        switch (spec[0]) {
+        case "uniform":
+            ok = params[0] <= params[1];
+            break;
+        case "normal":
+            ok = params[1] >= 0;
+            break;
+        default:
+            ok = params[0] > 0;
+            break;
+        }
+        for (double param : params) {
+            ok &= Double.isFinite(param);
+        }
+        if (!ok) {
+            throw error("bad length distribution %s", name);
+        }
+        return params;
+    }
+
+    /** Return a random message length, at least 1, drawn from the
+     *  distribution _length with parameters _lengthParams. */
+    private int length() {
+        double length;
+        switch (_length) {
+        case "fixed":
+            length = _lengthParams[0];
+            break;
+        case "uniform":
+            int min = (int) _lengthParams[0];
+            length = min + _random.nextInt((int) _lengthParams[1] - min + 1);
+            break;
+        case "normal":
+            length = _lengthParams[0] + gaussian() * _lengthParams[1];
+            break;
+        default:
+            length = -Math.log(1 - _random.nextDouble()) * _lengthParams[0];
+            break;
+        }
+        return (int) Math.max(1, Math.round(length));
+    }
+
+    /** Return a normally distributed value with mean 0 and standard
+     *  deviation 1 (Box-Muller). */
+    private double gaussian() {
+        double u = 1 - _random.nextDouble(), v = _random.nextDouble();
+        return Math.sqrt(-2 * Math.log(u)) * Math.cos(2 * Math.PI * v);
+    }
+
+    /** Return N random letters of my machine's alphabet. */
+    private String letters(int n) {
+        StringBuilder result = new StringBuilder(n);
+        for (int i = 0; i < n; i++) {
+            result.appendCodePoint(
+                _alphabet.toCodePoint(_random.nextInt(_alphabet.size())));
+        }
+        return result.toString();
+    }
+
+    /** Return N distinct names chosen at random from NAMES. */
+    private List<String> pick(List<String> names, int n) {
+        ArrayList<String> pool = new ArrayList<>(names);
+        ArrayList<String> result = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            result.add(pool.remove(_random.nextInt(pool.size())));
+        }
+        return result;
+    }
+
+    /** Return the number of bytes denoted by SIZE, a number optionally
+     *  followed by K, M, or G. */
+    private static long bytes(String size) {
+        long scale = 1;
+        String upper = size.toUpperCase();
+        if (upper.endsWith("K")) {
+            scale = 1L << 10;
+        } else if (upper.endsWith("M")) {
+            scale = 1L << 20;
+        } else if (upper.endsWith("G")) {
+            scale = 1L << 30;
+        }
+        if (scale > 1) {
+            upper = upper.substring(0, upper.length() - 1);
+        }
+        return Long.parseLong(upper.trim()) * scale;
+    }
+
+    /** Return a buffered PrintStream writing to the file named NAME. */
+    private static PrintStream open(String name) {
+        try {
+            return new PrintStream(new BufferedOutputStream(
+                new FileOutputStream(name), 1 << 16), false,
+                                   StandardCharsets.UTF_8);
+        } catch (IOException excp) {
+            throw error("could not open %s", name);
+        }
+    }
+
+    /** The reference machine. */
+    private final Machine _machine;
+
+    /** Alphabet of _machine. */
+    private final Alphabet _alphabet;
+
+    /** Source of randomness. */
+    private final SplittableRandom _random;
+
+    /** Approximate number of bytes of input to write. */
+    private final long _size;
+
+    /** Bounds on the number of messages per settings line. */
+    private final int _minmessages, _maxmessages;
+
+    /** Name of the message length distribution. */
+    private final String _length;
+
+    /** Parameters of _length. */
+    private final double[] _lengthParams;
+
+    /** Characters per blank-separated group in messages. */
+    private final int _group;
+
+    /** Probability of ring settings. */
+    private final double _rings;
+
+    /** Largest number of plugboard pairs. */
+    private final int _plugs;
+
+    /** Code points of the characters used in messages. */
+    private final int[] _chars;
+
+    /** Names of the reflectors, non-moving rotors and moving rotors. */
+    private final List<String> _reflectors = new ArrayList<>(),
+        _fixed = new ArrayList<>(), _moving = new ArrayList<>();
+}
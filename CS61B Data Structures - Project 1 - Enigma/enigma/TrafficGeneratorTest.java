@@ -0,0 +1,150 @@
+package enigma;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.TemporaryFolder;
+import org.junit.rules.Timeout;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Properties;
+
+import static enigma.MachineRegistryTest.*;
+
+/** The suite of all JUnit tests for the TrafficGenerator class.
+ *  @author Thomas Hsiung
+ */
+public class TrafficGeneratorTest {
+
+    /** Testing time limit. */
+    @Rule
+    public Timeout globalTimeout = Timeout.seconds(5);
+
+    /** Directory for configuration, input and output files. */
+    @Rule
+    public TemporaryFolder files = new TemporaryFolder();
+
+    /* ***** TESTING UTILITIES ***** */
+
+    /** Return a specification for about 4K bytes of traffic for CONFIG,
+     *  with SEED and message lengths distributed as LENGTH. */
+    Properties spec(long seed, String length) throws IOException {
+        return spec(CONFIG, seed, length);
+    }
+
+    /** Return a specification for about 4K bytes of traffic for the
+     *  configuration TEXT, with SEED and message lengths distributed as
+     *  LENGTH. */
+    Properties spec(String text, long seed, String length)
+        throws IOException {
+        File config = files.newFile();
+        Files.write(config.toPath(), bytes(text));
+        Properties spec = new Properties();
+        spec.setProperty("config", config.getPath());
+        spec.setProperty("seed", Long.toString(seed));
+        spec.setProperty("size", "4K");
+        spec.setProperty("length", length);
+        return spec;
+    }
+
+    /** Return the input and expected output generated from SPEC. */
+    static String[] generate(Properties spec) {
+        ByteArrayOutputStream input = new ByteArrayOutputStream(),
+            expected = new ByteArrayOutputStream();
+        new TrafficGenerator(spec).generate(
+            new PrintStream(input, false, StandardCharsets.UTF_8),
+            new PrintStream(expected, false, StandardCharsets.UTF_8));
+        return new String[] {
+            input.toString(StandardCharsets.UTF_8),
+            expected.toString(StandardCharsets.UTF_8)
+        };
+    }
+
+    /** Assert that a generator specified by SPEC with message lengths
+     *  distributed as LENGTH is rejected. */
+    void checkBadLength(String length) throws IOException {
+        try {
+            new TrafficGenerator(spec(0, length));
+            fail("accepted length " + length);
+        } catch (EnigmaException excp) {
+            /* Expected. */
+        }
+    }
+
+    /* ***** TESTS ***** */
+
+    @Test
+    public void testSeeded() throws IOException {
+        for (String length : new String[] { "fixed 7", "uniform 1 100",
+                                            "normal 20 5",
+                                            "exponential 30" }) {
+            String[] first = generate(spec(42, length)),
+                second = generate(spec(42, length)),
+                other = generate(spec(43, length));
+            assertEquals(first[0], second[0]);
+            assertEquals(first[1], second[1]);
+            assertNotEquals(first[0], other[0]);
+            assertTrue(first[0].length() >= 4096);
+        }
+    }
+
+    @Test
+    public void testExpected() throws IOException {
+        String[] traffic = generate(spec(7, "uniform 1 30"));
+        File config = files.newFile(), input = files.newFile(),
+            output = files.newFile();
+        Files.write(config.toPath(), bytes(CONFIG));
+        Files.write(input.toPath(), bytes(traffic[0]));
+        Main.main(config.getPath(), input.getPath(), output.getPath());
+        assertEquals(traffic[1],
+                     new String(Files.readAllBytes(output.toPath()),
+                                StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testFixedLength() throws IOException {
+        String[] traffic = generate(spec(1, "fixed 7"));
+        for (String line : traffic[0].split("\n")) {
+            if (!line.startsWith("*")) {
+                assertEquals(7, line.replace(" ", "").length());
+            }
+        }
+    }
+
+    @Test
+    public void testWideAlphabet() throws IOException {
+        String letters = wide("ABCDEFGH");
+        String[] traffic = generate(spec(WIDE_CONFIG, 5, "fixed 7"));
+        assertTrue(traffic[0].length() >= 4096);
+        boolean plugged = false;
+        for (String line : traffic[0].split("\n")) {
+            if (line.startsWith("*")) {
+                plugged |= line.contains("(");
+                line = line.replaceAll("[*()IB]", "");
+            }
+            line.replace(" ", "").codePoints().forEach(
+                c -> assertTrue(letters.indexOf(c) >= 0));
+        }
+        assertTrue(plugged);
+        traffic[1].replaceAll("\\s+", "").codePoints().forEach(
+            c -> assertTrue(letters.indexOf(c) >= 0));
+    }
+
+    @Test
+    public void testBadLengths() throws IOException {
+        checkBadLength("uniform 5");
+        checkBadLength("uniform 5 1");
+        checkBadLength("uniform 1 x");
+        checkBadLength("fixed");
+        checkBadLength("fixed 7 8");
+        checkBadLength("normal 10 -1");
+        checkBadLength("exponential 0");
+        checkBadLength("poisson 3");
+    }
+
+}
@@ -11,7 +11,13 @@ public class UnitTest {
      *  the arguments of runClasses to run other JUnit tests. */
     public static void main(String[] ignored) {
         System.exit(textui.runClasses(PermutationTest.class,
-                                      MovingRotorTest.class));
+                                      MovingRotorTest.class,
+                                      StepTableTest.class,
+                                      CribScannerTest.class,
+                                      MachineRegistryTest.class,
+                                      InstrumentationTest.class,
+                                      SearchCoordinatorTest.class,
+                                      TrafficGeneratorTest.class));
     }
 
 
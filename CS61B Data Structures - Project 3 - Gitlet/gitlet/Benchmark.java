@@ -0,0 +1,1517 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZonedDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/** Timing runs for Gitlet's storage.  Usage:
+ *      java gitlet.Benchmark NAME [ARGS...]
+ *  where NAME selects the benchmark.  Each works in a fresh temporary
+ *  directory, which it deletes, and prints its results on the standard
+ *  output.
+ *
+ *  @author Thomas Hsiung
+ */
+public final class Benchmark {
+
+    /** Run the benchmark named by ARGS[0] (see class comment). */
+    public static void main(String... args) {
+        if (args.length == 0) {
+            System.err.println("usage: java gitlet.Benchmark NAME ...");
+            System.exit(1);
+        }
+        switch (args[0]) {
+        case "store":
+            store(args);
+            break;
+        case "pack":
+            pack(args);
+            break;
+        case "delta":
+            delta(args);
+            break;
+        case "index":
+            index(args);
+            break;
+        case "status":
+            status(args);
+            break;
+        case "add":
+            add(args);
+            break;
+        case "graph":
+            graph(args);
+            break;
+        case "merge-base":
+            mergeBase(args);
+            break;
+        case "log":
+            log(args);
+            break;
+        case "find":
+            find(args);
+            break;
+        case "abbrev":
+            abbrev(args);
+            break;
+        case "startup":
+            startup(args);
+            break;
+        case "codec":
+            codec(args);
+            break;
+        case "cache":
+            cache(args);
+            break;
+        case "tree":
+            tree(args);
+            break;
+        default:
+            System.err.println("no benchmark named " + args[0]);
+            System.exit(1);
+        }
+    }
+
+    /** Compare the flat, uncompressed directories of serialized objects
+     *  with the ObjectStore, filled with ARGS[1] (default 100000) Blobs
+     *  of source-like text and a Commit for every 10: the time to store
+     *  them, their size on disk, and the time to commit 10 new files and
+     *  to check a file out of a random commit once the store is full. */
+    private static void store(String[] args) {
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        Path root = tempDir();
+        try {
+            Random random = new Random(34);
+            List<String> words = new ArrayList<>();
+            for (int i = 0; i < 500; i++) {
+                words.add(Integer.toString(random.nextInt(1 << 20), 36));
+            }
+            File flat = root.resolve("flat").toFile();
+            flat.mkdirs();
+            ObjectStore store = new ObjectStore(root.resolve("store")
+                                                .toFile());
+            ArrayList<String> commits = new ArrayList<>();
+
+            long flatTime = 0, storeTime = 0;
+            for (int c = 0; c < count / 10; c++) {
+                Object[] commit = commit(random, words, c);
+                long start = System.nanoTime();
+                saveFlat(flat, commit);
+                flatTime += System.nanoTime() - start;
+                start = System.nanoTime();
+                saveStore(store, commit);
+                storeTime += System.nanoTime() - start;
+                commits.add(((Commit) commit[0]).getSHA());
+            }
+            report("fill flat", count, flatTime);
+            report("fill store", count, storeTime);
+            System.out.printf("flat:  %,d bytes in %,d blocks of 4K%n",
+                              size(flat.toPath(), false),
+                              size(flat.toPath(), true));
+            System.out.printf("store: %,d bytes in %,d blocks of 4K%n",
+                              size(root.resolve("store"), false),
+                              size(root.resolve("store"), true));
+
+            int trials = 1000;
+            flatTime = storeTime = 0;
+            for (int i = 0; i < trials; i++) {
+                Object[] commit = commit(random, words, count + i);
+                long start = System.nanoTime();
+                saveFlat(flat, commit);
+                flatTime += System.nanoTime() - start;
+                start = System.nanoTime();
+                saveStore(store, commit);
+                storeTime += System.nanoTime() - start;
+            }
+            report("commit flat", trials, flatTime);
+            report("commit store", trials, storeTime);
+
+            flatTime = storeTime = 0;
+            File out = root.resolve("checkout").toFile();
+            for (int i = 0; i < trials; i++) {
+                String id = commits.get(random.nextInt(commits.size()));
+                long start = System.nanoTime();
+                Commit commit = Utils.readObject(Utils.join(flat, id),
+                                                 Commit.class);
+                String blob = commit.getBlobs().values().iterator().next();
+                Utils.writeContents(out, Utils.readObject(
+                    Utils.join(flat, blob), Blob.class).getContents());
+                flatTime += System.nanoTime() - start;
+                start = System.nanoTime();
+                commit = store.readCommit(id);
+                blob = commit.getBlobs().values().iterator().next();
+                Utils.writeContents(out, store.readBlob(blob).getContents());
+                storeTime += System.nanoTime() - start;
+            }
+            report("checkout flat", trials, flatTime);
+            report("checkout store", trials, storeTime);
+        } finally {
+            delete(root);
+        }
+    }
+
+    /** Time lookups of objects in a pack of ARGS[1] (default 1000000)
+     *  small Blobs, and among ARGS[2] (default 100000) loose ones: with
+     *  the pack open and its pages in memory (warm), and just after the
+     *  page cache is dropped and the store reopened (cold). Dropping the
+     *  page cache needs root; without it the cold runs only reopen the
+     *  store. */
+    private static void pack(String[] args) {
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        int looseCount = args.length > 2 ? Integer.parseInt(args[2])
+            : Math.min(count, 100_000);
+        Path root = tempDir();
+        try {
+            Random random = new Random(35);
+            File git = root.resolve("pack").toFile();
+            File objects = Utils.join(git, "objects");
+            String[] ids = new String[count];
+            long start = System.nanoTime();
+            PackFile.Writer writer =
+                new PackFile.Writer(Utils.join(objects, "pack"));
+            for (int i = 0; i < count; i++) {
+                byte[] payload = payload(random, i);
+                ids[i] = Utils.sha1(payload);
+                writer.add(ids[i], PackFile.WHOLE,
+                           ObjectStore.encode(ObjectStore.BLOB, payload));
+            }
+            writer.finish();
+            report("write pack", count, System.nanoTime() - start);
+            System.out.printf("pack: %,d bytes%n",
+                              size(objects.toPath(), false));
+
+            File looseGit = root.resolve("loose").toFile();
+            ObjectStore loose = new ObjectStore(looseGit);
+            String[] looseIds = new String[looseCount];
+            start = System.nanoTime();
+            for (int i = 0; i < looseCount; i++) {
+                byte[] payload = payload(random, i);
+                looseIds[i] = Utils.sha1(payload);
+                loose.put(ObjectStore.BLOB, looseIds[i], payload);
+            }
+            report("write loose", looseCount, System.nanoTime() - start);
+
+            int trials = 1_000_000;
+            ObjectStore packed = new ObjectStore(git);
+            lookups(packed, ids, random, trials);
+            report("warm pack", trials, lookups(packed, ids, random, trials));
+            lookups(loose, looseIds, random, trials);
+            report("warm loose", trials,
+                   lookups(loose, looseIds, random, trials));
+            String[] missing = new String[1000];
+            for (int i = 0; i < missing.length; i++) {
+                missing[i] = Utils.sha1(Integer.toString(i));
+            }
+            start = System.nanoTime();
+            for (int i = 0; i < trials; i++) {
+                packed.pack(missing[i % missing.length]);
+            }
+            report("warm miss", trials, System.nanoTime() - start);
+
+            boolean dropped = dropCaches();
+            if (!dropped) {
+                System.out.println("(cannot drop the page cache: cold runs"
+                                   + " only reopen the store)");
+            }
+            int coldTrials = 100;
+            long openTime = 0, packTime = 0, looseTime = 0;
+            for (int i = 0; i < coldTrials; i++) {
+                dropCaches();
+                start = System.nanoTime();
+                packed = new ObjectStore(git);
+                packed.packs();
+                openTime += System.nanoTime() - start;
+                packTime += lookups(packed, ids, random, 1);
+                dropCaches();
+                looseTime += lookups(new ObjectStore(looseGit), looseIds,
+                                     random, 1);
+            }
+            report("cold open pack", coldTrials, openTime);
+            report("cold pack", coldTrials, packTime);
+            report("cold loose", coldTrials, looseTime);
+        } finally {
+            delete(root);
+        }
+    }
+
+    /** Build a history of ARGS[1] (default 10000) commits to FILES
+     *  source files, each commit editing a few lines of one to three of
+     *  them, and compare its size and checkout times loose, repacked
+     *  whole, and repacked with deltas. A checkout reads the Commit and
+     *  all its Blobs; the latest commit is checked out repeatedly (the
+     *  first time with nothing cached), then random ones. */
+    private static void delta(String[] args) {
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        Path root = tempDir();
+        try {
+            Random random = new Random(36);
+            ObjectStore store = new ObjectStore(root.toFile());
+            ArrayList<ArrayList<String>> files = new ArrayList<>();
+            for (int f = 0; f < FILES; f++) {
+                ArrayList<String> lines = new ArrayList<>();
+                for (int i = 0; i < 300; i++) {
+                    lines.add(line(random));
+                }
+                files.add(lines);
+            }
+            HashMap<String, String> blobs = new HashMap<>();
+            for (int f = 0; f < FILES; f++) {
+                blobs.put("File" + f + ".java", saveFile(store, f, files));
+            }
+            ArrayList<String> commits = new ArrayList<>();
+            String parent = "";
+            long start = System.nanoTime();
+            for (int c = 0; c < count; c++) {
+                for (int e = 1 + random.nextInt(3); e > 0; e--) {
+                    int f = random.nextInt(FILES);
+                    ArrayList<String> lines = files.get(f);
+                    for (int k = 1 + random.nextInt(4); k > 0; k--) {
+                        int at = random.nextInt(lines.size());
+                        switch (random.nextInt(3)) {
+                        case 0:
+                            lines.add(at, line(random));
+                            break;
+                        case 1:
+                            if (lines.size() > 50) {
+                                lines.remove(at);
+                            }
+                            break;
+                        default:
+                            lines.set(at, line(random));
+                        }
+                    }
+                    blobs.put("File" + f + ".java", saveFile(store, f, files));
+                }
+                Commit commit = new Commit("commit " + c, "master", parent,
+                                           new HashMap<>(blobs),
+                                           Integer.toString(c));
+                store.putCommit(commit);
+                commits.add(parent = commit.getSHA());
+            }
+            report("commit loose", count, System.nanoTime() - start);
+            System.out.printf("loose: %,d bytes in %,d blocks of 4K%n",
+                              size(root, false), size(root, true));
+            String head = commits.get(commits.size() - 1);
+            checkouts("loose", store, head, commits, random);
+
+            start = System.nanoTime();
+            store.repack(false);
+            report("repack whole", 1, System.nanoTime() - start);
+            System.out.printf("whole: %,d bytes%n", size(root, false));
+            checkouts("whole", new ObjectStore(root.toFile()), head, commits,
+                      random);
+
+            start = System.nanoTime();
+            store = new ObjectStore(root.toFile());
+            store.repack(true);
+            report("repack deltas", 1, System.nanoTime() - start);
+            System.out.printf("deltas: %,d bytes%n", size(root, false));
+            checkouts("deltas", new ObjectStore(root.toFile()), head,
+                      commits, random);
+        } finally {
+            delete(root);
+        }
+    }
+
+    /** Time staging ARGS[1] (default 100000) files through the index:
+     *  adding them all, adding them all again unchanged, and again after
+     *  changing ARGS[2] (default 10) of them, committing after the first
+     *  and last. Each pass reads the index from
+     *  its file and writes it back, as a command would. */
+    private static void index(String[] args) {
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        int changed = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        Path root = tempDir();
+        try {
+            Random random = new Random(38);
+            File work = root.resolve("work").toFile();
+            File git = root.resolve("git").toFile();
+            git.mkdirs();
+            File indexFile = Utils.join(git, "index");
+            ObjectStore store = new ObjectStore(git);
+            String[] names = new String[count];
+            for (int i = 0; i < count; i++) {
+                names[i] = "dir" + (i % 100) + "/file" + i + ".txt";
+                File f = Utils.join(work, names[i]);
+                f.getParentFile().mkdirs();
+                Utils.writeContents(f, line(random) + line(random));
+            }
+            stage("add new", work, indexFile, store, names);
+            commitIndex(indexFile);
+            stage("add unchanged", work, indexFile, store, names);
+            for (int i = 0; i < changed; i++) {
+                Utils.writeContents(Utils.join(work,
+                                               names[random.nextInt(count)]),
+                                    line(random));
+            }
+            stage("add changed", work, indexFile, store, names);
+            commitIndex(indexFile);
+        } finally {
+            delete(root);
+        }
+    }
+
+    /** Time the scans status makes of a tree of ARGS[1] (default
+     *  100000) tracked files after ARGS[2] (default 10) of them change,
+     *  against hashing every file as a status without the index would. */
+    private static void status(String[] args) {
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        int changed = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        Path root = tempDir();
+        try {
+            Random random = new Random(39);
+            File work = root.resolve("work").toFile();
+            File git = root.resolve("git").toFile();
+            git.mkdirs();
+            File indexFile = Utils.join(git, "index");
+            String[] names = new String[count];
+            for (int i = 0; i < count; i++) {
+                names[i] = "dir" + (i % 100) + "/file" + i + ".txt";
+                File f = Utils.join(work, names[i]);
+                f.getParentFile().mkdirs();
+                Utils.writeContents(f, line(random) + line(random));
+            }
+            stage("add new", work, indexFile, new ObjectStore(git), names);
+            for (int i = 0; i < changed; i++) {
+                Utils.writeContents(Utils.join(work,
+                                               names[random.nextInt(count)]),
+                                    line(random));
+            }
+            Utils.writeContents(Utils.join(work, "untracked.txt"), "new");
+            for (int trial = 0; trial < 3; trial++) {
+                long start = System.nanoTime();
+                Index index = new Index(indexFile);
+                long read = System.nanoTime() - start;
+                Worktree tree = new Worktree(work, index).scan();
+                for (Index.Entry e : tree.refreshed()) {
+                    index.put(e);
+                }
+                index.write();
+                report("status", 1, System.nanoTime() - start);
+                System.out.printf("  index read %.1f ms, %d modified,"
+                                  + " %d untracked, %d refreshed%n",
+                                  read / 1e6, tree.modified().size(),
+                                  tree.untracked().size(),
+                                  tree.refreshed().size());
+            }
+            long start = System.nanoTime();
+            for (String name : names) {
+                ObjectStore.hashFile(name, Utils.join(work, name));
+            }
+            report("hash all", count, System.nanoTime() - start);
+        } finally {
+            delete(root);
+        }
+    }
+
+    /** Time the commit graph on a line of ARGS[1] (default 100000)
+     *  commits: adding each one as commit does (reading the graph, adding
+     *  the commit and writing it), reading the graph, and checking that
+     *  the first commit is an ancestor of the last, and walking the last
+     *  1000 commits, with the graph and by reading Commits. */
+    private static void graph(String[] args) {
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        Path root = tempDir();
+        try {
+            File git = root.toFile();
+            ObjectStore store = new ObjectStore(git, 0);
+            String[] ids = new String[count];
+            String parent = "";
+            long stored = 0, graphed = 0;
+            for (int c = 0; c < count; c++) {
+                String timestamp = ZonedDateTime.now().format(Gitlet._gitTime);
+                HashMap<String, String> blobs = new HashMap<>();
+                blobs.put("file.txt", Utils.sha1("file.txt", "" + c));
+                long start = System.nanoTime();
+                Commit commit = new Commit("commit " + c, "master", parent,
+                                           blobs, timestamp);
+                store.putCommit(commit);
+                long middle = System.nanoTime();
+                CommitGraph graph = new CommitGraph(git);
+                graph.add(commit.getSHA(), parent, null, timestamp, null);
+                graph.write();
+                graphed += System.nanoTime() - middle;
+                stored += middle - start;
+                ids[c] = parent = commit.getSHA();
+            }
+            report("store commit", count, stored);
+            report("graph commit", count, graphed);
+            System.out.printf("  graph %,d bytes, index %,d bytes%n",
+                              Utils.join(git, "commit-graph").length(),
+                              Utils.join(git, "commit-graph.idx").length());
+            for (int trial = 0; trial < 3; trial++) {
+                long start = System.nanoTime();
+                CommitGraph graph = new CommitGraph(git);
+                int first = graph.position(ids[0]);
+                int last = graph.position(ids[count - 1]);
+                long opened = System.nanoTime();
+                boolean ancestor = graph.isAncestor(first, last);
+                long checked = System.nanoTime();
+                int walked = 0;
+                for (int p = last; p != CommitGraph.NONE && walked < 1000;
+                     p = graph.parent(p)) {
+                    graph.id(p);
+                    walked += 1;
+                }
+                long end = System.nanoTime();
+                report("graph read", 1, opened - start);
+                report("graph ancestor", 1, checked - opened);
+                report("graph walk", walked, end - checked);
+                if (!ancestor) {
+                    throw new IllegalStateException("not an ancestor");
+                }
+            }
+            long start = System.nanoTime();
+            String id = ids[count - 1];
+            while (!id.isEmpty() && !id.equals(ids[0])) {
+                id = store.readCommit(id).getParent();
+            }
+            report("Commit ancestor", 1, System.nanoTime() - start);
+            start = System.nanoTime();
+            id = ids[count - 1];
+            for (int walked = 0; walked < 1000; walked++) {
+                id = store.readCommit(id).getParent();
+            }
+            report("Commit walk", 1000, System.nanoTime() - start);
+        } finally {
+            delete(root);
+        }
+    }
+
+    /** Time writing a log entry as commit does once the log holds
+     *  ARGS[1] (default 10000 and 100000) entries, by rewriting the file
+     *  with the entry on top as Gitlet used to and by appending to a
+     *  LogFile, 100 times each, and time reading the LogFile back newest
+     *  first: the first entry, the first 10, all of them, and the first
+     *  made by the time of the middle entry (as log --until does),
+     *  against reading the whole rewritten file as log used to. */
+    private static void log(String[] args) {
+        int[] sizes = args.length > 1
+            ? new int[] {Integer.parseInt(args[1])}
+            : new int[] {10_000, 100_000};
+        Path root = tempDir();
+        try {
+            for (int count : sizes) {
+                System.out.printf("  %,d entries%n", count);
+                StringBuilder oldest = new StringBuilder(), newest =
+                    new StringBuilder();
+                ArrayList<String> entries = new ArrayList<>();
+                for (int c = 0; c < count; c++) {
+                    entries.add(logEntry(c));
+                    oldest.append(entries.get(c));
+                }
+                for (int c = count - 1; c >= 0; c--) {
+                    newest.append(entries.get(c));
+                }
+                File rewritten = root.resolve("rewritten").toFile();
+                Utils.writeContents(rewritten, newest.toString());
+                long start = System.nanoTime();
+                for (int c = count; c < count + 100; c++) {
+                    Utils.writeContents(rewritten, logEntry(c)
+                                        + Utils.readContentsAsString(
+                                            rewritten));
+                }
+                report("rewrite entry", 100, System.nanoTime() - start);
+                LogFile log = new LogFile(root.resolve("appended").toFile());
+                Utils.writeContents(log.file(), oldest.toString());
+                start = System.nanoTime();
+                for (int c = count; c < count + 100; c++) {
+                    log.append(logEntry(c));
+                }
+                report("append entry", 100, System.nanoTime() - start);
+                start = System.nanoTime();
+                String first = log.iterator().next();
+                report("read first", 1, System.nanoTime() - start);
+                start = System.nanoTime();
+                int n = 0;
+                for (String entry : log) {
+                    n += 1;
+                }
+                report("read all", n, System.nanoTime() - start);
+                if (n != count + 100 || !first.equals(logEntry(count + 99))) {
+                    throw new IllegalStateException("log read wrong");
+                }
+                start = System.nanoTime();
+                n = 0;
+                for (String entry : log) {
+                    if (++n == 10) {
+                        break;
+                    }
+                }
+                report("read 10", 10, System.nanoTime() - start);
+                String middle = logEntry(count / 2);
+                start = System.nanoTime();
+                String found = log.until(LogFile.time(middle)).iterator()
+                    .next();
+                report("read until", 1, System.nanoTime() - start);
+                if (!found.equals(middle)) {
+                    throw new IllegalStateException("log until wrong");
+                }
+                start = System.nanoTime();
+                String all = Utils.readContentsAsString(rewritten);
+                all.substring(0, all.indexOf("\n\n===\n") + 2);
+                report("old read first", 1, System.nanoTime() - start);
+            }
+        } finally {
+            delete(root);
+        }
+    }
+
+    /** Return the log entry of made-up commit number N, made N
+     *  minutes after the first. */
+    private static String logEntry(int n) {
+        return "===\ncommit " + Utils.sha1("" + n) + "\nDate: "
+            + ZonedDateTime.parse("Thu Nov 9 20:00:05 2017 -0800",
+                                  Gitlet._gitTime).plusMinutes(n)
+                .format(Gitlet._gitTime)
+            + "\ncommit number " + n + "\n\n";
+    }
+
+    /** Time find on ARGS[1] (default 1000000) commits whose messages
+     *  are made of words from a vocabulary of ARGS[2] (default 5000),
+     *  common ones far more often: building the MessageIndex of them all,
+     *  adding 1000 more one at a time as commit does (reading the index,
+     *  adding a message and writing it), and, with the index just read as
+     *  each command reads it, finding an exact message, one word, a prefix
+     *  and three words. Each is checked against, and timed with, reading
+     *  the map of ID to message that Gitlet used to keep and scanning it. */
+    private static void find(String[] args) {
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        int vocabulary = args.length > 2 ? Integer.parseInt(args[2]) : 5000;
+        Path root = tempDir();
+        try {
+            File git = root.toFile();
+            Random random = new Random(42);
+            String[] words = new String[vocabulary];
+            for (int w = 0; w < vocabulary; w++) {
+                words[w] = Integer.toString(random.nextInt(1 << 20), 36)
+                    + Integer.toString(w, 36);
+            }
+            HashMap<String, String> messages = new HashMap<>();
+            MessageIndex index = new MessageIndex(git);
+            long start = System.nanoTime();
+            for (int c = 0; c < count + 1000; c++) {
+                StringBuilder message = new StringBuilder();
+                for (int w = 3 + random.nextInt(6); w > 0; w--) {
+                    double x = random.nextDouble();
+                    message.append(words[(int) (vocabulary * x * x * x)])
+                        .append(w > 1 ? " " : ".");
+                }
+                messages.put(fakeId(c), message.toString());
+                if (c < count) {
+                    index.add(c, message.toString());
+                    continue;
+                }
+                if (c == count) {
+                    index.write();
+                    report("index build", count, System.nanoTime() - start);
+                    start = System.nanoTime();
+                }
+                index = new MessageIndex(git);
+                index.add(c, message.toString());
+                index.write();
+            }
+            report("index commit", 1000, System.nanoTime() - start);
+            System.out.printf("  messages %,d bytes, index %,d bytes%n",
+                              Utils.join(git, "messages").length(),
+                              Utils.join(git, "messages.idx").length());
+            File meta = Utils.join(git, "metadata");
+            Utils.writeObject(meta, messages);
+            String exact = messages.get(fakeId(count / 2));
+            String rare = words[vocabulary - 1];
+            String prefix = words[vocabulary / 2].substring(0, 2);
+            String[] terms = {words[0], words[1], words[2]};
+            Object[][] queries = {
+                {"exact", new String[] {exact}},
+                {"word", new String[] {rare}},
+                {"prefix", new String[] {prefix + "*"}},
+                {"3 words", terms},
+            };
+            for (Object[] query : queries) {
+                String[] q = (String[]) query[1];
+                start = System.nanoTime();
+                MessageIndex read = new MessageIndex(git);
+                BitSet found = query[0].equals("exact")
+                    ? read.exact(q[0]) : read.search(q);
+                report("index " + query[0], 1, System.nanoTime() - start);
+                start = System.nanoTime();
+                @SuppressWarnings("unchecked")
+                HashMap<String, String> map =
+                    Utils.readObject(meta, HashMap.class);
+                int matches = 0;
+                for (String message : map.values()) {
+                    if (query[0].equals("exact") ? message.equals(q[0])
+                        : matches(message, q)) {
+                        matches += 1;
+                    }
+                }
+                report("map " + query[0], 1, System.nanoTime() - start);
+                System.out.printf("  %,d found%n", matches);
+                if (found.cardinality() != matches) {
+                    throw new IllegalStateException("find wrong");
+                }
+            }
+        } finally {
+            delete(root);
+        }
+    }
+
+    /** Return true iff MESSAGE contains every one of TERMS, as
+     *  MessageIndex.search finds them. */
+    private static boolean matches(String message, String[] terms) {
+        List<String> words = MessageIndex.words(message);
+        for (String term : terms) {
+            boolean found = false;
+            for (String word : words) {
+                if (term.endsWith("*")
+                    ? word.startsWith(term.substring(0, term.length() - 1))
+                    : word.equals(term)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Compare resolving abbreviated IDs of ARGS[1] (default 1000000)
+     *  commits with the CommitGraph against the map of 7-digit prefix to
+     *  ID that Gitlet used to keep: heap used, time to read each as a
+     *  command does, and time to resolve 10000 prefixes of 4 to 12 digits
+     *  (the map takes only 7). Also counts the prefixes the map lost to
+     *  others. */
+    private static void abbrev(String[] args) {
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        Path root = tempDir();
+        try {
+            File git = root.toFile();
+            CommitGraph graph = new CommitGraph(git);
+            String timestamp = ZonedDateTime.now().format(Gitlet._gitTime);
+            String[] ids = new String[count];
+            HashMap<String, String> map = new HashMap<>();
+            for (int c = 0; c < count; c++) {
+                ids[c] = Utils.sha1("commit " + c);
+                graph.add(ids[c], c == 0 ? null : ids[c - 1], null,
+                          timestamp, null);
+                map.put(ids[c].substring(0, 7), ids[c]);
+            }
+            graph.write();
+            System.out.printf("  %,d of %,d 7-digit prefixes lost%n",
+                              count - map.size(), count);
+            File meta = Utils.join(git, "metadata");
+            Utils.writeObject(meta, map);
+            map = null;
+            Random random = new Random(42);
+            String[] prefixes = new String[10_000];
+            for (int i = 0; i < prefixes.length; i++) {
+                prefixes[i] = ids[random.nextInt(count)]
+                    .substring(0, 4 + random.nextInt(9));
+            }
+            for (int trial = 0; trial < 3; trial++) {
+                long before = heapUsed();
+                long start = System.nanoTime();
+                CommitGraph read = new CommitGraph(git);
+                report("graph read", 1, System.nanoTime() - start);
+                System.out.printf("  graph heap %,d bytes%n",
+                                  heapUsed() - before);
+                start = System.nanoTime();
+                int ambiguous = 0;
+                for (String prefix : prefixes) {
+                    List<String> found = read.resolve(prefix);
+                    if (found.isEmpty()) {
+                        throw new IllegalStateException("not found");
+                    }
+                    ambiguous += found.size() - 1;
+                }
+                report("graph resolve", prefixes.length,
+                       System.nanoTime() - start);
+                System.out.printf("  %,d ambiguous%n", ambiguous);
+                before = heapUsed();
+                start = System.nanoTime();
+                @SuppressWarnings("unchecked")
+                HashMap<String, String> old =
+                    Utils.readObject(meta, HashMap.class);
+                report("map read", 1, System.nanoTime() - start);
+                System.out.printf("  map heap %,d bytes%n",
+                                  heapUsed() - before);
+                start = System.nanoTime();
+                for (String prefix : prefixes) {
+                    old.get(prefix.length() == 7 ? prefix
+                            : prefix.substring(0, Math.min(7,
+                                                           prefix.length())));
+                }
+                report("map get", prefixes.length, System.nanoTime() - start);
+            }
+        } finally {
+            delete(root);
+        }
+    }
+
+    /** Return the bytes of heap in use after a garbage collection. */
+    private static long heapUsed() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /** Time Gitlet commands, each in its own JVM, in a repo grown to
+     *  ARGS[1...] (default 1000, 10000, 100000 and 1000000) commits, whose
+     *  commit graph and messages are filled in directly: "status", which
+     *  reads only the index, and "find -w" of a word, which reads the
+     *  messages too. Against each is the time to read and write back the
+     *  serialized metadata every command used to load and save, made of
+     *  the same number of IDs and messages. */
+    private static void startup(String[] args) {
+        int[] sizes = new int[Math.max(1, args.length - 1)];
+        if (args.length > 1) {
+            for (int i = 1; i < args.length; i++) {
+                sizes[i - 1] = Integer.parseInt(args[i]);
+            }
+        } else {
+            sizes = new int[] {1000, 10_000, 100_000, 1_000_000};
+        }
+        Path root = tempDir();
+        try {
+            File work = root.toFile();
+            File git = Utils.join(work, ".gitlet");
+            gitlet(work, null, "init");
+            Utils.writeContents(Utils.join(work, "a.txt"), "a");
+            gitlet(work, null, "add", "a.txt");
+            String timestamp = ZonedDateTime.now().format(Gitlet._gitTime);
+            CommitGraph graph = new CommitGraph(git);
+            String parent = graph.id(graph.size() - 1);
+            ArrayList<String> removals = new ArrayList<>();
+            HashMap<String, String> messages = new HashMap<>(),
+                abbreviated = new HashMap<>();
+            for (int size : sizes) {
+                graph = new CommitGraph(git);
+                MessageIndex index = new MessageIndex(git);
+                for (int c = graph.size(); c < size; c++) {
+                    String id = Utils.sha1("commit " + c);
+                    String message = "commit number " + c;
+                    index.add(graph.add(id, parent, null, timestamp, null),
+                              message);
+                    messages.put(id, message);
+                    abbreviated.put(id.substring(0, 7), id);
+                    parent = id;
+                }
+                graph.write();
+                index.write();
+                System.out.printf("  %,d commits%n", graph.size());
+                File meta = root.resolve("metadata").toFile();
+                Object[] metadata = {removals, messages, abbreviated};
+                Utils.writeObject(meta, metadata);
+                System.out.printf("  old metadata %,d bytes%n",
+                                  meta.length());
+                for (int trial = 0; trial < 3; trial++) {
+                    long start = System.nanoTime();
+                    Utils.writeObject(meta, Utils.readObject(meta,
+                                                             Object[].class));
+                    report("old metadata", 1, System.nanoTime() - start);
+                    start = System.nanoTime();
+                    gitlet(work, null, "status");
+                    report("status", 1, System.nanoTime() - start);
+                    start = System.nanoTime();
+                    gitlet(work, null, "find", "-w", "" + (size - 1));
+                    report("find -w", 1, System.nanoTime() - start);
+                }
+                meta.delete();
+            }
+        } finally {
+            delete(root);
+        }
+    }
+
+    /** Compare the binary forms of Commits and Blobs (Commit.encode and
+     *  Blob.encode) with Java serialization, as they were stored before:
+     *  their sizes, raw and compressed as the store keeps them, and the
+     *  time to encode and decode them. Uses ARGS[1] (default 10000)
+     *  Commits of 20 files and of 1000, and as many Blobs of 1K and of
+     *  64K of source-like text. */
+    private static void codec(String[] args) {
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        Random random = new Random(48);
+        String timestamp = ZonedDateTime.now().format(Gitlet._gitTime);
+        for (int files : new int[] {20, 1000}) {
+            Object[] commits = new Object[Math.max(1, count * 20 / files)];
+            String parent = "";
+            for (int c = 0; c < commits.length; c++) {
+                HashMap<String, String> blobs = new HashMap<>();
+                for (int f = 0; f < files; f++) {
+                    blobs.put("src/dir" + f % 10 + "/File" + f + ".java",
+                              Utils.sha1("" + c + "-" + f));
+                }
+                Commit commit = new Commit("commit number " + c, "master",
+                                           parent, blobs, timestamp);
+                commits[c] = commit;
+                parent = commit.getSHA();
+            }
+            System.out.printf("  Commits of %,d files%n", files);
+            codec(commits, o -> ((Commit) o).encode(),
+                  (o, b) -> Commit.decode(((Commit) o).getSHA(), b));
+        }
+        for (int size : new int[] {1 << 10, 1 << 16}) {
+            Object[] blobs = new Object[Math.max(1, count * 1024 / size)];
+            for (int b = 0; b < blobs.length; b++) {
+                StringBuilder text = new StringBuilder();
+                while (text.length() < size) {
+                    text.append(line(random));
+                }
+                blobs[b] = new Blob("File" + b + ".java", text.substring(0,
+                    size).getBytes(StandardCharsets.UTF_8));
+            }
+            System.out.printf("  Blobs of %,d bytes%n", size);
+            codec(blobs, o -> ((Blob) o).encode(),
+                  (o, b) -> Blob.decode(((Blob) o).getSHA(), b));
+        }
+    }
+
+    /** Time reading Commits through the store's ObjectCache, in a store
+     *  of ARGS[1] (default 2000) Commits of ARGS[2] (default 100) files
+     *  each, and report its counts: a command that loads the head Commit
+     *  5 times, as checkout and reset do, with no cache and with one;
+     *  walking the whole history twice with a cache that holds it; and
+     *  walking it twice with one that holds a tenth of it, which evicts
+     *  and so reads everything again, in bounded memory. The heap each
+     *  cache holds is measured, against its estimate. */
+    private static void cache(String[] args) {
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        int files = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+        Path root = tempDir();
+        try {
+            File git = root.toFile();
+            ObjectStore store = new ObjectStore(git, 0);
+            String timestamp = ZonedDateTime.now().format(Gitlet._gitTime);
+            HashMap<String, String> blobs = new HashMap<>();
+            for (int f = 0; f < files; f++) {
+                blobs.put("src/dir" + f % 10 + "/File" + f + ".java",
+                          Utils.sha1("0-" + f));
+            }
+            String head = "";
+            long retained = 0;
+            for (int c = 0; c < count; c++) {
+                blobs.put("src/dir0/File0.java", Utils.sha1("" + c));
+                Commit commit = new Commit("commit number " + c, "master",
+                                           head, new HashMap<>(blobs),
+                                           timestamp);
+                store.putCommit(commit);
+                retained += commit.retainedSize();
+                head = commit.getSHA();
+            }
+            System.out.printf("  %,d commits, %,d bytes each in memory%n",
+                              count, retained / count);
+            for (long bound : new long[] {0, ObjectStore.CACHE_BYTES}) {
+                int trials = 1000;
+                long start = System.nanoTime();
+                for (int i = 0; i < trials; i++) {
+                    ObjectStore command = new ObjectStore(git, bound);
+                    for (int load = 0; load < 5; load++) {
+                        command.readCommit(head);
+                    }
+                }
+                report(bound == 0 ? "head, no cache" : "head, cache",
+                       trials, System.nanoTime() - start);
+            }
+            for (long bound : new long[] {2 * retained, retained / 10}) {
+                long heap = heapUsed();
+                ObjectStore walker = new ObjectStore(git, bound);
+                for (int walk = 0; walk < 2; walk++) {
+                    long start = System.nanoTime();
+                    for (String id = head; !id.isEmpty();) {
+                        id = walker.readCommit(id).getParent();
+                    }
+                    report(String.format("walk %d, %,dK", walk + 1,
+                                         bound >> 10),
+                           count, System.nanoTime() - start);
+                }
+                System.out.printf("  %s; heap %,d bytes%n", walker.cache(),
+                                  heapUsed() - heap);
+            }
+        } finally {
+            delete(root);
+        }
+    }
+
+    /** Compare Commits holding a flat map of all their files with Commits
+     *  holding a root Tree, in a repo of ARGS[1] (default 100000) files,
+     *  100 to a directory two deep, and ARGS[2] (default 50) commits that
+     *  each change ARGS[3] (default 1) files: the time of each commit, as
+     *  a command makes it with a fresh store (reading the parent, making
+     *  the new Commit and storing it, but not the files), and the size of
+     *  the objects written. */
+    private static void tree(String[] args) {
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        int commits = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+        int changed = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+        Path root = tempDir();
+        try {
+            Random random = new Random(50);
+            String[] paths = new String[count];
+            HashMap<String, String> files = new HashMap<>();
+            for (int f = 0; f < count; f++) {
+                paths[f] = "src/d" + f / 1000 + "/e" + f / 100 % 10
+                    + "/File" + f + ".java";
+                files.put(paths[f], Utils.sha1("0-" + f));
+            }
+            String timestamp = ZonedDateTime.now().format(Gitlet._gitTime);
+            File flatGit = root.resolve("flat").toFile(),
+                treeGit = root.resolve("tree").toFile();
+
+            long start = System.nanoTime();
+            Commit flat = new Commit("commit 0", "master", "", files,
+                                     timestamp);
+            new ObjectStore(flatGit).putCommit(flat);
+            report("flat first", 1, System.nanoTime() - start);
+            start = System.nanoTime();
+            ObjectStore store = new ObjectStore(treeGit);
+            Commit tree = new Commit("commit 0", "master", "", null,
+                                     Tree.update(store, null,
+                                                 new TreeMap<>(files)),
+                                     timestamp);
+            store.putCommit(tree);
+            report("tree first", 1, System.nanoTime() - start);
+            long firstFlat = size(flatGit.toPath(), false),
+                firstTree = size(treeGit.toPath(), false);
+
+            long flatTime = 0, treeTime = 0;
+            String flatHead = flat.getSHA(), treeHead = tree.getSHA();
+            for (int c = 1; c <= commits; c++) {
+                TreeMap<String, String> changes = new TreeMap<>();
+                for (int k = 0; k < changed; k++) {
+                    changes.put(paths[random.nextInt(count)],
+                                Utils.sha1(c + "-" + k));
+                }
+                start = System.nanoTime();
+                store = new ObjectStore(flatGit);
+                HashMap<String, String> blobs =
+                    new HashMap<>(store.readCommit(flatHead).getBlobs());
+                blobs.putAll(changes);
+                flat = new Commit("commit " + c, "master", flatHead, blobs,
+                                  timestamp);
+                store.putCommit(flat);
+                flatHead = flat.getSHA();
+                long middle = System.nanoTime();
+                store = new ObjectStore(treeGit);
+                Commit parent = store.readCommit(treeHead);
+                tree = new Commit("commit " + c, "master", treeHead, null,
+                                  Tree.update(store, parent.getTree(),
+                                              changes),
+                                  timestamp);
+                store.putCommit(tree);
+                treeHead = tree.getSHA();
+                treeTime += System.nanoTime() - middle;
+                flatTime += middle - start;
+            }
+            report("flat commit", commits, flatTime);
+            report("tree commit", commits, treeTime);
+            System.out.printf("  first commit: flat %,d bytes, tree %,d%n",
+                              firstFlat, firstTree);
+            System.out.printf("  each commit after: flat %,d bytes, tree"
+                              + " %,d%n",
+                              (size(flatGit.toPath(), false) - firstFlat)
+                              / commits,
+                              (size(treeGit.toPath(), false) - firstTree)
+                              / commits);
+            store = new ObjectStore(treeGit);
+            start = System.nanoTime();
+            HashMap<String, String> read =
+                Tree.files(store, store.readCommit(treeHead).getTree());
+            report("tree read all", 1, System.nanoTime() - start);
+            start = System.nanoTime();
+            new ObjectStore(flatGit).readCommit(flatHead).getBlobs();
+            report("flat read all", 1, System.nanoTime() - start);
+            if (!read.equals(new ObjectStore(flatGit).readCommit(flatHead)
+                             .getBlobs())) {
+                throw new IllegalStateException("trees differ from map");
+            }
+        } finally {
+            delete(root);
+        }
+    }
+
+    /** Compare ENCODE and DECODE with Java serialization of OBJS. */
+    private static void codec(Object[] objs,
+                              Function<Object, ByteBuffer> encode,
+                              BiFunction<Object, ByteBuffer, Object> decode) {
+        byte[][] serialized = new byte[objs.length][];
+        ByteBuffer[] encoded = new ByteBuffer[objs.length];
+        for (int trial = 0; trial < 3; trial++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < objs.length; i++) {
+                serialized[i] = Utils.serialize((Serializable) objs[i]);
+            }
+            report("serialize", objs.length, System.nanoTime() - start);
+            start = System.nanoTime();
+            for (int i = 0; i < objs.length; i++) {
+                encoded[i] = encode.apply(objs[i]);
+            }
+            report("encode", objs.length, System.nanoTime() - start);
+            start = System.nanoTime();
+            for (byte[] data : serialized) {
+                try (ObjectInputStream in = new ObjectInputStream(
+                         new ByteArrayInputStream(data))) {
+                    in.readObject();
+                } catch (IOException | ClassNotFoundException excp) {
+                    throw new IllegalStateException(excp);
+                }
+            }
+            report("deserialize", objs.length, System.nanoTime() - start);
+            start = System.nanoTime();
+            for (int i = 0; i < objs.length; i++) {
+                decode.apply(objs[i], encoded[i].duplicate());
+            }
+            report("decode", objs.length, System.nanoTime() - start);
+        }
+        long javaSize = 0, binarySize = 0, javaStored = 0, binaryStored = 0;
+        for (int i = 0; i < objs.length; i++) {
+            javaSize += serialized[i].length;
+            binarySize += encoded[i].remaining();
+            javaStored += ObjectStore.compress(serialized[i]).length;
+            binaryStored += ObjectStore.compress(encoded[i].array()).length;
+        }
+        System.out.printf("  java %,d bytes each (%,d stored), binary %,d"
+                          + " (%,d stored)%n", javaSize / objs.length,
+                          javaStored / objs.length,
+                          binarySize / objs.length,
+                          binaryStored / objs.length);
+    }
+
+    /** Time finding split points in a commit graph of ARGS[1] (default
+     *  100000) commits on two branches that are criss-cross merged (each
+     *  into the other, from the same two heads) every ARGS[2] (default
+     *  20) commits: between the two heads, and between ARGS[3] (default
+     *  1000) random pairs of commits. Each is checked against, and timed
+     *  with, marking every ancestor of both commits. */
+    private static void mergeBase(String[] args) {
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        int every = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        int pairs = args.length > 3 ? Integer.parseInt(args[3]) : 1000;
+        Path root = tempDir();
+        try {
+            Random random = new Random(42);
+            CommitGraph graph = new CommitGraph(root.toFile());
+            String timestamp = ZonedDateTime.now().format(Gitlet._gitTime);
+            String a = graph.id(graph.add(fakeId(0), null, null, timestamp,
+                                          null));
+            String b = a;
+            int merges = 0;
+            for (int c = 1; graph.size() < count; c++) {
+                if (c % every == 0) {
+                    String a2 = fakeId(graph.size());
+                    graph.add(a2, a, b, timestamp, null);
+                    String b2 = fakeId(graph.size());
+                    graph.add(b2, b, a, timestamp, null);
+                    a = a2;
+                    b = b2;
+                    merges += 2;
+                } else if (random.nextBoolean()) {
+                    a = graph.id(graph.add(fakeId(graph.size()), a, null,
+                                           timestamp, null));
+                } else {
+                    b = graph.id(graph.add(fakeId(graph.size()), b, null,
+                                           timestamp, null));
+                }
+            }
+            graph.write();
+            graph = new CommitGraph(root.toFile());
+            System.out.printf("  %,d commits, %,d merges%n", graph.size(),
+                              merges);
+            int[] left = new int[pairs + 1], right = new int[pairs + 1];
+            left[0] = graph.position(a);
+            right[0] = graph.position(b);
+            for (int k = 1; k <= pairs; k++) {
+                left[k] = random.nextInt(graph.size());
+                right[k] = random.nextInt(graph.size());
+            }
+            int[] bases = new int[pairs + 1];
+            for (int trial = 0; trial < 3; trial++) {
+                long start = System.nanoTime();
+                bases[0] = graph.mergeBase(left[0], right[0]);
+                long middle = System.nanoTime();
+                for (int k = 1; k <= pairs; k++) {
+                    bases[k] = graph.mergeBase(left[k], right[k]);
+                }
+                long end = System.nanoTime();
+                report("base of heads", 1, middle - start);
+                report("base of random", pairs, end - middle);
+            }
+            long start = System.nanoTime();
+            int best = markAll(graph, left[0], right[0]);
+            long middle = System.nanoTime();
+            for (int k = 1; k <= pairs; k++) {
+                int g = markAll(graph, left[k], right[k]);
+                if (g != graph.generation(bases[k])) {
+                    throw new IllegalStateException("wrong split point");
+                }
+            }
+            long end = System.nanoTime();
+            if (best != graph.generation(bases[0])) {
+                throw new IllegalStateException("wrong split point");
+            }
+            report("mark all heads", 1, middle - start);
+            report("mark all random", pairs, end - middle);
+        } finally {
+            delete(root);
+        }
+    }
+
+    /** Return the greatest generation of a common ancestor of the
+     *  commits at positions A and B in GRAPH, found by marking all the
+     *  ancestors of each. */
+    private static int markAll(CommitGraph graph, int a, int b) {
+        BitSet[] marks = new BitSet[2];
+        int[] starts = {a, b};
+        for (int side = 0; side < 2; side++) {
+            BitSet seen = marks[side] = new BitSet(graph.size());
+            ArrayDeque<Integer> queue = new ArrayDeque<>();
+            queue.add(starts[side]);
+            seen.set(starts[side]);
+            while (!queue.isEmpty()) {
+                int p = queue.poll();
+                for (int q : new int[] {graph.parent(p), graph.parent2(p)}) {
+                    if (q != CommitGraph.NONE && !seen.get(q)) {
+                        seen.set(q);
+                        queue.add(q);
+                    }
+                }
+            }
+        }
+        marks[0].and(marks[1]);
+        int best = 0;
+        for (int p = marks[0].nextSetBit(0); p >= 0;
+             p = marks[0].nextSetBit(p + 1)) {
+            best = Math.max(best, graph.generation(p));
+        }
+        return best;
+    }
+
+    /** Return a made-up SHA ID for commit number N. */
+    private static String fakeId(int n) {
+        return String.format("%040x", (long) n * 0x9e3779b97f4a7c15L
+                             & Long.MAX_VALUE);
+    }
+
+    /** Time adding a tree of ARGS[1] (default 50000) files with real
+     *  Gitlet commands, each in its own JVM: one "add ." of them all with
+     *  1 thread and with the default pool, then re-adding them unchanged,
+     *  against one launch of "add FILE" per file, timed for ARGS[2]
+     *  (default 100) of them and scaled up. */
+    private static void add(String[] args) {
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 50_000;
+        int launches = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+        Path root = tempDir();
+        try {
+            Random random = new Random(40);
+            File work = root.resolve("work").toFile();
+            for (int i = 0; i < count; i++) {
+                File f = Utils.join(work, "dir" + (i % 100), "file" + i
+                                    + ".txt");
+                f.getParentFile().mkdirs();
+                Utils.writeContents(f, line(random) + line(random));
+            }
+            for (String threads : new String[] {"1", null}) {
+                reinit(work);
+                long start = System.nanoTime();
+                gitlet(work, threads, "add", ".");
+                report("add . x" + (threads == null
+                                     ? Runtime.getRuntime()
+                                         .availableProcessors()
+                                     : threads), count,
+                       System.nanoTime() - start);
+            }
+            long start = System.nanoTime();
+            gitlet(work, null, "add", ".");
+            report("add . unchanged", count, System.nanoTime() - start);
+            reinit(work);
+            start = System.nanoTime();
+            for (int i = 0; i < launches; i++) {
+                gitlet(work, null, "add", "dir" + (i % 100) + "/file" + i
+                       + ".txt");
+            }
+            long nanos = System.nanoTime() - start;
+            report("add FILE each", launches, nanos);
+            System.out.printf("  %,d files one at a time: about %.0f s%n",
+                              count, nanos / 1e9 * count / launches);
+        } finally {
+            delete(root);
+        }
+    }
+
+    /** Replace any Gitlet repo in DIR with a new, empty one. */
+    private static void reinit(File dir) {
+        Path git = dir.toPath().resolve(".gitlet");
+        if (Files.exists(git)) {
+            delete(git);
+        }
+        gitlet(dir, null, "init");
+    }
+
+    /** Run java gitlet.Main ARGS in DIR, with the property gitlet.threads
+     *  set to THREADS unless it is null, failing if it fails. */
+    private static void gitlet(File dir, String threads, String... args) {
+        ArrayList<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java")
+                    .toString());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        if (threads != null) {
+            command.add("-Dgitlet.threads=" + threads);
+        }
+        command.add("gitlet.Main");
+        command.addAll(List.of(args));
+        try {
+            Process p = new ProcessBuilder(command).directory(dir)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.INHERIT).start();
+            if (p.waitFor() != 0) {
+                throw new IllegalStateException("gitlet failed: " + command);
+            }
+        } catch (IOException | InterruptedException excp) {
+            throw new IllegalStateException(excp);
+        }
+    }
+
+    /** Unstage the staged entries of the index in INDEXFILE, as commit
+     *  does, and report the time. */
+    private static void commitIndex(File indexFile) {
+        long start = System.nanoTime();
+        Index index = new Index(indexFile);
+        int staged = 0;
+        for (Index.Entry e : index.staged()) {
+            index.put(new Index.Entry(e.path(), e.id(), e.stat(), false));
+            staged += 1;
+        }
+        index.write();
+        report("commit", 1, System.nanoTime() - start);
+        System.out.printf("  %,d staged%n", staged);
+    }
+
+    /** Add the files NAMES in WORK to STORE and the index in INDEXFILE
+     *  as Gitlet.add does, reporting the time as WHAT and how many files
+     *  were hashed. */
+    private static void stage(String what, File work, File indexFile,
+                              ObjectStore store, String[] names) {
+        long start = System.nanoTime();
+        Index index = new Index(indexFile);
+        int hashed = 0;
+        for (String name : names) {
+            File f = Utils.join(work, name);
+            Index.Entry entry = index.get(name);
+            Index.Stat stat = Index.Stat.of(f);
+            String sha;
+            if (index.unchanged(entry, stat)) {
+                sha = entry.id();
+            } else {
+                sha = store.putFile(name, f);
+                hashed += 1;
+            }
+            boolean staged = entry == null || !sha.equals(entry.id())
+                || entry.staged();
+            index.put(new Index.Entry(name, sha, stat, staged));
+        }
+        index.write();
+        report(what, names.length, System.nanoTime() - start);
+        System.out.printf("  %,d hashed, index %,d bytes%n", hashed,
+                          indexFile.length());
+    }
+
+    /** Return a line of source-like text drawn from RANDOM. */
+    private static String line(Random random) {
+        StringBuilder result = new StringBuilder("        ");
+        for (int w = 1 + random.nextInt(8); w > 0; w--) {
+            result.append(Integer.toString(random.nextInt(1 << 16), 36))
+                .append(' ');
+        }
+        return result.append(";\n").toString();
+    }
+
+    /** Store in STORE a Blob of file number F of FILES and return its
+     *  SHA ID. */
+    private static String saveFile(ObjectStore store, int f,
+                                   List<ArrayList<String>> files) {
+        Blob blob = new Blob("File" + f + ".java",
+                             String.join("", files.get(f))
+                             .getBytes(StandardCharsets.UTF_8));
+        store.putBlob(blob);
+        return blob.getSHA();
+    }
+
+    /** Print the times to check out HEAD from STORE, in a run labelled
+     *  WHAT: the first time, then again, then COMMITS chosen by
+     *  RANDOM. Each Blob read is checked against its SHA ID. */
+    private static void checkouts(String what, ObjectStore store,
+                                  String head, List<String> commits,
+                                  Random random) {
+        report("first " + what, 1, checkout(store, head));
+        int trials = 200;
+        long time = 0;
+        for (int i = 0; i < trials; i++) {
+            time += checkout(store, head);
+        }
+        report("head " + what, trials, time);
+        time = 0;
+        for (int i = 0; i < trials; i++) {
+            time += checkout(store,
+                             commits.get(random.nextInt(commits.size())));
+        }
+        report("random " + what, trials, time);
+    }
+
+    /** Read commit ID and all its Blobs from STORE, and return the
+     *  nanoseconds taken. */
+    private static long checkout(ObjectStore store, String id) {
+        long start = System.nanoTime();
+        Commit commit = store.readCommit(id);
+        for (String sha : commit.getBlobs().values()) {
+            Blob blob = store.readBlob(sha);
+            if (!Utils.sha1(blob.getName(), blob.getContents())
+                .equals(sha)) {
+                throw new IllegalStateException("bad blob " + sha);
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    /** Number of files in the history of the delta benchmark. */
+    private static final int FILES = 20;
+
+    /** Return the contents of small Blob number N, drawn from RANDOM. */
+    private static byte[] payload(Random random, int n) {
+        StringBuilder text = new StringBuilder("object ").append(n);
+        int length = 50 + random.nextInt(200);
+        while (text.length() < length) {
+            text.append(' ').append(Integer.toString(random.nextInt(), 36));
+        }
+        return text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** Read TRIALS objects with IDS chosen by RANDOM from STORE, and
+     *  return the nanoseconds taken. */
+    private static long lookups(ObjectStore store, String[] ids,
+                                Random random, int trials) {
+        long start = System.nanoTime();
+        for (int i = 0; i < trials; i++) {
+            store.read(ObjectStore.BLOB, ids[random.nextInt(ids.length)]);
+        }
+        return System.nanoTime() - start;
+    }
+
+    /** Write dirty pages back and drop the page cache, returning false
+     *  if that is not permitted. */
+    private static boolean dropCaches() {
+        try {
+            new ProcessBuilder("sync").inheritIO().start().waitFor();
+            Files.writeString(Path.of("/proc/sys/vm/drop_caches"), "1");
+            return true;
+        } catch (IOException | InterruptedException excp) {
+            return false;
+        }
+    }
+
+    /** Return a Commit numbered N of 10 new Blobs made from WORDS drawn
+     *  from RANDOM, followed by the Blobs. */
+    private static Object[] commit(Random random, List<String> words,
+                                   int n) {
+        Object[] result = new Object[11];
+        HashMap<String, String> blobs = new HashMap<>();
+        for (int i = 1; i < result.length; i++) {
+            StringBuilder text = new StringBuilder();
+            while (text.length() < 2000) {
+                text.append(words.get(random.nextInt(words.size())))
+                    .append(random.nextInt(8) == 0 ? ";\n" : " ");
+            }
+            Blob blob = new Blob("file" + n + "-" + i,
+                                 text.toString()
+                                 .getBytes(StandardCharsets.UTF_8));
+            blobs.put(blob.getName(), blob.getSHA());
+            result[i] = blob;
+        }
+        result[0] = new Commit("commit " + n, "master", "", blobs,
+                               Integer.toString(n));
+        return result;
+    }
+
+    /** Save COMMIT and its Blobs as serialized files in directory DIR,
+     *  as Gitlet did before the ObjectStore. */
+    private static void saveFlat(File dir, Object[] commit) {
+        Commit c = (Commit) commit[0];
+        Utils.writeObject(Utils.join(dir, c.getSHA()), c);
+        for (int i = 1; i < commit.length; i++) {
+            Blob b = (Blob) commit[i];
+            Utils.writeObject(Utils.join(dir, b.getSHA()), b);
+        }
+    }
+
+    /** Save COMMIT and its Blobs in STORE. */
+    private static void saveStore(ObjectStore store, Object[] commit) {
+        Commit c = (Commit) commit[0];
+        store.putCommit(c);
+        for (int i = 1; i < commit.length; i++) {
+            Blob b = (Blob) commit[i];
+            store.putBlob(b);
+        }
+    }
+
+    /** Return the total size of the files under ROOT in bytes, or if
+     *  BLOCKS, in 4K blocks. */
+    private static long size(Path root, boolean blocks) {
+        try (Stream<Path> paths = Files.walk(root)) {
+            return paths.filter(Files::isRegularFile)
+                .mapToLong(p -> {
+                    long n = p.toFile().length();
+                    return blocks ? (n + 4095) / 4096 : n;
+                }).sum();
+        } catch (IOException excp) {
+            throw new IllegalStateException(excp);
+        }
+    }
+
+    /** Return a new temporary directory. */
+    static Path tempDir() {
+        try {
+            return Files.createTempDirectory("gitlet-bench");
+        } catch (IOException excp) {
+            throw new IllegalStateException(excp);
+        }
+    }
+
+    /** Delete ROOT and everything under it. */
+    static void delete(Path root) {
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder())
+                .forEach(p -> p.toFile().delete());
+        } catch (IOException excp) {
+            throw new IllegalStateException(excp);
+        }
+    }
+
+    /** Print the rate of N operations named WHAT taking NANOS
+     *  nanoseconds. */
+    static void report(String what, long n, long nanos) {
+        System.out.printf("%-16s %10d ops %10.2f ms %10.2f us/op%n",
+                          what, n, nanos / 1e6, nanos / 1e3 / n);
+    }
+}
@@ -2,24 +2,90 @@ package gitlet;
 
 import java.io.Serializable;
 import java.io.File;
+import java.nio.ByteBuffer;
 
 /** Generic serialized file format with metadata for Gitlet.
+ *
+ *  Blobs are stored in the binary form of encode(); those stored before
+ *  it, as serialized Java objects, are still read (see
+ *  ObjectStore.readBlob).
  *
  *  @author Thomas Hsiung
  */
 public class Blob implements Serializable {
 
+    /** Kept from before the object store, so old Blobs still load. */
+    private static final long serialVersionUID = -7326397791974613120L;
+
+    /** Version of the binary form. */
+    static final int VERSION = 1;
+
     /** Current Working Directory. */
-    private final File _cwd = new File(".");
+    private static final File CWD = new File(".");
 
     /** New Blobs from FILENAME. */
     public Blob(String filename) {
-        File newfile = Utils.join(_cwd, filename);
+        File newfile = Utils.join(CWD, filename);
         _name = filename;
         _contents = Utils.readContents(newfile);
         _sha = Utils.sha1(_name, _contents);
     }
 
+    /** New Blob named FILENAME holding CONTENTS. */
+    public Blob(String filename, byte[] contents) {
+        _name = filename;
+        _contents = contents;
+        _sha = Utils.sha1(_name, _contents);
+    }
+
+    /** A Blob with SHA ID read back from the store, named FILENAME and
+     *  holding CONTENTS. */
+    private Blob(String sha, String filename, byte[] contents) {
+        _sha = sha;
+        _name = filename;
+        _contents = contents;
+    }
+
+    /** Returns the stored Blob with SHA ID. */
+    public static Blob load(String sha) {
+        return ObjectStore.repo().readBlob(sha);
+    }
+
+    /** Saves Blob to the object store, in its binary form, named by its
+     *  SHA ID. */
+    public void saveBlob() {
+        ObjectStore.repo().putBlob(this);
+    }
+
+    /** Returns my binary form, ready to read: the VERSION byte, my name
+     *  as a string, and the varint length of my contents followed by
+     *  them (see Codec). */
+    ByteBuffer encode() {
+        byte[] name = Codec.utf8(_name);
+        ByteBuffer out = ByteBuffer.allocate(1 + Codec.stringSize(name)
+                                             + Codec.varintSize(
+                                                 _contents.length)
+                                             + _contents.length);
+        out.put((byte) VERSION);
+        Codec.putString(out, name);
+        Codec.putVarint(out, _contents.length);
+        out.put(_contents);
+        return out.flip();
+    }
+
+    /** Returns the Blob with SHA ID whose binary form (see encode) is
+     *  read from IN. */
+    static Blob decode(String sha, ByteBuffer in) {
+        int version = in.get();
+        if (version != VERSION) {
+            throw new GitletException("Unknown blob version " + version);
+        }
+        String name = Codec.getString(in);
+        byte[] contents = new byte[Codec.getVarint(in)];
+        in.get(contents);
+        return new Blob(sha, name, contents);
+    }
+
     /** Returns file contents as byte[]. */
     public byte[] getContents() {
         return _contents;
@@ -0,0 +1,133 @@
+package gitlet;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/** The pieces of the binary forms of Commits and Blobs (see
+ *  Commit.encode and Blob.encode): varints, of 7 bits to a byte, low
+ *  bits first, with the top bit set on all but the last byte; strings,
+ *  as the varint length of their UTF-8 bytes followed by the bytes; and
+ *  SHA IDs, as their 20 raw bytes.
+ *
+ *  @author Thomas Hsiung
+ */
+final class Codec {
+
+    /** Values of the hex digits, by character; -1 for others. */
+    private static final byte[] DIGITS = new byte['g'];
+
+    static {
+        Arrays.fill(DIGITS, (byte) -1);
+        for (int c = '0'; c <= '9'; c++) {
+            DIGITS[c] = (byte) (c - '0');
+        }
+        for (int c = 'a'; c <= 'f'; c++) {
+            DIGITS[c] = (byte) (c - 'a' + 10);
+            DIGITS[c - 'a' + 'A'] = (byte) (c - 'a' + 10);
+        }
+    }
+
+    /** Not instantiated. */
+    private Codec() {
+    }
+
+    /** Returns the number of bytes in the varint form of VALUE. */
+    static int varintSize(int value) {
+        int result = 1;
+        while ((value & ~0x7f) != 0) {
+            value >>>= 7;
+            result += 1;
+        }
+        return result;
+    }
+
+    /** Writes VALUE to OUT as a varint. */
+    static void putVarint(ByteBuffer out, int value) {
+        while ((value & ~0x7f) != 0) {
+            out.put((byte) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    /** Reads a varint from IN. */
+    static int getVarint(ByteBuffer in) {
+        int result = 0;
+        for (int shift = 0;; shift += 7) {
+            byte b = in.get();
+            result |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                return result;
+            }
+        }
+    }
+
+    /** Returns the UTF-8 bytes of S. */
+    static byte[] utf8(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** Returns the number of bytes in the form of a string of UTF8
+     *  bytes. */
+    static int stringSize(byte[] utf8) {
+        return varintSize(utf8.length) + utf8.length;
+    }
+
+    /** Writes the string of UTF8 bytes to OUT. */
+    static void putString(ByteBuffer out, byte[] utf8) {
+        putVarint(out, utf8.length);
+        out.put(utf8);
+    }
+
+    /** Reads a string from IN. */
+    static String getString(ByteBuffer in) {
+        int length = getVarint(in);
+        String result;
+        if (in.hasArray()) {
+            result = new String(in.array(), in.arrayOffset() + in.position(),
+                                length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+        } else {
+            byte[] bytes = new byte[length];
+            in.get(bytes);
+            result = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return result;
+    }
+
+    /** Writes the SHA ID to OUT. */
+    static void putId(ByteBuffer out, String id) {
+        if (id.length() != 2 * PackFile.ID_BYTES) {
+            throw new GitletException("Not a SHA ID: " + id);
+        }
+        for (int i = 0; i < 2 * PackFile.ID_BYTES; i += 2) {
+            int hi = digit(id.charAt(i)), lo = digit(id.charAt(i + 1));
+            if ((hi | lo) < 0) {
+                throw new GitletException("Not a SHA ID: " + id);
+            }
+            out.put((byte) (hi << 4 | lo));
+        }
+    }
+
+    /** Returns the value of the hex digit C, or -1 if it is not one. */
+    private static int digit(char c) {
+        return c < DIGITS.length ? DIGITS[c] : -1;
+    }
+
+    /** Reads a SHA ID from IN. */
+    static String getId(ByteBuffer in) {
+        String result;
+        if (in.hasArray()) {
+            result = ObjectStore.hex(in.array(),
+                                     in.arrayOffset() + in.position(),
+                                     PackFile.ID_BYTES);
+            in.position(in.position() + PackFile.ID_BYTES);
+        } else {
+            byte[] bytes = new byte[PackFile.ID_BYTES];
+            in.get(bytes);
+            result = ObjectStore.hex(bytes);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,77 @@
+package gitlet;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+
+/** The suite of all JUnit tests for the Codec class.
+ *  @author Thomas Hsiung
+ */
+public class CodecTest {
+
+    @Test
+    public void testVarints() {
+        int[] values = { 0, 1, 0x7f, 0x80, 300, 0x3fff, 0x4000,
+                         Integer.MAX_VALUE, -1 };
+        int[] sizes = { 1, 1, 1, 2, 2, 2, 3, 5, 5 };
+        ByteBuffer out = ByteBuffer.allocate(64);
+        for (int k = 0; k < values.length; k += 1) {
+            int start = out.position();
+            Codec.putVarint(out, values[k]);
+            assertEquals(sizes[k], Codec.varintSize(values[k]));
+            assertEquals(sizes[k], out.position() - start);
+        }
+        assertArrayEquals(new byte[] { (byte) 0xac, 0x02 },
+                          new byte[] { out.get(5), out.get(6) });
+        out.flip();
+        for (int value : values) {
+            assertEquals(value, Codec.getVarint(out));
+        }
+        assertFalse(out.hasRemaining());
+    }
+
+    @Test
+    public void testStrings() {
+        String[] strings = { "", "wug.txt", "dir/\u00fcn\u00efcode \u2713",
+                             "x".repeat(200) };
+        ByteBuffer out = ByteBuffer.allocate(1024);
+        int size = 0;
+        for (String s : strings) {
+            byte[] utf8 = Codec.utf8(s);
+            Codec.putString(out, utf8);
+            size += Codec.stringSize(utf8);
+            assertEquals(size, out.position());
+        }
+        out.flip();
+        for (String s : strings) {
+            assertEquals(s, Codec.getString(out));
+        }
+        ByteBuffer direct = ByteBuffer.allocateDirect(64);
+        Codec.putString(direct, Codec.utf8(strings[2]));
+        direct.flip();
+        assertEquals(strings[2], Codec.getString(direct));
+    }
+
+    @Test
+    public void testIds() {
+        String id = Utils.sha1("wug");
+        ByteBuffer out = ByteBuffer.allocate(2 * PackFile.ID_BYTES);
+        Codec.putId(out, id);
+        Codec.putId(out, id.toUpperCase());
+        assertEquals(2 * PackFile.ID_BYTES, out.position());
+        out.flip();
+        assertEquals(id, Codec.getId(out));
+        assertEquals(id, Codec.getId(out));
+        for (String bad : new String[] { id.substring(1), id + "0",
+                                         "g" + id.substring(1) }) {
+            try {
+                Codec.putId(ByteBuffer.allocate(64), bad);
+                fail("accepted ID " + bad);
+            } catch (GitletException excp) {
+                assertEquals("Not a SHA ID: " + bad, excp.getMessage());
+            }
+        }
+    }
+
+}
@@ -1,24 +1,36 @@
 package gitlet;
 
-import java.io.IOException;
 import java.io.Serializable;
-import java.io.File;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
 
 /** Commits for Gitlet.
  *  Metadata of Commits contain a log message, a timestamp,
  *  a HashMap of the file contents, a reference to its
  *  parent, and a second parent for Merges, if used.
  *
+ *  Commits made by commit() hold the ID of a root Tree in place of
+ *  their map of files, which is read from the Trees when first asked
+ *  for; older Commits hold the map itself.
+ *
+ *  Commits are stored in the binary form of encode(); those stored
+ *  before it, as serialized Java objects, are still read (see
+ *  ObjectStore.readCommit).
+ *
  *  @author Thomas Hsiung
  */
 public class Commit implements Serializable {
 
-    /** Git repo location. */
-    private final File _git = new File(".gitlet/");
-    /** Git Commits folder. */
-    private final File _commits = Utils.join(_git, "commits/");
-    /** Git Stage folder. */
+    /** Kept from before the object store, so old Commits still load. */
+    private static final long serialVersionUID = -8969455335318320286L;
+
+    /** Version of the binary form. */
+    static final int VERSION = 2;
+    /** Flags of the binary form: has a parent, a second parent, a map
+     *  of files, a root Tree. */
+    private static final int PARENT = 1, PARENT2 = 2, BLOBS = 4, TREE = 8;
 
     /** Special case initial commit for new repo. Only needs to
      *  take MSG, BRANCH, and TIMESTAMP as parameters. */
@@ -42,18 +54,66 @@ public class Commit implements Serializable {
         _sha = getCommitSHA();
     }
 
-    /** Takes existing Commit SHA ID and reads back Commit data for use. */
+    /** Merge commit with two parents. Requires MSG, BRANCH, PARENT
+     *  (the current branch's head), PARENT2 (the merged-in branch's
+     *  head), BLOBS, and TIMESTAMP. */
+    public Commit(String msg, String branch, String parent, String parent2,
+                  HashMap<String, String> blobs, String timestamp) {
+        _log = msg;
+        _branch = branch;
+        _timestamp = timestamp;
+        _parent = parent;
+        _parent2 = parent2;
+        _blobs = blobs;
+        _sha = getCommitSHA();
+    }
+
+    /** Commit of the files under the root Tree with ID TREE. Requires
+     *  MSG, BRANCH, PARENT, PARENT2 (the merged-in branch's head, or null
+     *  if not a merge), TREE, and TIMESTAMP. */
+    public Commit(String msg, String branch, String parent, String parent2,
+                  String tree, String timestamp) {
+        _log = msg;
+        _branch = branch;
+        _timestamp = timestamp;
+        _parent = parent;
+        _parent2 = parent2;
+        _tree = tree;
+        _sha = getCommitSHA();
+    }
+
+    /** A Commit with SHA ID read back from the store, with all of its
+     *  fields: MSG, BRANCH, PARENT, PARENT2, BLOBS, TREE and
+     *  TIMESTAMP. */
+    private Commit(String sha, String msg, String branch, String parent,
+                   String parent2, HashMap<String, String> blobs,
+                   String tree, String timestamp) {
+        _sha = sha;
+        _log = msg;
+        _branch = branch;
+        _parent = parent;
+        _parent2 = parent2;
+        _blobs = blobs;
+        _tree = tree;
+        _timestamp = timestamp;
+    }
+
+    /** Takes existing Commit SHA ID and reads back Commit data for use.
+     *  The Commit is read through the store's cache, and shares its map
+     *  of files with the cached one if that has one, so the map must not
+     *  be changed. */
     public Commit(String sha) {
-        File comm = Utils.join(_commits, sha);
-        Commit oldcomm = Utils.readObject(comm, Commit.class);
+        Commit oldcomm = ObjectStore.repo().readCommit(sha);
         _log = oldcomm.getLog();
         _branch = oldcomm.getBranch();
         _timestamp = oldcomm.getTimestamp();
         _parent = oldcomm.getParent();
-        if (oldcomm.getBlobs() == null) {
+        _parent2 = oldcomm.getParent2();
+        _tree = oldcomm.getTree();
+        if (oldcomm._blobs != null) {
+            _blobs = oldcomm._blobs;
+        } else if (_tree == null) {
             _blobs = new HashMap<String, String>();
-        } else {
-            _blobs = oldcomm.getBlobs();
         }
         _sha = oldcomm.getSHA();
         if (!_sha.equals(sha)) {
@@ -61,24 +121,140 @@ public class Commit implements Serializable {
         }
     }
 
-    /** Returns new SHA ID for current Commit. */
+    /** Returns new SHA ID for current Commit. Blobs are hashed in
+     *  order of file name, so equal Commits have equal IDs. The second
+     *  parent is hashed only if there is one, so Commits made before
+     *  merges keep their IDs. A Commit with a root Tree hashes its ID,
+     *  which stands for all of its files, in place of the files. */
     public String getCommitSHA() {
-        if (_blobs != null) {
+        if (_tree != null) {
+            if (_parent2 != null) {
+                return Utils.sha1(_log, _branch, _parent, _parent2, _tree,
+                                  _timestamp);
+            }
+            return Utils.sha1(_log, _branch, _parent, _tree, _timestamp);
+        } else if (_blobs != null) {
+            StringBuilder blobs = new StringBuilder();
+            for (Map.Entry<String, String> e
+                     : new TreeMap<String, String>(_blobs).entrySet()) {
+                blobs.append(e.getKey()).append('\0')
+                    .append(e.getValue()).append('\0');
+            }
+            if (_parent2 != null) {
+                return Utils.sha1(_log, _branch, _parent, _parent2,
+                        blobs.toString(), _timestamp);
+            }
             return Utils.sha1(_log, _branch, _parent,
-                    _blobs, _timestamp);
+                    blobs.toString(), _timestamp);
         }
         return Utils.sha1(_log, _branch, _parent, _timestamp);
     }
 
-    /** Saves Commit to Commits folder as serialized data named SHA. */
+    /** Saves Commit to the object store, in its binary form, named
+     *  by its SHA ID. */
     public void saveCommit() {
-        File newcommit = Utils.join(_commits, _sha);
-        try {
-            newcommit.createNewFile();
-        } catch (IOException err) {
-            throw new GitletException("I/O File Creation error");
+        ObjectStore.repo().putCommit(this);
+    }
+
+    /** Returns my binary form, ready to read: the VERSION byte; a byte of
+     *  flags saying which of a parent, a second parent, a root Tree and a
+     *  map of files I have; the 20-byte IDs of the parents and Tree I
+     *  have; my message, branch and timestamp as strings; and, if I have
+     *  a map of files (and no Tree), their
+     *  number and each file's name and 20-byte ID (see Codec). Files are
+     *  in no particular order: my SHA ID does not depend on this form,
+     *  and sorting the names would cost more than the rest together. The
+     *  form is sized before it is written, so it is written once, into a
+     *  buffer of exactly its length. */
+    ByteBuffer encode() {
+        byte[] log = Codec.utf8(_log), branch = Codec.utf8(_branch),
+            timestamp = Codec.utf8(_timestamp);
+        boolean hasParent = _parent != null && !_parent.isEmpty();
+        int flags = (hasParent ? PARENT : 0)
+            | (_parent2 != null ? PARENT2 : 0) | (_tree != null ? TREE
+               : _blobs != null ? BLOBS : 0);
+        int size = 2 + Integer.bitCount(flags & (PARENT | PARENT2 | TREE))
+            * PackFile.ID_BYTES + Codec.stringSize(log)
+            + Codec.stringSize(branch) + Codec.stringSize(timestamp);
+        String[] files = null;
+        byte[][] names = null;
+        if ((flags & BLOBS) != 0) {
+            files = _blobs.keySet().toArray(new String[0]);
+            names = new byte[files.length][];
+            for (int k = 0; k < files.length; k++) {
+                names[k] = Codec.utf8(files[k]);
+                size += Codec.stringSize(names[k]) + PackFile.ID_BYTES;
+            }
+            size += Codec.varintSize(names.length);
+        }
+        ByteBuffer out = ByteBuffer.allocate(size);
+        out.put((byte) VERSION).put((byte) flags);
+        if (hasParent) {
+            Codec.putId(out, _parent);
+        }
+        if (_parent2 != null) {
+            Codec.putId(out, _parent2);
+        }
+        if (_tree != null) {
+            Codec.putId(out, _tree);
+        }
+        Codec.putString(out, log);
+        Codec.putString(out, branch);
+        Codec.putString(out, timestamp);
+        if (names != null) {
+            Codec.putVarint(out, names.length);
+            for (int k = 0; k < names.length; k++) {
+                Codec.putString(out, names[k]);
+                Codec.putId(out, _blobs.get(files[k]));
+            }
         }
-        Utils.writeObject(newcommit, this);
+        return out.flip();
+    }
+
+    /** Returns the Commit with SHA ID whose binary form (see encode) is
+     *  read from IN. Version 1, from before Trees, is the same without
+     *  one. */
+    static Commit decode(String sha, ByteBuffer in) {
+        int version = in.get();
+        if (version < 1 || version > VERSION) {
+            throw new GitletException("Unknown commit version " + version);
+        }
+        int flags = in.get();
+        String parent = (flags & PARENT) != 0 ? Codec.getId(in) : "";
+        String parent2 = (flags & PARENT2) != 0 ? Codec.getId(in) : null;
+        String tree = (flags & TREE) != 0 ? Codec.getId(in) : null;
+        String log = Codec.getString(in);
+        String branch = Codec.getString(in);
+        String timestamp = Codec.getString(in);
+        HashMap<String, String> blobs = null;
+        if ((flags & BLOBS) != 0) {
+            int count = Codec.getVarint(in);
+            blobs = new HashMap<>(Math.max(16, count * 4 / 3 + 1));
+            for (int k = 0; k < count; k++) {
+                String name = Codec.getString(in);
+                blobs.put(name, Codec.getId(in));
+            }
+        }
+        return new Commit(sha, log, branch, parent, parent2, blobs, tree,
+                          timestamp);
+    }
+
+    /** Returns an estimate of the bytes I hold in memory, for
+     *  ObjectCache: my fields' Strings and my map of files. */
+    long retainedSize() {
+        long result = ObjectCache.OBJECT_BYTES + ObjectCache.size(_sha)
+            + ObjectCache.size(_log) + ObjectCache.size(_branch)
+            + ObjectCache.size(_parent) + ObjectCache.size(_parent2)
+            + ObjectCache.size(_timestamp) + ObjectCache.size(_tree);
+        if (_blobs != null) {
+            result += ObjectCache.OBJECT_BYTES + 8L * _blobs.size();
+            for (Map.Entry<String, String> e : _blobs.entrySet()) {
+                result += ObjectCache.ENTRY_BYTES
+                    + ObjectCache.size(e.getKey())
+                    + ObjectCache.size(e.getValue());
+            }
+        }
+        return result;
     }
 
     /** Returns Commit's Parent. */
@@ -86,11 +262,34 @@ public class Commit implements Serializable {
         return _parent;
     }
 
-    /** Returns Commit's Blobs for comparison. */
+    /** Returns Commit's second Parent, or null if not a merge. */
+    public String getParent2() {
+        return _parent2;
+    }
+
+    /** Returns Commit's Blobs for comparison. A Commit with a root Tree
+     *  reads them from its Trees the first time. */
     public HashMap<String, String> getBlobs() {
+        if (_blobs == null && _tree != null) {
+            _blobs = Tree.files(ObjectStore.repo(), _tree);
+        }
         return _blobs;
     }
 
+    /** Returns the SHA ID of Commit's file NAME, or null if it has none.
+     *  Reads only the Trees on the path to NAME. */
+    public String getFile(String name) {
+        if (_blobs == null && _tree != null) {
+            return Tree.find(ObjectStore.repo(), _tree, name);
+        }
+        return _blobs == null ? null : _blobs.get(name);
+    }
+
+    /** Returns the ID of Commit's root Tree, or null if it has none. */
+    public String getTree() {
+        return _tree;
+    }
+
     /** Returns Commit's Branch. */
     public String getBranch() {
         return _branch;
@@ -111,12 +310,18 @@ public class Commit implements Serializable {
         return _timestamp;
     }
 
-    /** File contents of this Commit. */
+    /** File contents of this Commit, or null until read from _tree. */
     private HashMap<String, String> _blobs;
 
+    /** SHA ID of the root Tree, or null for Commits made before Trees. */
+    private String _tree;
+
     /** SHA ID of Parent. */
     private String _parent;
 
+    /** SHA ID of second Parent of a merge, or null. */
+    private String _parent2;
+
     /** Current Branch of this Commit. */
     private String _branch;
 
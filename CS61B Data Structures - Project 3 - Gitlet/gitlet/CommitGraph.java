@@ -0,0 +1,623 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/** The commit graph of a Gitlet repo: the shape of its history, kept
+ *  apart from the Commits so that it can be walked without reading
+ *  them.
+ *
+ *  Each commit has a position, 0 for the first one added, 1 for the
+ *  next, and so on; a commit is added only after its parents, so they
+ *  always have lower positions. The file .gitlet/commit-graph starts
+ *  with the magic number "CGPH", a version and the number of commits,
+ *  padded to HEADER bytes, followed by a record of RECORD bytes for
+ *  each position: the 20-byte SHA ID, the 20-byte ID of the root tree
+ *  (zero for Commits made before Trees), the positions of the first and
+ *  second parents (NONE if absent), the generation number (1 for a
+ *  commit with no parents, else one more than its parents' largest),
+ *  the commit's offset from UTC in seconds, and its time in seconds
+ *  since the epoch. New commits are appended and the count rewritten.
+ *
+ *  The file .gitlet/commit-graph.idx maps IDs to positions for the
+ *  first commits of the graph: "CGIX", the version and the number of
+ *  commits it covers, a fan-out table of 256 ints as in a PackFile
+ *  index, then the 20-byte IDs in order, then their positions. Commits
+ *  added since it was last written are looked up in a small map, and
+ *  the index is merged with them once there are more than TAIL.
+ *
+ *  Both files are memory-mapped. A commit of greater generation can
+ *  never be an ancestor of one of smaller or equal generation, which
+ *  lets walks of the graph stop early.
+ *
+ *  @author Thomas Hsiung
+ */
+class CommitGraph {
+
+    /** Position of no commit. */
+    static final int NONE = -1;
+
+    /** Magic numbers of the graph and of its index. */
+    private static final int MAGIC = 0x43475048, IDX_MAGIC = 0x43474958;
+    /** Version of the format. */
+    private static final int VERSION = 1;
+    /** Bytes before the first record of the graph. */
+    private static final int HEADER = 16;
+    /** Bytes before the fan-out table of the index. */
+    private static final int IDX_HEADER = 12;
+    /** Bytes in a record. */
+    static final int RECORD = 64;
+    /** Offsets of the fields of a record after the ID. */
+    private static final int TREE = 20, PARENT = 40, PARENT2 = 44,
+        GENERATION = 48, OFFSET = 52, TIME = 56;
+    /** Fewest hex digits of an abbreviated ID. */
+    static final int MIN_PREFIX = 4;
+    /** Most commits looked up outside the index. */
+    private static final int TAIL = 256;
+    /** Bytes in a SHA ID. */
+    private static final int ID_BYTES = PackFile.ID_BYTES;
+
+    /** The commit graph of the repo in DIR, empty if it has none. */
+    CommitGraph(File dir) {
+        _file = Utils.join(dir, "commit-graph");
+        _idxFile = Utils.join(dir, "commit-graph.idx");
+        if (_file.isFile()) {
+            _records = PackFile.map(_file);
+            if (_records.getInt(0) != MAGIC || _records.getInt(4) != VERSION) {
+                throw new GitletException("Corrupt commit graph");
+            }
+            _stored = _records.getInt(8);
+        } else {
+            _records = ByteBuffer.allocate(0);
+        }
+        if (_idxFile.isFile()) {
+            _idx = PackFile.map(_idxFile);
+            if (_idx.getInt(0) != IDX_MAGIC || _idx.getInt(4) != VERSION) {
+                throw new GitletException("Corrupt commit graph");
+            }
+            _indexed = _idx.getInt(8);
+        } else {
+            _idx = ByteBuffer.allocate(IDX_HEADER + 256 * 4);
+        }
+        if (_indexed > _stored) {
+            throw new GitletException("Corrupt commit graph");
+        }
+        _count = _stored;
+        for (int p = _indexed; p < _stored; p++) {
+            _tail.put(id(p), p);
+        }
+    }
+
+    /** Returns the number of commits. */
+    int size() {
+        return _count;
+    }
+
+    /** Returns the position of the commit with SHA ID, or NONE. */
+    int position(String id) {
+        byte[] key = PackFile.bytes(id);
+        if (key == null) {
+            return NONE;
+        }
+        int k = find(key);
+        if (k >= 0) {
+            return _idx.getInt(IDX_HEADER + 256 * 4 + _indexed * ID_BYTES
+                               + k * 4);
+        }
+        Integer p = _tail.get(id);
+        return p == null ? NONE : p;
+    }
+
+    /** Returns the SHA IDs of up to two commits whose IDs start with
+     *  PREFIX, at least MIN_PREFIX hex digits in either case: one if
+     *  PREFIX names a commit, two if it is ambiguous. The first ID not
+     *  less than PREFIX padded with zeros is found by a binary search of
+     *  the index, within the range of the fan-out table for its first
+     *  byte, and of the commits outside it; any with the prefix follow
+     *  it. */
+    List<String> resolve(String prefix) {
+        ArrayList<String> found = new ArrayList<>();
+        prefix = prefix.toLowerCase();
+        if (prefix.length() < MIN_PREFIX || prefix.length() > 2 * ID_BYTES
+            || !prefix.chars().allMatch(c -> Character.digit(c, 16) >= 0)) {
+            return found;
+        }
+        String low = prefix + "0".repeat(2 * ID_BYTES - prefix.length());
+        byte[] key = PackFile.bytes(low);
+        int first = key[0] & 0xff;
+        int lo = first == 0 ? 0 : _idx.getInt(IDX_HEADER + (first - 1) * 4);
+        int hi = _idx.getInt(IDX_HEADER + first * 4);
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (compare(mid, key) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        byte[] id = new byte[ID_BYTES];
+        for (int k = lo; k < _indexed && found.size() < 2; k++) {
+            _idx.get(IDX_HEADER + 256 * 4 + k * ID_BYTES, id);
+            String hex = ObjectStore.hex(id);
+            if (!hex.startsWith(prefix)) {
+                break;
+            }
+            found.add(hex);
+        }
+        for (String hex : _tail.tailMap(low).keySet()) {
+            if (!hex.startsWith(prefix) || found.size() == 2) {
+                break;
+            }
+            found.add(hex);
+        }
+        return found;
+    }
+
+    /** Returns the SHA ID of the commit at POS. */
+    String id(int pos) {
+        return hex(pos, 0);
+    }
+
+    /** Returns the root tree ID of the commit at POS, or null. */
+    String tree(int pos) {
+        String tree = hex(pos, TREE);
+        return tree.equals(ZERO) ? null : tree;
+    }
+
+    /** Returns the position of the first parent of the commit at POS,
+     *  or NONE. */
+    int parent(int pos) {
+        return buffer(pos).getInt(offset(pos) + PARENT);
+    }
+
+    /** Returns the position of the second parent of the commit at POS,
+     *  or NONE. */
+    int parent2(int pos) {
+        return buffer(pos).getInt(offset(pos) + PARENT2);
+    }
+
+    /** Returns the generation number of the commit at POS. */
+    int generation(int pos) {
+        return buffer(pos).getInt(offset(pos) + GENERATION);
+    }
+
+    /** Returns the time of the commit at POS, in seconds since the
+     *  epoch. */
+    long time(int pos) {
+        return buffer(pos).getLong(offset(pos) + TIME);
+    }
+
+    /** Returns the offset from UTC of the commit at POS, in seconds. */
+    int zoneOffset(int pos) {
+        return buffer(pos).getInt(offset(pos) + OFFSET);
+    }
+
+    /** Returns true iff the commit at position A is the commit at B or
+     *  one of its ancestors. Only commits of generation greater than A's
+     *  are walked. */
+    boolean isAncestor(int a, int b) {
+        int generation = generation(a);
+        BitSet seen = new BitSet(_count);
+        int[] stack = new int[16];
+        int n = 0;
+        stack[n++] = b;
+        while (n > 0) {
+            int p = stack[--n];
+            if (p == a) {
+                return true;
+            }
+            if (p == NONE || seen.get(p) || generation(p) <= generation) {
+                continue;
+            }
+            seen.set(p);
+            if (n + 2 > stack.length) {
+                stack = Arrays.copyOf(stack, 2 * stack.length);
+            }
+            stack[n++] = parent(p);
+            stack[n++] = parent2(p);
+        }
+        return false;
+    }
+
+    /** Returns the position of the best common ancestor of the commits
+     *  at A and B, their split point, or NONE if they have none. Of
+     *  several (after criss-cross merges), the one of greatest
+     *  generation, then latest time, is chosen. */
+    int mergeBase(int a, int b) {
+        List<Integer> bases = mergeBases(a, b);
+        return bases.isEmpty() ? NONE : bases.get(0);
+    }
+
+    /** Returns the positions of the best common ancestors of the commits
+     *  at A and B: those that are ancestors of both, but not of another
+     *  such, in order of decreasing generation and time.
+     *
+     *  The walk goes down from both commits at once, always taking the
+     *  queued commit of greatest generation, so a commit is taken only
+     *  after every commit above it that can reach it. Bits record which
+     *  side reaches each commit. A commit reached from both is a common
+     *  ancestor, and it and everything below it are marked stale; the
+     *  walk stops when only stale commits are queued, and candidates
+     *  reachable from other candidates are then dropped. */
+    List<Integer> mergeBases(int a, int b) {
+        ArrayList<Integer> result = new ArrayList<>();
+        if (a == b) {
+            result.add(a);
+            return result;
+        }
+        BitSet left = new BitSet(_count), right = new BitSet(_count),
+            stale = new BitSet(_count), queued = new BitSet(_count);
+        Heap queue = new Heap();
+        left.set(a);
+        right.set(b);
+        queue.add(key(a));
+        queue.add(key(b));
+        queued.set(a);
+        queued.set(b);
+        ArrayList<Integer> candidates = new ArrayList<>();
+        int active = 2;
+        while (active > 0) {
+            int p = (int) queue.poll();
+            queued.clear(p);
+            boolean fromLeft = left.get(p), fromRight = right.get(p);
+            boolean isStale = stale.get(p);
+            if (!isStale) {
+                active -= 1;
+            }
+            if (fromLeft && fromRight && !isStale) {
+                candidates.add(p);
+                isStale = true;
+            }
+            for (int q : new int[] {parent(p), parent2(p)}) {
+                if (q == NONE) {
+                    continue;
+                }
+                boolean changed = false;
+                if (fromLeft && !left.get(q)) {
+                    left.set(q);
+                    changed = true;
+                }
+                if (fromRight && !right.get(q)) {
+                    right.set(q);
+                    changed = true;
+                }
+                if (isStale && !stale.get(q)) {
+                    stale.set(q);
+                    changed = true;
+                    if (queued.get(q)) {
+                        active -= 1;
+                    }
+                }
+                if (changed && !queued.get(q)) {
+                    queue.add(key(q));
+                    queued.set(q);
+                    if (!stale.get(q)) {
+                        active += 1;
+                    }
+                }
+            }
+        }
+        for (int c : candidates) {
+            boolean redundant = false;
+            for (int d : candidates) {
+                if (c != d && isAncestor(c, d)) {
+                    redundant = true;
+                    break;
+                }
+            }
+            if (!redundant) {
+                result.add(c);
+            }
+        }
+        result.sort((p, q) -> generation(p) != generation(q)
+                    ? Integer.compare(generation(q), generation(p))
+                    : Long.compare(time(q), time(p)));
+        return result;
+    }
+
+    /** Returns the key of the commit at POS in the queue of mergeBases:
+     *  commits of greater generation, then greater position, first. */
+    private long key(int pos) {
+        return (long) generation(pos) << 32 | pos;
+    }
+
+    /** A queue of longs, greatest first: a binary heap. */
+    private static class Heap {
+
+        /** Adds KEY. */
+        void add(long key) {
+            if (_size == _keys.length) {
+                _keys = Arrays.copyOf(_keys, 2 * _size);
+            }
+            int k = _size++;
+            while (k > 0 && _keys[(k - 1) / 2] < key) {
+                _keys[k] = _keys[(k - 1) / 2];
+                k = (k - 1) / 2;
+            }
+            _keys[k] = key;
+        }
+
+        /** Removes and returns the greatest key. */
+        long poll() {
+            long result = _keys[0];
+            long last = _keys[--_size];
+            int k = 0;
+            while (2 * k + 1 < _size) {
+                int c = 2 * k + 1;
+                if (c + 1 < _size && _keys[c + 1] > _keys[c]) {
+                    c += 1;
+                }
+                if (_keys[c] <= last) {
+                    break;
+                }
+                _keys[k] = _keys[c];
+                k = c;
+            }
+            _keys[k] = last;
+            return result;
+        }
+
+        /** The heap. */
+        private long[] _keys = new long[16];
+        /** Number of keys. */
+        private int _size;
+    }
+
+    /** Returns the position of COMMIT, first adding it and those of its
+     *  ancestors not yet in the graph, which are read from the object
+     *  store. */
+    int add(Commit commit) {
+        ArrayDeque<Commit> stack = new ArrayDeque<>();
+        stack.push(commit);
+        while (!stack.isEmpty()) {
+            Commit c = stack.peek();
+            if (position(c.getSHA()) != NONE) {
+                stack.pop();
+                continue;
+            }
+            String missing = null;
+            for (String parent : new String[] {c.getParent(), c.getParent2()}) {
+                if (parent != null && !parent.isEmpty()
+                    && position(parent) == NONE) {
+                    missing = parent;
+                }
+            }
+            if (missing != null) {
+                stack.push(new Commit(missing));
+            } else {
+                stack.pop();
+                add(c.getSHA(), c.getParent(), c.getParent2(),
+                    c.getTimestamp(), c.getTree());
+            }
+        }
+        return position(commit.getSHA());
+    }
+
+    /** Adds the commit with SHA ID made at TIMESTAMP, a Gitlet log time,
+     *  whose parents, which must already be in the graph, have IDs
+     *  PARENT and PARENT2 (null or empty if absent), and whose root tree
+     *  has ID TREE (null if none), returning its position. */
+    int add(String id, String parent, String parent2, String timestamp,
+            String tree) {
+        int p1 = parentPosition(parent), p2 = parentPosition(parent2);
+        int generation = 1 + Math.max(p1 == NONE ? 0 : generation(p1),
+                                      p2 == NONE ? 0 : generation(p2));
+        long time = 0;
+        int zone = 0;
+        try {
+            ZonedDateTime when = ZonedDateTime.parse(timestamp,
+                                                     Gitlet._gitTime);
+            time = when.toEpochSecond();
+            zone = when.getOffset().getTotalSeconds();
+        } catch (DateTimeParseException err) {
+            time = 0;
+        }
+        if (_added.remaining() < RECORD) {
+            ByteBuffer grown = ByteBuffer.allocate(2 * _added.capacity());
+            _added.flip();
+            grown.put(_added);
+            _added = grown;
+        }
+        byte[] treeBytes = PackFile.bytes(tree);
+        _added.put(PackFile.bytes(id))
+            .put(treeBytes == null ? new byte[ID_BYTES] : treeBytes)
+            .putInt(p1).putInt(p2).putInt(generation).putInt(zone)
+            .putLong(time);
+        _tail.put(id, _count);
+        _count += 1;
+        return _count - 1;
+    }
+
+    /** Writes the commits added since I was read to my file, and merges
+     *  them into the index if enough are outside it. */
+    void write() {
+        if (_count == _stored) {
+            return;
+        }
+        try (FileChannel out = FileChannel.open(_file.toPath(),
+                                                StandardOpenOption.CREATE,
+                                                StandardOpenOption.WRITE)) {
+            if (_stored == 0) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER);
+                header.putInt(MAGIC).putInt(VERSION).putInt(0).flip();
+                writeAt(out, header, 0);
+            }
+            _added.flip();
+            writeAt(out, _added, HEADER + (long) _stored * RECORD);
+            ByteBuffer count = ByteBuffer.allocate(4);
+            count.putInt(_count).flip();
+            writeAt(out, count, 8);
+        } catch (IOException err) {
+            throw new GitletException("I/O File Creation error");
+        }
+        _records = PackFile.map(_file);
+        _stored = _count;
+        _added = ByteBuffer.allocate(TAIL * RECORD);
+        if (_tail.size() > TAIL) {
+            writeIndex();
+        }
+    }
+
+    /** Writes an index of every commit, merging the old index with the
+     *  commits outside it. */
+    private void writeIndex() {
+        int total = _indexed + _tail.size();
+        int ids = IDX_HEADER + 256 * 4;
+        int positions = ids + total * ID_BYTES;
+        ByteBuffer out = ByteBuffer.allocate(positions + total * 4);
+        out.putInt(IDX_MAGIC).putInt(VERSION).putInt(total);
+        byte[] old = new byte[ID_BYTES];
+        int k = 0, n = 0;
+        int[] fanout = new int[256];
+        for (Map.Entry<String, Integer> e : _tail.entrySet()) {
+            byte[] key = PackFile.bytes(e.getKey());
+            for (; k < _indexed && compare(k, key) < 0; k++, n++) {
+                _idx.get(ids + k * ID_BYTES, old);
+                out.put(ids + n * ID_BYTES, old);
+                out.putInt(positions + n * 4, indexedPosition(k));
+                fanout[old[0] & 0xff] += 1;
+            }
+            out.put(ids + n * ID_BYTES, key);
+            out.putInt(positions + n * 4, e.getValue());
+            fanout[key[0] & 0xff] += 1;
+            n += 1;
+        }
+        for (; k < _indexed; k++, n++) {
+            _idx.get(ids + k * ID_BYTES, old);
+            out.put(ids + n * ID_BYTES, old);
+            out.putInt(positions + n * 4, indexedPosition(k));
+            fanout[old[0] & 0xff] += 1;
+        }
+        for (int b = 0, sum = 0; b < 256; b++) {
+            sum += fanout[b];
+            out.putInt(IDX_HEADER + b * 4, sum);
+        }
+        File tmp = new File(_idxFile.getPath() + ".tmp");
+        try {
+            Files.write(tmp.toPath(), out.array());
+            Files.move(tmp.toPath(), _idxFile.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException err) {
+            throw new GitletException("I/O File Creation error");
+        }
+        _idx = PackFile.map(_idxFile);
+        _indexed = total;
+        _tail.clear();
+    }
+
+    /** Writes BUF to OUT at POSITION. */
+    private static void writeAt(FileChannel out, ByteBuffer buf,
+                                long position) throws IOException {
+        while (buf.hasRemaining()) {
+            position += out.write(buf, position);
+        }
+    }
+
+    /** Returns the position of ID, or NONE if absent. Fails if ID is
+     *  neither absent nor in the graph. */
+    private int parentPosition(String id) {
+        if (id == null || id.isEmpty()) {
+            return NONE;
+        }
+        int pos = position(id);
+        if (pos == NONE) {
+            throw new GitletException("Commit graph has no commit " + id);
+        }
+        return pos;
+    }
+
+    /** Returns the number in the index of the ID with the 20 bytes KEY,
+     *  or -1. */
+    private int find(byte[] key) {
+        int first = key[0] & 0xff;
+        int lo = first == 0 ? 0 : _idx.getInt(IDX_HEADER + (first - 1) * 4);
+        int hi = _idx.getInt(IDX_HEADER + first * 4) - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int c = compare(mid, key);
+            if (c < 0) {
+                lo = mid + 1;
+            } else if (c > 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /** Compares ID number K of the index with the 20 bytes KEY. */
+    private int compare(int k, byte[] key) {
+        int base = IDX_HEADER + 256 * 4 + k * ID_BYTES;
+        for (int i = 0; i < ID_BYTES; i++) {
+            int c = (_idx.get(base + i) & 0xff) - (key[i] & 0xff);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return 0;
+    }
+
+    /** Returns the position of ID number K of the index. */
+    private int indexedPosition(int k) {
+        return _idx.getInt(IDX_HEADER + 256 * 4 + _indexed * ID_BYTES + k * 4);
+    }
+
+    /** Returns the hexadecimal form of the 20 bytes at START in the
+     *  record of POS. */
+    private String hex(int pos, int start) {
+        byte[] id = new byte[ID_BYTES];
+        buffer(pos).get(offset(pos) + start, id);
+        return ObjectStore.hex(id);
+    }
+
+    /** Returns the buffer holding the record of POS. */
+    private ByteBuffer buffer(int pos) {
+        if (pos < 0 || pos >= _count) {
+            throw new GitletException("Commit graph has no position " + pos);
+        }
+        return pos < _stored ? _records : _added;
+    }
+
+    /** Returns the offset of the record of POS in buffer(POS). */
+    private int offset(int pos) {
+        return pos < _stored ? HEADER + pos * RECORD
+            : (pos - _stored) * RECORD;
+    }
+
+    /** The ID of no tree. */
+    private static final String ZERO = "0".repeat(2 * ID_BYTES);
+
+    /** File holding the records. */
+    private final File _file;
+    /** File holding the index. */
+    private final File _idxFile;
+    /** The records written to _file, mapped. */
+    private ByteBuffer _records;
+    /** The index, mapped. */
+    private ByteBuffer _idx;
+    /** Records added since _file was written. */
+    private ByteBuffer _added = ByteBuffer.allocate(TAIL * RECORD);
+    /** Positions of the commits outside the index, by ID. */
+    private final TreeMap<String, Integer> _tail = new TreeMap<>();
+    /** Number of commits in _file. */
+    private int _stored;
+    /** Number of commits in the index. */
+    private int _indexed;
+    /** Number of commits. */
+    private int _count;
+}
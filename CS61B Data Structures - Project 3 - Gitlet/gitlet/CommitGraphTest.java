@@ -0,0 +1,129 @@
+package gitlet;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+
+/** The suite of all JUnit tests for the CommitGraph class.
+ *  @author Thomas Hsiung
+ */
+public class CommitGraphTest {
+
+    /** Directory of the graph's files. */
+    @Rule
+    public TemporaryFolder git = new TemporaryFolder();
+
+    /** Returns a SHA ID: NAME followed by zeros. */
+    static String id(String name) {
+        return name + "0".repeat(40 - name.length());
+    }
+
+    /** Adds to GRAPH the commit NAME, made TIME seconds after an hour
+     *  of the epoch, with parents PARENT and PARENT2 (null if absent),
+     *  returning its position. */
+    static int add(CommitGraph graph, String name, String parent,
+                   String parent2, int time) {
+        String timestamp = Gitlet._gitTime.format(
+            ZonedDateTime.of(1970, 1, 1, 1, 0, time, 0, ZoneOffset.UTC));
+        return graph.add(id(name), parent == null ? null : id(parent),
+                         parent2 == null ? null : id(parent2), timestamp,
+                         null);
+    }
+
+    @Test
+    public void testSplitPoint() {
+        CommitGraph graph = new CommitGraph(git.getRoot());
+        int root = add(graph, "00", null, null, 0);
+        int base = add(graph, "0b", "00", null, 1);
+        int a = add(graph, "0a", "0b", null, 2);
+        int b1 = add(graph, "b1", "0b", null, 3);
+        int b2 = add(graph, "b2", "b1", null, 4);
+        assertEquals(base, graph.mergeBase(a, b2));
+        assertEquals(base, graph.mergeBase(b2, a));
+        assertEquals(b1, graph.mergeBase(b1, b2));
+        assertEquals(root, graph.mergeBase(root, a));
+        assertEquals(3, graph.generation(b1));
+        assertTrue(graph.isAncestor(base, b2));
+        assertFalse(graph.isAncestor(a, b2));
+    }
+
+    @Test
+    public void testCrissCross() {
+        CommitGraph graph = new CommitGraph(git.getRoot());
+        add(graph, "00", null, null, 0);
+        int a1 = add(graph, "a1", "00", null, 1);
+        int b1 = add(graph, "b1", "00", null, 2);
+        int a2 = add(graph, "a2", "a1", "b1", 3);
+        int b2 = add(graph, "b2", "b1", "a1", 4);
+        int a3 = add(graph, "a3", "a2", null, 5);
+        assertEquals(Arrays.asList(b1, a1), graph.mergeBases(a3, b2));
+        assertEquals(Arrays.asList(b1, a1), graph.mergeBases(b2, a2));
+        assertEquals(b1, graph.mergeBase(a3, b2));
+        assertEquals(Arrays.asList(a2), graph.mergeBases(a2, a3));
+    }
+
+    @Test
+    public void testUnrelated() {
+        CommitGraph graph = new CommitGraph(git.getRoot());
+        int a = add(graph, "0a", null, null, 0);
+        int b = add(graph, "0b", null, null, 1);
+        assertTrue(graph.mergeBases(a, b).isEmpty());
+        assertEquals(CommitGraph.NONE, graph.mergeBase(a, b));
+    }
+
+    @Test
+    public void testWritten() {
+        CommitGraph graph = new CommitGraph(git.getRoot());
+        add(graph, "00", null, null, 0);
+        add(graph, "a1", "00", null, 1);
+        add(graph, "b1", "00", null, 2);
+        add(graph, "a2", "a1", "b1", 3);
+        graph.write();
+        graph = new CommitGraph(git.getRoot());
+        assertEquals(4, graph.size());
+        int a2 = graph.position(id("a2"));
+        assertEquals(id("a1"), graph.id(graph.parent(a2)));
+        assertEquals(id("b1"), graph.id(graph.parent2(a2)));
+        int b1 = graph.position(id("b1"));
+        assertEquals(b1, graph.mergeBase(a2, b1));
+        assertEquals(CommitGraph.NONE, graph.position(id("b2")));
+    }
+
+    /** Checks the abbreviated IDs of the commits "abcd1" and "abcd2" in
+     *  GRAPH. */
+    static void checkResolve(CommitGraph graph) {
+        assertEquals(Arrays.asList(id("abcd1"), id("abcd2")),
+                     graph.resolve("abcd"));
+        assertEquals(Arrays.asList(id("abcd1")), graph.resolve("abcd1"));
+        assertEquals(Arrays.asList(id("abcd2")), graph.resolve("ABCD2"));
+        assertEquals(Arrays.asList(id("abcd2")), graph.resolve(id("abcd2")));
+        assertTrue(graph.resolve("abce").isEmpty());
+        assertTrue(graph.resolve("abcd3").isEmpty());
+        assertTrue(graph.resolve("abc").isEmpty());
+        assertTrue(graph.resolve("abcz").isEmpty());
+    }
+
+    @Test
+    public void testResolve() {
+        CommitGraph graph = new CommitGraph(git.getRoot());
+        add(graph, "abcd1", null, null, 0);
+        add(graph, "abcd2", "abcd1", null, 1);
+        checkResolve(graph);
+        for (int k = 0; k < 300; k += 1) {
+            add(graph, String.format("1%08x", k * 0x1234567L), null, null,
+                2);
+        }
+        checkResolve(graph);
+        graph.write();
+        graph = new CommitGraph(git.getRoot());
+        checkResolve(graph);
+        assertEquals(Arrays.asList(id("1048d159c")),
+                     graph.resolve("1048d"));
+    }
+
+}
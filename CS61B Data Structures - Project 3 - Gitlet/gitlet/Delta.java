@@ -0,0 +1,204 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/** Deltas between versions of an object: instructions that rebuild a
+ *  target sequence of bytes from a base sequence.
+ *
+ *  A delta starts with the lengths of the base and of the target, as
+ *  varints (seven bits a byte, low bits first, high bit set on all but
+ *  the last byte). Then come instructions. An instruction byte N from 1
+ *  to 127 inserts the N bytes that follow it; the byte 0x80 copies the
+ *  bytes of the base at the varint offset and of the varint length that
+ *  follow it.
+ *
+ *  Deltas are found by indexing the base's blocks of BLOCK bytes by a
+ *  hash, then sliding a window of BLOCK bytes along the target with a
+ *  rolling hash of the same kind. A window whose hash matches a block
+ *  is compared byte by byte and, if equal, extended both ways into the
+ *  longest run copied from the base.
+ *
+ *  @author Thomas Hsiung
+ */
+class Delta {
+
+    /** Bytes in the blocks of the base that are indexed. */
+    static final int BLOCK = 16;
+
+    /** Instruction copying from the base. */
+    private static final int COPY = 0x80;
+    /** Most bytes inserted by one instruction. */
+    private static final int MAX_INSERT = 0x7f;
+    /** Multiplier of the rolling hash. */
+    private static final int PRIME = 0x01000193;
+    /** PRIME to the power BLOCK, for removing a byte from the hash. */
+    private static final int OUT;
+
+    static {
+        int p = 1;
+        for (int i = 0; i < BLOCK; i++) {
+            p *= PRIME;
+        }
+        OUT = p;
+    }
+
+    /** Returns a delta that rebuilds TARGET from BASE. */
+    static byte[] create(byte[] base, byte[] target) {
+        ByteArrayOutputStream out =
+            new ByteArrayOutputStream(target.length / 8 + 16);
+        writeVarint(out, base.length);
+        writeVarint(out, target.length);
+        int[] index = index(base);
+        int mask = index.length - 1;
+        int pending = 0;
+        int i = 0;
+        int hash = target.length >= BLOCK ? hash(target, 0) : 0;
+        while (i + BLOCK <= target.length) {
+            int c = index.length == 0 ? -1 : index[mix(hash) & mask];
+            if (c >= 0 && same(base, c, target, i)) {
+                int end = i + BLOCK, from = c + BLOCK;
+                while (end < target.length && from < base.length
+                       && base[from] == target[end]) {
+                    end += 1;
+                    from += 1;
+                }
+                while (i > pending && c > 0 && base[c - 1] == target[i - 1]) {
+                    i -= 1;
+                    c -= 1;
+                }
+                insert(out, target, pending, i);
+                out.write(COPY);
+                writeVarint(out, c);
+                writeVarint(out, end - i);
+                i = pending = end;
+                if (i + BLOCK <= target.length) {
+                    hash = hash(target, i);
+                }
+            } else {
+                if (i + BLOCK < target.length) {
+                    hash = hash * PRIME + (target[i + BLOCK] & 0xff)
+                        - OUT * (target[i] & 0xff);
+                }
+                i += 1;
+            }
+        }
+        insert(out, target, pending, target.length);
+        return out.toByteArray();
+    }
+
+    /** Returns the target that DELTA rebuilds from BASE. */
+    static byte[] apply(byte[] base, byte[] delta) {
+        int[] pos = {0};
+        if (readVarint(delta, pos) != base.length) {
+            throw new GitletException("Corrupt delta");
+        }
+        long length = readVarint(delta, pos);
+        if (length > Integer.MAX_VALUE) {
+            throw new GitletException("Corrupt delta");
+        }
+        byte[] result = new byte[(int) length];
+        int n = 0;
+        try {
+            while (pos[0] < delta.length) {
+                int op = delta[pos[0]++] & 0xff;
+                if (op == COPY) {
+                    int offset = (int) readVarint(delta, pos);
+                    int size = (int) readVarint(delta, pos);
+                    System.arraycopy(base, offset, result, n, size);
+                    n += size;
+                } else if (op > 0 && op <= MAX_INSERT) {
+                    System.arraycopy(delta, pos[0], result, n, op);
+                    pos[0] += op;
+                    n += op;
+                } else {
+                    throw new GitletException("Corrupt delta");
+                }
+            }
+        } catch (IndexOutOfBoundsException err) {
+            throw new GitletException("Corrupt delta");
+        }
+        if (n != result.length) {
+            throw new GitletException("Corrupt delta");
+        }
+        return result;
+    }
+
+    /** Returns a hash table of the offsets of the blocks of BASE: entry
+     *  mix(H) & (length - 1) is the offset of the last block with hash
+     *  H, or -1. */
+    private static int[] index(byte[] base) {
+        int blocks = base.length / BLOCK;
+        if (blocks == 0) {
+            return new int[0];
+        }
+        int size = Integer.highestOneBit(blocks) << 2;
+        int[] result = new int[size];
+        Arrays.fill(result, -1);
+        for (int b = 0; b < blocks; b++) {
+            result[mix(hash(base, b * BLOCK)) & (size - 1)] = b * BLOCK;
+        }
+        return result;
+    }
+
+    /** Returns the hash of the BLOCK bytes of DATA at START. */
+    private static int hash(byte[] data, int start) {
+        int h = 0;
+        for (int i = start; i < start + BLOCK; i++) {
+            h = h * PRIME + (data[i] & 0xff);
+        }
+        return h;
+    }
+
+    /** Returns H with its high bits folded into its low bits. */
+    private static int mix(int h) {
+        return h ^ (h >>> 15) ^ (h >>> 27);
+    }
+
+    /** Returns true iff the BLOCK bytes of BASE at B equal those of
+     *  TARGET at T. */
+    private static boolean same(byte[] base, int b, byte[] target, int t) {
+        if (b + BLOCK > base.length) {
+            return false;
+        }
+        for (int k = 0; k < BLOCK; k++) {
+            if (base[b + k] != target[t + k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Writes instructions inserting bytes START to END of TARGET. */
+    private static void insert(ByteArrayOutputStream out, byte[] target,
+                               int start, int end) {
+        while (start < end) {
+            int n = Math.min(MAX_INSERT, end - start);
+            out.write(n);
+            out.write(target, start, n);
+            start += n;
+        }
+    }
+
+    /** Writes VALUE to OUT as a varint. */
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while (value >= 0x80) {
+            out.write((int) (value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    /** Returns the varint in DATA at POS[0], advancing POS[0] past it. */
+    private static long readVarint(byte[] data, int[] pos) {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = data[pos[0]++] & 0xff;
+            result |= (long) (b & 0x7f) << shift;
+            if (b < 0x80) {
+                return result;
+            }
+        }
+        throw new GitletException("Corrupt delta");
+    }
+}
@@ -0,0 +1,76 @@
+package gitlet;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/** The suite of all JUnit tests for the Delta class.
+ *  @author Thomas Hsiung
+ */
+public class DeltaTest {
+
+    /** Returns N random bytes from RANDOM. */
+    static byte[] random(Random random, int n) {
+        byte[] result = new byte[n];
+        random.nextBytes(result);
+        return result;
+    }
+
+    /** Asserts that a delta from BASE rebuilds TARGET, and returns its
+     *  length. */
+    static int check(byte[] base, byte[] target) {
+        byte[] delta = Delta.create(base, target);
+        assertArrayEquals(target, Delta.apply(base, delta));
+        return delta.length;
+    }
+
+    @Test
+    public void testSmall() {
+        byte[] empty = new byte[0], wug = Codec.utf8("This is a wug.");
+        check(empty, empty);
+        check(empty, wug);
+        check(wug, empty);
+        check(wug, wug);
+        check(wug, Codec.utf8("This is not a wug."));
+    }
+
+    @Test
+    public void testEdits() {
+        Random random = new Random(61);
+        byte[] base = random(random, 50_000);
+        assertTrue(check(base, base) < 20);
+        for (int trial = 0; trial < 20; trial += 1) {
+            byte[] target = base.clone();
+            for (int e = 0; e < 5; e += 1) {
+                int at = random.nextInt(target.length - 100);
+                byte[] edit = random(random, random.nextInt(100));
+                byte[] next = new byte[target.length + edit.length];
+                System.arraycopy(target, 0, next, 0, at);
+                System.arraycopy(edit, 0, next, at, edit.length);
+                System.arraycopy(target, at, next, at + edit.length,
+                                 target.length - at);
+                target = next;
+            }
+            assertTrue(check(base, target) < 1000);
+        }
+        byte[] moved = Arrays.copyOfRange(base, 25_000, 50_000);
+        assertTrue(check(base, moved) < 20);
+        byte[] unrelated = random(random, 1000);
+        assertTrue(check(base, unrelated) > 1000);
+    }
+
+    @Test
+    public void testWrongBase() {
+        byte[] base = Codec.utf8("This is a wug."),
+            delta = Delta.create(base, Codec.utf8("This is not a wug."));
+        try {
+            Delta.apply(Codec.utf8("This is a wug!!"), delta);
+            fail("applied a delta to the wrong base");
+        } catch (GitletException excp) {
+            assertEquals("Corrupt delta", excp.getMessage());
+        }
+    }
+
+}
@@ -1,15 +1,33 @@
 package gitlet;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
 import java.io.Serializable;
 import java.io.File;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.List;
 import java.util.HashMap;
-import java.util.Set;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.time.ZonedDateTime;
-import java.util.Collections;
 
 /** Gitlet object to preserve Gitlet's metadata for private HashMaps.
  *  Provides methods for most of Gitlet's functionality.
@@ -18,46 +36,144 @@ import java.util.Collections;
  */
 public class Gitlet implements Serializable {
 
+    /** Kept from before the object store, so old metadata still loads. */
+    private static final long serialVersionUID = 8222500382731015818L;
+
     /** Current Working Directory. */
     private final File _cwd = new File(".");
     /** Git repo location. */
     private final File _git = new File(".gitlet/");
     /** Git Branch folder. */
     private final File _branches = Utils.join(_git, "branches/");
-    /** Git Blobs folder. */
+    /** Git Blobs folder of repos made before the object store. */
     private final File _blobs = Utils.join(_git, "blobs/");
-    /** Git Commits folder. */
+    /** Git Commits folder of repos made before the object store. */
     private final File _commits = Utils.join(_git, "commits/");
-    /** Git Stage folder. */
+    /** Git Stage folder of repos made before the index. */
     private final File _stage = Utils.join(_git, "stage/");
+    /** Git Index file. */
+    private final File _indexFile = Utils.join(_git, "index");
     /** Git Remotes folder. */
     private final File _remotes = Utils.join(_git, "remotes/");
-    /** Git LOG folder. */
-    private final File _logs = Utils.join(_git, "logs/");
+    /** Serialized metadata of repos made before it was split up. */
+    private final File _meta = Utils.join(_git, "metadata");
     /** Git Active reference file. */
     private final File _active = Utils.join(_git, "active");
     /** Git Global Log file. */
-    private final File _globlog = Utils.join(_git, "global-log");
+    private final File _globlog = Utils.join(_git, "global.log");
+    /** Git Global Log file of repos made before LogFile, newest first. */
+    private final File _oldGloblog = Utils.join(_git, "global-log");
     /** Git Master Head reference file. */
     private final File _masthead = Utils.join(_branches, "master");
-    /** Git Master Log file. */
-    private final File _mastlog = Utils.join(_logs, "master-log");
 
 
-    /** New Gitlet object. */
+    /** New Gitlet object. Nothing is read until a command needs it. */
     public Gitlet() {
-        _toremove = new ArrayList<String>();
-        _allcommits = new HashMap<String, String>();
-        _abbrID = new HashMap<String, String>();
     }
 
-    /** Loads Gitlet from META if META exists. Otherwise
-     *  initializes metadata variables. */
-    public void getMeta(File meta) {
-        Gitlet oldgit = Utils.readObject(meta, Gitlet.class);
-        _toremove = oldgit.getRemoveList();
-        _allcommits = oldgit.getCommitHash();
-        _abbrID = oldgit.getshortIDs();
+    /** Moves the Commits and Blobs of a repo made before the object
+     *  store into the store, and replaces the stage folder of a repo
+     *  made before the index with an index of the current Commit's
+     *  files and the staged ones. The global log written newest first,
+     *  before LogFile, is rewritten oldest first. The serialized metadata
+     *  of older repos is split up and deleted: files staged for removal
+     *  go into the index, and messages, if not yet kept, into the
+     *  MessageIndex. */
+    public void upgrade() {
+        ObjectStore store = ObjectStore.repo();
+        if (_commits.isDirectory()) {
+            store.migrate(_commits, ObjectStore.COMMIT);
+        }
+        if (_blobs.isDirectory()) {
+            store.migrate(_blobs, ObjectStore.BLOB);
+        }
+        if (_stage.isDirectory()) {
+            Index index = index();
+            HashMap<String, String> blobs = new Commit(readActive())
+                .getBlobs();
+            for (String name : blobs.keySet()) {
+                index.put(new Index.Entry(name, blobs.get(name), null,
+                                          false));
+            }
+            File[] staged = _stage.listFiles();
+            for (File i : staged == null ? new File[0] : staged) {
+                byte[] contents = Utils.readContents(i);
+                if (contents.length > 1 && contents[0] == (byte) 0xac
+                        && contents[1] == (byte) 0xed) {
+                    Blob blob = Utils.readObject(i, Blob.class);
+                    blob.saveBlob();
+                    index.put(new Index.Entry(blob.getName(),
+                                              blob.getSHA(), null, true));
+                } else {
+                    index.put(new Index.Entry(new String(contents,
+                            StandardCharsets.UTF_8), i.getName(), null, true));
+                }
+            }
+            index.write();
+            for (File i : staged == null ? new File[0] : staged) {
+                i.delete();
+            }
+            _stage.delete();
+        }
+        if (_oldGloblog.isFile()) {
+            upgradeLog(_oldGloblog, _globlog);
+        }
+        if (_meta.isFile()) {
+            Gitlet old = Utils.readObject(_meta, Gitlet.class);
+            Index index = index();
+            for (String name : old._toremove == null
+                     ? new ArrayList<String>() : old._toremove) {
+                index.markRemoved(name);
+            }
+            if (!Utils.join(_git, "messages").isFile()
+                    && old._allcommits != null) {
+                MessageIndex messages = messages();
+                for (Map.Entry<String, String> e
+                         : old._allcommits.entrySet()) {
+                    messages.add(graph().add(new Commit(e.getKey())),
+                                 e.getValue());
+                }
+            }
+            saveGitlet();
+            _meta.delete();
+        }
+    }
+
+    /** Writes the entries of OLD, a log written newest first, to the
+     *  LogFile NEWLOG, and deletes OLD. Read backwards by a LogFile, OLD
+     *  yields its entries oldest first. */
+    private void upgradeLog(File old, File newlog) {
+        StringBuilder entries = new StringBuilder();
+        for (String entry : new LogFile(old)) {
+            entries.append(LogFile.quote(entry));
+        }
+        Utils.writeContents(newlog, entries.toString());
+        old.delete();
+    }
+
+    /** Returns the commit graph, reading it on first use. */
+    public CommitGraph graph() {
+        if (_graph == null) {
+            _graph = new CommitGraph(_git);
+        }
+        return _graph;
+    }
+
+    /** Returns the messages of the Commits, reading them on first
+     *  use. */
+    public MessageIndex messages() {
+        if (_messages == null) {
+            _messages = new MessageIndex(_git);
+        }
+        return _messages;
+    }
+
+    /** Returns the index, reading it on first use. */
+    public Index index() {
+        if (_index == null) {
+            _index = new Index(_indexFile);
+        }
+        return _index;
     }
 
     /** Initializes new Git repo with all subfolders and other
@@ -67,17 +183,12 @@ public class Gitlet implements Serializable {
         if (!chkdir) {
             _git.mkdir();
             _branches.mkdir();
-            _blobs.mkdir();
-            _commits.mkdir();
-            _stage.mkdir();
             _remotes.mkdir();
-            _logs.mkdir();
 
             try {
                 _active.createNewFile();
                 _globlog.createNewFile();
                 _masthead.createNewFile();
-                _mastlog.createNewFile();
             } catch (IOException err) {
                 throw new GitletException("I/O File Creation error");
             }
@@ -87,63 +198,46 @@ public class Gitlet implements Serializable {
             Commit initial = new Commit(initmsg, "master", timestamp);
 
             writeLog(_globlog, initial.getSHA(), timestamp, initmsg);
-            writeLog(_mastlog, initial.getSHA(), timestamp, initmsg);
             setActive("master");
             setHead("master", initial.getSHA());
             initial.saveCommit();
+            messages().add(graph().add(initial), initmsg);
 
-            _allcommits.put(initial.getSHA(), initmsg);
-            _abbrID.put(initial.getSHA().substring(0, 7), initial.getSHA());
         } else {
             throw new GitletException("A Gitlet version-control system"
                     + " already exists in the current directory.");
         }
     }
 
-    /** Reads existing Log file at LOC for Global or Branch and
-     *  updates with newest log on top. Format: commit SHA /
-     *  date TIMESTAMP (formatted) / log MSG. */
+    /** Appends a log to the Global Log file at LOC.
+     *  Format: commit SHA / date TIMESTAMP (formatted) / log MSG. */
     public void writeLog(File loc, String sha, String timestamp, String msg) {
-        String newlog = "===" + "\n";
-        newlog = newlog + "commit " + sha + "\n";
-        newlog = newlog + "Date: " + timestamp + "\n";
-        newlog = newlog + msg + "\n";
-        if (loc.exists()) {
-            newlog = newlog + Utils.readContentsAsString(loc);
-            Utils.writeContents(loc, newlog);
-        } else {
-            try {
-                loc.createNewFile();
-            } catch (IOException err) {
-                throw new GitletException("I/O File Creation error");
-            }
-            Utils.writeContents(loc, newlog);
-        }
+        new LogFile(loc).append(logEntry(sha, null, null, timestamp, msg));
     }
 
     /** Special case writeLog for Merge logs.
-     *  Reads existing Log file at LOC for Global or Branch and updates
-     *  with newest log on top. Format: commit SHA / merge PAR1 PAR2
-     *  (truncated) / date TIMESTAMP (formatted) / log MSG. */
+     *  Appends a log to the Global Log file at LOC.
+     *  Format: commit SHA / merge PAR1 PAR2 (truncated) /
+     *  date TIMESTAMP (formatted) / log MSG. */
     public void writeLog(File loc, String sha, String par1, String par2,
                          String timestamp, String msg) {
+        new LogFile(loc).append(logEntry(sha, par1, par2, timestamp, msg));
+    }
+
+    /** Returns the log entry of Commit SHA, made at TIMESTAMP with MSG,
+     *  with a Merge line for parents PAR1 and PAR2 if PAR2 is not
+     *  null. */
+    static String logEntry(String sha, String par1, String par2,
+                           String timestamp, String msg) {
         String newlog = "===" + "\n";
         newlog = newlog + "commit " + sha + "\n";
-        newlog = newlog + "Merge: " + par1.substring(0, 7) + " "
-                + par2.substring(0, 7) + "\n";
-        newlog = newlog + "Date: " + timestamp + "\n";
-        newlog = newlog + msg + "\n";
-        if (loc.exists()) {
-            newlog = newlog + Utils.readContentsAsString(loc);
-            Utils.writeContents(loc, newlog);
-        } else {
-            try {
-                loc.createNewFile();
-            } catch (IOException err) {
-                throw new GitletException("I/O File Creation error");
-            }
-            Utils.writeContents(loc, newlog);
+        if (par2 != null) {
+            newlog = newlog + "Merge: " + par1.substring(0, 7) + " "
+                    + par2.substring(0, 7) + "\n";
         }
+        newlog = newlog + "Date: " + timestamp + "\n";
+        newlog = newlog + msg + "\n\n";
+        return newlog;
     }
 
     /** Reads existing Head file for BRANCH and replaces with SHA ID. */
@@ -169,42 +263,56 @@ public class Gitlet implements Serializable {
         return Utils.readContentsAsString(_active);
     }
 
-    /** Takes FILENAME and adds to Git staging area. If the file
-     *  exists, overwrites existing file in stage. If file is
-     *  identical to current commit, then remove from stage. */
-    public void add(String filename) {
+    /** Takes PATHS and adds their files to Git staging area; a
+     *  directory, such as ".", adds every file under it. Each file is
+     *  stored and staged in the index, unless identical to current
+     *  commit, when it is removed from stage. A file whose size, time
+     *  and inode match its index entry is not read again, and only the
+     *  Trees of the current commit on the paths of the files are read.
+     *  The files are hashed and stored in parallel on Worktree.pool().
+     *  Adds nothing if a path does not exist. */
+    public void add(String... paths) {
         boolean chkdir = _git.exists();
-        if (chkdir) {
-            File newfile = Utils.join(_cwd, filename);
-            if (newfile.exists()) {
-                Blob newblob = new Blob(filename);
-                File stage = Utils.join(_stage, newblob.getSHA());
-                Commit current = new Commit(readActive());
-                if (current.getBlobs() != null && current.
-                        getBlobs().containsKey(filename)) {
-                    if (current.getBlobs().get(filename).
-                            equals(newblob.getSHA())) {
-                        if (stage.exists()) {
-                            Utils.restrictedDelete(stage);
-                        }
-                    } else {
-                        Utils.writeObject(stage, newblob);
-                    }
-                } else {
-                    try {
-                        stage.createNewFile();
-                    } catch (IOException err) {
-                        throw new GitletException("I/O File Creation error");
-                    }
-                    Utils.writeObject(stage, newblob);
-                }
+        if (!chkdir) {
+            throw new GitletException("Not in an initialized"
+                    + " Gitlet directory.");
+        }
+        TreeSet<String> names = new TreeSet<>();
+        for (String path : paths) {
+            File newfile = Utils.join(_cwd, path);
+            if (newfile.isDirectory()) {
+                names.addAll(Worktree.files(_cwd, newfile));
+            } else if (newfile.exists()) {
+                names.add(Worktree.name(_cwd, newfile));
             } else {
                 throw new GitletException("File does not exist.");
             }
-        } else {
-            throw new GitletException("Not in an initialized"
-                    + " Gitlet directory.");
         }
+        Index index = index();
+        Commit current = new Commit(readActive());
+        ObjectStore store = ObjectStore.repo();
+        ArrayList<String> todo = new ArrayList<>(names);
+        List<Index.Entry> added = Worktree.pool().submit(
+            () -> todo.parallelStream()
+                .map(name -> stage(index, store, name, current))
+                .collect(Collectors.toList())).join();
+        for (Index.Entry e : added) {
+            index.put(e);
+        }
+    }
+
+    /** Returns the index entry for the file NAME: its version in INDEX
+     *  if the file is unchanged, else the version stored in STORE,
+     *  staged iff it differs from the version in HEAD. */
+    private Index.Entry stage(Index index, ObjectStore store, String name,
+                              Commit head) {
+        File newfile = Utils.join(_cwd, name);
+        Index.Entry entry = index.get(name);
+        Index.Stat stat = Index.Stat.of(newfile);
+        String sha = index.unchanged(entry, stat) ? entry.id()
+            : store.putFile(name, newfile);
+        return new Index.Entry(name, sha, stat,
+                               !sha.equals(head.getFile(name)));
     }
 
     /** Commit snapshots current Git files and organization. By
@@ -212,50 +320,48 @@ public class Gitlet implements Serializable {
      *  Takes MSG as a message for the LOG file. Stage is cleared
      *  after a commit. Errors if stage is empty or if no MSG. */
     public void commit(String msg) {
+        commit(msg, null);
+    }
+
+    /** Commits as commit(MSG) does, with PARENT2 as the second parent
+     *  if it is not null (for merges). The commit goes on the active
+     *  branch. */
+    private void commit(String msg, String parent2) {
         Commit parent = new Commit(readActive());
-        String branch = parent.getBranch();
+        String branch = getActBranch();
         String par = parent.getSHA();
 
-        HashMap<String, String> blobs = new HashMap<String, String>();
-        if (parent.getBlobs() != null) {
-            blobs = parent.getBlobs();
+        TreeMap<String, String> changes = new TreeMap<String, String>();
+        if (parent.getTree() == null && parent.getBlobs() != null) {
+            changes.putAll(parent.getBlobs());
         }
-        if (_stage.listFiles() != null) {
-            File[] staged = _stage.listFiles();
-            if (staged != null) {
-                for (File i : staged) {
-                    Blob contents = Utils.readObject(i, Blob.class);
-                    blobs.put(contents.getName(), contents.getSHA());
-                    File newblob = Utils.join(_blobs, contents.getSHA());
-                    try {
-                        newblob.createNewFile();
-                    } catch (IOException err) {
-                        throw new GitletException("I/O File Creation error");
-                    }
-                    Utils.writeObject(newblob, contents);
-                }
-            }
+        Index index = index();
+        for (Index.Entry e : index.staged()) {
+            changes.put(e.path(), e.id());
+            index.put(new Index.Entry(e.path(), e.id(), e.stat(), false));
         }
 
-        if (_toremove != null) {
-            for (String j : _toremove) {
-                blobs.remove(j);
-            }
+        for (String j : index.removed()) {
+            changes.put(j, null);
         }
-        _toremove = new ArrayList<String>();
+        index.clearRemoved();
 
+        String tree = Tree.update(ObjectStore.repo(), parent.getTree(),
+                                  changes);
         String timestamp = getTimestamp();
-        Commit newcommit = new Commit(msg, branch, par, blobs, timestamp);
+        Commit newcommit = new Commit(msg, branch, par, parent2, tree,
+                                      timestamp);
         String newSHA = newcommit.getSHA();
         newcommit.saveCommit();
-        _allcommits.put(newSHA, msg);
-        _abbrID.put(newSHA.substring(0, 7), newSHA);
+        messages().add(graph().add(newcommit), msg);
 
         setHead(branch, newSHA);
         setActive(branch);
-        File branchlog = Utils.join(_logs, branch + "-log");
-        writeLog(_globlog, newSHA, timestamp, msg);
-        writeLog(branchlog, newSHA, timestamp, msg);
+        if (parent2 == null) {
+            writeLog(_globlog, newSHA, timestamp, msg);
+        } else {
+            writeLog(_globlog, newSHA, par, parent2, timestamp, msg);
+        }
     }
 
     /** Unstages FILENAME if in Stage. Or if tracked in current
@@ -265,18 +371,16 @@ public class Gitlet implements Serializable {
     public void remove(String filename) {
         boolean removed = false;
         Commit active = new Commit(readActive());
-        if (active.getBlobs() != null) {
-            if (active.getBlobs().containsKey(filename)) {
-                _toremove.add(filename);
-                File remwork = Utils.join(_cwd, filename);
-                Utils.restrictedDelete(remwork);
-                removed = true;
-            }
+        if (active.getFile(filename) != null) {
+            deleteFile(filename);
+            index().remove(filename);
+            index().markRemoved(filename);
+            removed = true;
         }
 
-        File stagechk = Utils.join(_stage, filename);
-        if (stagechk.exists()) {
-            Utils.restrictedDelete(stagechk);
+        Index.Entry staged = index().get(filename);
+        if (staged != null && staged.staged()) {
+            index().remove(filename);
             removed = true;
         }
 
@@ -287,42 +391,159 @@ public class Gitlet implements Serializable {
 
     /** Displays information about each Commit: Commit ID, Timestamp,
      *  and Commit MSG. Begins at Head, then runs backward along
-     *  commit tree (ignores second parents). Log should already be
-     *  correctly formatted on input. */
-    public void log() {
-        File currlog = Utils.join(_logs, getActBranch() + "-log");
-        String log = Utils.readContentsAsString(currlog);
-        System.out.println(log);
+     *  commit tree (ignores second parents), walking the first parents
+     *  in the CommitGraph and reading only the Commits shown. Options
+     *  ARGS limit them (see logLimits): the walk stops at the COUNTth
+     *  Commit shown or the first made before --since, and skips those
+     *  made after --until, by the times in the graph. */
+    public void log(String... args) {
+        long[] limits = logLimits(args);
+        long count = limits[0];
+        CommitGraph graph = graph();
+        PrintWriter out = logWriter();
+        for (int pos = graph.add(new Commit(readActive()));
+             pos != CommitGraph.NONE && count > 0
+                 && graph.time(pos) >= limits[1];
+             pos = graph.parent(pos)) {
+            if (graph.time(pos) <= limits[2]) {
+                Commit c = new Commit(graph.id(pos));
+                out.print(logEntry(c.getSHA(), c.getParent(),
+                                   c.getParent2(), c.getTimestamp(),
+                                   c.getLog()));
+                count -= 1;
+            }
+        }
+        out.flush();
     }
 
     /** Displays information about EVERY Commit: Commit ID, Timestamp,
      *  and Commit MSG. Ordered by Timestamp and runs backward. Log
-     *  should already be correctly formatted on input. */
-    public void globallog() {
-        String log = Utils.readContentsAsString(_globlog);
-        System.out.println(log);
-    }
-
-    /** Displays IDs of all Commits with matching MSG log. Checks
-     *  against the private Commit HashMap. Errors if no such MSG. */
-    public void find(String msg) {
-        if (_allcommits.containsValue(msg)) {
-            Set<String> keys = _allcommits.keySet();
-            for (String i : keys) {
-                if (_allcommits.get(i).equals(msg)) {
-                    System.out.println(i);
+     *  should already be correctly formatted on input. Options ARGS
+     *  limit the Commits shown (see printLog). */
+    public void globallog(String... args) {
+        printLog(new LogFile(_globlog), args);
+    }
+
+    /** Prints the entries of LOG newest first, each as soon as it is
+     *  read, through a buffer flushed at the end. Options ARGS limit
+     *  them (see logLimits). Reading stops at the first entry past
+     *  either limit, and the first entry made by --until is found by a
+     *  binary search of the log, so output starts at once however long
+     *  the log is. */
+    private void printLog(LogFile log, String... args) {
+        long[] limits = logLimits(args);
+        long count = limits[0];
+        Iterable<String> entries = limits[2] == Long.MAX_VALUE ? log
+            : log.until(limits[2]);
+        PrintWriter out = logWriter();
+        for (String entry : entries) {
+            if (count <= 0 || LogFile.time(entry) < limits[1]) {
+                break;
+            }
+            out.print(entry);
+            count -= 1;
+        }
+        out.flush();
+    }
+
+    /** Returns the limits the options ARGS of log and global-log set on
+     *  the Commits shown: the most shown, and the earliest and latest
+     *  times, in seconds since the epoch, of those shown. "-n COUNT"
+     *  shows the newest COUNT, "--since TIME" those made at or after
+     *  TIME, "--until TIME" those made at or before it. TIME is a Date
+     *  as log shows it, or ISO "2017-11-09", "2017-11-09T20:00" or
+     *  "2017-11-09T20:00:05-08:00"; a date alone means the start of
+     *  that day for --since and its end for --until. */
+    private static long[] logLimits(String... args) {
+        long count = Long.MAX_VALUE;
+        long since = Long.MIN_VALUE, until = Long.MAX_VALUE;
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 == args.length) {
+                throw new GitletException("Incorrect operands.");
+            }
+            switch (args[i]) {
+            case "-n":
+                try {
+                    count = Long.parseLong(args[i + 1]);
+                } catch (NumberFormatException err) {
+                    throw new GitletException("Incorrect operands.");
                 }
+                break;
+            case "--since":
+                since = parseTime(args[i + 1], false);
+                break;
+            case "--until":
+                until = parseTime(args[i + 1], true);
+                break;
+            default:
+                throw new GitletException("Incorrect operands.");
+            }
+        }
+        return new long[] { count, since, until };
+    }
+
+    /** Returns a writer of log entries to the standard output, buffered
+     *  until it is flushed. */
+    private static PrintWriter logWriter() {
+        return new PrintWriter(new BufferedWriter(
+                new OutputStreamWriter(System.out, StandardCharsets.UTF_8),
+                1 << 16));
+    }
+
+    /** Returns TIME, in a form printLog takes, in seconds since the
+     *  epoch; a date alone is the start of that day in the local zone,
+     *  or its last second if END. */
+    private static long parseTime(String time, boolean end) {
+        ZoneId zone = ZoneId.systemDefault();
+        try {
+            if (time.indexOf(' ') >= 0) {
+                return ZonedDateTime.parse(time, _gitTime).toEpochSecond();
+            } else if (time.indexOf('T') < 0) {
+                LocalDate day = LocalDate.parse(time);
+                return end
+                    ? day.plusDays(1).atStartOfDay(zone).toEpochSecond() - 1
+                    : day.atStartOfDay(zone).toEpochSecond();
+            } else if (time.matches(".*(Z|[+-]\\d\\d:\\d\\d)")) {
+                return OffsetDateTime.parse(time).toEpochSecond();
+            } else {
+                return LocalDateTime.parse(time).atZone(zone).toEpochSecond();
             }
+        } catch (DateTimeParseException err) {
+            throw new GitletException("Incorrect operands.");
+        }
+    }
+
+    /** Displays IDs of all Commits whose message is ARGS[0], in the
+     *  order they were made, found with the index of the words of
+     *  messages (see MessageIndex). With "-w WORD...", displays those
+     *  whose messages contain every WORD instead, a WORD ending in '*'
+     *  matching any word it starts. Errors if there are none. */
+    public void find(String... args) {
+        BitSet found;
+        if (args.length == 1) {
+            found = messages().exact(args[0]);
+        } else if (args.length > 1 && args[0].equals("-w")) {
+            found = messages().search(Arrays.copyOfRange(args, 1,
+                                                         args.length));
         } else {
+            throw new GitletException("Incorrect operands.");
+        }
+        if (found.isEmpty()) {
             throw new GitletException("Found no commit with that message.");
         }
+        CommitGraph graph = graph();
+        for (int p = found.nextSetBit(0); p >= 0;
+             p = found.nextSetBit(p + 1)) {
+            System.out.println(graph.id(p));
+        }
     }
 
     /** Displays current Branches, marks current Branch with
-     *  an asterisk (*), and displays Stage status.
-     *  (Potential EC with additional Status information.) */
+     *  an asterisk (*), and displays Stage status. Also lists files
+     *  changed or deleted since they were last added or committed, and
+     *  files not tracked at all (see Worktree). */
     public void status() {
-        System.out.print("=== Branches ===");
+        System.out.println("=== Branches ===");
         List<String> branches = Utils.plainFilenamesIn(_branches);
         String branch = getActBranch();
         for (String i : branches) {
@@ -334,23 +555,35 @@ public class Gitlet implements Serializable {
         }
 
         System.out.println("\n" + "=== Staged Files ===");
-        if (_stage.listFiles() != null) {
-            List<String> stages = Utils.plainFilenamesIn(_stage);
-            for (String j : stages) {
-                System.out.println(j);
-            }
+        for (Index.Entry j : index().staged()) {
+            System.out.println(j.path());
         }
 
         System.out.println("\n" + "=== Removed Files ===");
-        if (_toremove.size() > 0) {
-            Collections.sort(_toremove);
-            for (String k : _toremove) {
-                System.out.println(k);
-            }
+        for (String k : index().removed()) {
+            System.out.println(k);
+        }
+        Worktree work = new Worktree(_cwd, index()).scan();
+        for (Index.Entry e : work.refreshed()) {
+            index().put(e);
+        }
+        TreeMap<String, String> changes = new TreeMap<String, String>();
+        for (String m : work.modified()) {
+            changes.put(m, " (modified)");
+        }
+        for (String d : work.deleted()) {
+            changes.put(d, " (deleted)");
         }
         System.out.println("\n" + "=== Modifications Not Staged"
                 + " For Commit ===");
+        for (String c : changes.keySet()) {
+            System.out.println(c + changes.get(c));
+        }
         System.out.println("\n" + "=== Untracked Files ===");
+        for (String u : work.untracked()) {
+            System.out.println(u);
+        }
+        System.out.println();
     }
 
     /** Checkout 0 of 3. Takes ARGS from Main to determine which
@@ -373,19 +606,18 @@ public class Gitlet implements Serializable {
      *  File is NOT staged. */
     public void checkout1(String filename) {
         Commit active = new Commit(readActive());
-        HashMap<String, String> blobs = active.getBlobs();
-        if (blobs.containsKey(filename)) {
-            String newSHA = blobs.get(filename);
+        String newSHA = active.getFile(filename);
+        if (newSHA != null) {
             File oldSHA = Utils.join(_cwd, filename);
             if (oldSHA.exists()) {
-                Utils.writeContents(oldSHA, newSHA);
+                ObjectStore.repo().restore(newSHA, oldSHA);
             } else {
                 try {
                     oldSHA.createNewFile();
                 } catch (IOException err) {
                     throw new GitletException("I/O File Creation error");
                 }
-                Utils.writeContents(oldSHA, newSHA);
+                ObjectStore.repo().restore(newSHA, oldSHA);
             }
         } else {
             throw new GitletException("File does not exist in that commit.");
@@ -396,25 +628,20 @@ public class Gitlet implements Serializable {
      *  and puts in work directory. Overwrites file if
      *  already present. File is NOT staged. */
     public void checkout2(String shaID, String filename) {
-        if (shaID.length() < SHALEN) {
-            shaID = _abbrID.get(shaID);
-        }
-        Commit source = new Commit(shaID);
-        File sourcechk = Utils.join(_commits, source.getSHA());
-        if (sourcechk.exists()) {
-            HashMap<String, String> blobs = source.getBlobs();
-            if (blobs.containsKey(filename)) {
-                String newSHA = blobs.get(filename);
+        Commit source = new Commit(commitId(shaID));
+        if (ObjectStore.repo().contains(source.getSHA())) {
+            String newSHA = source.getFile(filename);
+            if (newSHA != null) {
                 File oldSHA = Utils.join(_cwd, filename);
                 if (oldSHA.exists()) {
-                    Utils.writeContents(oldSHA, newSHA);
+                    ObjectStore.repo().restore(newSHA, oldSHA);
                 } else {
                     try {
                         oldSHA.createNewFile();
                     } catch (IOException err) {
                         throw new GitletException("I/O File Creation error");
                     }
-                    Utils.writeContents(oldSHA, newSHA);
+                    ObjectStore.repo().restore(newSHA, oldSHA);
                 }
             } else {
                 throw new GitletException("File does not"
@@ -431,73 +658,84 @@ public class Gitlet implements Serializable {
     public void checkout3(String branch) {
         File branchchk = Utils.join(_branches, branch);
         if (branchchk.exists()) {
-            Commit active = new Commit(readActive());
-            String current = active.getBranch();
-            if (current.equals(branch)) {
+            if (getActBranch().equals(branch)) {
                 throw new GitletException("No need to checkout"
                         + " the current branch.");
             } else {
-
-                HashMap<String, String> blobs = active.getBlobs();
-                File[] worklist = _cwd.listFiles();
-                for (File i : worklist) {
-                    if (!blobs.containsKey(i.toString())) {
-                        throw new GitletException("There is an untracked"
-                                + " file in the way; delete it, or add"
-                                + " and commit it first.");
-                    }
-                }
-
-                Set<String> keys = blobs.keySet();
-                for (String j : keys) {
-                    File newfile = Utils.join(_cwd, j);
-                    String newSHA = blobs.get(j);
-                    if (newfile.exists()) {
-                        Utils.writeContents(newfile, newSHA);
-                    } else {
-                        try {
-                            newfile.createNewFile();
-                        } catch (IOException err) {
-                            throw new GitletException("I/O File error");
-                        }
-                        Utils.writeContents(newfile, newSHA);
-                    }
-                }
-
+                checkoutCommit(new Commit(
+                        Utils.readContentsAsString(branchchk)));
                 setActive(branch);
-                File[] stagelist = _stage.listFiles();
-                if (stagelist != null) {
-                    for (File k : stagelist) {
-                        Utils.restrictedDelete(k);
-                    }
-                }
             }
         } else {
             throw new GitletException("No such branch exists.");
         }
     }
 
+    /** Makes the work directory match TARGET: writes each file of
+     *  TARGET (unless its index entry shows it already there), deletes
+     *  tracked files TARGET lacks, and replaces the index with TARGET's
+     *  files. Clears Stage. Errors before changing anything if a file
+     *  TARGET would write is untracked. */
+    private void checkoutCommit(Commit target) {
+        HashMap<String, String> blobs = target.getBlobs();
+        checkUntracked(blobs.keySet());
+        Index index = index();
+        for (Index.Entry e : new ArrayList<>(index.entries())) {
+            if (!blobs.containsKey(e.path())) {
+                deleteFile(e.path());
+            }
+        }
+        for (Map.Entry<String, String> j : blobs.entrySet()) {
+            File newfile = Utils.join(_cwd, j.getKey());
+            Index.Entry entry = index.get(j.getKey());
+            if (entry != null && entry.id().equals(j.getValue())
+                    && index.unchanged(entry, Index.Stat.of(newfile))) {
+                continue;
+            }
+            newfile.getAbsoluteFile().getParentFile().mkdirs();
+            ObjectStore.repo().restore(j.getValue(), newfile);
+        }
+        index.reset(_cwd, blobs);
+    }
+
+    /** Errors if any file of NAMES is in the work directory but
+     *  is not tracked. */
+    private void checkUntracked(Collection<String> names) {
+        for (String name : names) {
+            if (index().get(name) == null
+                    && Utils.join(_cwd, name).exists()) {
+                throw new GitletException("There is an untracked file"
+                        + " in the way; delete it, or add and commit"
+                        + " it first.");
+            }
+        }
+    }
+
+    /** Deletes the work directory file NAME, if present. NAME may be in
+     *  a subdirectory, but not outside the work directory. */
+    private void deleteFile(String name) {
+        File file = Utils.join(_cwd, name);
+        Worktree.name(_cwd, file);
+        if (file.isFile()) {
+            file.delete();
+        }
+    }
+
     /** Creates a new Branch with NAME. Points at current
      *  Head. Does NOT automatically switch to new Branch. */
     public void branch(String name) {
         File branchhead = Utils.join(_branches, name);
-        File branchchk = Utils.join(_logs, name + "-log");
         if (branchhead.exists()) {
             throw new GitletException("A branch with that name"
                     + " already exists.");
         } else {
             try {
-                branchchk.createNewFile();
                 branchhead.createNewFile();
             } catch (IOException err) {
                 throw new GitletException("I/O File Creation error");
             }
-            Utils.writeContents(branchchk, "");
             Utils.writeContents(branchhead, "");
-            Commit active = new Commit(readActive());
-            writeLog(branchchk, active.getSHA(),
-                    active.getTimestamp(), active.getLog());
-            setHead(name, active.getSHA());
+            setHead(name, readActive());
         }
     }
 
@@ -519,59 +757,150 @@ public class Gitlet implements Serializable {
         }
     }
 
+    /** Returns the full SHA ID of the Commit ID names: ID itself if it
+     *  is full length, else the only Commit whose ID starts with it
+     *  (see CommitGraph.resolve). Errors if there is none, or several. */
+    private String commitId(String id) {
+        if (id.length() >= SHALEN) {
+            return id;
+        }
+        List<String> found = graph().resolve(id);
+        if (found.isEmpty()) {
+            throw new GitletException("No commit with that id exists.");
+        } else if (found.size() > 1) {
+            throw new GitletException("Commit id " + id + " is ambiguous.");
+        }
+        return found.get(0);
+    }
+
     /** Checks out files from Commit COMM. Removes files
-     *  not part of COMM, and moves Head to COMM. Clears Stage. */
+     *  not part of COMM, and moves Head of the current Branch to
+     *  COMM. Clears Stage. */
     public void reset(String comm) {
-        if (comm.length() < SHALEN) {
-            comm = _abbrID.get(comm);
-        }
-        Commit source = new Commit(comm);
-        File sourcechk = Utils.join(_commits, source.getSHA());
-        if (sourcechk.exists()) {
-            HashMap<String, String> blobs = source.getBlobs();
-            File[] worklist = _cwd.listFiles();
-            if (worklist != null) {
-                for (File i : worklist) {
-                    if (!blobs.containsKey(i.toString())) {
-                        throw new GitletException("There is an untracked file"
-                                + " in the way; delete it, or add and commit"
-                                + " it first.");
-                    }
-                    Utils.restrictedDelete(i);
-                }
-            }
+        Commit source = new Commit(commitId(comm));
+        checkoutCommit(source);
+        setHead(getActBranch(), source.getSHA());
+    }
 
-            Set<String> keys = blobs.keySet();
-            for (String j : keys) {
-                File newfile = Utils.join(_cwd, j);
-                String newSHA = blobs.get(j);
-                try {
-                    newfile.createNewFile();
-                } catch (IOException err) {
-                    throw new GitletException("I/O File Creation error");
-                }
-                Utils.writeContents(newfile, newSHA);
+    /** Merges Branch BRANCH into current Branch. Each file is
+     *  compared by SHA ID in the split point (the latest common
+     *  ancestor, see CommitGraph.mergeBase), the current Head and
+     *  BRANCH's Head: a file changed only in BRANCH is checked out and
+     *  staged (or removed), a file changed only in the current Branch
+     *  or the same way in both is kept, and a file changed differently
+     *  in both is written with conflict markers around both versions,
+     *  the only files whose contents are read. The result is committed
+     *  with both Heads as parents. If BRANCH's Head is an ancestor of
+     *  the current one there is nothing to do, and if the current Head
+     *  is an ancestor of BRANCH's, the current Branch just moves to it. */
+    public void merge(String branch) {
+        if (!index().staged().isEmpty() || !index().removed().isEmpty()) {
+            throw new GitletException("You have uncommitted changes.");
+        }
+        File given = Utils.join(_branches, branch);
+        if (!given.exists()) {
+            throw new GitletException("A branch with that name"
+                    + " does not exist.");
+        }
+        String current = getActBranch();
+        if (branch.equals(current)) {
+            throw new GitletException("Cannot merge a branch with itself.");
+        }
+        Commit head = new Commit(readActive());
+        Commit other = new Commit(Utils.readContentsAsString(given));
+        CommitGraph graph = graph();
+        int ours = graph.add(head), theirs = graph.add(other);
+        int split = graph.mergeBase(ours, theirs);
+        if (split == theirs) {
+            System.out.println("Given branch is an ancestor of the"
+                    + " current branch.");
+            return;
+        }
+        if (split == ours) {
+            checkoutCommit(other);
+            setHead(current, other.getSHA());
+            System.out.println("Current branch fast-forwarded.");
+            return;
+        }
+        HashMap<String, String> base = split == CommitGraph.NONE
+            ? new HashMap<String, String>()
+            : new Commit(graph.id(split)).getBlobs();
+        HashMap<String, String> mine = head.getBlobs();
+        HashMap<String, String> yours = other.getBlobs();
+        TreeSet<String> names = new TreeSet<String>(base.keySet());
+        names.addAll(mine.keySet());
+        names.addAll(yours.keySet());
+        TreeMap<String, String> taken = new TreeMap<String, String>();
+        TreeSet<String> conflicts = new TreeSet<String>();
+        for (String name : names) {
+            String b = base.get(name), m = mine.get(name), y = yours.get(name);
+            if (Objects.equals(m, y) || Objects.equals(y, b)) {
+                continue;
+            } else if (Objects.equals(m, b)) {
+                taken.put(name, y);
+            } else {
+                conflicts.add(name);
             }
-
-            setActive(source.getBranch());
-            setHead(source.getBranch(), source.getSHA());
-
-            File[] stagelist = _stage.listFiles();
-            if (stagelist != null) {
-                for (File k : stagelist) {
-                    Utils.restrictedDelete(k);
+        }
+        ArrayList<String> written = new ArrayList<String>(conflicts);
+        for (Map.Entry<String, String> t : taken.entrySet()) {
+            if (t.getValue() != null) {
+                written.add(t.getKey());
+            }
+        }
+        checkUntracked(written);
+
+        ObjectStore store = ObjectStore.repo();
+        Index index = index();
+        for (Map.Entry<String, String> t : taken.entrySet()) {
+            String name = t.getKey();
+            File file = Utils.join(_cwd, name);
+            if (t.getValue() == null) {
+                deleteFile(name);
+                index.remove(name);
+                index.markRemoved(name);
+            } else {
+                file.getAbsoluteFile().getParentFile().mkdirs();
+                store.restore(t.getValue(), file);
+                index.put(new Index.Entry(name, t.getValue(),
+                                          Index.Stat.of(file), true));
+            }
+        }
+        for (String name : conflicts) {
+            File file = Utils.join(_cwd, name);
+            file.getAbsoluteFile().getParentFile().mkdirs();
+            try (OutputStream out = new BufferedOutputStream(
+                     new FileOutputStream(file))) {
+                out.write(CONFLICT_HEAD);
+                if (mine.get(name) != null) {
+                    store.copy(mine.get(name), out);
+                }
+                out.write(CONFLICT_MID);
+                if (yours.get(name) != null) {
+                    store.copy(yours.get(name), out);
                 }
+                out.write(CONFLICT_END);
+            } catch (IOException err) {
+                throw new GitletException("I/O File Creation error");
             }
-        } else {
-            throw new GitletException("No commit with that id exists.");
+            index.put(new Index.Entry(name, store.putFile(name, file),
+                                      Index.Stat.of(file), true));
+        }
+        commit("Merged " + branch + " into " + current + ".",
+               other.getSHA());
+        if (!conflicts.isEmpty()) {
+            System.out.println("Encountered a merge conflict.");
         }
-
     }
 
-    /** Merges Branch BRANCH with current Branch.
-     *  (Spec for details.) */
-    public void merge(String branch) {
-
+    /** Packs the loose Commits and Blobs, and any earlier packs, into
+     *  one pack file (see ObjectStore.repack). */
+    public void gc() {
+        if (!_git.isDirectory()) {
+            throw new GitletException("Not in an initialized"
+                    + " Gitlet directory.");
+        }
+        ObjectStore.repo().repack();
     }
 
     /** Formats Date to Git Log specs and returns formatted timestamp. */
@@ -579,50 +908,47 @@ public class Gitlet implements Serializable {
         return ZonedDateTime.now().format(_gitTime);
     }
 
-    /** Converts this Gitlet object to SHA to preserve metadata. */
+    /** Writes whatever of the index, commit graph and messages this
+     *  command read and changed; nothing else is kept between commands. */
     public void saveGitlet() {
-        String gitSHA = Utils.sha1(Utils.serialize(this));
-        File newGit = Utils.join(_git, "metadata");
-        if (newGit.exists()) {
-            Utils.writeContents(newGit, gitSHA);
-        } else {
-            try {
-                newGit.createNewFile();
-            } catch (IOException err) {
-                throw new GitletException("I/O File Creation error");
+        if (_git.isDirectory()) {
+            if (_index != null) {
+                _index.write();
+            }
+            if (_graph != null) {
+                _graph.write();
+            }
+            if (_messages != null) {
+                _messages.write();
             }
-            Utils.writeContents(newGit, gitSHA);
         }
     }
 
-    /** Returns files staged for removal. */
-    public ArrayList<String> getRemoveList() {
-        return _toremove;
-    }
-
-    /** Returns map of all current Commits : Log Message. */
-    public HashMap<String, String> getCommitHash() {
-        return _allcommits;
-    }
-
-    /** Returns map of short SHA ID : full SHA ID. */
-    public HashMap<String, String> getshortIDs() {
-        return _abbrID;
-    }
-
     /** Formats timestamps for Log data and reading Logs. */
-    private final DateTimeFormatter _gitTime =
+    static final DateTimeFormatter _gitTime =
             DateTimeFormatter.ofPattern("EEE MMM d HH:mm:ss yyyy Z");
 
-    /** List of files to be removed during Commit. */
+    /** Files staged for removal, in the metadata of older repos only. */
     private ArrayList<String> _toremove;
 
-    /** Additional HashMap of every Commit's SHA ID : MSG.
-     *  For quick referencing of Commit SHAs and for Find(MSG). */
+    /** Every Commit's SHA ID : MSG, in the metadata of older repos
+     *  only. */
     private HashMap<String, String> _allcommits;
 
-    /** Additional HashMap of every Commit's 7-letter SHA : full SHA. */
-    private HashMap<String, String> _abbrID;
+    /** The index, once read. */
+    private transient Index _index;
+
+    /** The commit graph, once read. */
+    private transient CommitGraph _graph;
+
+    /** The messages of the Commits, once read. */
+    private transient MessageIndex _messages;
+
+    /** Lines around the two versions of a file in a merge conflict. */
+    private static final byte[] CONFLICT_HEAD =
+            "<<<<<<< HEAD\n".getBytes(StandardCharsets.UTF_8),
+        CONFLICT_MID = "=======\n".getBytes(StandardCharsets.UTF_8),
+        CONFLICT_END = ">>>>>>>\n".getBytes(StandardCharsets.UTF_8);
 
     /** Length of a full SHA ID (to check against for short IDs). */
     private static final int SHALEN = 40;
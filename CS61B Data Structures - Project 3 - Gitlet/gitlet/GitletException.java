@@ -6,6 +6,8 @@ package gitlet;
  */
 class GitletException extends RuntimeException {
 
+    /** GitletExceptions are never serialized. */
+    private static final long serialVersionUID = 1L;
 
     /** A GitletException with no message. */
     GitletException() {
@@ -15,7 +17,6 @@ class GitletException extends RuntimeException {
     /** A GitletException MSG as its message. */
     GitletException(String msg) {
         super(msg);
-        System.exit(0);
     }
 
 }
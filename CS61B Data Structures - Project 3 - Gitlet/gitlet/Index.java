@@ -0,0 +1,348 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/** The index of a Gitlet repo, .gitlet/index: every tracked file with
+ *  the SHA ID of its contents, whether that version is staged for the
+ *  next commit, and the size, modification time and inode the file had
+ *  when it was last hashed. A file whose Stat still matches its entry
+ *  has not changed and need not be hashed again.
+ *
+ *  The file starts with the magic number "GIND", a version and the
+ *  number of entries, followed by the entries in order of path: the
+ *  length of the path (a short) and its UTF-8 bytes, the 20-byte ID,
+ *  the size, modification time in nanoseconds and inode (longs), and a
+ *  byte of flags. Then come the number of paths staged for removal and
+ *  each path, as before; files of version 1 have none. The file is
+ *  written to a temporary file that is renamed into place.
+ *
+ *  A file changed within the clock tick in which the index was written
+ *  may keep its size and time, so entries whose times are not older
+ *  than the index file itself are never trusted.
+ *
+ *  @author Thomas Hsiung
+ */
+class Index {
+
+    /** Flag of an entry staged for the next commit. */
+    static final int STAGED = 1;
+
+    /** Magic number of an index. */
+    private static final int MAGIC = 0x47494e44;
+    /** Version of the format. */
+    private static final int VERSION = 2;
+
+    /** The index kept in FILE, empty if FILE does not exist. */
+    Index(File file) {
+        _file = file;
+        if (!file.isFile()) {
+            _written = Long.MIN_VALUE;
+            return;
+        }
+        try {
+            _written = Files.getLastModifiedTime(file.toPath())
+                .to(TimeUnit.NANOSECONDS);
+            ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+            int magic = in.getInt(), version = in.getInt();
+            if (magic != MAGIC || version < 1 || version > VERSION) {
+                throw new GitletException("Corrupt index");
+            }
+            int count = in.getInt();
+            _entries = new LinkedHashMap<>(2 * count);
+            byte[] data = in.array();
+            for (int i = 0; i < count; i++) {
+                int length = in.getShort() & 0xffff;
+                String path = new String(data, in.position(), length,
+                                         StandardCharsets.UTF_8);
+                String id = ObjectStore.hex(data, in.position() + length,
+                                            PackFile.ID_BYTES);
+                in.position(in.position() + length + PackFile.ID_BYTES);
+                Stat stat = new Stat(in.getLong(), in.getLong(),
+                                     in.getLong());
+                int flags = in.get();
+                _entries.put(path, new Entry(path, id, stat,
+                                             (flags & STAGED) != 0));
+            }
+            for (int i = version == 1 ? 0 : in.getInt(); i > 0; i--) {
+                int length = in.getShort() & 0xffff;
+                _removed.add(new String(data, in.position(), length,
+                                        StandardCharsets.UTF_8));
+                in.position(in.position() + length);
+            }
+        } catch (BufferUnderflowException | IndexOutOfBoundsException err) {
+            throw new GitletException("Corrupt index");
+        } catch (IOException err) {
+            throw new GitletException("I/O File Read error");
+        }
+    }
+
+    /** Returns the entry of PATH, or null. */
+    Entry get(String path) {
+        return _entries.get(path);
+    }
+
+    /** Returns all entries, in order of path. */
+    Collection<Entry> entries() {
+        if (!_sorted) {
+            TreeMap<String, Entry> sorted = new TreeMap<>(_entries);
+            _entries = new LinkedHashMap<>(sorted);
+            _sorted = true;
+        }
+        return _entries.values();
+    }
+
+    /** Returns the staged entries, in order of path. */
+    List<Entry> staged() {
+        ArrayList<Entry> result = new ArrayList<>();
+        for (Entry e : entries()) {
+            if (e.staged()) {
+                result.add(e);
+            }
+        }
+        return result;
+    }
+
+    /** Returns the paths staged for removal, in order. */
+    List<String> removed() {
+        return new ArrayList<>(_removed);
+    }
+
+    /** Stages PATH, which must have no entry, for removal. */
+    void markRemoved(String path) {
+        _dirty |= _removed.add(path);
+    }
+
+    /** Adds or replaces the entry of ENTRY's path, which is then not
+     *  staged for removal. */
+    void put(Entry entry) {
+        if (_entries.put(entry.path(), entry) == null) {
+            _sorted = false;
+            _removed.remove(entry.path());
+        }
+        _dirty = true;
+    }
+
+    /** Removes the entry of PATH, returning it or null. */
+    Entry remove(String path) {
+        Entry result = _entries.remove(path);
+        _dirty |= result != null;
+        return result;
+    }
+
+    /** Removes every entry and unstages every removal. */
+    void clear() {
+        _dirty |= !_entries.isEmpty() || !_removed.isEmpty();
+        _entries.clear();
+        _removed.clear();
+    }
+
+    /** Unstages every removal, as a commit does. */
+    void clearRemoved() {
+        _dirty |= !_removed.isEmpty();
+        _removed.clear();
+    }
+
+    /** Replaces my entries with those of the files in BLOBS, a map of
+     *  path to SHA ID, none staged, with their stats taken in DIR. */
+    void reset(File dir, Map<String, String> blobs) {
+        clear();
+        for (Map.Entry<String, String> b : blobs.entrySet()) {
+            put(new Entry(b.getKey(), b.getValue(),
+                          Stat.of(Utils.join(dir, b.getKey())), false));
+        }
+    }
+
+    /** Returns true iff ENTRY describes a file whose stat is now STAT
+     *  and that cannot have changed since it was hashed. */
+    boolean unchanged(Entry entry, Stat stat) {
+        return entry != null && stat != null && entry.stat().equals(stat)
+            && stat.mtime() < _written;
+    }
+
+    /** Writes me to my file if I have changed. */
+    void write() {
+        if (!_dirty) {
+            return;
+        }
+        File tmp = new File(_file.getPath() + ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                     new BufferedOutputStream(new FileOutputStream(tmp),
+                                              1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(_entries.size());
+                for (Entry e : entries()) {
+                    byte[] path = e.path().getBytes(StandardCharsets.UTF_8);
+                    out.writeShort(path.length);
+                    out.write(path);
+                    out.write(PackFile.bytes(e.id()));
+                    out.writeLong(e.stat().size());
+                    out.writeLong(e.stat().mtime());
+                    out.writeLong(e.stat().inode());
+                    out.writeByte(e.staged() ? STAGED : 0);
+                }
+                out.writeInt(_removed.size());
+                for (String path : _removed) {
+                    byte[] bytes = path.getBytes(StandardCharsets.UTF_8);
+                    out.writeShort(bytes.length);
+                    out.write(bytes);
+                }
+            }
+            Files.move(tmp.toPath(), _file.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException err) {
+            throw new GitletException("I/O File Creation error");
+        }
+        _dirty = false;
+    }
+
+    /** A tracked file: its path, the SHA ID of the version in the index,
+     *  whether that version is staged, and the file's stat when it was
+     *  hashed. */
+    static class Entry {
+
+        /** An entry for PATH with SHA ID, STAT, and STAGED. */
+        Entry(String path, String id, Stat stat, boolean staged) {
+            _path = path;
+            _id = id;
+            _stat = stat == null ? Stat.NONE : stat;
+            _staged = staged;
+        }
+
+        /** Returns the path. */
+        String path() {
+            return _path;
+        }
+
+        /** Returns the SHA ID. */
+        String id() {
+            return _id;
+        }
+
+        /** Returns the stat of the file when it was hashed. */
+        Stat stat() {
+            return _stat;
+        }
+
+        /** Returns true iff this version is staged. */
+        boolean staged() {
+            return _staged;
+        }
+
+        /** Path from the working directory. */
+        private final String _path;
+        /** SHA ID. */
+        private final String _id;
+        /** Stat of the file when hashed. */
+        private final Stat _stat;
+        /** True iff staged. */
+        private final boolean _staged;
+    }
+
+    /** The size, modification time and inode of a file. The inode is
+     *  taken as the hash of the file's key, which on Unix is its device
+     *  and inode numbers. */
+    static class Stat {
+
+        /** Stat of no file, matching none. */
+        static final Stat NONE = new Stat(-1, -1, -1);
+
+        /** A stat with SIZE, MTIME in nanoseconds, and INODE. */
+        Stat(long size, long mtime, long inode) {
+            _size = size;
+            _mtime = mtime;
+            _inode = inode;
+        }
+
+        /** Returns the stat of FILE, or null if it is not a file. */
+        static Stat of(File file) {
+            try {
+                return of(Files.readAttributes(file.toPath(),
+                                               BasicFileAttributes.class,
+                                               LinkOption.NOFOLLOW_LINKS));
+            } catch (IOException err) {
+                return null;
+            }
+        }
+
+        /** Returns the stat of a file with ATTRS. */
+        static Stat of(BasicFileAttributes attrs) {
+            Object key = attrs.fileKey();
+            return new Stat(attrs.size(),
+                            attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS),
+                            key == null ? 0 : key.hashCode());
+        }
+
+        /** Returns the size. */
+        long size() {
+            return _size;
+        }
+
+        /** Returns the modification time in nanoseconds. */
+        long mtime() {
+            return _mtime;
+        }
+
+        /** Returns the inode. */
+        long inode() {
+            return _inode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Stat)) {
+                return false;
+            }
+            Stat s = (Stat) obj;
+            return _size == s._size && _mtime == s._mtime
+                && _inode == s._inode && _size >= 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(_size ^ _mtime ^ _inode);
+        }
+
+        /** Size in bytes. */
+        private final long _size;
+        /** Modification time in nanoseconds. */
+        private final long _mtime;
+        /** Inode. */
+        private final long _inode;
+    }
+
+    /** File holding the index. */
+    private final File _file;
+    /** Entries by path, in order of path if _sorted. Entries are read
+     *  in order, and replacing one keeps its place, so they need sorting
+     *  only after new paths are added. */
+    private LinkedHashMap<String, Entry> _entries = new LinkedHashMap<>();
+    /** Paths staged for removal. */
+    private final TreeSet<String> _removed = new TreeSet<>();
+    /** True iff _entries is in order of path. */
+    private boolean _sorted = true;
+    /** Modification time in nanoseconds of _file when read. */
+    private long _written;
+    /** True iff I have changed since read. */
+    private boolean _dirty;
+}
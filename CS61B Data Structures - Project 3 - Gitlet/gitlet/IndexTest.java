@@ -0,0 +1,124 @@
+package gitlet;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** The suite of all JUnit tests for the Index class.
+ *  @author Thomas Hsiung
+ */
+public class IndexTest {
+
+    /** Directory of the index and the files it tracks. */
+    @Rule
+    public TemporaryFolder dir = new TemporaryFolder();
+
+    /** A path that is not ASCII. */
+    static final String UNI = "dir/\u00fcn\u00ef.txt";
+
+    /** Returns the paths of ENTRIES. */
+    static List<String> paths(Iterable<Index.Entry> entries) {
+        ArrayList<String> result = new ArrayList<>();
+        for (Index.Entry e : entries) {
+            result.add(e.path());
+        }
+        return result;
+    }
+
+    @Test
+    public void testWriteAndLoad() {
+        File file = new File(dir.getRoot(), "index");
+        Index index = new Index(file);
+        assertTrue(index.entries().isEmpty());
+        index.put(new Index.Entry("wug.txt", Utils.sha1("wug"),
+                                  new Index.Stat(14, 1000, 7), true));
+        index.put(new Index.Entry(UNI, Utils.sha1("uni"),
+                                  new Index.Stat(3, 2000, 8), false));
+        index.put(new Index.Entry("a.txt", Utils.sha1("a"), null, true));
+        index.markRemoved("gone.txt");
+        index.write();
+        assertTrue(file.isFile());
+
+        index = new Index(file);
+        assertEquals(Arrays.asList("a.txt", UNI, "wug.txt"),
+                     paths(index.entries()));
+        assertEquals(Arrays.asList("a.txt", "wug.txt"),
+                     paths(index.staged()));
+        assertEquals(Arrays.asList("gone.txt"), index.removed());
+        Index.Entry wug = index.get("wug.txt");
+        assertEquals(Utils.sha1("wug"), wug.id());
+        assertTrue(wug.staged());
+        assertEquals(new Index.Stat(14, 1000, 7), wug.stat());
+        assertEquals(-1, index.get("a.txt").stat().size());
+        assertTrue(index.unchanged(wug, new Index.Stat(14, 1000, 7)));
+        assertFalse(index.unchanged(wug, new Index.Stat(15, 1000, 7)));
+        assertFalse(index.unchanged(wug, null));
+
+        index.put(new Index.Entry("gone.txt", Utils.sha1("back"), null,
+                                  true));
+        index.remove("a.txt");
+        index.write();
+        index = new Index(file);
+        assertEquals(Arrays.asList(UNI, "gone.txt", "wug.txt"),
+                     paths(index.entries()));
+        assertTrue(index.removed().isEmpty());
+        index.clear();
+        index.write();
+        assertTrue(new Index(file).entries().isEmpty());
+    }
+
+    @Test
+    public void testVersion1() throws IOException {
+        File file = new File(dir.getRoot(), "index");
+        try (DataOutputStream out =
+                 new DataOutputStream(new FileOutputStream(file))) {
+            out.writeInt(0x47494e44);
+            out.writeInt(1);
+            out.writeInt(2);
+            for (String path : new String[] { "a.txt", "b.txt" }) {
+                out.writeShort(path.length());
+                out.writeBytes(path);
+                out.write(PackFile.bytes(Utils.sha1(path)));
+                out.writeLong(5);
+                out.writeLong(1000);
+                out.writeLong(9);
+                out.writeByte(path.equals("b.txt") ? Index.STAGED : 0);
+            }
+        }
+        Index index = new Index(file);
+        assertEquals(Arrays.asList("a.txt", "b.txt"),
+                     paths(index.entries()));
+        assertEquals(Arrays.asList("b.txt"), paths(index.staged()));
+        assertEquals(Utils.sha1("a.txt"), index.get("a.txt").id());
+        assertEquals(new Index.Stat(5, 1000, 9), index.get("a.txt").stat());
+        assertTrue(index.removed().isEmpty());
+
+        index.markRemoved("c.txt");
+        index.write();
+        index = new Index(file);
+        assertEquals(2, index.entries().size());
+        assertEquals(Arrays.asList("c.txt"), index.removed());
+    }
+
+    @Test
+    public void testCorrupt() {
+        File file = new File(dir.getRoot(), "index");
+        Utils.writeContents(file, "GIND but not an index");
+        try {
+            new Index(file);
+            fail("read a corrupt index");
+        } catch (GitletException excp) {
+            assertEquals("Corrupt index", excp.getMessage());
+        }
+    }
+
+}
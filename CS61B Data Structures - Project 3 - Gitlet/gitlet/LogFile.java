@@ -0,0 +1,271 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.regex.Pattern;
+
+/** A log of Commits, as log and global-log print them: entries of the
+ *  form "===\ncommit ID\n...MESSAGE\n\n", oldest first.
+ *
+ *  New entries are appended, so adding one costs the same however long
+ *  the log is. The log is read newest first by reading the file
+ *  backwards a BLOCK at a time: an entry starts with a line "===" at
+ *  the start of the file or after the blank line ending the entry
+ *  before it.
+ *
+ *  So that a message cannot start an entry of its own, each line after
+ *  the first of an entry that is made only of three or more '='s is
+ *  written with one more (see quote), and read back without it.
+ *
+ *  Entries are appended as Commits are made, so they are in order of
+ *  the times on their "Date:" lines, and the newest entry made by a
+ *  given time is found by a binary search of the file (see until).
+ *
+ *  @author Thomas Hsiung
+ */
+class LogFile implements Iterable<String> {
+
+    /** Bytes read from the file at a time. */
+    static final int BLOCK = 1 << 13;
+
+    /** The log kept in FILE. */
+    LogFile(File file) {
+        _file = file;
+    }
+
+    /** Returns my file. */
+    File file() {
+        return _file;
+    }
+
+    /** Appends ENTRY, creating my file if need be. */
+    void append(String entry) {
+        ByteBuffer buf =
+            ByteBuffer.wrap(quote(entry).getBytes(StandardCharsets.UTF_8));
+        try (FileChannel out = FileChannel.open(_file.toPath(),
+                                                StandardOpenOption.CREATE,
+                                                StandardOpenOption.WRITE,
+                                                StandardOpenOption.APPEND)) {
+            while (buf.hasRemaining()) {
+                out.write(buf);
+            }
+        } catch (IOException err) {
+            throw new GitletException("I/O File Creation error");
+        }
+    }
+
+    /** Returns an iterator over my entries, newest first. */
+    @Override
+    public Iterator<String> iterator() {
+        return new Backwards(_file.length());
+    }
+
+    /** Returns my entries made at or before UNTIL, in seconds since the
+     *  epoch, newest first. The newest is found by a binary search for
+     *  the last position in the file after which the next entry is that
+     *  old, which reads a little of the file at each step. */
+    Iterable<String> until(long until) {
+        long length = _file.length();
+        if (length == 0 || time(read(0, BLOCK)) > until) {
+            return () -> new Backwards(0);
+        }
+        long lo = 0, hi = length;
+        while (hi - lo > 1) {
+            long mid = lo + (hi - lo) / 2;
+            long start = entryAfter(mid);
+            if (start < length && time(read(start, BLOCK)) <= until) {
+                lo = mid;
+            } else {
+                hi = mid;
+            }
+        }
+        long end = entryAfter(entryAfter(lo) + 1);
+        return () -> new Backwards(end);
+    }
+
+    /** Returns the time on the "Date:" line of ENTRY in seconds since the
+     *  epoch, or Long.MIN_VALUE if it has none. */
+    static long time(String entry) {
+        int start = entry.indexOf(DATE);
+        if (start < 0) {
+            return Long.MIN_VALUE;
+        }
+        start += DATE.length();
+        int end = entry.indexOf('\n', start);
+        try {
+            return ZonedDateTime.parse(entry.substring(start, end < 0
+                                                       ? entry.length()
+                                                       : end),
+                                       Gitlet._gitTime).toEpochSecond();
+        } catch (DateTimeParseException err) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    /** Returns ENTRY as it is written: with one more '=' on each line
+     *  after the first made only of three or more of them. */
+    static String quote(String entry) {
+        int body = entry.indexOf('\n') + 1;
+        return entry.substring(0, body)
+            + FENCE.matcher(entry.substring(body)).replaceAll("=$1");
+    }
+
+    /** Returns ENTRY, as written by quote, as it was given. */
+    private static String unquote(String entry) {
+        int body = entry.indexOf('\n') + 1;
+        return entry.substring(0, body)
+            + QUOTED_FENCE.matcher(entry.substring(body)).replaceAll("$1");
+    }
+
+    /** Returns the position of the first entry that starts at or after
+     *  POSITION, or the length of my file if there is none. */
+    private long entryAfter(long position) {
+        long length = _file.length();
+        if (position <= 0 || position >= length) {
+            return Math.min(Math.max(position, 0), length);
+        }
+        for (long from = Math.max(0, position - 2); from < length;
+             from += BLOCK) {
+            byte[] buf = readBytes(from, BLOCK + 6);
+            for (int i = (int) Math.max(2, position - from);
+                 i + 4 <= buf.length && i < BLOCK + 2; i++) {
+                if (buf[i] == '=' && buf[i + 1] == '=' && buf[i + 2] == '='
+                    && buf[i + 3] == '\n' && buf[i - 1] == '\n'
+                    && buf[i - 2] == '\n') {
+                    return from + i;
+                }
+            }
+        }
+        return length;
+    }
+
+    /** Returns up to N bytes of my file from POSITION, as a String. */
+    private String read(long position, int n) {
+        return new String(readBytes(position, n), StandardCharsets.UTF_8);
+    }
+
+    /** Returns up to N bytes of my file from POSITION. */
+    private byte[] readBytes(long position, int n) {
+        long length = _file.length();
+        byte[] result =
+            new byte[(int) Math.max(0, Math.min(n, length - position))];
+        readFully(result, 0, result.length, position);
+        return result;
+    }
+
+    /** Reads N bytes of my file at POSITION into BUF from START. */
+    private void readFully(byte[] buf, int start, int n, long position) {
+        try (FileChannel in = FileChannel.open(_file.toPath(),
+                                               StandardOpenOption.READ)) {
+            ByteBuffer block = ByteBuffer.wrap(buf, start, n);
+            while (block.hasRemaining()) {
+                if (in.read(block, position + block.position() - start) < 0) {
+                    throw new GitletException("I/O File Read error");
+                }
+            }
+        } catch (IOException err) {
+            throw new GitletException("I/O File Read error");
+        }
+    }
+
+    /** An iterator over the entries of my file backwards from a given
+     *  entry, reading the file backwards a BLOCK at a time. */
+    private class Backwards implements Iterator<String> {
+
+        /** An iterator from the entry ending at END, which is the start of
+         *  another entry or the end of my file. */
+        Backwards(long end) {
+            _start = end;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (_next == null) {
+                _next = read();
+            }
+            return _next != null;
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            String result = _next;
+            _next = null;
+            return result;
+        }
+
+        /** Returns the entry before those returned, or null if none. */
+        private String read() {
+            while (true) {
+                int limit = _start == 0 ? 0 : 2;
+                for (int i = _end - 4; i >= limit; i--) {
+                    if (isStart(i)) {
+                        String entry = new String(_buf, i, _end - i,
+                                                  StandardCharsets.UTF_8);
+                        _end = i;
+                        return unquote(entry);
+                    }
+                }
+                if (_start == 0) {
+                    if (_end == 0) {
+                        return null;
+                    }
+                    String rest = new String(_buf, 0, _end,
+                                             StandardCharsets.UTF_8);
+                    _end = 0;
+                    return unquote(rest);
+                }
+                readBlock();
+            }
+        }
+
+        /** Returns true iff an entry starts at _buf[I]. */
+        private boolean isStart(int i) {
+            return _buf[i] == '=' && _buf[i + 1] == '='
+                && _buf[i + 2] == '=' && _buf[i + 3] == '\n'
+                && (i == 0 ? _start == 0
+                    : i >= 2 && _buf[i - 1] == '\n' && _buf[i - 2] == '\n');
+        }
+
+        /** Reads the BLOCK of my file before _start in front of the
+         *  unread bytes. */
+        private void readBlock() {
+            int n = (int) Math.min(BLOCK, _start);
+            byte[] buf = new byte[n + _end];
+            System.arraycopy(_buf, 0, buf, n, _end);
+            readFully(buf, 0, n, _start - n);
+            _buf = buf;
+            _end += n;
+            _start -= n;
+        }
+
+        /** Bytes of the file from _start not yet returned. */
+        private byte[] _buf = new byte[0];
+        /** Number of bytes in _buf not yet returned. */
+        private int _end;
+        /** Position in the file of _buf[0]. */
+        private long _start;
+        /** The next entry, if read. */
+        private String _next;
+    }
+
+    /** Start of the line giving the time of an entry. */
+    private static final String DATE = "\nDate: ";
+    /** A line of '='s as long as the one starting an entry, or longer,
+     *  and one such line written by quote. */
+    private static final Pattern FENCE = Pattern.compile("(?m)^(={3,})$"),
+        QUOTED_FENCE = Pattern.compile("(?m)^=(={3,})$");
+
+    /** The file. */
+    private final File _file;
+}
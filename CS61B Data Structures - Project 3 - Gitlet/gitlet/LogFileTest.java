@@ -0,0 +1,103 @@
+package gitlet;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/** The suite of all JUnit tests for the LogFile class.
+ *  @author Thomas Hsiung
+ */
+public class LogFileTest {
+
+    /** Directory of the logs. */
+    @Rule
+    public TemporaryFolder dir = new TemporaryFolder();
+
+    /** Returns an entry for a commit made SECONDS after the epoch with
+     *  MESSAGE. */
+    static String entry(long seconds, String message) {
+        String time = Instant.ofEpochSecond(seconds).atZone(ZoneOffset.UTC)
+            .format(Gitlet._gitTime);
+        return "===\ncommit " + Utils.sha1(message, time) + "\nDate: "
+            + time + "\n" + message + "\n\n";
+    }
+
+    /** Returns the entries of LOG, in the order read. */
+    static List<String> read(Iterable<String> log) {
+        ArrayList<String> result = new ArrayList<>();
+        for (String entry : log) {
+            result.add(entry);
+        }
+        return result;
+    }
+
+    /** Asserts that LOG, to which ENTRIES were appended, reads them
+     *  back newest first, and those made by the time of each of them. */
+    static void check(LogFile log, List<String> entries) {
+        ArrayList<String> expected = new ArrayList<>(entries);
+        Collections.reverse(expected);
+        assertEquals(expected, read(log));
+        for (int k = 0; k < entries.size(); k++) {
+            assertEquals(expected.subList(entries.size() - 1 - k,
+                                          entries.size()),
+                         read(log.until(LogFile.time(entries.get(k)))));
+        }
+        assertTrue(read(log.until(LogFile.time(entries.get(0)) - 1))
+                   .isEmpty());
+    }
+
+    @Test
+    public void testAcrossBlocks() {
+        LogFile log = new LogFile(new File(dir.getRoot(), "log"));
+        assertTrue(read(log).isEmpty());
+        assertTrue(read(log.until(0)).isEmpty());
+        Random random = new Random(43);
+        ArrayList<String> entries = new ArrayList<>();
+        long size = 0;
+        for (int k = 0; k < 60; k++) {
+            int length = k % 9 == 4 ? 3 * LogFile.BLOCK + random.nextInt(99)
+                : random.nextInt(LogFile.BLOCK / 3);
+            StringBuilder message = new StringBuilder("message " + k);
+            while (message.length() < length) {
+                message.append(random.nextInt(10) == 0 ? '\n' : 'x');
+            }
+            String entry = entry(1000 + 60 * k, message.toString());
+            entries.add(entry);
+            log.append(entry);
+            size += entry.length();
+        }
+        assertEquals(size, log.file().length());
+        assertTrue(size > 20 * LogFile.BLOCK);
+        check(log, entries);
+    }
+
+    @Test
+    public void testFences() {
+        LogFile log = new LogFile(new File(dir.getRoot(), "log"));
+        String[] messages = {
+            "before\n\n===\ncommit 0000000\nDate: Thu Jan 01 00:00:00 1970"
+            + " +0000\nafter",
+            "===", "====", "\n===\n", "x ===\n=====\n\n", "== =\n==",
+            "last\n\n==="
+        };
+        ArrayList<String> entries = new ArrayList<>();
+        for (int k = 0; k < messages.length; k++) {
+            String entry = entry(5000 + k, messages[k]);
+            entries.add(entry);
+            log.append(entry);
+        }
+        check(log, entries);
+        String written = Utils.readContentsAsString(log.file());
+        assertEquals(messages.length, written.split("\n\n===\n").length);
+    }
+
+}
@@ -1,6 +1,7 @@
 package gitlet;
 
 import java.io.File;
+import java.util.Arrays;
 
 /** Driver class for Gitlet, the tiny stupid version-control system.
  *
@@ -18,8 +19,6 @@ public class Main {
 
     /** The git repo. */
     static final File GIT = new File(".gitlet/");
-    /** Gitlet metadata, if Gitlet already exists. */
-    static final File META = Utils.join(GIT, "metadata");
 
     /** Usage: java gitlet.Main ARGS, where ARGS contains
      *  <COMMAND> <OPERAND> ....  */
@@ -29,15 +28,18 @@ public class Main {
                 throw new GitletException("Please enter a command.");
             }
             Gitlet gitlet = new Gitlet();
-            if (META.exists()) {
-                gitlet.getMeta(META);
+            if (GIT.isDirectory()) {
+                gitlet.upgrade();
             }
             switch (args[0]) {
             case "init":
                 gitlet.init();
                 break;
             case "add":
-                gitlet.add(args[1]);
+                if (args.length < 2) {
+                    throw new GitletException("Incorrect operands.");
+                }
+                gitlet.add(Arrays.copyOfRange(args, 1, args.length));
                 break;
             case "commit":
                 gitlet.commit(args[1]);
@@ -46,13 +48,13 @@ public class Main {
                 gitlet.remove(args[1]);
                 break;
             case "log":
-                gitlet.log();
+                gitlet.log(Arrays.copyOfRange(args, 1, args.length));
                 break;
             case "global-log":
-                gitlet.globallog();
+                gitlet.globallog(Arrays.copyOfRange(args, 1, args.length));
                 break;
             case "find":
-                gitlet.find(args[1]);
+                gitlet.find(Arrays.copyOfRange(args, 1, args.length));
                 break;
             case "status":
                 gitlet.status();
@@ -72,13 +74,19 @@ public class Main {
             case "merge":
                 gitlet.merge(args[1]);
                 break;
+            case "gc":
+            case "repack":
+                gitlet.gc();
+                break;
             default:
                 throw new GitletException("No command with that name exists.");
             }
             gitlet.saveGitlet();
-            System.exit(0);
         } catch (IndexOutOfBoundsException err) {
-            throw new GitletException("Incorrect operands.");
+            System.out.println("Incorrect operands.");
+        } catch (GitletException err) {
+            System.out.println(err.getMessage());
         }
+        System.exit(0);
     }
 }
@@ -0,0 +1,566 @@
+package gitlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/** The messages of the Commits of a Gitlet repo, with an inverted index
+ *  of the words in them, for find.
+ *
+ *  Each message is kept under the position of its Commit in the
+ *  CommitGraph. The file .gitlet/messages starts with the magic number
+ *  "GMSG" and a version, followed by a record for each message in the
+ *  order they were added: the position (an int), the length of the
+ *  message (an int) and its UTF-8 bytes. New records are appended.
+ *
+ *  The words of a message are its runs of letters and digits, in lower
+ *  case. The file .gitlet/messages.idx indexes the first records of
+ *  the messages file: "GMIX", the version, the number of positions
+ *  covered, of words and of blocks of words, where the postings and
+ *  offsets start, and how many bytes of the messages file are covered,
+ *  in a header of IDX_HEADER bytes; then the offset of each block; then
+ *  the words in order, BLOCK_WORDS to a block, each as the number of
+ *  bytes it shares with the word before it in its block (none for the
+ *  first, so a block can be read on its own), the rest of its bytes,
+ *  and where its postings are and how many; then the postings of each
+ *  word, the positions of the messages containing it in increasing
+ *  order as varints, each but the first less the one before; then the
+ *  offset in the messages file of the record of each position (-1 if
+ *  none). A word is found by a binary search of the first words of
+ *  the blocks and a scan of one block; words starting with a prefix
+ *  follow one another from there.
+ *
+ *  Records added since the index was written are read into memory and
+ *  searched directly, and the index is rewritten with them once there
+ *  are more than TAIL.
+ *
+ *  @author Thomas Hsiung
+ */
+class MessageIndex {
+
+    /** Offset of no record. */
+    private static final long NONE = -1;
+    /** Magic numbers of the messages and of their index. */
+    private static final int MAGIC = 0x474d5347, IDX_MAGIC = 0x474d4958;
+    /** Version of the format. */
+    private static final int VERSION = 1;
+    /** Bytes before the first record of the messages. */
+    private static final int HEADER = 8;
+    /** Bytes before the block offsets of the index. */
+    private static final int IDX_HEADER = 40;
+    /** Words in a block of the index. */
+    private static final int BLOCK_WORDS = 16;
+    /** Most records searched outside the index. */
+    private static final int TAIL = 256;
+
+    /** The messages of the repo in DIR, none if it has none. */
+    MessageIndex(File dir) {
+        _file = Utils.join(dir, "messages");
+        _idxFile = Utils.join(dir, "messages.idx");
+        if (_idxFile.isFile()) {
+            _idx = PackFile.map(_idxFile);
+            if (_idx.getInt(0) != IDX_MAGIC || _idx.getInt(4) != VERSION) {
+                throw new GitletException("Corrupt message index");
+            }
+            _positions = _idx.getInt(8);
+            _words = _idx.getInt(12);
+            _blocks = _idx.getInt(16);
+            _postingsAt = _idx.getInt(20);
+            _offsetsAt = _idx.getInt(24);
+            _indexedLength = _idx.getLong(32);
+        } else {
+            _idx = ByteBuffer.allocate(0);
+            _indexedLength = HEADER;
+        }
+        if (_file.isFile()) {
+            _records = PackFile.map(_file);
+            if (_records.getInt(0) != MAGIC || _records.getInt(4) != VERSION
+                || _indexedLength > _records.capacity()) {
+                throw new GitletException("Corrupt message index");
+            }
+            for (long off = _indexedLength; off < _records.capacity();
+                 off = end(off)) {
+                _tail.add(new Record(_records.getInt((int) off),
+                                     readMessage(off), off));
+            }
+        } else {
+            _records = ByteBuffer.allocate(0);
+        }
+        _written = _tail.size();
+    }
+
+    /** Returns the words of MESSAGE, in order, each once. */
+    static List<String> words(String message) {
+        LinkedHashSet<String> result = new LinkedHashSet<>();
+        int start = -1;
+        for (int i = 0; i <= message.length(); i++) {
+            boolean inWord = i < message.length()
+                && Character.isLetterOrDigit(message.charAt(i));
+            if (inWord && start < 0) {
+                start = i;
+            } else if (!inWord && start >= 0) {
+                result.add(message.substring(start, i).toLowerCase());
+                start = -1;
+            }
+        }
+        return new ArrayList<>(result);
+    }
+
+    /** Adds MESSAGE as that of the commit at POS. */
+    void add(int pos, String message) {
+        _tail.add(new Record(pos, message, NONE));
+    }
+
+    /** Returns the message of the commit at POS, or null if none. */
+    String message(int pos) {
+        if (pos >= 0 && pos < _positions) {
+            long off = _idx.getLong(_offsetsAt + pos * 8);
+            if (off != NONE) {
+                return readMessage(off);
+            }
+        }
+        for (Record r : _tail) {
+            if (r.position() == pos) {
+                return r.message();
+            }
+        }
+        return null;
+    }
+
+    /** Returns the positions of the commits whose message is MESSAGE.
+     *  Only those having all its words are read; a message with no
+     *  words is compared with every one. */
+    BitSet exact(String message) {
+        List<String> words = words(message);
+        BitSet result = words.isEmpty() ? all()
+            : search(words.toArray(new String[0]));
+        for (int p = result.nextSetBit(0); p >= 0;
+             p = result.nextSetBit(p + 1)) {
+            if (!message.equals(message(p))) {
+                result.clear(p);
+            }
+        }
+        return result;
+    }
+
+    /** Returns the positions of the commits whose messages contain every
+     *  one of TERMS, each a word or, if it ends in '*', the start of one.
+     *  A term of several words requires them all. */
+    BitSet search(String... terms) {
+        BitSet result = null;
+        for (String term : terms) {
+            boolean prefix = term.endsWith("*");
+            List<String> words =
+                words(prefix ? term.substring(0, term.length() - 1) : term);
+            for (int i = 0; i < words.size(); i++) {
+                BitSet found = postings(words.get(i),
+                                        prefix && i == words.size() - 1);
+                if (result == null) {
+                    result = found;
+                } else {
+                    result.and(found);
+                }
+            }
+        }
+        return result == null ? new BitSet() : result;
+    }
+
+    /** Appends the messages added since I was read to my file, and
+     *  merges them into the index if enough are outside it. */
+    void write() {
+        if (_written == _tail.size()) {
+            return;
+        }
+        ByteArrayOutputStream added = new ByteArrayOutputStream();
+        long length = _records.capacity();
+        if (length == 0) {
+            added.writeBytes(ByteBuffer.allocate(HEADER).putInt(MAGIC)
+                             .putInt(VERSION).array());
+        }
+        for (int i = _written; i < _tail.size(); i++) {
+            Record r = _tail.get(i);
+            byte[] message = r.message().getBytes(StandardCharsets.UTF_8);
+            r.written(length + added.size());
+            added.writeBytes(ByteBuffer.allocate(8).putInt(r.position())
+                             .putInt(message.length).array());
+            added.writeBytes(message);
+        }
+        try (FileChannel out = FileChannel.open(_file.toPath(),
+                                                StandardOpenOption.CREATE,
+                                                StandardOpenOption.WRITE,
+                                                StandardOpenOption.APPEND)) {
+            ByteBuffer buf = ByteBuffer.wrap(added.toByteArray());
+            while (buf.hasRemaining()) {
+                out.write(buf);
+            }
+        } catch (IOException err) {
+            throw new GitletException("I/O File Creation error");
+        }
+        _records = PackFile.map(_file);
+        _written = _tail.size();
+        if (_tail.size() > TAIL) {
+            writeIndex();
+        }
+    }
+
+    /** Writes an index of every message, merging the old index with the
+     *  messages outside it. */
+    private void writeIndex() {
+        TreeMap<String, Postings> postings = new TreeMap<>();
+        Cursor cursor = new Cursor(0);
+        while (cursor.next()) {
+            Postings p = new Postings();
+            cursor.postings(p);
+            postings.put(cursor.word(), p);
+        }
+        int positions = _positions;
+        for (Record r : _tail) {
+            for (String word : words(r.message())) {
+                postings.computeIfAbsent(word, w -> new Postings())
+                    .add(r.position());
+            }
+            positions = Math.max(positions, r.position() + 1);
+        }
+        ByteArrayOutputStream words = new ByteArrayOutputStream(),
+            lists = new ByteArrayOutputStream();
+        int blocks = (postings.size() + BLOCK_WORDS - 1) / BLOCK_WORDS;
+        int[] blockAt = new int[blocks];
+        byte[] last = new byte[0];
+        int n = 0;
+        for (Map.Entry<String, Postings> e : postings.entrySet()) {
+            byte[] word = e.getKey().getBytes(StandardCharsets.UTF_8);
+            int shared = 0;
+            if (n % BLOCK_WORDS == 0) {
+                blockAt[n / BLOCK_WORDS] = words.size();
+            } else {
+                int most = Math.min(word.length, last.length);
+                while (shared < most && word[shared] == last[shared]) {
+                    shared += 1;
+                }
+            }
+            Postings p = e.getValue();
+            p.sort();
+            writeVarint(words, shared);
+            writeVarint(words, word.length - shared);
+            words.write(word, shared, word.length - shared);
+            writeVarint(words, lists.size());
+            writeVarint(words, p.size());
+            for (int i = 0, before = 0; i < p.size(); i++) {
+                writeVarint(lists, p.get(i) - before);
+                before = p.get(i);
+            }
+            last = word;
+            n += 1;
+        }
+        int wordsAt = IDX_HEADER + blocks * 4;
+        int postingsAt = wordsAt + words.size();
+        int offsetsAt = postingsAt + lists.size();
+        ByteBuffer out = ByteBuffer.allocate(offsetsAt + positions * 8);
+        out.putInt(IDX_MAGIC).putInt(VERSION).putInt(positions)
+            .putInt(postings.size()).putInt(blocks).putInt(postingsAt)
+            .putInt(offsetsAt).putInt(0).putLong(_records.capacity());
+        for (int b : blockAt) {
+            out.putInt(wordsAt + b);
+        }
+        out.put(words.toByteArray()).put(lists.toByteArray());
+        for (int pos = 0; pos < positions; pos++) {
+            out.putLong(pos < _positions
+                        ? _idx.getLong(_offsetsAt + pos * 8) : NONE);
+        }
+        for (Record r : _tail) {
+            out.putLong(offsetsAt + r.position() * 8, r.offset());
+        }
+        File tmp = new File(_idxFile.getPath() + ".tmp");
+        try {
+            Files.write(tmp.toPath(), out.array());
+            Files.move(tmp.toPath(), _idxFile.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException err) {
+            throw new GitletException("I/O File Creation error");
+        }
+        _idx = PackFile.map(_idxFile);
+        _positions = positions;
+        _words = postings.size();
+        _blocks = blocks;
+        _postingsAt = postingsAt;
+        _offsetsAt = offsetsAt;
+        _indexedLength = _records.capacity();
+        _tail.clear();
+        _written = 0;
+    }
+
+    /** Returns the positions of the commits whose messages contain WORD,
+     *  or if PREFIX, a word starting with it. */
+    private BitSet postings(String word, boolean prefix) {
+        BitSet result = new BitSet();
+        if (_words > 0) {
+            int lo = 0, hi = _blocks - 1;
+            while (lo < hi) {
+                int mid = (lo + hi + 1) >>> 1;
+                Cursor first = new Cursor(mid);
+                first.next();
+                if (first.word().compareTo(word) <= 0) {
+                    lo = mid;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            Cursor cursor = new Cursor(lo);
+            while (cursor.next()) {
+                String w = cursor.word();
+                if (prefix ? w.startsWith(word) : w.equals(word)) {
+                    cursor.postings(result);
+                } else if (w.compareTo(word) > 0) {
+                    break;
+                }
+            }
+        }
+        for (Record r : _tail) {
+            for (String w : words(r.message())) {
+                if (prefix ? w.startsWith(word) : w.equals(word)) {
+                    result.set(r.position());
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Returns the positions of all commits with messages. */
+    private BitSet all() {
+        BitSet result = new BitSet();
+        for (int pos = 0; pos < _positions; pos++) {
+            if (_idx.getLong(_offsetsAt + pos * 8) != NONE) {
+                result.set(pos);
+            }
+        }
+        for (Record r : _tail) {
+            result.set(r.position());
+        }
+        return result;
+    }
+
+    /** Returns the message of the record at OFF in my file. */
+    private String readMessage(long off) {
+        int length = _records.getInt((int) off + 4);
+        byte[] message = new byte[length];
+        _records.get((int) off + 8, message);
+        return new String(message, StandardCharsets.UTF_8);
+    }
+
+    /** Returns the offset after the record at OFF in my file. */
+    private long end(long off) {
+        return off + 8 + _records.getInt((int) off + 4);
+    }
+
+    /** Writes the varint form of VALUE, 7 bits to a byte, low bits first,
+     *  to OUT. */
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /** A reader of the words of the index in order, from the start of a
+     *  block. */
+    private class Cursor {
+
+        /** A cursor before the first word of block BLOCK. */
+        Cursor(int block) {
+            _next = block * BLOCK_WORDS;
+            _at = _blocks == 0 ? 0 : _idx.getInt(IDX_HEADER + block * 4);
+        }
+
+        /** Reads the next word, returning false if there is none. */
+        boolean next() {
+            if (_next == _words) {
+                return false;
+            }
+            int shared = readVarint(), rest = readVarint();
+            if (shared + rest > _word.length) {
+                _word = Arrays.copyOf(_word, 2 * (shared + rest));
+            }
+            _idx.get(_at, _word, shared, rest);
+            _at += rest;
+            _length = shared + rest;
+            _list = readVarint();
+            _size = readVarint();
+            _next += 1;
+            return true;
+        }
+
+        /** Returns the word read. */
+        String word() {
+            return new String(_word, 0, _length, StandardCharsets.UTF_8);
+        }
+
+        /** Sets the positions in the postings of the word read in
+         *  RESULT. */
+        void postings(BitSet result) {
+            int at = _at;
+            _at = _postingsAt + _list;
+            for (int i = 0, pos = 0; i < _size; i++) {
+                pos += readVarint();
+                result.set(pos);
+            }
+            _at = at;
+        }
+
+        /** Adds the positions in the postings of the word read to
+         *  RESULT. */
+        void postings(Postings result) {
+            int at = _at;
+            _at = _postingsAt + _list;
+            for (int i = 0, pos = 0; i < _size; i++) {
+                pos += readVarint();
+                result.add(pos);
+            }
+            _at = at;
+        }
+
+        /** Returns the varint at _at, moving past it. */
+        private int readVarint() {
+            int result = 0;
+            for (int shift = 0;; shift += 7) {
+                byte b = _idx.get(_at++);
+                result |= (b & 0x7f) << shift;
+                if (b >= 0) {
+                    return result;
+                }
+            }
+        }
+
+        /** Offset in the index of the next byte read. */
+        private int _at;
+        /** Number of the next word. */
+        private int _next;
+        /** UTF-8 bytes of the word read. */
+        private byte[] _word = new byte[32];
+        /** Number of bytes in the word read. */
+        private int _length;
+        /** Offset of its postings from _postingsAt. */
+        private int _list;
+        /** Number of its postings. */
+        private int _size;
+    }
+
+    /** A growing list of positions. */
+    private static class Postings {
+
+        /** Adds POS. */
+        void add(int pos) {
+            if (_size == _positions.length) {
+                _positions = Arrays.copyOf(_positions, 2 * _size);
+            }
+            if (_size > 0 && pos < _positions[_size - 1]) {
+                _sorted = false;
+            }
+            _positions[_size++] = pos;
+        }
+
+        /** Puts my positions in increasing order. */
+        void sort() {
+            if (!_sorted) {
+                Arrays.sort(_positions, 0, _size);
+                _sorted = true;
+            }
+        }
+
+        /** Returns position number K. */
+        int get(int k) {
+            return _positions[k];
+        }
+
+        /** Returns the number of positions. */
+        int size() {
+            return _size;
+        }
+
+        /** The positions. */
+        private int[] _positions = new int[4];
+        /** Number of positions. */
+        private int _size;
+        /** True iff _positions is in increasing order. */
+        private boolean _sorted = true;
+    }
+
+    /** A message of the commit at a position, and the offset of its
+     *  record in the messages file. */
+    private static class Record {
+
+        /** The record of MESSAGE at POS, at OFFSET (NONE if not yet
+         *  written). */
+        Record(int pos, String message, long offset) {
+            _position = pos;
+            _message = message;
+            _offset = offset;
+        }
+
+        /** Returns the position. */
+        int position() {
+            return _position;
+        }
+
+        /** Returns the message. */
+        String message() {
+            return _message;
+        }
+
+        /** Returns the offset of the record, or NONE. */
+        long offset() {
+            return _offset;
+        }
+
+        /** Records that I was written at OFFSET. */
+        void written(long offset) {
+            _offset = offset;
+        }
+
+        /** Position of the commit. */
+        private final int _position;
+        /** Its message. */
+        private final String _message;
+        /** Offset of the record. */
+        private long _offset;
+    }
+
+    /** File holding the messages. */
+    private final File _file;
+    /** File holding the index. */
+    private final File _idxFile;
+    /** The messages written to _file, mapped. */
+    private ByteBuffer _records;
+    /** The index, mapped. */
+    private ByteBuffer _idx;
+    /** The messages outside the index, in the order added. */
+    private final ArrayList<Record> _tail = new ArrayList<>();
+    /** Number of records of _tail written to _file. */
+    private int _written;
+    /** Number of positions covered by the index. */
+    private int _positions;
+    /** Number of words in the index. */
+    private int _words;
+    /** Number of blocks of words. */
+    private int _blocks;
+    /** Offset in the index of the postings. */
+    private int _postingsAt;
+    /** Offset in the index of the record offsets. */
+    private int _offsetsAt;
+    /** Bytes of _file covered by the index. */
+    private long _indexedLength;
+}
@@ -0,0 +1,164 @@
+package gitlet;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.TreeMap;
+
+/** The suite of all JUnit tests for the MessageIndex class.
+ *  @author Thomas Hsiung
+ */
+public class MessageIndexTest {
+
+    /** The .gitlet directory holding the messages. */
+    @Rule
+    public TemporaryFolder git = new TemporaryFolder();
+
+    /** Words of the messages, several sharing prefixes. */
+    static final String[] VOCAB = {
+        "wug", "wugs", "Wuggle", "alpha", "alphabet", "zeta", "merge",
+        "merged", "\u00fcber", "fix"
+    };
+
+    /** Queries checked, each an array of terms. */
+    static final String[][] QUERIES = {
+        { "wug" }, { "wug*" }, { "WUGS" }, { "alpha*", "zeta" },
+        { "fix in" }, { "merge*", "1*" }, { "\u00fcber" }, { "4*" },
+        { "17" }, { "absent" }, { "zz*" }, { "a*", "b*" }
+    };
+
+    /** Returns the message of the commit at position POS, where every
+     *  seventh is the same and every thirtieth has no words. */
+    static String message(int pos) {
+        int n = pos / 2;
+        if (n % 30 == 29) {
+            return "!!!";
+        } else if (n % 7 == 6) {
+            return "Same message";
+        }
+        return VOCAB[n % VOCAB.length] + " in "
+            + VOCAB[n * 7 % VOCAB.length] + " #" + n;
+    }
+
+    /** Returns the positions of the MESSAGES containing every one of
+     *  TERMS, found by reading each of them. */
+    static BitSet naive(TreeMap<Integer, String> messages,
+                        String... terms) {
+        BitSet result = new BitSet();
+        boolean any = false;
+        for (String term : terms) {
+            any |= !MessageIndex.words(term.replace("*", "")).isEmpty();
+        }
+        for (int pos : messages.keySet()) {
+            List<String> words = MessageIndex.words(messages.get(pos));
+            boolean all = any;
+            for (String term : terms) {
+                boolean prefix = term.endsWith("*");
+                List<String> wanted =
+                    MessageIndex.words(term.replace("*", ""));
+                for (int i = 0; i < wanted.size(); i++) {
+                    String w = wanted.get(i);
+                    all &= prefix && i == wanted.size() - 1
+                        ? words.stream().anyMatch(x -> x.startsWith(w))
+                        : words.contains(w);
+                }
+            }
+            if (all) {
+                result.set(pos);
+            }
+        }
+        return result;
+    }
+
+    /** Asserts that INDEX holds exactly MESSAGES, and finds the same
+     *  commits for every query as reading each message would. */
+    static void check(MessageIndex index,
+                      TreeMap<Integer, String> messages) {
+        int last = messages.isEmpty() ? 0 : messages.lastKey();
+        for (int pos = 0; pos <= last + 1; pos++) {
+            assertEquals(messages.get(pos), index.message(pos));
+        }
+        for (String[] terms : QUERIES) {
+            assertEquals(Arrays.toString(terms),
+                         naive(messages, terms), index.search(terms));
+        }
+        for (String msg : new String[] { "Same message", "!!!",
+                                         message(20), message(644),
+                                         "same MESSAGE", "absent" }) {
+            BitSet expected = new BitSet();
+            messages.forEach((pos, m) -> expected.set(pos, m.equals(msg)));
+            assertEquals(msg, expected, index.exact(msg));
+        }
+    }
+
+    @Test
+    public void testWords() {
+        assertEquals(Arrays.asList("fix", "wug", "s", "2", "\u00fcber"),
+                     MessageIndex.words("Fix wug's #2 (\u00dcBER) wug"));
+        assertTrue(MessageIndex.words("!!! ...").isEmpty());
+    }
+
+    @Test
+    public void testTailAndMerge() {
+        File dir = git.getRoot();
+        File idx = new File(dir, "messages.idx");
+        TreeMap<Integer, String> messages = new TreeMap<>();
+        MessageIndex index = new MessageIndex(dir);
+        check(index, messages);
+        for (int pos = 0; pos < 400; pos += 2) {
+            index.add(pos, message(pos));
+            messages.put(pos, message(pos));
+        }
+        check(index, messages);
+        index.write();
+        assertFalse(idx.exists());
+        index = new MessageIndex(dir);
+        check(index, messages);
+
+        for (int pos = 400; pos < 600; pos += 2) {
+            index.add(pos, message(pos));
+            messages.put(pos, message(pos));
+        }
+        check(index, messages);
+        index.write();
+        assertTrue(idx.isFile());
+        check(index, messages);
+        index = new MessageIndex(dir);
+        check(index, messages);
+
+        for (int pos = 600; pos < 1300; pos += 2) {
+            index.add(pos, message(pos));
+            messages.put(pos, message(pos));
+            if (pos == 700) {
+                index.write();
+                index = new MessageIndex(dir);
+                check(index, messages);
+            }
+        }
+        check(index, messages);
+        long indexed = idx.length();
+        index.write();
+        assertTrue(idx.length() > indexed);
+        check(index, messages);
+        check(new MessageIndex(dir), messages);
+    }
+
+    @Test
+    public void testCorrupt() {
+        File dir = git.getRoot();
+        Utils.writeContents(new File(dir, "messages"), "GMSG but not ok");
+        try {
+            new MessageIndex(dir);
+            fail("read a corrupt message file");
+        } catch (GitletException excp) {
+            assertEquals("Corrupt message index", excp.getMessage());
+        }
+    }
+
+}
@@ -0,0 +1,126 @@
+package gitlet;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/** A cache of decoded objects, such as Commits, by SHA ID, so that a
+ *  command, or a process running many, reads and decodes each object
+ *  at most once while it is in use. The objects are shared, so callers
+ *  must not change them.
+ *
+ *  The cache holds objects whose estimated sizes in memory total at
+ *  most its bound, evicting the least recently used first. An object
+ *  larger than a quarter of the bound is not kept. Hits, misses and
+ *  evictions are counted, for tuning the bound.
+ *
+ *  @author Thomas Hsiung
+ */
+class ObjectCache {
+
+    /** Estimated bytes of an object header, with its fields' references,
+     *  and of a map entry. */
+    static final int OBJECT_BYTES = 48, ENTRY_BYTES = 40;
+
+    /** A cache of at most BOUND estimated bytes. */
+    ObjectCache(long bound) {
+        _bound = bound;
+    }
+
+    /** Returns the estimated bytes held by the String S, or 0 if it is
+     *  null: its object, its array, and a byte per character. */
+    static long size(String s) {
+        return s == null ? 0 : 40 + s.length();
+    }
+
+    /** Returns the object with SHA ID, or null if it is not cached. */
+    synchronized Object get(String id) {
+        Cached c = _objects.get(id);
+        if (c == null) {
+            _misses += 1;
+            return null;
+        }
+        _hits += 1;
+        return c.object;
+    }
+
+    /** Caches OBJECT, of estimated SIZE bytes, as the object with SHA ID,
+     *  evicting the least recently used objects to keep within my
+     *  bound. */
+    synchronized void put(String id, Object object, long size) {
+        if (size > _bound / 4) {
+            return;
+        }
+        Cached old = _objects.put(id, new Cached(object, size));
+        _bytes += size - (old == null ? 0 : old.size);
+        Iterator<Cached> lru = _objects.values().iterator();
+        while (_bytes > _bound) {
+            _bytes -= lru.next().size;
+            lru.remove();
+            _evictions += 1;
+        }
+    }
+
+    /** Empties me, keeping my counts. */
+    synchronized void clear() {
+        _objects.clear();
+        _bytes = 0;
+    }
+
+    /** Returns the number of objects found. */
+    synchronized long hits() {
+        return _hits;
+    }
+
+    /** Returns the number of objects looked for and not found. */
+    synchronized long misses() {
+        return _misses;
+    }
+
+    /** Returns the number of objects evicted. */
+    synchronized long evictions() {
+        return _evictions;
+    }
+
+    /** Returns the estimated bytes of the objects cached. */
+    synchronized long bytes() {
+        return _bytes;
+    }
+
+    /** Returns the number of objects cached. */
+    synchronized int size() {
+        return _objects.size();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%,d objects, %,d bytes of %,d; %,d hits,"
+                             + " %,d misses, %,d evictions",
+                             _objects.size(), _bytes, _bound, _hits,
+                             _misses, _evictions);
+    }
+
+    /** A cached object and its estimated size. */
+    private static class Cached {
+
+        /** OBJECT, of estimated SIZE bytes. */
+        Cached(Object object, long size) {
+            this.object = object;
+            this.size = size;
+        }
+
+        /** The object. */
+        private final Object object;
+        /** Its estimated size in bytes. */
+        private final long size;
+    }
+
+    /** Bound on the estimated bytes of the objects cached. */
+    private final long _bound;
+    /** Cached objects by SHA ID, least recently used first. */
+    private final LinkedHashMap<String, Cached> _objects =
+        new LinkedHashMap<>(16, 0.75f, true);
+    /** Estimated bytes of the objects in _objects. */
+    private long _bytes;
+    /** Counts of objects found, not found, and evicted. */
+    private long _hits, _misses, _evictions;
+}
@@ -0,0 +1,60 @@
+package gitlet;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/** The suite of all JUnit tests for the ObjectCache class.
+ *  @author Thomas Hsiung
+ */
+public class ObjectCacheTest {
+
+    @Test
+    public void testEviction() {
+        ObjectCache cache = new ObjectCache(100);
+        cache.put("a", "A", 20);
+        cache.put("b", "B", 20);
+        cache.put("c", "C", 20);
+        cache.put("d", "D", 20);
+        cache.put("e", "E", 20);
+        assertEquals(5, cache.size());
+        assertEquals(100, cache.bytes());
+        assertEquals("A", cache.get("a"));
+        cache.put("f", "F", 20);
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.evictions());
+        assertNull(cache.get("b"));
+        assertEquals("A", cache.get("a"));
+        cache.put("g", "G", 25);
+        assertEquals(3, cache.evictions());
+        assertNull(cache.get("c"));
+        assertNull(cache.get("d"));
+        assertEquals("E", cache.get("e"));
+        assertEquals(4, cache.size());
+        assertEquals(85, cache.bytes());
+        assertEquals(3, cache.hits());
+        assertEquals(3, cache.misses());
+    }
+
+    @Test
+    public void testReplaceAndOversize() {
+        ObjectCache cache = new ObjectCache(100);
+        cache.put("a", "A", 20);
+        cache.put("a", "A2", 10);
+        assertEquals(1, cache.size());
+        assertEquals(10, cache.bytes());
+        assertEquals("A2", cache.get("a"));
+        cache.put("big", "BIG", 26);
+        assertNull(cache.get("big"));
+        assertEquals(10, cache.bytes());
+        cache.put("quarter", "Q", 25);
+        assertEquals("Q", cache.get("quarter"));
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.bytes());
+        assertNull(cache.get("a"));
+        assertEquals(2, cache.hits());
+        assertEquals(2, cache.misses());
+        assertEquals(0, cache.evictions());
+    }
+
+}
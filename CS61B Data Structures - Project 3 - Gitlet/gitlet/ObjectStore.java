@@ -0,0 +1,846 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/** Content-addressed store of Gitlet's Commits, Trees and Blobs.
+ *
+ *  Each object is kept in its own file under .gitlet/objects, in a
+ *  subdirectory named by the first two characters of its SHA ID and
+ *  under the remaining 38, so that no directory grows too large. The
+ *  file is DEFLATE-compressed and holds a header "KIND LENGTH\0"
+ *  followed by the LENGTH bytes of the object. Objects are written to
+ *  a temporary file that is then renamed into place, so a reader never
+ *  sees half an object, and are read back by inflating as they are
+ *  read, without holding the compressed file in memory.
+ *
+ *  Files added to Gitlet are stored as FILE objects by putFile, which
+ *  hashes and compresses them a chunk at a time, and are written back
+ *  by restore in the same way; Blobs, which hold a whole file in
+ *  memory, are still read from older repos.
+ *
+ *  Repacking (see repack()) moves the loose objects into pack files
+ *  under .gitlet/objects/pack (see PackFile), storing versions of a
+ *  file as deltas from one another. Reads look in the packs
+ *  first and then among the loose objects, so callers need not know
+ *  where an object is kept.
+ *
+ *  Commits and Trees read or stored are kept, decoded, in an
+ *  ObjectCache of at most CACHE_BYTES, so a command that loads the same
+ *  Commit several times, or a process running many commands, reads it
+ *  from disk once.
+ *
+ *  @author Thomas Hsiung
+ */
+class ObjectStore {
+
+    /** Kind of a Commit. */
+    static final String COMMIT = "commit";
+    /** Kind of a Blob. */
+    static final String BLOB = "blob";
+    /** Kind of a file stored as it is: its name, a zero byte, and its
+     *  bytes. Its SHA ID is that of a Blob of the same file. */
+    static final String FILE = "file";
+    /** Kind of a Tree. */
+    static final String TREE = "tree";
+
+    /** Bound on the estimated bytes of decoded objects cached. */
+    static final long CACHE_BYTES = 32L << 20;
+
+    /** A store of objects kept under the Git repo GIT. */
+    ObjectStore(File git) {
+        this(git, CACHE_BYTES);
+    }
+
+    /** A store of objects kept under the Git repo GIT, caching at most
+     *  CACHEBYTES of decoded objects. */
+    ObjectStore(File git, long cacheBytes) {
+        _objects = Utils.join(git, "objects");
+        _packDir = Utils.join(_objects, "pack");
+        _cache = new ObjectCache(cacheBytes);
+    }
+
+    /** Returns the store of the Git repo in the working directory. */
+    static ObjectStore repo() {
+        if (_repo == null) {
+            _repo = new ObjectStore(Main.GIT);
+        }
+        return _repo;
+    }
+
+    /** Returns the file holding the object with SHA ID. */
+    File file(String id) {
+        return Utils.join(_objects, id.substring(0, 2), id.substring(2));
+    }
+
+    /** Returns true iff the object with SHA ID is stored. */
+    boolean contains(String id) {
+        return pack(id) != null
+            || id != null && id.length() > 2 && file(id).isFile();
+    }
+
+    /** Returns the pack holding the object with SHA ID, or null if it is
+     *  in none. */
+    PackFile pack(String id) {
+        for (PackFile pack : packs()) {
+            if (pack.contains(id)) {
+                return pack;
+            }
+        }
+        return null;
+    }
+
+    /** Returns my packs, reading their indices on first use. */
+    synchronized List<PackFile> packs() {
+        if (_packs == null) {
+            ArrayList<PackFile> packs = new ArrayList<>();
+            File[] files = _packDir.listFiles();
+            if (files != null) {
+                Arrays.sort(files);
+                for (File f : files) {
+                    if (f.getName().startsWith("pack-")
+                        && f.getName().endsWith(".idx")) {
+                        packs.add(new PackFile(f));
+                    }
+                }
+            }
+            _packs = packs;
+        }
+        return _packs;
+    }
+
+    /** Stores PAYLOAD as an object of KIND with SHA ID, unless an object
+     *  with that ID is already stored. */
+    void put(String kind, String id, byte[] payload) {
+        File dest = file(id);
+        if (dest.isFile() || pack(id) != null) {
+            return;
+        }
+        File dir = dest.getParentFile();
+        dir.mkdirs();
+        File tmp = Utils.join(dir, "tmp-" + Thread.currentThread().getId()
+                              + "-" + dest.getName());
+        try {
+            try (OutputStream out = new FileOutputStream(tmp)) {
+                out.write(encode(kind, payload));
+            }
+            try {
+                Files.move(tmp.toPath(), dest.toPath(),
+                           StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException err) {
+                Files.move(tmp.toPath(), dest.toPath(),
+                           StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException err) {
+            throw new GitletException("I/O File Creation error");
+        } finally {
+            tmp.delete();
+        }
+    }
+
+    /** Returns the contents of the loose file of an object of KIND
+     *  holding PAYLOAD: the DEFLATE compression of its header followed by
+     *  PAYLOAD. */
+    static byte[] encode(String kind, byte[] payload) {
+        return compress(header(kind, payload.length), payload);
+    }
+
+    /** Returns the DEFLATE compression of the concatenation of PARTS. */
+    static byte[] compress(byte[]... parts) {
+        Deflater deflater = _deflater.get();
+        deflater.reset();
+        int length = 0;
+        for (byte[] part : parts) {
+            length += part.length;
+        }
+        ByteArrayOutputStream result =
+            new ByteArrayOutputStream(length / 2 + 64);
+        try (OutputStream out = new DeflaterOutputStream(result, deflater,
+                                                         BUFFER_SIZE)) {
+            for (byte[] part : parts) {
+                out.write(part);
+            }
+        } catch (IOException err) {
+            throw new GitletException("I/O File Creation error");
+        }
+        return result.toByteArray();
+    }
+
+    /** Stores COMMIT, in its binary form (see Commit.encode), and
+     *  caches it. */
+    void putCommit(Commit commit) {
+        put(COMMIT, commit.getSHA(), commit.encode().array());
+        _cache.put(commit.getSHA(), commit, commit.retainedSize());
+    }
+
+    /** Stores TREE, in its binary form (see Tree.encode), and caches
+     *  it. */
+    void putTree(Tree tree) {
+        put(TREE, tree.getSHA(), tree.encode().array());
+        _cache.put(tree.getSHA(), tree, tree.retainedSize());
+    }
+
+    /** Stores BLOB, in its binary form (see Blob.encode). */
+    void putBlob(Blob blob) {
+        put(BLOB, blob.getSHA(), blob.encode().array());
+    }
+
+    /** Returns a stream of the contents of the object with SHA ID, which
+     *  must be of KIND. */
+    InputStream open(String kind, String id) {
+        InputStream in = raw(id);
+        try {
+            if (!readHeader(in, id)[0].equals(kind)) {
+                in.close();
+                throw new GitletException("Corrupt object " + id);
+            }
+            return in;
+        } catch (IOException err) {
+            throw new GitletException("I/O File Read error");
+        }
+    }
+
+    /** Returns a stream of the uncompressed header and contents of the
+     *  object with SHA ID. */
+    private InputStream raw(String id) {
+        PackFile pack = pack(id);
+        if (pack != null) {
+            return pack.open(id);
+        } else if (!contains(id)) {
+            throw new GitletException("No object with that id exists.");
+        }
+        try {
+            return new InflaterInputStream(new BufferedInputStream(
+                new FileInputStream(file(id)), BUFFER_SIZE));
+        } catch (IOException err) {
+            throw new GitletException("I/O File Read error");
+        }
+    }
+
+    /** Reads the header of the object with SHA ID from IN, and returns
+     *  its kind and length. */
+    private static String[] readHeader(InputStream in, String id)
+        throws IOException {
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        int c;
+        while ((c = in.read()) > 0) {
+            header.write(c);
+        }
+        String[] words = header.toString(StandardCharsets.UTF_8).split(" ");
+        if (c != 0 || words.length != 2) {
+            throw new GitletException("Corrupt object " + id);
+        }
+        return words;
+    }
+
+    /** Reads a name ended by a zero byte from IN. */
+    private static String readName(InputStream in) throws IOException {
+        ByteArrayOutputStream name = new ByteArrayOutputStream();
+        int c;
+        while ((c = in.read()) > 0) {
+            name.write(c);
+        }
+        if (c != 0) {
+            throw new GitletException("Corrupt file object");
+        }
+        return name.toString(StandardCharsets.UTF_8);
+    }
+
+    /** Stores the contents of SOURCE as a FILE object named NAME and
+     *  returns its SHA ID. The file is read once, in chunks of CHUNK
+     *  bytes, each hashed and compressed straight into a temporary file
+     *  that is then renamed into place, so memory use does not grow with
+     *  the size of the file. */
+    String putFile(String name, File source) {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        long length = source.length();
+        MessageDigest digest = sha1();
+        digest.update(nameBytes);
+        _objects.mkdirs();
+        File tmp = Utils.join(_objects, "tmp-" + Thread.currentThread().getId()
+                              + "-" + System.nanoTime());
+        Deflater deflater = _deflater.get();
+        deflater.reset();
+        try {
+            try (InputStream in = new FileInputStream(source);
+                 OutputStream out = new DeflaterOutputStream(
+                     new FileOutputStream(tmp), deflater, BUFFER_SIZE)) {
+                out.write(header(FILE, nameBytes.length + 1 + length));
+                out.write(nameBytes);
+                out.write(0);
+                byte[] chunk = new byte[CHUNK];
+                long total = 0;
+                int n;
+                while ((n = in.read(chunk)) > 0) {
+                    digest.update(chunk, 0, n);
+                    out.write(chunk, 0, n);
+                    total += n;
+                }
+                if (total != length) {
+                    throw new GitletException("File changed while being"
+                                              + " added.");
+                }
+            }
+            String id = hex(digest.digest());
+            File dest = file(id);
+            if (!contains(id)) {
+                dest.getParentFile().mkdirs();
+                try {
+                    Files.move(tmp.toPath(), dest.toPath(),
+                               StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException err) {
+                    Files.move(tmp.toPath(), dest.toPath(),
+                               StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            return id;
+        } catch (IOException err) {
+            throw new GitletException("I/O File Creation error");
+        } finally {
+            tmp.delete();
+        }
+    }
+
+    /** Returns the SHA ID that SOURCE would have as a FILE object named
+     *  NAME, reading it CHUNK bytes at a time. */
+    static String hashFile(String name, File source) {
+        MessageDigest digest = sha1();
+        digest.update(name.getBytes(StandardCharsets.UTF_8));
+        try (InputStream in = new FileInputStream(source)) {
+            byte[] chunk = new byte[CHUNK];
+            int n;
+            while ((n = in.read(chunk)) > 0) {
+                digest.update(chunk, 0, n);
+            }
+        } catch (IOException err) {
+            throw new GitletException("I/O File Read error");
+        }
+        return hex(digest.digest());
+    }
+
+    /** Returns a new SHA-1 digest. */
+    private static MessageDigest sha1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException err) {
+            throw new IllegalArgumentException("System does not support"
+                                               + " SHA-1");
+        }
+    }
+
+    /** Writes the contents of the FILE object or Blob with SHA ID to
+     *  DEST. FILE objects are copied as they are inflated, without
+     *  holding the whole file in memory. */
+    void restore(String id, File dest) {
+        try (OutputStream out = new FileOutputStream(dest)) {
+            copy(id, out);
+        } catch (IOException err) {
+            throw new GitletException("I/O File Creation error");
+        }
+    }
+
+    /** Writes the contents of the FILE object or Blob with SHA ID to
+     *  OUT, as restore does. */
+    void copy(String id, OutputStream out) {
+        try (InputStream in = raw(id)) {
+            String kind = readHeader(in, id)[0];
+            if (kind.equals(FILE)) {
+                readName(in);
+                byte[] chunk = new byte[CHUNK];
+                int n;
+                while ((n = in.read(chunk)) > 0) {
+                    out.write(chunk, 0, n);
+                }
+            } else if (kind.equals(BLOB)) {
+                out.write(blob(id, in.readAllBytes()).getContents());
+            } else {
+                throw new GitletException("Corrupt object " + id);
+            }
+        } catch (IOException err) {
+            throw new GitletException("I/O File Read error");
+        }
+    }
+
+    /** Returns the hexadecimal form of HASH. */
+    static String hex(byte[] hash) {
+        return hex(hash, 0, hash.length);
+    }
+
+    /** Returns the hexadecimal form of the LENGTH bytes of DATA from
+     *  START. */
+    static String hex(byte[] data, int start, int length) {
+        char[] result = new char[2 * length];
+        for (int i = 0; i < length; i++) {
+            int b = data[start + i] & 0xff;
+            result[2 * i] = HEX[b >> 4];
+            result[2 * i + 1] = HEX[b & 15];
+        }
+        return new String(result);
+    }
+
+    /** Returns the contents of the object with SHA ID, of KIND. */
+    byte[] read(String kind, String id) {
+        try (InputStream in = open(kind, id)) {
+            return in.readAllBytes();
+        } catch (IOException err) {
+            throw new GitletException("I/O File Read error");
+        }
+    }
+
+    /** Returns the Commit with SHA ID, from my cache if it is there,
+     *  else read and cached. The Commit is shared and must not be
+     *  changed. */
+    Commit readCommit(String id) {
+        Object cached = _cache.get(id);
+        if (cached instanceof Commit) {
+            return (Commit) cached;
+        } else if (!contains(id)) {
+            throw new GitletException("No commit with that id exists.");
+        }
+        byte[] data = read(COMMIT, id);
+        Commit result;
+        try {
+            result = serialized(data) ? deserialize(id, data, Commit.class)
+                : Commit.decode(id, ByteBuffer.wrap(data));
+        } catch (BufferUnderflowException err) {
+            throw new GitletException("Corrupt object " + id);
+        }
+        _cache.put(id, result, result.retainedSize());
+        return result;
+    }
+
+    /** Returns the Tree with SHA ID, from my cache if it is there, else
+     *  read and cached. */
+    Tree readTree(String id) {
+        Object cached = _cache.get(id);
+        if (cached instanceof Tree) {
+            return (Tree) cached;
+        }
+        Tree result;
+        try {
+            result = Tree.decode(id, ByteBuffer.wrap(read(TREE, id)));
+        } catch (BufferUnderflowException err) {
+            throw new GitletException("Corrupt object " + id);
+        }
+        _cache.put(id, result, result.retainedSize());
+        return result;
+    }
+
+    /** Returns my cache of decoded objects. */
+    ObjectCache cache() {
+        return _cache;
+    }
+
+    /** Returns the Blob with SHA ID. */
+    Blob readBlob(String id) {
+        return blob(id, read(BLOB, id));
+    }
+
+    /** Returns the Blob with SHA ID whose contents as an object are
+     *  DATA. */
+    private static Blob blob(String id, byte[] data) {
+        try {
+            return serialized(data) ? deserialize(id, data, Blob.class)
+                : Blob.decode(id, ByteBuffer.wrap(data));
+        } catch (BufferUnderflowException err) {
+            throw new GitletException("Corrupt object " + id);
+        }
+    }
+
+    /** Returns true iff DATA is a serialized Java object, as Commits and
+     *  Blobs were stored before their binary forms: it starts with the
+     *  stream magic number 0xaced, which no binary form's version byte
+     *  matches. */
+    private static boolean serialized(byte[] data) {
+        return data.length > 1 && data[0] == (byte) 0xac
+            && data[1] == (byte) 0xed;
+    }
+
+    /** Returns the serialized object DATA, of the object with SHA ID, as
+     *  an object of EXPECTEDCLASS. */
+    private static <T extends Serializable> T deserialize(
+        String id, byte[] data, Class<T> expectedClass) {
+        try (ObjectInputStream in =
+                 new ObjectInputStream(new ByteArrayInputStream(data))) {
+            return expectedClass.cast(in.readObject());
+        } catch (IOException | ClassCastException
+                 | ClassNotFoundException err) {
+            throw new GitletException("Corrupt object " + id);
+        }
+    }
+
+    /** Moves each file of the old flat directory DIR into this store as
+     *  an object of KIND named by its file name, then deletes DIR.
+     *  Returns the number of objects moved. */
+    int migrate(File dir, String kind) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return 0;
+        }
+        int count = 0;
+        for (File f : files) {
+            if (f.isFile() && f.getName().length() == Utils.UID_LENGTH) {
+                put(kind, f.getName(), Utils.readContents(f));
+                f.delete();
+                count += 1;
+            }
+        }
+        dir.delete();
+        return count;
+    }
+
+    /** Repacks, storing Blobs as deltas where that pays (see
+     *  repack(boolean)). */
+    int repack() {
+        return repack(true);
+    }
+
+    /** Moves every loose object, and the objects of all existing packs,
+     *  into new packs, then deletes the loose objects and the old packs.
+     *  If DELTAS, Blobs are sorted by name and then by size, largest
+     *  first, and each is stored as a delta from whichever of the WINDOW
+     *  Blobs of the same name before it gives the smallest delta, if that
+     *  is under half its size and the base is fewer than MAX_DEPTH deltas
+     *  from a whole object. Loose objects whose files are over
+     *  BIG_OBJECT bytes stay loose. The new packs are complete before
+     *  anything is deleted, so an interrupted repack loses nothing.
+     *  Returns the number of loose objects packed. */
+    int repack(boolean deltas) {
+        List<PackFile> old = packs();
+        List<String> loose = looseIds();
+        if (loose.isEmpty() && old.isEmpty()) {
+            return 0;
+        }
+        ArrayList<Packed> objects = new ArrayList<>();
+        for (int p = 0; p < old.size(); p++) {
+            PackFile pack = old.get(p);
+            for (int k = 0; k < pack.count(); k++) {
+                String id = pack.id(k);
+                if (!inAny(old.subList(0, p), id)) {
+                    objects.add(new Packed(id, pack, k));
+                }
+            }
+        }
+        ArrayList<String> packed = new ArrayList<>();
+        for (String id : loose) {
+            if (file(id).length() > BIG_OBJECT) {
+                continue;
+            }
+            packed.add(id);
+            if (!inAny(old, id)) {
+                objects.add(new Packed(id, null, -1));
+            }
+        }
+        Packer packer = new Packer();
+        ArrayList<Packed> blobs = new ArrayList<>();
+        for (Packed obj : objects) {
+            if (deltas) {
+                describe(obj);
+            }
+            if (obj.name == null) {
+                packer.add(obj.id, PackFile.WHOLE, whole(obj, null));
+            } else {
+                blobs.add(obj);
+            }
+        }
+        blobs.sort(Comparator.comparing((Packed obj) -> obj.name)
+                   .thenComparing(obj -> -obj.size));
+        for (Packed blob : blobs) {
+            packer.deltify(blob, contents(blob));
+        }
+        List<PackFile> made = packer.finish();
+        HashSet<File> keep = new HashSet<>();
+        for (PackFile pack : made) {
+            keep.add(pack.idxFile());
+            keep.add(pack.packFile());
+        }
+        for (PackFile pack : old) {
+            if (!keep.contains(pack.idxFile())) {
+                pack.idxFile().delete();
+                pack.packFile().delete();
+            }
+        }
+        for (String id : packed) {
+            File f = file(id);
+            f.delete();
+            f.getParentFile().delete();
+        }
+        _packs = null;
+        return packed.size();
+    }
+
+    /** Returns the uncompressed header and contents of OBJ. */
+    private byte[] contents(Packed obj) {
+        if (obj.pack != null) {
+            return obj.pack.object(obj.k);
+        }
+        try (InputStream in = new InflaterInputStream(
+                 new FileInputStream(file(obj.id)))) {
+            return in.readAllBytes();
+        } catch (IOException err) {
+            throw new GitletException("I/O File Read error");
+        }
+    }
+
+    /** Returns the data of OBJ as a WHOLE pack object, compressing
+     *  CONTENTS (its uncompressed header and contents) if it is not
+     *  already stored compressed whole. CONTENTS may be null. */
+    private byte[] whole(Packed obj, byte[] contents) {
+        if (obj.pack == null) {
+            return Utils.readContents(file(obj.id));
+        } else if (obj.pack.type(obj.k) == PackFile.WHOLE) {
+            ByteBuffer data = obj.pack.data(obj.k);
+            byte[] result = new byte[data.remaining()];
+            data.get(result);
+            return result;
+        }
+        return compress(contents != null ? contents : contents(obj));
+    }
+
+    /** Sets the name and size of OBJ if it is a Blob or FILE object
+     *  small enough to be a delta or the base of one. */
+    private void describe(Packed obj) {
+        try (InputStream in = raw(obj.id)) {
+            String[] header = readHeader(in, obj.id);
+            long length = Long.parseLong(header[1]);
+            if (length > MAX_DELTA_SOURCE) {
+                return;
+            }
+            obj.size = (int) length;
+            if (header[0].equals(FILE)) {
+                obj.name = readName(in);
+            } else if (header[0].equals(BLOB)) {
+                obj.name = blob(obj.id, in.readAllBytes()).getName();
+            }
+        } catch (IOException | NumberFormatException err) {
+            throw new GitletException("Corrupt object " + obj.id);
+        }
+    }
+
+    /** An object being repacked: its ID, and the pack and number it has
+     *  there, or null and -1 if loose. */
+    private static class Packed {
+        /** The object with SHA ID, number K in PACK. */
+        Packed(String id, PackFile pack, int k) {
+            this.id = id;
+            this.pack = pack;
+            this.k = k;
+        }
+
+        /** SHA ID. */
+        private final String id;
+        /** Pack holding the object, or null. */
+        private final PackFile pack;
+        /** Number of the object in pack. */
+        private final int k;
+        /** Name of the Blob, or null if not a Blob. */
+        private String name;
+        /** Bytes of the uncompressed object. */
+        private int size;
+    }
+
+    /** A Blob recently packed, that later Blobs may be deltas of. */
+    private static class Base {
+        /** The Blob with SHA ID and NAME, whose uncompressed header and
+         *  contents are CONTENTS, and that is DEPTH deltas from a whole
+         *  object. */
+        Base(String id, String name, byte[] contents, int depth) {
+            this.id = id;
+            this.name = name;
+            this.contents = contents;
+            this.depth = depth;
+        }
+
+        /** SHA ID. */
+        private final String id;
+        /** File name. */
+        private final String name;
+        /** Uncompressed header and contents. */
+        private final byte[] contents;
+        /** Deltas from a whole object. */
+        private final int depth;
+    }
+
+    /** Writer of the new packs of a repack, starting a new pack whenever
+     *  one fills. */
+    private class Packer {
+
+        /** Adds the object with SHA ID, of TYPE, with DATA. */
+        void add(String id, byte type, byte[] data) {
+            roll();
+            _writer.add(id, type, data);
+        }
+
+        /** Adds BLOB, whose uncompressed header and contents are CONTENTS,
+         *  as a delta from one of the Blobs in the window, or whole if
+         *  none will do, and then puts it in the window. */
+        void deltify(Packed blob, byte[] contents) {
+            roll();
+            if (!_window.isEmpty()
+                && !_window.peekLast().name.equals(blob.name)) {
+                _window.clear();
+            }
+            byte[] best = null;
+            Base from = null;
+            if (contents.length <= MAX_DELTA_SOURCE) {
+                for (Base base : _window) {
+                    if (base.depth < MAX_DEPTH) {
+                        byte[] delta = Delta.create(base.contents, contents);
+                        if (best == null || delta.length < best.length) {
+                            best = delta;
+                            from = base;
+                        }
+                    }
+                }
+            }
+            int depth = 0;
+            if (best != null && best.length < contents.length / 2) {
+                _writer.add(blob.id, PackFile.DELTA,
+                            PackFile.deltaData(from.id, best));
+                depth = from.depth + 1;
+            } else {
+                _writer.add(blob.id, PackFile.WHOLE, whole(blob, contents));
+            }
+            if (contents.length <= MAX_DELTA_SOURCE) {
+                _window.addLast(new Base(blob.id, blob.name, contents,
+                                         depth));
+                if (_window.size() > WINDOW) {
+                    _window.removeFirst();
+                }
+            }
+        }
+
+        /** Finishes the current pack and returns all packs written. */
+        List<PackFile> finish() {
+            PackFile last = _writer.finish();
+            if (last != null) {
+                _made.add(last);
+            }
+            return _made;
+        }
+
+        /** Finishes the current pack and starts another if it is full.
+         *  Deltas must have their bases in their own pack, so the window
+         *  is emptied. */
+        private void roll() {
+            if (_writer.size() >= PackFile.MAX_PACK) {
+                _made.add(_writer.finish());
+                _writer = new PackFile.Writer(_packDir);
+                _window.clear();
+            }
+        }
+
+        /** Writer of the current pack. */
+        private PackFile.Writer _writer = new PackFile.Writer(_packDir);
+        /** Packs finished. */
+        private final ArrayList<PackFile> _made = new ArrayList<>();
+        /** Blobs recently added, oldest first. */
+        private final ArrayDeque<Base> _window = new ArrayDeque<>();
+    }
+
+    /** Returns true iff one of PACKS holds the object with SHA ID. */
+    private static boolean inAny(List<PackFile> packs, String id) {
+        for (PackFile pack : packs) {
+            if (pack.contains(id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Returns the IDs of the loose objects. */
+    List<String> looseIds() {
+        ArrayList<String> result = new ArrayList<>();
+        File[] dirs = _objects.listFiles();
+        if (dirs == null) {
+            return result;
+        }
+        Arrays.sort(dirs);
+        for (File dir : dirs) {
+            String[] names = dir.getName().length() == 2 ? dir.list() : null;
+            if (names == null) {
+                continue;
+            }
+            Arrays.sort(names);
+            for (String name : names) {
+                if (name.length() == Utils.UID_LENGTH - 2) {
+                    result.add(dir.getName() + name);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Returns the bytes of the header of an object of KIND and
+     *  LENGTH. */
+    private static byte[] header(String kind, long length) {
+        return (kind + " " + length + "\0").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** Hexadecimal digits. */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /** Number of earlier Blobs tried as bases of a delta. */
+    private static final int WINDOW = 10;
+
+    /** Most deltas between a packed Blob and a whole object. */
+    private static final int MAX_DEPTH = 16;
+
+    /** Largest object tried as a delta or a base of one. */
+    private static final int MAX_DELTA_SOURCE = 1 << 24;
+
+    /** Largest loose object file that repack puts in a pack; larger
+     *  ones stay loose. */
+    private static final long BIG_OBJECT = 1L << 26;
+
+    /** Bytes of a file hashed and compressed, or restored, at a time. */
+    private static final int CHUNK = 1 << 16;
+
+    /** Size of the buffers used to compress and decompress. */
+    private static final int BUFFER_SIZE = 8192;
+
+    /** Each thread's compressor, reused from object to object. */
+    private static final ThreadLocal<Deflater> _deflater =
+        ThreadLocal.withInitial(Deflater::new);
+
+    /** Store of the repo in the working directory, once used. */
+    private static ObjectStore _repo;
+
+    /** Root directory of the objects. */
+    private final File _objects;
+
+    /** Directory of the packs. */
+    private final File _packDir;
+
+    /** The packs, or null if not yet read. */
+    private List<PackFile> _packs;
+
+    /** Decoded objects read or stored. */
+    private final ObjectCache _cache;
+}
@@ -0,0 +1,168 @@
+package gitlet;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+
+/** The suite of all JUnit tests for the ObjectStore class.
+ *  @author Thomas Hsiung
+ */
+public class ObjectStoreTest {
+
+    /** The .gitlet directory of the store, and files to store. */
+    @Rule
+    public TemporaryFolder git = new TemporaryFolder();
+
+    /** A timestamp for the Commits. */
+    static final String TIME = "Thu Jan 01 00:00:00 1970 +0000";
+
+    /** Returns N random bytes from RANDOM. */
+    static byte[] random(Random random, int n) {
+        byte[] result = new byte[n];
+        random.nextBytes(result);
+        return result;
+    }
+
+    @Test
+    public void testRoundTrip() {
+        ObjectStore store = new ObjectStore(git.getRoot());
+        Blob blob = new Blob("wug.txt", Codec.utf8("This is a wug.\n"));
+        store.putBlob(blob);
+        HashMap<String, String> blobs = new HashMap<>();
+        blobs.put("wug.txt", blob.getSHA());
+        Commit init = new Commit("initial commit", "master", TIME);
+        Commit commit = new Commit("added wug", "master", init.getSHA(),
+                                   blobs, TIME);
+        store.putCommit(init);
+        store.putCommit(commit);
+        store.put(ObjectStore.FILE, Utils.sha1("raw"), new byte[] { 1, 2 });
+
+        store = new ObjectStore(git.getRoot());
+        assertTrue(store.contains(commit.getSHA()));
+        assertFalse(store.contains(Utils.sha1("absent")));
+        Commit read = store.readCommit(commit.getSHA());
+        assertEquals(commit.getSHA(), read.getSHA());
+        assertEquals("added wug", read.getLog());
+        assertEquals(init.getSHA(), read.getParent());
+        assertNull(read.getParent2());
+        assertEquals(blobs, read.getBlobs());
+        assertEquals(TIME, read.getTimestamp());
+        assertSame(read, store.readCommit(commit.getSHA()));
+        Blob readBlob = store.readBlob(blob.getSHA());
+        assertEquals("wug.txt", readBlob.getName());
+        assertArrayEquals(blob.getContents(), readBlob.getContents());
+        assertArrayEquals(new byte[] { 1, 2 },
+                          store.read(ObjectStore.FILE, Utils.sha1("raw")));
+        try {
+            store.readCommit(Utils.sha1("absent"));
+            fail("read a missing commit");
+        } catch (GitletException excp) {
+            assertEquals("No commit with that id exists.",
+                         excp.getMessage());
+        }
+        try {
+            store.read(ObjectStore.COMMIT, blob.getSHA());
+            fail("read a blob as a commit");
+        } catch (GitletException excp) {
+            /* Expected. */
+        }
+    }
+
+    @Test
+    public void testFile() throws IOException {
+        File source = git.newFile("big.bin");
+        byte[] contents = random(new Random(61), 200_000);
+        Files.write(source.toPath(), contents);
+        ObjectStore store = new ObjectStore(git.newFolder(".gitlet"));
+        String id = store.putFile("big.bin", source);
+        assertEquals(ObjectStore.hashFile("big.bin", source), id);
+        assertTrue(store.contains(id));
+        File dest = new File(git.getRoot(), "copy.bin");
+        store.restore(id, dest);
+        assertArrayEquals(contents, Files.readAllBytes(dest.toPath()));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        store.copy(id, out);
+        assertArrayEquals(contents, out.toByteArray());
+
+        Blob blob = new Blob("small.txt", new byte[] { 'w', 'u', 'g' });
+        store.putBlob(blob);
+        store.restore(blob.getSHA(), dest);
+        assertArrayEquals(blob.getContents(),
+                          Files.readAllBytes(dest.toPath()));
+    }
+
+    @Test
+    public void testMigrate() throws IOException {
+        File commits = git.newFolder("commits"),
+            blobs = git.newFolder("blobs");
+        Blob blob = new Blob("wug.txt", new byte[] { 'w', 'u', 'g' });
+        Utils.writeObject(new File(blobs, blob.getSHA()), blob);
+        HashMap<String, String> files = new HashMap<>();
+        files.put("wug.txt", blob.getSHA());
+        Commit commit = new Commit("old", "master", Utils.sha1("parent"),
+                                   files, TIME);
+        Utils.writeObject(new File(commits, commit.getSHA()), commit);
+
+        ObjectStore store = new ObjectStore(git.getRoot());
+        assertEquals(1, store.migrate(commits, ObjectStore.COMMIT));
+        assertEquals(1, store.migrate(blobs, ObjectStore.BLOB));
+        assertFalse(commits.exists());
+        assertFalse(blobs.exists());
+        assertEquals(0, store.migrate(commits, ObjectStore.COMMIT));
+        Commit read = store.readCommit(commit.getSHA());
+        assertEquals("old", read.getLog());
+        assertEquals(files, read.getBlobs());
+        assertArrayEquals(blob.getContents(),
+                          store.readBlob(blob.getSHA()).getContents());
+    }
+
+    @Test
+    public void testRepack() {
+        ObjectStore store = new ObjectStore(git.getRoot());
+        Random random = new Random(3);
+        byte[] contents = random(random, 4096);
+        ArrayList<Blob> blobs = new ArrayList<>();
+        for (int k = 0; k < 5; k += 1) {
+            contents = Arrays.copyOf(contents, contents.length + 100);
+            contents[random.nextInt(contents.length)] = (byte) k;
+            Blob blob = new Blob("wug.txt", contents.clone());
+            blobs.add(blob);
+            store.putBlob(blob);
+        }
+        Commit init = new Commit("initial commit", "master", TIME);
+        store.putCommit(init);
+        assertEquals(6, store.looseIds().size());
+
+        assertEquals(6, store.repack());
+        assertTrue(store.looseIds().isEmpty());
+        store = new ObjectStore(git.getRoot());
+        assertEquals(1, store.packs().size());
+        PackFile pack = store.packs().get(0);
+        assertEquals(6, pack.count());
+        int deltas = 0;
+        for (Blob blob : blobs) {
+            assertSame(pack, store.pack(blob.getSHA()));
+            assertArrayEquals(blob.getContents(),
+                              store.readBlob(blob.getSHA()).getContents());
+            if (pack.type(pack.find(blob.getSHA())) == PackFile.DELTA) {
+                deltas += 1;
+            }
+        }
+        assertEquals(4, deltas);
+        assertEquals("initial commit",
+                     store.readCommit(init.getSHA()).getLog());
+        assertEquals(0, store.repack());
+        assertEquals(1, store.packs().size());
+    }
+
+}
@@ -0,0 +1,539 @@
+package gitlet;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/** A pack of Gitlet objects: one file holding many objects, with a
+ *  sorted index of their SHA IDs.
+ *
+ *  The pack file, NAME.pack, starts with the magic number "GPAK", a
+ *  version and the number of objects, followed by the objects. Each is
+ *  a type byte followed by the object's data; for WHOLE objects that is
+ *  the compressed form a loose object file holds, and for DELTA objects
+ *  it is the 20-byte ID of a base object in the same pack followed by
+ *  the compressed Delta that rebuilds the object (header and all) from
+ *  the base. The index, NAME.idx,
+ *  starts with "GIDX", the version and the number of objects, then a
+ *  fan-out table of 256 ints giving the number of objects whose IDs
+ *  start with a byte at most K, then the 20-byte IDs in increasing
+ *  order, then the offset (a long) and length (an int) of each object
+ *  in the pack, in the same order. Both files are memory-mapped, and an
+ *  object is found by a binary search of the IDs within its fan-out
+ *  range.
+ *
+ *  Objects rebuilt from deltas, and the bases they were rebuilt from,
+ *  are kept in a cache of at most CACHE_BYTES, least recently used
+ *  first out, so that reading neighbouring versions of a file does not
+ *  rebuild their common chain again.
+ *
+ *  @author Thomas Hsiung
+ */
+class PackFile {
+
+    /** Type of an object stored whole. */
+    static final byte WHOLE = 1;
+    /** Type of an object stored as a delta from another. */
+    static final byte DELTA = 2;
+
+    /** Magic numbers of packs and indices. */
+    private static final int PACK_MAGIC = 0x4750414b, IDX_MAGIC = 0x47494458;
+    /** Version of the pack format. */
+    private static final int VERSION = 1;
+    /** Bytes in a SHA ID. */
+    static final int ID_BYTES = 20;
+    /** Bytes before the fan-out table in an index, and before the first
+     *  object in a pack. */
+    private static final int HEADER = 12;
+    /** Largest pack written, in bytes. */
+    static final long MAX_PACK = 1L << 30;
+    /** Bound on the bytes of objects kept by the cache of each pack. */
+    static final long CACHE_BYTES = 32L << 20;
+
+    /** The pack whose index is the file IDX. */
+    PackFile(File idx) {
+        String name = idx.getName();
+        _idxFile = idx;
+        _packFile = new File(idx.getParentFile(),
+                             name.substring(0, name.length() - 4) + ".pack");
+        _idx = map(idx);
+        _pack = map(_packFile);
+        if (_idx.getInt(0) != IDX_MAGIC || _idx.getInt(4) != VERSION
+            || _pack.getInt(0) != PACK_MAGIC) {
+            throw new GitletException("Corrupt pack " + name);
+        }
+        _count = _idx.getInt(8);
+        _ids = HEADER + 256 * 4;
+        _offsets = _ids + (long) _count * ID_BYTES;
+        _lengths = _offsets + (long) _count * 8;
+    }
+
+    /** Returns the index file. */
+    File idxFile() {
+        return _idxFile;
+    }
+
+    /** Returns the pack file. */
+    File packFile() {
+        return _packFile;
+    }
+
+    /** Returns the number of objects in this pack. */
+    int count() {
+        return _count;
+    }
+
+    /** Returns the ID of object number K in order of ID. */
+    String id(int k) {
+        StringBuilder result = new StringBuilder(2 * ID_BYTES);
+        int base = _ids + k * ID_BYTES;
+        for (int i = 0; i < ID_BYTES; i++) {
+            int b = _idx.get(base + i) & 0xff;
+            result.append(HEX[b >> 4]).append(HEX[b & 15]);
+        }
+        return result.toString();
+    }
+
+    /** Returns the number of object ID, or -1 if it is not in this
+     *  pack. */
+    int find(String id) {
+        byte[] key = bytes(id);
+        return key == null ? -1 : find(key);
+    }
+
+    /** Returns the number of the object whose ID has the 20 bytes KEY,
+     *  or -1 if it is not in this pack. */
+    int find(byte[] key) {
+        int first = key[0] & 0xff;
+        int lo = first == 0 ? 0 : _idx.getInt(HEADER + (first - 1) * 4);
+        int hi = _idx.getInt(HEADER + first * 4) - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int c = compare(mid, key);
+            if (c < 0) {
+                lo = mid + 1;
+            } else if (c > 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /** Returns true iff the object with SHA ID is in this pack. */
+    boolean contains(String id) {
+        return find(id) >= 0;
+    }
+
+    /** Returns the type of object number K. */
+    byte type(int k) {
+        return _pack.get((int) offset(k));
+    }
+
+    /** Returns the data of object number K, after its type byte. */
+    ByteBuffer data(int k) {
+        int start = (int) offset(k) + 1;
+        int length = _idx.getInt((int) (_lengths + 4L * k)) - 1;
+        return _pack.slice(start, length);
+    }
+
+    /** Returns a stream of the uncompressed header and contents of the
+     *  object with SHA ID, which must be in this pack. Small objects are
+     *  inflated at once by this thread's Inflater, sparing the setup of a
+     *  new one; larger ones are inflated as they are read. */
+    InputStream open(String id) {
+        int k = find(id);
+        if (k < 0) {
+            throw new GitletException("Corrupt pack " + _packFile.getName());
+        }
+        if (type(k) == WHOLE && data(k).remaining() > SMALL) {
+            return new InflaterInputStream(new BufferInputStream(data(k)));
+        }
+        return new ByteArrayInputStream(object(k));
+    }
+
+    /** Returns the uncompressed header and contents of object number
+     *  K. */
+    byte[] object(int k) {
+        byte type = type(k);
+        if (type == WHOLE) {
+            return inflate(data(k));
+        } else if (type == DELTA) {
+            return rebuild(k);
+        }
+        throw new GitletException("Corrupt pack " + _packFile.getName());
+    }
+
+    /** Returns the ID of the base of object number K, which must be a
+     *  delta. */
+    String base(int k) {
+        ByteBuffer data = data(k);
+        byte[] key = new byte[ID_BYTES];
+        data.get(key);
+        return id(find(key));
+    }
+
+    /** Returns object number K, a delta or the base of one, from the
+     *  cache or else rebuilt from its base and cached. */
+    private byte[] rebuild(int k) {
+        byte[] result = cached(k);
+        if (result != null) {
+            return result;
+        }
+        if (type(k) == WHOLE) {
+            result = inflate(data(k));
+        } else {
+            ByteBuffer data = data(k);
+            byte[] key = new byte[ID_BYTES];
+            data.get(key);
+            int b = find(key);
+            if (b < 0 || b == k) {
+                throw new GitletException("Corrupt pack "
+                                          + _packFile.getName());
+            }
+            result = Delta.apply(rebuild(b), inflate(data));
+        }
+        cache(k, result);
+        return result;
+    }
+
+    /** Returns cached object number K, or null. */
+    private synchronized byte[] cached(int k) {
+        return _cache.get(k);
+    }
+
+    /** Caches OBJECT as object number K, evicting the least recently
+     *  used objects to keep within CACHE_BYTES. */
+    private synchronized void cache(int k, byte[] object) {
+        if (object.length > CACHE_BYTES / 4) {
+            return;
+        }
+        byte[] old = _cache.put(k, object);
+        _cacheBytes += object.length - (old == null ? 0 : old.length);
+        Iterator<byte[]> lru = _cache.values().iterator();
+        while (_cacheBytes > CACHE_BYTES) {
+            _cacheBytes -= lru.next().length;
+            lru.remove();
+        }
+    }
+
+    /** Returns the inflation of the remainder of DATA. */
+    private static byte[] inflate(ByteBuffer data) {
+        Inflater inflater = _inflater.get();
+        inflater.reset();
+        inflater.setInput(data);
+        byte[] result = new byte[4 * data.remaining() + 64];
+        int n = 0;
+        try {
+            while (!inflater.finished()) {
+                if (n == result.length) {
+                    result = Arrays.copyOf(result, 2 * n);
+                }
+                int got = inflater.inflate(result, n, result.length - n);
+                if (got == 0 && (inflater.needsInput()
+                                 || inflater.needsDictionary())) {
+                    throw new GitletException("Corrupt pack object");
+                }
+                n += got;
+            }
+        } catch (DataFormatException err) {
+            throw new GitletException("Corrupt pack object");
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    /** Returns the offset of object number K in the pack. */
+    private long offset(int k) {
+        return _idx.getLong((int) (_offsets + 8L * k));
+    }
+
+    /** Compares ID number K with KEY. */
+    private int compare(int k, byte[] key) {
+        int base = _ids + k * ID_BYTES;
+        for (int i = 0; i < ID_BYTES; i++) {
+            int c = (_idx.get(base + i) & 0xff) - (key[i] & 0xff);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return 0;
+    }
+
+    /** Returns the 20 bytes of the hexadecimal SHA ID, or null if ID
+     *  is not one. */
+    static byte[] bytes(String id) {
+        if (id == null || id.length() != 2 * ID_BYTES) {
+            return null;
+        }
+        byte[] result = new byte[ID_BYTES];
+        for (int i = 0; i < ID_BYTES; i++) {
+            int hi = Character.digit(id.charAt(2 * i), 16);
+            int lo = Character.digit(id.charAt(2 * i + 1), 16);
+            if (hi < 0 || lo < 0) {
+                return null;
+            }
+            result[i] = (byte) (hi << 4 | lo);
+        }
+        return result;
+    }
+
+    /** Returns FILE mapped read-only. */
+    static MappedByteBuffer map(File file) {
+        try (RandomAccessFile in = new RandomAccessFile(file, "r");
+             FileChannel channel = in.getChannel()) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                               channel.size());
+        } catch (IOException err) {
+            throw new GitletException("I/O File Read error");
+        }
+    }
+
+    /** Writer of a new pack into a directory. Objects are appended to a
+     *  temporary pack file as they are added; finish() writes the index
+     *  and renames both into place, the index last, so a pack is only
+     *  seen once it is complete. */
+    static class Writer {
+
+        /** A writer of a new pack in directory DIR. */
+        Writer(File dir) {
+            dir.mkdirs();
+            _dir = dir;
+            _tmp = Utils.join(dir, "tmp-pack-" + System.nanoTime());
+            try {
+                _out = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(_tmp), 1 << 16));
+                _out.writeInt(PACK_MAGIC);
+                _out.writeInt(VERSION);
+                _out.writeInt(0);
+            } catch (IOException err) {
+                throw new GitletException("I/O File Creation error");
+            }
+            _size = HEADER;
+        }
+
+        /** Returns the number of bytes written to the pack so far. */
+        long size() {
+            return _size;
+        }
+
+        /** Returns the number of objects added. */
+        int count() {
+            return _count;
+        }
+
+        /** Adds the object with SHA ID, of TYPE, whose data is DATA. */
+        void add(String id, byte type, byte[] data) {
+            add(id, type, ByteBuffer.wrap(data));
+        }
+
+        /** Adds the object with SHA ID, of TYPE, whose data is the
+         *  remainder of DATA. */
+        void add(String id, byte type, ByteBuffer data) {
+            if (_count == _keys.length) {
+                _keys = Arrays.copyOf(_keys, 2 * _count);
+                _offs = Arrays.copyOf(_offs, 2 * _count);
+                _lens = Arrays.copyOf(_lens, 2 * _count);
+            }
+            int length = data.remaining() + 1;
+            _keys[_count] = bytes(id);
+            _offs[_count] = _size;
+            _lens[_count] = length;
+            _count += 1;
+            try {
+                _out.write(type);
+                if (data.hasArray()) {
+                    _out.write(data.array(),
+                               data.arrayOffset() + data.position(),
+                               data.remaining());
+                } else {
+                    byte[] copy = new byte[data.remaining()];
+                    data.duplicate().get(copy);
+                    _out.write(copy);
+                }
+            } catch (IOException err) {
+                throw new GitletException("I/O File Creation error");
+            }
+            _size += length;
+        }
+
+        /** Completes the pack and returns it, or returns null (and
+         *  writes nothing) if it is empty. */
+        PackFile finish() {
+            try {
+                _out.close();
+                if (_count == 0) {
+                    _tmp.delete();
+                    return null;
+                }
+                try (RandomAccessFile f = new RandomAccessFile(_tmp, "rw")) {
+                    f.seek(8);
+                    f.writeInt(_count);
+                }
+                Integer[] order = new Integer[_count];
+                for (int i = 0; i < _count; i++) {
+                    order[i] = i;
+                }
+                Arrays.sort(order, (a, b) -> Arrays.compareUnsigned(
+                    _keys[a], _keys[b]));
+                byte[][] sorted = new byte[_count][];
+                for (int i = 0; i < _count; i++) {
+                    sorted[i] = _keys[order[i]];
+                }
+                String name = "pack-" + Utils.sha1((Object[]) sorted);
+                File tmpIdx = Utils.join(_dir, "tmp-idx-" + System.nanoTime());
+                writeIndex(tmpIdx, order);
+                File pack = Utils.join(_dir, name + ".pack");
+                File idx = Utils.join(_dir, name + ".idx");
+                Files.move(_tmp.toPath(), pack.toPath(),
+                           StandardCopyOption.REPLACE_EXISTING);
+                Files.move(tmpIdx.toPath(), idx.toPath(),
+                           StandardCopyOption.REPLACE_EXISTING);
+                return new PackFile(idx);
+            } catch (IOException err) {
+                throw new GitletException("I/O File Creation error");
+            }
+        }
+
+        /** Writes the index of my objects, in the order ORDER, to
+         *  FILE. */
+        private void writeIndex(File file, Integer[] order)
+            throws IOException {
+            try (DataOutputStream out = new DataOutputStream(
+                     new BufferedOutputStream(new FileOutputStream(file),
+                                              1 << 16))) {
+                out.writeInt(IDX_MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(_count);
+                int[] fanout = new int[256];
+                for (int i = 0; i < _count; i++) {
+                    fanout[_keys[i][0] & 0xff] += 1;
+                }
+                int total = 0;
+                for (int b = 0; b < 256; b++) {
+                    total += fanout[b];
+                    out.writeInt(total);
+                }
+                byte[] last = null;
+                for (Integer i : order) {
+                    if (Arrays.equals(last, _keys[i])) {
+                        throw new GitletException("Duplicate object in pack");
+                    }
+                    last = _keys[i];
+                    out.write(_keys[i]);
+                }
+                for (Integer i : order) {
+                    out.writeLong(_offs[i]);
+                }
+                for (Integer i : order) {
+                    out.writeInt(_lens[i]);
+                }
+            }
+        }
+
+        /** Directory of the pack. */
+        private final File _dir;
+        /** Temporary pack file. */
+        private final File _tmp;
+        /** Stream writing _tmp. */
+        private final DataOutputStream _out;
+        /** Bytes written to _tmp. */
+        private long _size;
+        /** Number of objects added. */
+        private int _count;
+        /** IDs of the objects, in order added. */
+        private byte[][] _keys = new byte[16][];
+        /** Offsets of the objects. */
+        private long[] _offs = new long[16];
+        /** Lengths of the objects, including their type bytes. */
+        private int[] _lens = new int[16];
+    }
+
+    /** An InputStream reading the remainder of a ByteBuffer. */
+    static class BufferInputStream extends InputStream {
+
+        /** A stream reading the remainder of BUF. */
+        BufferInputStream(ByteBuffer buf) {
+            _buf = buf;
+        }
+
+        @Override
+        public int read() {
+            return _buf.hasRemaining() ? _buf.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!_buf.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, _buf.remaining());
+            _buf.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return _buf.remaining();
+        }
+
+        /** Remaining bytes. */
+        private final ByteBuffer _buf;
+    }
+
+    /** Largest compressed object inflated at once by open. */
+    private static final int SMALL = 1 << 16;
+
+    /** Each thread's decompressor for small objects. */
+    private static final ThreadLocal<Inflater> _inflater =
+        ThreadLocal.withInitial(Inflater::new);
+
+    /** Returns DELTA, which rebuilds an object from the object with SHA
+     *  BASEID, as the data of a DELTA object. */
+    static byte[] deltaData(String baseId, byte[] delta) {
+        byte[] packed = ObjectStore.compress(delta);
+        byte[] result = Arrays.copyOf(bytes(baseId), ID_BYTES + packed.length);
+        System.arraycopy(packed, 0, result, ID_BYTES, packed.length);
+        return result;
+    }
+
+    /** Hexadecimal digits. */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /** Index and pack files. */
+    private final File _idxFile, _packFile;
+    /** Mapped index. */
+    private final MappedByteBuffer _idx;
+    /** Mapped pack. */
+    private final MappedByteBuffer _pack;
+    /** Number of objects. */
+    private final int _count;
+    /** Cached objects by number, least recently used first. */
+    private final LinkedHashMap<Integer, byte[]> _cache =
+        new LinkedHashMap<>(16, 0.75f, true);
+    /** Bytes of the objects in _cache. */
+    private long _cacheBytes;
+    /** Positions in _idx of the IDs, offsets and lengths. */
+    private final int _ids;
+    /** Positions in _idx of the offsets and lengths. */
+    private final long _offsets, _lengths;
+}
@@ -0,0 +1,99 @@
+package gitlet;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+
+/** The suite of all JUnit tests for the PackFile class.
+ *  @author Thomas Hsiung
+ */
+public class PackFileTest {
+
+    /** Directory of the packs. */
+    @Rule
+    public TemporaryFolder packs = new TemporaryFolder();
+
+    /** Returns the contents of object number K of PACK. */
+    static String contents(PackFile pack, int k) {
+        return new String(pack.object(k));
+    }
+
+    @Test
+    public void testLookup() {
+        PackFile.Writer writer = new PackFile.Writer(packs.getRoot());
+        ArrayList<String> ids = new ArrayList<>();
+        for (int k = 0; k < 300; k += 1) {
+            String id = Utils.sha1("object " + k);
+            ids.add(id);
+            writer.add(id, PackFile.WHOLE,
+                       ObjectStore.compress(Codec.utf8("object " + k)));
+        }
+        PackFile pack = writer.finish();
+        assertEquals(300, pack.count());
+        Collections.sort(ids);
+        for (int k = 0; k < ids.size(); k += 1) {
+            assertEquals(ids.get(k), pack.id(k));
+            assertEquals(k, pack.find(ids.get(k)));
+            assertEquals(PackFile.WHOLE, pack.type(k));
+        }
+        int k = pack.find(Utils.sha1("object 17"));
+        assertEquals("object 17", contents(pack, k));
+        assertTrue(pack.contains(Utils.sha1("object 299")));
+        assertFalse(pack.contains(Utils.sha1("object 300")));
+        assertEquals(-1, pack.find("0".repeat(40)));
+        assertEquals(-1, pack.find("f".repeat(40)));
+        assertEquals(-1, pack.find("abc"));
+        assertEquals(-1, pack.find("z".repeat(40)));
+
+        PackFile reread = new PackFile(pack.idxFile());
+        assertEquals(300, reread.count());
+        assertEquals(k, reread.find(Utils.sha1("object 17")));
+        assertEquals("object 17", contents(reread, k));
+    }
+
+    @Test
+    public void testDeltas() throws IOException {
+        Random random = new Random(11);
+        byte[] base = new byte[10_000];
+        random.nextBytes(base);
+        byte[] target = base.clone();
+        target[5000] += 1;
+        byte[] next = target.clone();
+        next[100] += 1;
+        String baseId = Utils.sha1(base), targetId = Utils.sha1(target),
+            nextId = Utils.sha1(next);
+        PackFile.Writer writer = new PackFile.Writer(packs.getRoot());
+        writer.add(nextId, PackFile.DELTA, PackFile.deltaData(
+            targetId, Delta.create(target, next)));
+        writer.add(baseId, PackFile.WHOLE, ObjectStore.compress(base));
+        writer.add(targetId, PackFile.DELTA, PackFile.deltaData(
+            baseId, Delta.create(base, target)));
+        PackFile pack = writer.finish();
+
+        int k = pack.find(nextId);
+        assertEquals(PackFile.DELTA, pack.type(k));
+        assertEquals(targetId, pack.base(k));
+        assertArrayEquals(next, pack.object(k));
+        assertArrayEquals(target, pack.object(pack.find(targetId)));
+        assertArrayEquals(base, pack.object(pack.find(baseId)));
+        try (InputStream in = pack.open(nextId)) {
+            assertArrayEquals(next, in.readAllBytes());
+        }
+        assertTrue(pack.data(k).remaining() < 100);
+    }
+
+    @Test
+    public void testEmpty() {
+        PackFile.Writer writer = new PackFile.Writer(packs.getRoot());
+        assertNull(writer.finish());
+        assertEquals(0, packs.getRoot().list().length);
+    }
+
+}
@@ -0,0 +1,255 @@
+package gitlet;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/** A directory of a Commit: its files and subdirectories, by name, each
+ *  with the SHA ID of its contents or of its own Tree. Trees are
+ *  content-addressed, so a directory that did not change between two
+ *  Commits is the same Tree in both, and a commit writes new Trees only
+ *  for the directories on the paths it changes (see update).
+ *
+ *  Entries are kept in order of name, and a Tree is stored in the
+ *  binary form of encode(). Its ID is the SHA-1 of its kind, "tree",
+ *  followed by that form.
+ *
+ *  @author Thomas Hsiung
+ */
+class Tree {
+
+    /** Version of the binary form. */
+    static final int VERSION = 1;
+    /** Kinds of entry: a file, a subdirectory. */
+    static final byte FILE = 0, TREE = 1;
+
+    /** A Tree whose entries, in order of name, have NAMES, IDS and
+     *  KINDS. */
+    private Tree(String[] names, String[] ids, byte[] kinds) {
+        _names = names;
+        _ids = ids;
+        _kinds = kinds;
+        _sha = Utils.sha1(ObjectStore.TREE, encode().array());
+    }
+
+    /** A Tree with SHA ID read back from the store, whose entries have
+     *  NAMES, IDS and KINDS. */
+    private Tree(String sha, String[] names, String[] ids, byte[] kinds) {
+        _sha = sha;
+        _names = names;
+        _ids = ids;
+        _kinds = kinds;
+    }
+
+    /** Returns the ID of the root Tree of the Tree with ID ROOT, or of
+     *  none if ROOT is null, with the CHANGES made: each path, relative
+     *  to the root and separated by '/', set to its new SHA ID, or
+     *  removed if that is null. The new Trees are put in STORE, one for
+     *  each directory on the changed paths; the rest are shared with
+     *  ROOT. Directories left empty are dropped, but the root is always
+     *  stored. */
+    static String update(ObjectStore store, String root,
+                         SortedMap<String, String> changes) {
+        String result = update(store, root, changes, "");
+        if (result == null) {
+            Tree empty = new Tree(new String[0], new String[0], new byte[0]);
+            store.putTree(empty);
+            result = empty.getSHA();
+        }
+        return result;
+    }
+
+    /** Returns the ID of the Tree of the directory PREFIX (ending in '/'
+     *  unless the root), whose Tree had ID TREE (null if none), with the
+     *  CHANGES under it made, as update does, or null if it is left
+     *  empty. CHANGES holds only paths starting with PREFIX. */
+    private static String update(ObjectStore store, String tree,
+                                 SortedMap<String, String> changes,
+                                 String prefix) {
+        TreeMap<String, String> files = new TreeMap<>(),
+            dirs = new TreeMap<>();
+        if (tree != null) {
+            Tree old = store.readTree(tree);
+            for (int k = 0; k < old._names.length; k++) {
+                (old._kinds[k] == TREE ? dirs : files)
+                    .put(old._names[k], old._ids[k]);
+            }
+        }
+        while (!changes.isEmpty()) {
+            String path = changes.firstKey();
+            int slash = path.indexOf('/', prefix.length());
+            if (slash < 0) {
+                String name = path.substring(prefix.length());
+                String id = changes.get(path);
+                if (id == null) {
+                    files.remove(name);
+                } else {
+                    files.put(name, id);
+                    dirs.remove(name);
+                }
+                changes = changes.tailMap(path + '\0');
+            } else {
+                String name = path.substring(prefix.length(), slash);
+                String dir = path.substring(0, slash + 1);
+                String end = path.substring(0, slash) + (char) ('/' + 1);
+                String id = update(store, dirs.get(name),
+                                   changes.subMap(dir, end), dir);
+                if (id == null) {
+                    dirs.remove(name);
+                } else {
+                    dirs.put(name, id);
+                    files.remove(name);
+                }
+                changes = changes.tailMap(end);
+            }
+        }
+        if (files.isEmpty() && dirs.isEmpty()) {
+            return null;
+        }
+        TreeMap<String, Byte> kinds = new TreeMap<>();
+        for (String name : files.keySet()) {
+            kinds.put(name, FILE);
+        }
+        for (String name : dirs.keySet()) {
+            kinds.put(name, TREE);
+        }
+        int size = kinds.size(), k = 0;
+        String[] names = new String[size], ids = new String[size];
+        byte[] kindArray = new byte[size];
+        for (Map.Entry<String, Byte> e : kinds.entrySet()) {
+            names[k] = e.getKey();
+            kindArray[k] = e.getValue();
+            ids[k] = (e.getValue() == TREE ? dirs : files).get(e.getKey());
+            k += 1;
+        }
+        Tree result = new Tree(names, ids, kindArray);
+        store.putTree(result);
+        return result.getSHA();
+    }
+
+    /** Returns every file under the Tree with ID ROOT in STORE, as a map
+     *  of path to SHA ID. */
+    static HashMap<String, String> files(ObjectStore store, String root) {
+        HashMap<String, String> result = new HashMap<>();
+        ArrayList<String> trees = new ArrayList<>(),
+            prefixes = new ArrayList<>();
+        trees.add(root);
+        prefixes.add("");
+        while (!trees.isEmpty()) {
+            Tree tree = store.readTree(trees.remove(trees.size() - 1));
+            String prefix = prefixes.remove(prefixes.size() - 1);
+            for (int k = 0; k < tree._names.length; k++) {
+                String path = prefix + tree._names[k];
+                if (tree._kinds[k] == TREE) {
+                    trees.add(tree._ids[k]);
+                    prefixes.add(path + "/");
+                } else {
+                    result.put(path, tree._ids[k]);
+                }
+            }
+        }
+        return result;
+    }
+
+    /** Returns the SHA ID of the file PATH under the Tree with ID ROOT
+     *  in STORE, or null if there is none. Reads only the Trees of the
+     *  directories on PATH. */
+    static String find(ObjectStore store, String root, String path) {
+        String[] parts = path.split("/", -1);
+        String id = root;
+        for (int p = 0; p < parts.length; p++) {
+            Tree tree = store.readTree(id);
+            int k = tree.indexOf(parts[p]);
+            if (k < 0 || (tree._kinds[k] == TREE) != (p < parts.length - 1)) {
+                return null;
+            }
+            id = tree._ids[k];
+        }
+        return id;
+    }
+
+    /** Returns the index of the entry NAME, or -1 if there is none. */
+    private int indexOf(String name) {
+        int lo = 0, hi = _names.length - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int c = _names[mid].compareTo(name);
+            if (c == 0) {
+                return mid;
+            } else if (c < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return -1;
+    }
+
+    /** Returns my SHA ID. */
+    String getSHA() {
+        return _sha;
+    }
+
+    /** Returns my binary form, ready to read: the VERSION byte, the
+     *  number of my entries, and each entry's kind byte, name and 20-byte
+     *  ID (see Codec). */
+    ByteBuffer encode() {
+        byte[][] names = new byte[_names.length][];
+        int size = 1 + Codec.varintSize(names.length);
+        for (int k = 0; k < names.length; k++) {
+            names[k] = Codec.utf8(_names[k]);
+            size += 1 + Codec.stringSize(names[k]) + PackFile.ID_BYTES;
+        }
+        ByteBuffer out = ByteBuffer.allocate(size);
+        out.put((byte) VERSION);
+        Codec.putVarint(out, names.length);
+        for (int k = 0; k < names.length; k++) {
+            out.put(_kinds[k]);
+            Codec.putString(out, names[k]);
+            Codec.putId(out, _ids[k]);
+        }
+        return out.flip();
+    }
+
+    /** Returns the Tree with SHA ID whose binary form (see encode) is
+     *  read from IN. */
+    static Tree decode(String sha, ByteBuffer in) {
+        int version = in.get();
+        if (version != VERSION) {
+            throw new GitletException("Unknown tree version " + version);
+        }
+        int count = Codec.getVarint(in);
+        String[] names = new String[count], ids = new String[count];
+        byte[] kinds = new byte[count];
+        for (int k = 0; k < count; k++) {
+            kinds[k] = in.get();
+            names[k] = Codec.getString(in);
+            ids[k] = Codec.getId(in);
+        }
+        return new Tree(sha, names, ids, kinds);
+    }
+
+    /** Returns an estimate of the bytes I hold in memory, for
+     *  ObjectCache. */
+    long retainedSize() {
+        long result = 2 * ObjectCache.OBJECT_BYTES + ObjectCache.size(_sha)
+            + 9L * _names.length;
+        for (int k = 0; k < _names.length; k++) {
+            result += ObjectCache.size(_names[k])
+                + ObjectCache.size(_ids[k]);
+        }
+        return result;
+    }
+
+    /** Names of my entries, in order. */
+    private final String[] _names;
+    /** SHA IDs of my entries. */
+    private final String[] _ids;
+    /** Kinds of my entries, FILE or TREE. */
+    private final byte[] _kinds;
+    /** My SHA ID. */
+    private final String _sha;
+}
@@ -0,0 +1,98 @@
+package gitlet;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.TreeMap;
+
+/** The suite of all JUnit tests for the Tree class.
+ *  @author Thomas Hsiung
+ */
+public class TreeTest {
+
+    /** The .gitlet directory of the store. */
+    @Rule
+    public TemporaryFolder git = new TemporaryFolder();
+
+    /** Returns a map of the paths and IDs in PATHSANDIDS, which
+     *  alternate. */
+    static TreeMap<String, String> changes(String... pathsAndIds) {
+        TreeMap<String, String> result = new TreeMap<>();
+        for (int k = 0; k < pathsAndIds.length; k += 2) {
+            result.put(pathsAndIds[k], pathsAndIds[k + 1]);
+        }
+        return result;
+    }
+
+    @Test
+    public void testUpdate() {
+        ObjectStore store = new ObjectStore(git.getRoot());
+        String a = Utils.sha1("a"), b = Utils.sha1("b"), c = Utils.sha1("c");
+        String root = Tree.update(store, null, changes(
+            "a.txt", a, "dir/b.txt", b, "dir/sub/c.txt", c, "dir.txt", c));
+        HashMap<String, String> files = new HashMap<>(changes(
+            "a.txt", a, "dir/b.txt", b, "dir/sub/c.txt", c, "dir.txt", c));
+        assertEquals(files, Tree.files(store, root));
+        assertEquals(root, Tree.update(store, null, changes(
+            "dir.txt", c, "dir/sub/c.txt", c, "dir/b.txt", b, "a.txt", a)));
+        assertEquals(root, Tree.update(store, root, changes()));
+
+        String root2 = Tree.update(store, root, changes(
+            "dir/b.txt", c, "a.txt", null, "e.txt", a));
+        files.put("dir/b.txt", c);
+        files.remove("a.txt");
+        files.put("e.txt", a);
+        assertEquals(files, Tree.files(store, root2));
+        assertEquals(a, Tree.find(store, root, "a.txt"));
+        assertNull(Tree.find(store, root2, "a.txt"));
+
+        store = new ObjectStore(git.getRoot());
+        String root3 = Tree.update(store, root2, changes(
+            "dir/sub/c.txt", null, "dir/b.txt", null));
+        files.remove("dir/sub/c.txt");
+        files.remove("dir/b.txt");
+        assertEquals(files, Tree.files(store, root3));
+        assertNull(Tree.find(store, root3, "dir"));
+        assertNull(Tree.find(store, root3, "dir/b.txt"));
+    }
+
+    @Test
+    public void testFind() {
+        ObjectStore store = new ObjectStore(git.getRoot());
+        String a = Utils.sha1("a"), b = Utils.sha1("b");
+        String root = Tree.update(store, null, changes(
+            "x/y/z.txt", a, "x/w.txt", b, "x.txt", b));
+        assertEquals(a, Tree.find(store, root, "x/y/z.txt"));
+        assertEquals(b, Tree.find(store, root, "x/w.txt"));
+        assertEquals(b, Tree.find(store, root, "x.txt"));
+        assertNull(Tree.find(store, root, "x"));
+        assertNull(Tree.find(store, root, "x/y"));
+        assertNull(Tree.find(store, root, "x.txt/z.txt"));
+        assertNull(Tree.find(store, root, "x/y/z.txt/"));
+        assertNull(Tree.find(store, root, "x/v.txt"));
+
+        String replaced = Tree.update(store, root, changes("x", a));
+        assertEquals(a, Tree.find(store, replaced, "x"));
+        assertNull(Tree.find(store, replaced, "x/w.txt"));
+        String back = Tree.update(store, replaced, changes(
+            "x/y/z.txt", a, "x/w.txt", b));
+        assertEquals(root, back);
+    }
+
+    @Test
+    public void testEmpty() {
+        ObjectStore store = new ObjectStore(git.getRoot());
+        String empty = Tree.update(store, null, changes());
+        assertTrue(store.contains(empty));
+        assertTrue(Tree.files(store, empty).isEmpty());
+        assertNull(Tree.find(store, empty, "a.txt"));
+        String a = Utils.sha1("a");
+        String root = Tree.update(store, empty, changes("dir/a.txt", a));
+        assertEquals(empty, Tree.update(store, root,
+                                         changes("dir/a.txt", null)));
+    }
+
+}
@@ -12,7 +12,18 @@ public class UnitTest {
     /** Run the JUnit tests in the loa package. Add xxxTest.class entries to
      *  the arguments of runClasses to run other JUnit tests. */
     public static void main(String[] ignored) {
-        System.exit(textui.runClasses(UnitTest.class));
+        System.exit(textui.runClasses(UnitTest.class,
+                                      CodecTest.class,
+                                      DeltaTest.class,
+                                      PackFileTest.class,
+                                      ObjectCacheTest.class,
+                                      ObjectStoreTest.class,
+                                      TreeTest.class,
+                                      IndexTest.class,
+                                      WorktreeTest.class,
+                                      MessageIndexTest.class,
+                                      LogFileTest.class,
+                                      CommitGraphTest.class));
     }
 
     /** A dummy test to avoid complaint. */
@@ -0,0 +1,212 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/** A comparison of the working directory with the index, for status.
+ *
+ *  The directory is walked by a ForkJoinPool, one task per directory.
+ *  A file whose size, time and inode match its index entry is taken as
+ *  unchanged (see Index.unchanged); any other tracked file is hashed, in
+ *  the task that found it, so files are hashed in parallel, and is
+ *  modified if its SHA ID differs from the entry's. A tracked file whose
+ *  hash matches is refreshed: its entry gets the new stat, so the next
+ *  scan need not hash it. Files with no entry are untracked, and entries
+ *  with no file are deleted. The .gitlet directory is skipped.
+ *
+ *  @author Thomas Hsiung
+ */
+class Worktree {
+
+    /** A comparison of the files under ROOT with INDEX. */
+    Worktree(File root, Index index) {
+        _root = root;
+        _index = index;
+    }
+
+    /** Returns the pool Gitlet walks and hashes files on, of the number
+     *  of threads given by the property gitlet.threads (default, the
+     *  number of processors). */
+    static ForkJoinPool pool() {
+        return Pool.INSTANCE;
+    }
+
+    /** Walks the working directory, and returns this comparison. */
+    Worktree scan() {
+        pool().invoke(new Walk(_root.toPath(), "", this::check));
+        for (Index.Entry e : _index.entries()) {
+            if (!_seen.contains(e.path())) {
+                _deleted.add(e.path());
+            }
+        }
+        return this;
+    }
+
+    /** Returns the paths from ROOT of the regular files under DIR,
+     *  which is ROOT or below it, in order. */
+    static List<String> files(File root, File dir) {
+        String prefix = name(root, dir);
+        prefix = prefix.isEmpty() ? "" : prefix + "/";
+        ConcurrentLinkedQueue<String> result = new ConcurrentLinkedQueue<>();
+        pool().invoke(new Walk(dir.toPath(), prefix,
+                               (path, name, attrs) -> result.add(name)));
+        return sorted(result);
+    }
+
+    /** Returns the path of FILE from ROOT, as named in the index. */
+    static String name(File root, File file) {
+        Path path = root.toPath().toAbsolutePath().normalize()
+            .relativize(file.toPath().toAbsolutePath().normalize());
+        if (path.startsWith("..")) {
+            throw new GitletException("File is outside the working"
+                                      + " directory.");
+        }
+        return path.toString().replace(File.separatorChar, '/');
+    }
+
+    /** Returns the paths of tracked files whose contents differ from
+     *  their index entries, in order. */
+    List<String> modified() {
+        return sorted(_modified);
+    }
+
+    /** Returns the paths of index entries with no file, in order. */
+    List<String> deleted() {
+        return sorted(_deleted);
+    }
+
+    /** Returns the paths of files with no index entry, in order. */
+    List<String> untracked() {
+        return sorted(_untracked);
+    }
+
+    /** Returns the entries whose files were hashed and found the same,
+     *  with their new stats. */
+    List<Index.Entry> refreshed() {
+        return new ArrayList<>(_refreshed);
+    }
+
+    /** Returns the contents of PATHS, sorted. */
+    private static List<String> sorted(Iterable<String> paths) {
+        ArrayList<String> result = new ArrayList<>();
+        paths.forEach(result::add);
+        Collections.sort(result);
+        return result;
+    }
+
+    /** Compares the file at PATH, called NAME in the index and having
+     *  ATTRS, with its index entry. */
+    private void check(Path path, String name, BasicFileAttributes attrs) {
+        Index.Entry entry = _index.get(name);
+        if (entry == null) {
+            _untracked.add(name);
+            return;
+        }
+        _seen.add(name);
+        Index.Stat stat = Index.Stat.of(attrs);
+        if (_index.unchanged(entry, stat)) {
+            return;
+        }
+        String id = ObjectStore.hashFile(name, path.toFile());
+        if (id.equals(entry.id())) {
+            _refreshed.add(new Index.Entry(name, id, stat, entry.staged()));
+        } else {
+            _modified.add(name);
+        }
+    }
+
+    /** An action on each regular file found by a Walk. */
+    private interface Visitor {
+        /** Visits the file at PATH, called NAME in the index and having
+         *  ATTRS. */
+        void visit(Path path, String name, BasicFileAttributes attrs);
+    }
+
+    /** The task visiting the regular files in one directory and forking
+     *  a task for each of its subdirectories. */
+    private static class Walk extends RecursiveAction {
+
+        /** Walks are never serialized. */
+        private static final long serialVersionUID = 1L;
+
+        /** A task for directory DIR, whose files are named PREFIX followed
+         *  by their names in the index, and are visited by VISITOR. */
+        Walk(Path dir, String prefix, Visitor visitor) {
+            _dir = dir;
+            _prefix = prefix;
+            _visitor = visitor;
+        }
+
+        @Override
+        protected void compute() {
+            ArrayList<Walk> subdirs = new ArrayList<>();
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(_dir)) {
+                for (Path path : files) {
+                    String name = _prefix + path.getFileName();
+                    BasicFileAttributes attrs = Files.readAttributes(
+                        path, BasicFileAttributes.class,
+                        LinkOption.NOFOLLOW_LINKS);
+                    if (attrs.isDirectory()) {
+                        if (!name.equals(GIT)) {
+                            subdirs.add(new Walk(path, name + "/", _visitor));
+                        }
+                    } else if (attrs.isRegularFile()) {
+                        _visitor.visit(path, name, attrs);
+                    }
+                }
+            } catch (IOException err) {
+                throw new GitletException("I/O File Read error");
+            }
+            invokeAll(subdirs);
+        }
+
+        /** Directory walked. */
+        private final Path _dir;
+        /** Prefix of the names of its files. */
+        private final String _prefix;
+        /** Action on its files. */
+        private final Visitor _visitor;
+    }
+
+    /** Holder of the shared pool, created on first use. */
+    private static class Pool {
+        /** The pool. */
+        static final ForkJoinPool INSTANCE = new ForkJoinPool(
+            Integer.getInteger("gitlet.threads",
+                               Runtime.getRuntime().availableProcessors()));
+    }
+
+    /** Name of the repo directory, skipped. */
+    private static final String GIT = ".gitlet";
+
+    /** Root of the working directory. */
+    private final File _root;
+    /** Index compared with. */
+    private final Index _index;
+    /** Paths of tracked files found. */
+    private final Set<String> _seen = ConcurrentHashMap.newKeySet();
+    /** Paths of modified files. */
+    private final ConcurrentLinkedQueue<String> _modified =
+        new ConcurrentLinkedQueue<>();
+    /** Paths of deleted files. */
+    private final ArrayList<String> _deleted = new ArrayList<>();
+    /** Paths of untracked files. */
+    private final ConcurrentLinkedQueue<String> _untracked =
+        new ConcurrentLinkedQueue<>();
+    /** Refreshed entries. */
+    private final ConcurrentLinkedQueue<Index.Entry> _refreshed =
+        new ConcurrentLinkedQueue<>();
+}
@@ -0,0 +1,104 @@
+package gitlet;
+
+import org.junit.Test;
+import org.junit.Rule;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+
+/** The suite of all JUnit tests for the Worktree class.
+ *  @author Thomas Hsiung
+ */
+public class WorktreeTest {
+
+    /** The working directory. */
+    @Rule
+    public TemporaryFolder root = new TemporaryFolder();
+
+    /** Writes CONTENTS to the file PATH under my root, returning it. */
+    File write(String path, String contents) {
+        File file = new File(root.getRoot(), path);
+        file.getParentFile().mkdirs();
+        Utils.writeContents(file, contents);
+        return file;
+    }
+
+    /** Returns an entry of INDEX for the file PATH under my root, as it
+     *  is now. */
+    Index.Entry track(Index index, String path) {
+        File file = new File(root.getRoot(), path);
+        Index.Entry entry = new Index.Entry(
+            path, ObjectStore.hashFile(path, file), Index.Stat.of(file),
+            false);
+        index.put(entry);
+        return entry;
+    }
+
+    @Test
+    public void testScan() {
+        write("same.txt", "This is a wug.");
+        write("changed.txt", "This is a wug.");
+        write("dir/sub/nested.txt", "nested");
+        write("dir/gone.txt", "gone");
+        write(".gitlet/index", "not in the tree");
+        Index index = new Index(new File(root.getRoot(), ".gitlet/index2"));
+        track(index, "same.txt");
+        track(index, "changed.txt");
+        track(index, "dir/sub/nested.txt");
+        track(index, "dir/gone.txt");
+        write("changed.txt", "This is not a wug.");
+        new File(root.getRoot(), "dir/gone.txt").delete();
+        write("new.txt", "new");
+        write("dir/sub/new.txt", "new");
+
+        Worktree tree = new Worktree(root.getRoot(), index).scan();
+        assertEquals(Arrays.asList("changed.txt"), tree.modified());
+        assertEquals(Arrays.asList("dir/gone.txt"), tree.deleted());
+        assertEquals(Arrays.asList("dir/sub/new.txt", "new.txt"),
+                     tree.untracked());
+        assertEquals(2, tree.refreshed().size());
+    }
+
+    @Test
+    public void testUnchanged() {
+        File file = write("wug.txt", "This is a wug.");
+        file.setLastModified(System.currentTimeMillis() - 60_000);
+        File indexFile = new File(root.getRoot(), "index");
+        Index index = new Index(indexFile);
+        Index.Entry entry = track(index, "wug.txt");
+        index.write();
+        index = new Index(indexFile);
+        assertTrue(index.unchanged(entry, Index.Stat.of(file)));
+        Worktree tree = new Worktree(root.getRoot(), index).scan();
+        assertEquals(Collections.emptyList(), tree.modified());
+        assertEquals(Collections.emptyList(), tree.refreshed());
+        assertEquals(Arrays.asList("index"), tree.untracked());
+    }
+
+    @Test
+    public void testNames() {
+        write("a.txt", "a");
+        write("dir/b.txt", "b");
+        write("dir/sub/c.txt", "c");
+        write(".gitlet/d.txt", "d");
+        File dir = new File(root.getRoot(), "dir");
+        assertEquals(Arrays.asList("a.txt", "dir/b.txt", "dir/sub/c.txt"),
+                     Worktree.files(root.getRoot(), root.getRoot()));
+        assertEquals(Arrays.asList("dir/b.txt", "dir/sub/c.txt"),
+                     Worktree.files(root.getRoot(), dir));
+        assertEquals("dir/sub/c.txt",
+                     Worktree.name(root.getRoot(),
+                                   new File(dir, "sub/../sub/c.txt")));
+        try {
+            Worktree.name(dir, new File(root.getRoot(), "a.txt"));
+            fail("named a file outside the working directory");
+        } catch (GitletException excp) {
+            assertEquals("File is outside the working directory.",
+                         excp.getMessage());
+        }
+    }
+
+}